@@ -19,6 +19,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.impl.CancellableRunnable;
 import com.intellij.util.ThrowableConsumer;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 
@@ -29,13 +30,24 @@ public final class StreamGobbler implements CancellableRunnable {
   private OutputStream myByteContents;
   private final ByteArrayOutputStream myInMemoryContents;
   private final InputStream is;
+  private final @Nullable ThrowableConsumer<InputStream, IOException> myStreamConsumer;
+  private volatile IOException myConsumerException;
   private File myTempFile = null;
   private int myOutputLength = 0;
   private boolean myResultUsedOnce;
   private volatile boolean myMasterExited;
 
   public StreamGobbler(final InputStream is) {
+    this(is, null);
+  }
+
+  /**
+   * @param streamConsumer when not null, the stream is handed to it as the process writes it instead of being collected;
+   *                       whatever the consumer leaves unread is skipped so that the process never blocks on a full pipe
+   */
+  public StreamGobbler(final InputStream is, final @Nullable ThrowableConsumer<InputStream, IOException> streamConsumer) {
     this.is = is;
+    myStreamConsumer = streamConsumer;
     myInMemoryContents = new ByteArrayOutputStream();
     myByteContents = myInMemoryContents;
     myResultUsedOnce = true;
@@ -43,6 +55,10 @@ public final class StreamGobbler implements CancellableRunnable {
 
   @Override
   public void run() {
+    if (myStreamConsumer != null) {
+      consumeStream(myStreamConsumer);
+      return;
+    }
     byte[] buffer = new byte[8 * 1024];
     try {
       int read;
@@ -71,6 +87,55 @@ public final class StreamGobbler implements CancellableRunnable {
     }
   }
 
+  private void consumeStream(final ThrowableConsumer<InputStream, IOException> consumer) {
+    final InputStream countingStream = new FilterInputStream(is) {
+      @Override
+      public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) myOutputLength++;
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) myOutputLength += read;
+        return read;
+      }
+
+      @Override
+      public void close() {
+        // the rest of the stream is skipped by the gobbler
+      }
+    };
+    try {
+      consumer.consume(countingStream);
+    }
+    catch (IOException e) {
+      myConsumerException = e;
+    }
+    catch (RuntimeException e) {
+      myConsumerException = new IOException(e);
+    }
+    try {
+      byte[] buffer = new byte[8 * 1024];
+      //noinspection StatementWithEmptyBody
+      while (countingStream.read(buffer, 0, buffer.length) != -1) ;
+    }
+    catch (IOException ioe) {
+      if (!myMasterExited && myConsumerException == null) {
+        myConsumerException = ioe;
+      }
+    }
+  }
+
+  /**
+   * @return the error thrown by the stream consumer passed to the constructor, if any
+   */
+  public @Nullable IOException getConsumerException() {
+    return myConsumerException;
+  }
+
   private boolean switchToTemporaryFileContent() {
     try {
       myTempFile = FileUtil.createTempFile("idea_p4", "command.output");
@@ -19,6 +19,7 @@ package org.jetbrains.idea.perforce.perforce;
 import com.intellij.openapi.util.NlsSafe;
 import com.intellij.util.ThrowableConsumer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.StreamGobbler;
 
 import java.io.*;
@@ -34,6 +35,7 @@ public final class ExecResult {
   private Throwable myException = null;
   private String myErrorString;
   private Charset myCharset = StandardCharsets.UTF_8;
+  private ThrowableConsumer<InputStream, IOException> myStdoutConsumer;
 
   @Override
   @SuppressWarnings({"HardCodedStringLiteral"})
@@ -94,6 +96,23 @@ public final class ExecResult {
     return myStdout;
   }
 
+  /**
+   * Makes the command hand its stdout to {@code consumer} while the process is running instead of collecting it,
+   * so huge outputs can be parsed record by record. The consumer is called on the thread reading the output;
+   * {@link #getStdout()} is empty then, and errors thrown by the consumer are reported by {@link #getStdoutConsumerException()}.
+   */
+  public void setStdoutConsumer(final @Nullable ThrowableConsumer<InputStream, IOException> consumer) {
+    myStdoutConsumer = consumer;
+  }
+
+  public @Nullable ThrowableConsumer<InputStream, IOException> getStdoutConsumer() {
+    return myStdoutConsumer;
+  }
+
+  public @Nullable IOException getStdoutConsumerException() {
+    return myOutputGobbler != null ? myOutputGobbler.getConsumerException() : null;
+  }
+
   public void setOutputGobbler(final StreamGobbler outputGobbler) {
     myOutputGobbler = outputGobbler;
   }
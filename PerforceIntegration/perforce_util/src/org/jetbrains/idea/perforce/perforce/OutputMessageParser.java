@@ -28,6 +28,7 @@ import org.jetbrains.idea.perforce.ClientVersion;
 import org.jetbrains.idea.perforce.ServerVersion;
 import org.jetbrains.idea.perforce.changesBrowser.FileChange;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.LineNumberReader;
@@ -40,6 +41,7 @@ import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoField;
 import java.time.temporal.TemporalAccessor;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,6 +59,7 @@ public class OutputMessageParser {
 
   private static final @NonNls String CLIENT_PREFIX = "Client";
   private static final String FILE_PREFIX = "...";
+  private static final @NonNls String CHANGE_PREFIX = "Change ";
   protected final String myOutput;
 
   private static class ChangeReadingPolicy {
@@ -234,6 +237,26 @@ public class OutputMessageParser {
     return result;
   }
 
+  /**
+   * Streaming counterpart of {@link #processChangesOutput(String)}: reads the output change by change,
+   * so that only the description of the change being parsed is kept in memory.
+   */
+  public static void processChangesOutput(final BufferedReader reader, final Consumer<? super ChangeListData> consumer) throws IOException {
+    final StringBuilder record = new StringBuilder();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      // description lines are indented with a tab, so a new change always starts at the beginning of a line
+      if (line.startsWith(CHANGE_PREFIX) && !record.isEmpty()) {
+        processChangesOutput(record.toString()).forEach(consumer);
+        record.setLength(0);
+      }
+      record.append(line).append('\n');
+    }
+    if (!record.isEmpty()) {
+      processChangesOutput(record.toString()).forEach(consumer);
+    }
+  }
+
   private @Nullable ChangeListData readNextChange(final ChangeReadingPolicy changePattern) {
     if (myLines.isEmpty()) return null;
     myCurrentLine = myLines.remove(0);
@@ -116,7 +116,7 @@ public class ShowAllSubmittedFilesAction extends AnAction implements DumbAware {
     data.DATE  = ChangeListData.DATE_FORMAT.format(date.toInstant().atZone(ZoneId.systemDefault()));
     data.DESCRIPTION = submitMessage;
 
-    final PerforceChangeList changeList = new PerforceChangeList(data, project, connection, new PerforceChangeCache(project));
+    final PerforceChangeList changeList = new PerforceChangeList(data, project, connection, new PerforceChangeCache(project, true));
 
     boolean result = VcsUtil.runVcsProcessWithProgress(new VcsRunnable() {
       @Override
@@ -4,7 +4,9 @@ import com.intellij.openapi.project.Project
 import com.intellij.openapi.vfs.VirtualFile
 import org.jetbrains.idea.perforce.perforce.PerforceRunner
 import org.jetbrains.idea.perforce.perforce.connections.P4Connection
+import java.io.File
 import java.nio.file.FileSystems
+import java.nio.file.Path
 import java.nio.file.PathMatcher
 
 class P4IgnoresMappingsHelper private constructor(private val mappings : Array<MappingEntry>) {
@@ -13,8 +15,13 @@ class P4IgnoresMappingsHelper private constructor(private val mappings : Array<M
     fun create(project: Project, connection: P4Connection): P4IgnoresMappingsHelper {
       val perforceRunner = PerforceRunner.getInstance(project)
       val result = perforceRunner.ignores(connection)
+      return parse(result.stdout)
+    }
+
+    @JvmStatic
+    fun parse(ignoresOutput: String): P4IgnoresMappingsHelper {
       val mappingsList = ArrayList<MappingEntry>()
-      for (line in result.stdout.split("\n".toRegex())) {
+      for (line in ignoresOutput.split("\n".toRegex())) {
         if (line.isEmpty())
           continue
         val excluded = line[0] == '!'
@@ -40,7 +47,33 @@ class P4IgnoresMappingsHelper private constructor(private val mappings : Array<M
     return false
   }
 
+  /**
+   * Whether everything under the directory is ignored, so that it needn't be walked at all:
+   * some rule ignores the whole directory (`dir/...`), and no rule checked before it can un-ignore anything inside.
+   */
+  fun isIgnoredDirectory(dir: Path): Boolean {
+    val dirPrefix = dir.toString().removeSuffix(File.separator) + File.separator
+    for (rule in mappings) {
+      if (rule.isExcluded) {
+        if (rule.mayMatchUnder(dirPrefix)) return false
+      }
+      else if (rule.directoryMatcher?.matches(dir) == true) {
+        return true
+      }
+    }
+    return false
+  }
+
   private data class MappingEntry(val pattern: String, val isExcluded: Boolean) {
     val pathMatcher: PathMatcher = FileSystems.getDefault().getPathMatcher("glob:${pattern}")
+
+    // matches the directories whose every descendant matches the pattern
+    val directoryMatcher: PathMatcher? = pattern.removeSuffix("/**").removeSuffix("\\**")
+      .takeIf { it.length < pattern.length && it.isNotEmpty() }
+      ?.let { FileSystems.getDefault().getPathMatcher("glob:${it}") }
+
+    private val literalPrefix: String = pattern.substring(0, pattern.indexOfFirst { it in "*?[{" }.takeIf { it >= 0 } ?: pattern.length)
+
+    fun mayMatchUnder(dirPrefix: String): Boolean = literalPrefix.startsWith(dirPrefix) || dirPrefix.startsWith(literalPrefix)
   }
-}
\ No newline at end of file
+}
@@ -69,7 +69,11 @@ public class PerforceAnnotationProvider implements AnnotationProviderEx {
     String pathAtRevision = p4Revision == null ? path : p4Revision.getDepotPath();
     long revision = p4Revision == null ? -1 : p4Revision.getRevisionNumber();
 
-    final AnnotationInfo annotationInfo = myRunner.annotate(connection, pathAtRevision, revision);
+    // "p4 annotate path" annotates the head revision, which is the first one in the log; naming it makes the result cacheable
+    P4Revision annotated = p4Revision != null ? p4Revision : fileLog.length > 0 ? fileLog[0] : null;
+    final AnnotationInfo annotationInfo = annotated == null
+                                          ? myRunner.annotate(connection, pathAtRevision, revision)
+                                          : myRunner.annotate(connection, annotated.getDepotPath(), annotated.getRevisionNumber(), fileLog);
     return new AnnotationPrecursor(annotationInfo, fileLog, revision, p4Revision, connection);
   }
 
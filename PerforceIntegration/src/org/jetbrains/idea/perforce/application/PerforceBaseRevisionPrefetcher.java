@@ -0,0 +1,81 @@
+package org.jetbrains.idea.perforce.application;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ChangeListListener;
+import com.intellij.openapi.vcs.changes.ChangeListManager;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.idea.perforce.perforce.PerforceCachingContentRevision;
+import org.jetbrains.idea.perforce.perforce.PerforceSettings;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads the base revisions of files in the local changelists into the content caches in the background after changelist updates,
+ * so that the first diff of a file doesn't wait for the server. At most {@code perforce.content.prefetch.limit} files are loaded
+ * per update ({@code 0} turns prefetching off), and a revision is loaded at most once per session.
+ */
+@Service(Service.Level.PROJECT)
+public final class PerforceBaseRevisionPrefetcher {
+  private static final Logger LOG = Logger.getInstance(PerforceBaseRevisionPrefetcher.class);
+  private static final int LIMIT = SystemProperties.getIntProperty("perforce.content.prefetch.limit", 200);
+
+  private final Project myProject;
+  private final ExecutorService myExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Perforce Base Revision Prefetch", 1);
+  private final AtomicBoolean myScheduled = new AtomicBoolean();
+  private final Set<String> myPrefetched = ConcurrentHashMap.newKeySet();
+
+  public PerforceBaseRevisionPrefetcher(Project project) {
+    myProject = project;
+  }
+
+  public static PerforceBaseRevisionPrefetcher getInstance(Project project) {
+    return project.getService(PerforceBaseRevisionPrefetcher.class);
+  }
+
+  void startListening(@NotNull Disposable parentDisposable) {
+    if (LIMIT <= 0 || ApplicationManager.getApplication().isUnitTestMode()) return;
+
+    ChangeListManager.getInstance(myProject).addChangeListListener(new ChangeListListener() {
+      @Override
+      public void changeListUpdateDone() {
+        if (myScheduled.compareAndSet(false, true)) {
+          myExecutor.execute(() -> {
+            myScheduled.set(false);
+            prefetch();
+          });
+        }
+      }
+    }, parentDisposable);
+  }
+
+  private void prefetch() {
+    int count = 0;
+    for (Change change : ChangeListManager.getInstance(myProject).getAllChanges()) {
+      if (count >= LIMIT || myProject.isDisposed() || !PerforceSettings.getSettings(myProject).ENABLED) return;
+
+      ContentRevision before = change.getBeforeRevision();
+      if (!(before instanceof PerforceCachingContentRevision)) continue;
+      if (!myPrefetched.add(before.getFile().getPath() + "#" + before.getRevisionNumber().asString())) continue;
+
+      count++;
+      try {
+        ((PerforceCachingContentRevision)before).prefetch();
+      }
+      catch (VcsException e) {
+        LOG.debug(e);
+      }
+    }
+  }
+}
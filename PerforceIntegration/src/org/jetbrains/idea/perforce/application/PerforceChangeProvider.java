@@ -5,8 +5,11 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.AccessToken;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.ThrowableComputable;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FilePath;
@@ -15,11 +18,15 @@ import com.intellij.openapi.vcs.actions.VcsContextFactory;
 import com.intellij.openapi.vcs.changes.*;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.SystemProperties;
+import com.intellij.util.ThrowableConvertor;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.CollectionFactory;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.vcsUtil.VcsUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.jetbrains.idea.perforce.perforce.*;
 import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
 import org.jetbrains.idea.perforce.perforce.connections.PerforceConnectionManager;
@@ -27,12 +34,15 @@ import org.jetbrains.idea.perforce.perforce.connections.PerforceConnectionManage
 
 import java.io.File;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public class PerforceChangeProvider implements ChangeProvider {
   private static final Logger LOG = Logger.getInstance(PerforceChangeProvider.class);
   private static final Logger REFRESH_LOG = Logger.getInstance("#PerforceRefresh");
+  private static final int REFRESH_PARALLELISM = SystemProperties.getIntProperty("perforce.refresh.parallelism", 4);
+  private static final ExecutorService ourRefreshExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Perforce Refresh", Math.max(1, REFRESH_PARALLELISM));
 
   public PerforceUnversionedTracker getUnversionedTracker() {
     return myUnversionedTracker;
@@ -93,7 +103,7 @@ public class PerforceChangeProvider implements ChangeProvider {
     PerforceManager.getInstance(myProject).clearInfoClientCache();
 
     PerforceChangeCache changeCache = new PerforceChangeCache(myProject);
-    MultiMap<ConnectionKey, PerforceChangeList> allLists = calcChangeListMap(changeCache);
+    MultiMap<ConnectionKey, PerforceChangeList> allLists = calcChangeListMap(changeCache, progress);
     PerforceSettings settings = PerforceSettings.getSettings(myProject);
     HashSet<String> ideaLists = new HashSet<>();
     refreshSynchronizer(settings, addGate, allLists, ideaLists);
@@ -105,12 +115,20 @@ public class PerforceChangeProvider implements ChangeProvider {
 
     final Map<ConnectionKey, P4Connection> key2connection = settings.getConnectionsByKeys();
     MultiMap<ConnectionKey, VirtualFile> roots = getAffectedRoots(dirtyScope);
+    List<P4Connection> connections = new ArrayList<>();
     for (ConnectionKey key : roots.keySet()) {
       P4Connection connection = key2connection.get(key);
       if (connection != null) {
-        processConnection(connection, builder, roots.get(key), progress, addGate, allLists.get(key), dirtyScope, changeCache, creator);
+        connections.add(connection);
       }
     }
+    List<ConnectionChanges> loaded = forEachConnection(connections, progress, "loadConnectionChanges", connection -> {
+      ConnectionKey key = connection.getConnectionKey();
+      return loadConnectionChanges(connection, roots.get(key), allLists.get(key), dirtyScope, changeCache);
+    });
+    for (int i = 0; i < connections.size(); i++) {
+      processConnectionChanges(connections.get(i), loaded.get(i), builder, addGate, creator);
+    }
 
     Stopwatch sw = Stopwatch.createStarted();
     myReadOnlyFileStateManager.getChanges(dirtyScope, builder, progress, addGate);
@@ -118,14 +136,19 @@ public class PerforceChangeProvider implements ChangeProvider {
     logRefreshDebug("readOnlyFileStateManager.getChanges took %d s".formatted(sw.elapsed().toSeconds()));
 
     final Set<VirtualFile> writableFiles = collectWritableFiles(myReadOnlyFileStateManager, dirtyScope, false);
+    List<VirtualFile> asyncEdited = new ArrayList<>();
     for (VirtualFile file : PerforceVcs.getInstance(myProject).getAsyncEditedFiles()) {
-      if (writableFiles.contains(file)) {
-        processAsyncEdit(file, builder, creator);
-        writableFiles.remove(file);
+      if (writableFiles.remove(file)) {
+        asyncEdited.add(file);
       }
     }
+    processAsyncEdits(asyncEdited, builder, creator);
     reportModifiedWithoutCheckout(builder, creator, writableFiles);
     myLastSuccessfulUpdateTracker.updateSuccessful();
+
+    if (REFRESH_LOG.isDebugEnabled()) {
+      logRefreshDebug("p4 processes since the previous refresh: " + myRunner.getCommandStatistics().drain());
+    }
   }
 
   private static void removeUnsyncedIdeaChangelists(@NotNull ChangeListManagerGate addGate, HashSet<String> ideaLists) {
@@ -174,11 +197,29 @@ public class PerforceChangeProvider implements ChangeProvider {
       return Collections.emptyList();
     }
 
-    List<VirtualFile> files = new ArrayList<>(map.get(connection));
+    PerforceHaveSnapshot snapshot = PerforceHaveSnapshot.isEnabled() ? PerforceHaveSnapshot.getInstance(myProject) : null;
+    ConnectionKey key = connection.getConnectionKey();
+    List<VirtualFile> hijacked = new ArrayList<>();
+    List<VirtualFile> files = new ArrayList<>();
+    for (VirtualFile file : map.get(connection)) {
+      Boolean writable = snapshot != null ? snapshot.getAlwaysWritable(key, file) : null;
+      if (writable == null) {
+        files.add(file);
+      }
+      else {
+        myAlwaysWritable.put(file, writable);
+        if (!writable) {
+          hijacked.add(file);
+        }
+      }
+    }
+    if (files.isEmpty()) {
+      return hijacked;
+    }
+
     List<String> paths = ContainerUtil.map(files, file -> P4File.escapeWildcards(file.getPath()));
     List<String> output = myRunner.files(paths, connection);
 
-    List<VirtualFile> hijacked = new ArrayList<>();
     int fileIndex = 0;
     for (String line : output) {
       if (StringUtil.isEmptyOrSpaces(line)) continue;
@@ -191,6 +232,9 @@ public class PerforceChangeProvider implements ChangeProvider {
       logDebug("getHijackedFiles, checking file = " + file + "; line = " + line);
       boolean expectedWritable = line.substring(lParen).contains("+w");
       myAlwaysWritable.put(file, expectedWritable);
+      if (snapshot != null) {
+        snapshot.setAlwaysWritable(key, file, expectedWritable);
+      }
       if (!expectedWritable) {
         hijacked.add(file);
       }
@@ -216,7 +260,7 @@ public class PerforceChangeProvider implements ChangeProvider {
 
   private MultiMap<ConnectionKey, VirtualFile> getAffectedRoots(VcsDirtyScope dirtyScope) throws VcsException {
     final PerforceConnectionManagerI connectionManager = PerforceConnectionManager.getInstance(myProject);
-    MultiMap<ConnectionKey, VirtualFile> roots = new MultiMap<>();
+    MultiMap<ConnectionKey, VirtualFile> roots = MultiMap.createLinked();
     for (VirtualFile root : dirtyScope.getAffectedContentRoots()) {
       P4Connection connection = connectionManager.getConnectionForFile(root);
       if (connection != null) {
@@ -238,16 +282,98 @@ public class PerforceChangeProvider implements ChangeProvider {
     return ContainerUtil.or(allRoots, root -> !pcl.getChangesUnder(root).isEmpty());
   }
 
-  private MultiMap<ConnectionKey, PerforceChangeList> calcChangeListMap(PerforceChangeCache changeCache) throws VcsException {
-    final MultiMap<ConnectionKey, PerforceChangeList> allLists = MultiMap.create();
-    for (Pair<P4Connection, Collection<VirtualFile>> pair : PerforceVcs.getInstance(myProject).getRootsByConnections()) {
+  private MultiMap<ConnectionKey, PerforceChangeList> calcChangeListMap(PerforceChangeCache changeCache, ProgressIndicator progress)
+    throws VcsException {
+    Collection<Pair<P4Connection, Collection<VirtualFile>>> rootsByConnections = PerforceVcs.getInstance(myProject).getRootsByConnections();
+    List<P4Connection> connections = new ArrayList<>(rootsByConnections.size());
+    Map<P4Connection, Collection<VirtualFile>> rootsByConnection = new HashMap<>();
+    for (Pair<P4Connection, Collection<VirtualFile>> pair : rootsByConnections) {
       final P4Connection connection = pair.first;
       PerforceManager.ensureValidClient(myProject, connection);
-      allLists.putValues(connection.getConnectionKey(), getPendingChangeListsUnderRoots(changeCache, connection, pair.second));
+      connections.add(connection);
+      rootsByConnection.put(connection, pair.second);
+    }
+
+    List<List<PerforceChangeList>> lists = forEachConnection(connections, progress, "getPendingChangeLists", connection ->
+      getPendingChangeListsUnderRoots(changeCache, connection, rootsByConnection.get(connection)));
+
+    final MultiMap<ConnectionKey, PerforceChangeList> allLists = MultiMap.create();
+    for (int i = 0; i < connections.size(); i++) {
+      allLists.putValues(connections.get(i).getConnectionKey(), lists.get(i));
     }
     return allLists;
   }
 
+  /**
+   * Runs {@code task} for every connection, on up to {@link #REFRESH_PARALLELISM} connections at once, so that a project mapped
+   * to several servers waits for the slowest of them rather than for all of them in turn. The results are returned in the order of
+   * {@code connections}, so whatever is built from them doesn't depend on which server answered first.
+   * The tasks run under {@code progress}, and the first failure or the cancellation of {@code progress} cancels the others.
+   */
+  @VisibleForTesting
+  public static <T> List<T> forEachConnection(List<P4Connection> connections,
+                                               ProgressIndicator progress,
+                                               String stage,
+                                               ThrowableConvertor<? super P4Connection, ? extends T, VcsException> task)
+    throws VcsException {
+    Stopwatch sw = Stopwatch.createStarted();
+    List<T> result = new ArrayList<>(connections.size());
+    if (connections.size() <= 1 || REFRESH_PARALLELISM <= 1) {
+      for (P4Connection connection : connections) {
+        result.add(runForConnection(connection, progress, stage, task));
+      }
+    }
+    else {
+      List<Future<T>> futures = new ArrayList<>(connections.size());
+      for (P4Connection connection : connections) {
+        futures.add(ourRefreshExecutor.submit(() -> runUnderProgress(progress, () -> runForConnection(connection, progress, stage, task))));
+      }
+      try {
+        for (Future<T> future : futures) {
+          result.add(PerforceFutures.waitFor(future, progress::checkCanceled));
+        }
+      }
+      finally {
+        for (Future<T> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+    sw.stop();
+    logRefreshDebug("%s for %d connections took %d ms".formatted(stage, connections.size(), sw.elapsed().toMillis()));
+    return result;
+  }
+
+  /**
+   * Runs {@code task} in a pooled thread with {@code progress} as its indicator, so that the p4 commands it starts are canceled with the refresh
+   */
+  private static <T> T runUnderProgress(ProgressIndicator progress, ThrowableComputable<T, VcsException> task) throws VcsException {
+    Ref<T> result = new Ref<>();
+    Ref<VcsException> error = new Ref<>();
+    ProgressManager.getInstance().executeProcessUnderProgress(() -> {
+      try {
+        result.set(task.compute());
+      }
+      catch (VcsException e) {
+        error.set(e);
+      }
+    }, progress);
+    if (!error.isNull()) throw error.get();
+    return result.get();
+  }
+
+  private static <T> T runForConnection(P4Connection connection,
+                                        ProgressIndicator progress,
+                                        String stage,
+                                        ThrowableConvertor<? super P4Connection, ? extends T, VcsException> task) throws VcsException {
+    progress.checkCanceled();
+    Stopwatch sw = Stopwatch.createStarted();
+    T result = task.convert(connection);
+    sw.stop();
+    logRefreshDebug("%s %s took %d ms".formatted(stage, connection.getConnectionKey(), sw.elapsed().toMillis()));
+    return result;
+  }
+
   private List<PerforceChangeList> getPendingChangeListsUnderRoots(PerforceChangeCache changeCache, P4Connection connection, Collection<VirtualFile> allRoots) throws VcsException {
     List<PerforceChangeList> perforceLists = myRunner.getPendingChangeLists(connection, changeCache);
     if (perforceLists.isEmpty()) return perforceLists;
@@ -279,13 +405,32 @@ public class PerforceChangeProvider implements ChangeProvider {
     return writableFiles;
   }
 
-  private void processAsyncEdit(VirtualFile file, ChangelistBuilder builder, ChangeCreator changeCreator)
+  private void processAsyncEdits(List<VirtualFile> files, ChangelistBuilder builder, ChangeCreator changeCreator)
     throws VcsException {
-    long revision = myRunner.haveRevision(P4File.create(file));
-    if (revision > 0) {
-      // todo: future optimization point
-      final FilePath filePath = VcsContextFactory.getInstance().createFilePathOn(file);
-      builder.processChange(changeCreator.createEditedFileChange(filePath, revision, false), PerforceVcs.getKey());
+    if (files.isEmpty()) return;
+
+    PerforceConnectionManagerI connectionManager = PerforceConnectionManager.getInstance(myProject);
+    MultiMap<P4Connection, P4File> byConnection = new MultiMap<>();
+    for (VirtualFile file : files) {
+      P4Connection connection = connectionManager.getConnectionForFile(file);
+      if (connection != null) {
+        byConnection.putValue(connection, P4File.create(file));
+      }
+    }
+
+    Map<String, Long> revisions = CollectionFactory.createFilePathMap();
+    for (P4Connection connection : byConnection.keySet()) {
+      myRunner.haveRevisions(connection, byConnection.get(connection))
+        .forEach((path, revision) -> revisions.put(FileUtil.toSystemIndependentName(path), revision));
+    }
+
+    for (VirtualFile file : files) {
+      Long revision = revisions.get(file.getPath());
+      if (revision != null && revision > 0) {
+        // todo: future optimization point
+        final FilePath filePath = VcsContextFactory.getInstance().createFilePathOn(file);
+        builder.processChange(changeCreator.createEditedFileChange(filePath, revision, false), PerforceVcs.getKey());
+      }
     }
   }
 
@@ -313,17 +458,15 @@ public class PerforceChangeProvider implements ChangeProvider {
     }
   }
 
-  private void processConnection(final @NotNull P4Connection connection,
-                                 final ChangelistBuilder builder,
-                                 final Collection<VirtualFile> roots,
-                                 final ProgressIndicator progress,
-                                 final ChangeListManagerGate addGate,
-                                 final Collection<PerforceChangeList> allLists,
-                                 final VcsDirtyScope dirtyScope,
-                                 PerforceChangeCache changeCache, ChangeCreator changeCreator) throws VcsException {
-    progress.checkCanceled();
-    Stopwatch sw = Stopwatch.createStarted();
-
+  /**
+   * The server-side part of a connection refresh: what's opened and resolved under the dirty roots.
+   * Doesn't touch the changelist builder or the gate, so connections can be loaded concurrently.
+   */
+  private ConnectionChanges loadConnectionChanges(final @NotNull P4Connection connection,
+                                                  final Collection<VirtualFile> roots,
+                                                  final Collection<PerforceChangeList> allLists,
+                                                  final VcsDirtyScope dirtyScope,
+                                                  PerforceChangeCache changeCache) throws VcsException {
     final LocalPathsSet resolvedWithConflictsMap = myRunner.getResolvedWithConflictsMap(connection, roots);
     final ResolvedFilesWrapper resolvedFilesWrapper = new ResolvedFilesWrapper(myRunner.getResolvedFiles(connection, roots));
 
@@ -331,18 +474,39 @@ public class PerforceChangeProvider implements ChangeProvider {
     for (VirtualFile root : roots) {
       changes.addAll(getChangesUnder(connection, root, dirtyScope, allLists, changeCache));
     }
+    return new ConnectionChanges(resolvedWithConflictsMap, resolvedFilesWrapper, changes);
+  }
+
+  private void processConnectionChanges(final @NotNull P4Connection connection,
+                                        ConnectionChanges loaded,
+                                        final ChangelistBuilder builder,
+                                        final ChangeListManagerGate addGate,
+                                        ChangeCreator changeCreator) throws VcsException {
+    Stopwatch sw = Stopwatch.createStarted();
 
     final PerforceChangeListCalculator changeListCalculator = new PerforceChangeListCalculator(myProject, connection, addGate);
 
     final OpenedResultProcessor processor =
-      new OpenedResultProcessor(connection, changeCreator, builder, resolvedWithConflictsMap, resolvedFilesWrapper,
+      new OpenedResultProcessor(connection, changeCreator, builder, loaded.resolvedWithConflicts, loaded.resolvedFiles,
                                 changeListCalculator);
-    processor.process(changes);
+    processor.process(loaded.changes);
 
     sw.stop();
     logRefreshDebug("processConnection %s took %d s".formatted(connection.getConnectionKey(), sw.elapsed().toSeconds()));
   }
 
+  private static final class ConnectionChanges {
+    private final LocalPathsSet resolvedWithConflicts;
+    private final ResolvedFilesWrapper resolvedFiles;
+    private final List<PerforceChange> changes;
+
+    private ConnectionChanges(LocalPathsSet resolvedWithConflicts, ResolvedFilesWrapper resolvedFiles, List<PerforceChange> changes) {
+      this.resolvedWithConflicts = resolvedWithConflicts;
+      this.resolvedFiles = resolvedFiles;
+      this.changes = changes;
+    }
+  }
+
   @Override
   public boolean isModifiedDocumentTrackingRequired() {
     return false;
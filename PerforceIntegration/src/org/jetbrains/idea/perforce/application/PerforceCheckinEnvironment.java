@@ -47,6 +47,7 @@ import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
 import org.jetbrains.idea.perforce.perforce.jobs.PerforceCheckinComponent;
 import org.jetbrains.idea.perforce.perforce.jobs.PerforceJob;
 
+import java.io.File;
 import java.util.*;
 
 public class PerforceCheckinEnvironment implements CheckinEnvironment{
@@ -142,12 +143,25 @@ public class PerforceCheckinEnvironment implements CheckinEnvironment{
       if (myChanges.isEmpty()) return -1;
       long changeListID = createSingleChangeListForConnection();
       long submittedRevision = myRunner.submitForConnection(myConnection, myChanges, changeListID, comment, p4jobs);
+      forgetSubmittedInHaveSnapshot();
       if (changeListID == -1) {
         myVcs.clearDefaultAssociated();
       }
       return submittedRevision;
     }
 
+    private void forgetSubmittedInHaveSnapshot() {
+      if (!PerforceHaveSnapshot.isEnabled()) return;
+      List<String> paths = new ArrayList<>();
+      for (PerforceChange change : myChanges) {
+        File file = change.getFile();
+        if (file != null) {
+          paths.add(file.getPath());
+        }
+      }
+      PerforceHaveSnapshot.getInstance(myProject).forget(myConnection.getConnectionKey(), paths);
+    }
+
     private long createSingleChangeListForConnection() throws VcsException {
       final MultiMap<Long, PerforceChange> byListMap = new MultiMap<>();
       for (PerforceChange change : myChanges) {
@@ -81,6 +81,7 @@ class PerforceDirtyFilesHandler(private val myProject: Project,
     progress.checkCanceled()
 
     myUnversionedTracker.markUnknown(result.allLocalFiles)
+    myUnversionedTracker.markIgnoredDirectories(result.walkedRoots, result.ignoredDirectories, result.versionedInIgnoredDirectories)
     myUnversionedTracker.markUnversioned(result.localOnly.filter { !isKnownToPerforce(addGate, it) })
 
     myUnversionedTracker.scheduleUpdate()
@@ -0,0 +1,367 @@
+package org.jetbrains.idea.perforce.application;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SystemInfoRt;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.PathUtilRt;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Locally kept have list of the Perforce clients used in the project: for every file under the scanned roots,
+ * the revision 'p4 have' reported for it (or that it isn't synced at all), with the file length and timestamp at that moment.
+ * <p>
+ * Files whose length and timestamp didn't change since are classified from the snapshot, so that refreshes don't ask the server
+ * about the whole dirty scope; only files whose local state diverged (edited, synced, created or deleted since) are checked with p4,
+ * and the answers update the snapshot.
+ * <p>
+ * Versioned files are persisted between sessions. Whether a file is unknown to Perforce can change without touching the file
+ * ('p4 add' and 'p4 submit' from the command line), so that part is kept in memory only and not trusted by total rescans.
+ */
+@Service(Service.Level.PROJECT)
+public final class PerforceHaveSnapshot implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PerforceHaveSnapshot.class);
+
+  private static final int VERSION = 1;
+  private static final long SAVE_DELAY_SECONDS = 60;
+
+  private static final long NOT_IN_HAVE = -1;
+  private static final long ABSENT = -1;
+
+  private static final byte WRITABLE_UNKNOWN = 0;
+  private static final byte WRITABLE_YES = 1;
+  private static final byte WRITABLE_NO = 2;
+
+  private static final Comparator<String> PATH_ORDER =
+    SystemInfoRt.isFileSystemCaseSensitive ? Comparator.naturalOrder() : String.CASE_INSENSITIVE_ORDER;
+
+  private final Project myProject;
+  private final Map<ConnectionKey, ClientSnapshot> mySnapshots = new ConcurrentHashMap<>();
+  private final AtomicBoolean mySaveScheduled = new AtomicBoolean();
+
+  public PerforceHaveSnapshot(@NotNull Project project) {
+    myProject = project;
+  }
+
+  public static PerforceHaveSnapshot getInstance(@NotNull Project project) {
+    return project.getService(PerforceHaveSnapshot.class);
+  }
+
+  public static boolean isEnabled() {
+    return SystemProperties.getBooleanProperty("perforce.have.snapshot.enabled", true);
+  }
+
+  public enum FileState { VERSIONED, UNVERSIONED, UNKNOWN }
+
+  /**
+   * @return whether all the given paths are under roots whose have list was recorded completely
+   */
+  public boolean covers(@NotNull ConnectionKey key, @NotNull Collection<FilePath> paths) {
+    ClientSnapshot snapshot = getSnapshot(key);
+    synchronized (snapshot) {
+      for (FilePath path : paths) {
+        if (!snapshot.covers(path.getPath())) return false;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * @param trustUnversioned whether the files remembered as unknown to Perforce may be reported as {@link FileState#UNVERSIONED}
+   * @return {@link FileState#UNKNOWN} if the file changed since it was recorded and should be checked with the server
+   */
+  public @NotNull FileState getState(@NotNull ConnectionKey key, @NotNull VirtualFile file, boolean trustUnversioned) {
+    ClientSnapshot snapshot = getSnapshot(key);
+    Entry entry;
+    synchronized (snapshot) {
+      entry = snapshot.entries.get(file.getPath());
+    }
+    if (entry == null || entry.length != file.getLength() || entry.timestamp != file.getTimeStamp()) {
+      return FileState.UNKNOWN;
+    }
+    if (entry.revision != NOT_IN_HAVE) return FileState.VERSIONED;
+    return trustUnversioned ? FileState.UNVERSIONED : FileState.UNKNOWN;
+  }
+
+  /**
+   * @param missing receives the recorded versioned paths under the scope that were already missing locally when recorded;
+   *                the caller checks which of them were restored since
+   * @return other recorded versioned paths under the scope; the caller checks which of them still exist locally
+   */
+  public @NotNull List<String> getVersionedPathsUnder(@NotNull ConnectionKey key, @NotNull Collection<FilePath> scope,
+                                                      @NotNull Collection<? super String> missing) {
+    ClientSnapshot snapshot = getSnapshot(key);
+    List<String> result = new ArrayList<>();
+    synchronized (snapshot) {
+      for (FilePath path : scope) {
+        Entry self = snapshot.entries.get(path.getPath());
+        if (self != null) {
+          collectVersioned(path.getPath(), self, result, missing);
+        }
+        for (Map.Entry<String, Entry> e : snapshot.entriesUnder(path.getPath()).entrySet()) {
+          collectVersioned(e.getKey(), e.getValue(), result, missing);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void collectVersioned(String path, Entry entry, List<String> existing, Collection<? super String> missing) {
+    if (entry.revision == NOT_IN_HAVE) return;
+    if (entry.length == ABSENT) {
+      missing.add(FileUtil.toSystemDependentName(path));
+    }
+    else {
+      existing.add(path);
+    }
+  }
+
+  public @Nullable Boolean getAlwaysWritable(@NotNull ConnectionKey key, @NotNull VirtualFile file) {
+    ClientSnapshot snapshot = getSnapshot(key);
+    synchronized (snapshot) {
+      Entry entry = snapshot.entries.get(file.getPath());
+      if (entry == null || entry.writable == WRITABLE_UNKNOWN) return null;
+      if (entry.length != file.getLength() || entry.timestamp != file.getTimeStamp()) return null;
+      return entry.writable == WRITABLE_YES;
+    }
+  }
+
+  public void setAlwaysWritable(@NotNull ConnectionKey key, @NotNull VirtualFile file, boolean writable) {
+    ClientSnapshot snapshot = getSnapshot(key);
+    synchronized (snapshot) {
+      Entry entry = snapshot.entries.get(file.getPath());
+      if (entry != null && entry.revision != NOT_IN_HAVE) {
+        entry.writable = writable ? WRITABLE_YES : WRITABLE_NO;
+        snapshot.modified = true;
+      }
+    }
+    scheduleSave();
+  }
+
+  /**
+   * Starts recording the answer of 'p4 have' for the given paths; directories are expected to be queried recursively.
+   * Nothing changes in the snapshot until {@link Update#commit()}.
+   */
+  public @NotNull Update startUpdate(@NotNull ConnectionKey key, @NotNull Collection<FilePath> queried) {
+    return new Update(getSnapshot(key), queried);
+  }
+
+  /**
+   * Makes the files be checked with the server next time, e.g. after they were submitted.
+   */
+  public void forget(@NotNull ConnectionKey key, @NotNull Collection<String> paths) {
+    ClientSnapshot snapshot = getSnapshot(key);
+    synchronized (snapshot) {
+      for (String path : paths) {
+        snapshot.entries.remove(FileUtil.toSystemIndependentName(path));
+      }
+      snapshot.modified = true;
+    }
+    // until saved again, a crash should not leave the forgotten entries behind
+    FileUtil.delete(getSnapshotFile(key));
+    scheduleSave();
+  }
+
+  public final class Update {
+    private final ClientSnapshot mySnapshot;
+    private final Collection<FilePath> myQueried;
+    private final Map<String, Entry> myRecorded = new HashMap<>();
+
+    private Update(ClientSnapshot snapshot, Collection<FilePath> queried) {
+      mySnapshot = snapshot;
+      myQueried = queried;
+    }
+
+    public void versioned(@NotNull String path, long revision, @Nullable VirtualFile file) {
+      myRecorded.put(FileUtil.toSystemIndependentName(path),
+                     file == null ? new Entry(revision, ABSENT, ABSENT) : new Entry(revision, file.getLength(), file.getTimeStamp()));
+    }
+
+    public void unversioned(@NotNull VirtualFile file) {
+      myRecorded.putIfAbsent(file.getPath(), new Entry(NOT_IN_HAVE, file.getLength(), file.getTimeStamp()));
+    }
+
+    public void commit() {
+      synchronized (mySnapshot) {
+        for (FilePath path : myQueried) {
+          String queried = path.getPath();
+          if (path.isDirectory()) {
+            mySnapshot.entriesUnder(queried).clear();
+            mySnapshot.addRoot(queried);
+          }
+          mySnapshot.entries.remove(queried);
+        }
+        for (Map.Entry<String, Entry> e : myRecorded.entrySet()) {
+          Entry previous = mySnapshot.entries.put(e.getKey(), e.getValue());
+          if (previous != null && previous.revision == e.getValue().revision) {
+            e.getValue().writable = previous.writable;
+          }
+        }
+        mySnapshot.modified = true;
+      }
+      scheduleSave();
+    }
+  }
+
+  private static final class Entry {
+    final long revision;
+    final long length;
+    final long timestamp;
+    byte writable = WRITABLE_UNKNOWN;
+
+    Entry(long revision, long length, long timestamp) {
+      this.revision = revision;
+      this.length = length;
+      this.timestamp = timestamp;
+    }
+  }
+
+  private static final class ClientSnapshot {
+    final NavigableMap<String, Entry> entries = new TreeMap<>(PATH_ORDER);
+    final NavigableSet<String> roots = new TreeSet<>(PATH_ORDER);
+    boolean modified;
+
+    boolean covers(String path) {
+      String current = path;
+      while (true) {
+        if (roots.contains(current)) return true;
+        int slash = current.lastIndexOf('/');
+        if (slash <= 0) return false;
+        current = current.substring(0, slash);
+      }
+    }
+
+    void addRoot(String root) {
+      if (covers(root)) return;
+      roots.subSet(root + "/", root + "0").clear();
+      roots.add(root);
+    }
+
+    NavigableMap<String, Entry> entriesUnder(String dir) {
+      return entries.subMap(dir + "/", true, dir + "0", false);
+    }
+  }
+
+  private ClientSnapshot getSnapshot(ConnectionKey key) {
+    return mySnapshots.computeIfAbsent(key, this::load);
+  }
+
+  private void scheduleSave() {
+    if (mySaveScheduled.compareAndSet(false, true)) {
+      AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+        mySaveScheduled.set(false);
+        if (!myProject.isDisposed()) {
+          saveModified();
+        }
+      }, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+
+  @Override
+  public void dispose() {
+    saveModified();
+  }
+
+  private void saveModified() {
+    for (Map.Entry<ConnectionKey, ClientSnapshot> e : mySnapshots.entrySet()) {
+      ClientSnapshot snapshot = e.getValue();
+      synchronized (snapshot) {
+        if (!snapshot.modified) continue;
+        try {
+          save(getSnapshotFile(e.getKey()), snapshot);
+          snapshot.modified = false;
+        }
+        catch (IOException ex) {
+          LOG.info("Cannot save have snapshot of " + e.getKey(), ex);
+        }
+      }
+    }
+  }
+
+  private @NotNull ClientSnapshot load(ConnectionKey key) {
+    ClientSnapshot snapshot = new ClientSnapshot();
+    File file = getSnapshotFile(key);
+    if (!file.isFile()) return snapshot;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != VERSION) return snapshot;
+      int rootCount = in.readInt();
+      for (int i = 0; i < rootCount; i++) {
+        snapshot.roots.add(in.readUTF());
+      }
+      int entryCount = in.readInt();
+      for (int i = 0; i < entryCount; i++) {
+        String path = in.readUTF();
+        Entry entry = new Entry(in.readLong(), in.readLong(), in.readLong());
+        entry.writable = in.readByte();
+        snapshot.entries.put(path, entry);
+      }
+      LOG.debug("loaded have snapshot of " + key + ": " + entryCount + " files");
+    }
+    catch (IOException e) {
+      LOG.info("Cannot load have snapshot of " + key, e);
+      snapshot.roots.clear();
+      snapshot.entries.clear();
+    }
+    return snapshot;
+  }
+
+  private static void save(File file, ClientSnapshot snapshot) throws IOException {
+    Path target = file.toPath();
+    Files.createDirectories(target.getParent());
+    Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(VERSION);
+        out.writeInt(snapshot.roots.size());
+        for (String root : snapshot.roots) {
+          out.writeUTF(root);
+        }
+        int versioned = 0;
+        for (Entry entry : snapshot.entries.values()) {
+          if (entry.revision != NOT_IN_HAVE) versioned++;
+        }
+        out.writeInt(versioned);
+        for (Map.Entry<String, Entry> e : snapshot.entries.entrySet()) {
+          Entry entry = e.getValue();
+          if (entry.revision == NOT_IN_HAVE) continue;
+          out.writeUTF(e.getKey());
+          out.writeLong(entry.revision);
+          out.writeLong(entry.length);
+          out.writeLong(entry.timestamp);
+          out.writeByte(entry.writable);
+        }
+      }
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private @NotNull File getStorageDir() {
+    return new File(PathManager.getSystemPath(), "perforce/have/" + myProject.getLocationHash());
+  }
+
+  private @NotNull File getSnapshotFile(ConnectionKey key) {
+    String name = PathUtilRt.suggestFileName(key.getServer() + "_" + key.getUser() + "_" + key.getClient(), false, false);
+    return new File(getStorageDir(), name + "." + Integer.toHexString(key.hashCode()) + ".dat");
+  }
+}
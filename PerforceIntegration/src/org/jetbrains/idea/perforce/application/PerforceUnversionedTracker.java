@@ -38,6 +38,7 @@ import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
 
 import java.io.File;
 import java.util.*;
+import java.util.function.Predicate;
 
 public final class PerforceUnversionedTracker {
   private static final Logger LOG = Logger.getInstance(PerforceUnversionedTracker.class);
@@ -46,6 +47,10 @@ public final class PerforceUnversionedTracker {
 
   private final Set<FilePath> myUnversionedFiles = new HashSet<>();
   private final Set<FilePath> myIgnoredFiles = new HashSet<>();
+  // directories skipped by the scanner as wholly ignored, with everything under them
+  private final Set<FilePath> myIgnoredDirectories = new HashSet<>();
+  // versioned files under the ignored directories, not ignored with them
+  private final Set<FilePath> myVersionedInIgnoredDirectories = new HashSet<>();
   private final Set<VirtualFile> myDirtyLocalFiles = new HashSet<>();
 
   private final Project myProject;
@@ -68,6 +73,8 @@ public final class PerforceUnversionedTracker {
     synchronized (LOCK) {
       myUnversionedFiles.clear();
       myIgnoredFiles.clear();
+      myIgnoredDirectories.clear();
+      myVersionedInIgnoredDirectories.clear();
       myDirtyLocalFiles.clear();
     }
   }
@@ -92,13 +99,21 @@ public final class PerforceUnversionedTracker {
     if (isPotentiallyIgnoredFile(file))
       return true;
     synchronized (LOCK) {
-      return myIgnoredFiles.contains(file);
+      if (myIgnoredFiles.contains(file)) return true;
+      if (!myIgnoredDirectories.isEmpty() && !myVersionedInIgnoredDirectories.contains(file)) {
+        for (FilePath parent = file; parent != null; parent = parent.getParentPath()) {
+          if (myIgnoredDirectories.contains(parent)) return true;
+        }
+      }
+      return false;
     }
   }
 
   public Collection<FilePath> getIgnoredFiles() {
     synchronized (LOCK) {
-      return new ArrayList<>(myIgnoredFiles);
+      List<FilePath> result = new ArrayList<>(myIgnoredFiles);
+      result.addAll(myIgnoredDirectories);
+      return result;
     }
   }
 
@@ -181,6 +196,30 @@ public final class PerforceUnversionedTracker {
     }
   }
 
+  /**
+   * Replaces the ignored directories known under the walked scope directories with the ones found by the latest scan.
+   * Files inside the ignored directories are forgotten, they are reported as ignored with the directory,
+   * except for the {@code versionedFiles} found in the have list under them.
+   */
+  public void markIgnoredDirectories(@NotNull Collection<FilePath> walkedRoots,
+                                     @NotNull Collection<VirtualFile> directories,
+                                     @NotNull Collection<FilePath> versionedFiles) {
+    if (walkedRoots.isEmpty()) return;
+    synchronized (LOCK) {
+      Predicate<FilePath> isUnderWalkedRoot = path -> ContainerUtil.exists(walkedRoots, root -> FileUtil.isAncestor(root.getPath(), path.getPath(), false));
+      myIgnoredDirectories.removeIf(isUnderWalkedRoot);
+      myVersionedInIgnoredDirectories.removeIf(isUnderWalkedRoot);
+      myVersionedInIgnoredDirectories.addAll(versionedFiles);
+      for (VirtualFile directory : directories) {
+        FilePath dirPath = VcsUtil.getFilePath(directory);
+        Predicate<FilePath> isUnder = path -> FileUtil.isAncestor(dirPath.getPath(), path.getPath(), false);
+        myUnversionedFiles.removeIf(isUnder);
+        myIgnoredFiles.removeIf(isUnder);
+        myIgnoredDirectories.add(dirPath);
+      }
+    }
+  }
+
   public void markUnknown(@NotNull Set<VirtualFile> files) {
     for (VirtualFile file : files) {
       FilePath path = VcsUtil.getFilePath(file);
@@ -196,6 +235,7 @@ public final class PerforceUnversionedTracker {
       synchronized (LOCK) {
         myUnversionedFiles.remove(path);
         myIgnoredFiles.remove(path);
+        myIgnoredDirectories.remove(path);
       }
     }
   }
@@ -399,6 +399,7 @@ public final class PerforceVcs extends AbstractVcs {
     PerforceManager.getInstance(myProject).startListening(disposable);
     ((PerforceConnectionManager)PerforceConnectionManager.getInstance(myProject)).startListening(disposable);
     PerforceNumberNameSynchronizer.getInstance(myProject).startListening(disposable);
+    PerforceBaseRevisionPrefetcher.getInstance(myProject).startListening(disposable);
     PerforceSettings.getSettings(myProject).ensureOfflineNotify();
 
     ReadonlyStatusIsVisibleActivationCheck.check(myProject, NAME);
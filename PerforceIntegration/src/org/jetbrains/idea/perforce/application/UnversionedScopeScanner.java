@@ -1,31 +1,53 @@
 package org.jetbrains.idea.perforce.application;
 
+import com.google.common.base.Stopwatch;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.options.advanced.AdvancedSettings;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.ProjectLevelVcsManager;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vcs.changes.VcsDirtyScopeImpl;
 import com.intellij.openapi.vcs.changes.VcsIgnoreManager;
 import com.intellij.openapi.vcs.impl.VcsRootIterator;
 import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.vcsUtil.VcsUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.idea.perforce.ServerVersion;
 import org.jetbrains.idea.perforce.perforce.P4HaveParser;
 import org.jetbrains.idea.perforce.perforce.PathsHelper;
+import org.jetbrains.idea.perforce.perforce.PerforceFutures;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
+import org.jetbrains.idea.perforce.perforce.PerforceSettings;
 import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class UnversionedScopeScanner {
   private static final Logger LOG = Logger.getInstance(UnversionedScopeScanner.class);
+  /**
+   * Number of threads walking the local files of a scope; {@code 1} walks them in the calling thread with {@link VcsRootIterator},
+   * without skipping P4IGNORE'd directories.
+   */
+  private static final int SCAN_PARALLELISM = SystemProperties.getIntProperty("perforce.unversioned.scan.parallelism", 4);
+  private static final ExecutorService ourScanExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Perforce Unversioned Files Scan", Math.max(1, SCAN_PARALLELISM));
   private final Project myProject;
   private final PerforceRunner myRunner;
 
@@ -45,44 +67,70 @@ public abstract class UnversionedScopeScanner {
       LOG.debug("scope=" + dirtyFiles);
     }
     MultiMap<P4Connection, FilePath> map = FileGrouper.distributePathsByConnection(dirtyFiles, myProject);
+    PerforceHaveSnapshot snapshot = PerforceHaveSnapshot.isEnabled() ? PerforceHaveSnapshot.getInstance(myProject) : null;
     for (P4Connection connection : map.keySet()) {
       Collection<FilePath> files = map.get(connection);
 
-      final Set<VirtualFile> localFiles = enumerateLocalFiles(files);
+      final Set<VirtualFile> localFiles = SCAN_PARALLELISM > 1
+                                          ? enumerateLocalFilesInParallel(files, createIgnoresHelper(connection), result)
+                                          : enumerateLocalFiles(files);
       result.allLocalFiles.addAll(localFiles);
       checkCanceled();
 
-      final LocalFileSystem fs = LocalFileSystem.getInstance();
-      myRunner.executeMultiple(collectPaths(files), connection, new P4HaveParser(PerforceManager.getInstance(myProject)) {
-        @Override
-        protected void consumeRevision(@NotNull String path, long revision) {
-          checkCanceled();
-
-          VirtualFile vFile = findVirtualFile(path);
-          if (vFile != null) {
-            localFiles.remove(vFile);
-          }
-          else {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("locally missing file reported: " + path);
-            }
-            result.missingFiles.add(path);
+      ConnectionKey key = connection.getConnectionKey();
+      Collection<FilePath> toQuery = files;
+      Set<VirtualFile> queriedLocalFiles = localFiles;
+      if (snapshot != null && snapshot.covers(key, files)) {
+        toQuery = new ArrayList<>();
+        queriedLocalFiles = new HashSet<>();
+        classifyBySnapshot(snapshot, key, files, localFiles, !force, toQuery, queriedLocalFiles, result.missingFiles);
+        if (!result.ignoredDirectories.isEmpty()) {
+          List<FilePath> ignoredDirs = ContainerUtil.map(result.ignoredDirectories, VcsUtil::getFilePath);
+          for (String path : snapshot.getVersionedPathsUnder(key, ignoredDirs, new ArrayList<>())) {
+            result.versionedInIgnoredDirectories.add(VcsUtil.getFilePath(path, false));
           }
         }
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("have snapshot: " + toQuery.size() + " paths to check with the server");
+        }
+      }
 
-        private VirtualFile findVirtualFile(String path) {
-          VirtualFile vFile = fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(path));
-          if (vFile != null) {
-            return vFile;
+      if (!toQuery.isEmpty()) {
+        final PerforceHaveSnapshot.Update update = snapshot != null ? snapshot.startUpdate(key, toQuery) : null;
+        myRunner.executeMultiple(collectPaths(toQuery), connection, new P4HaveParser(PerforceManager.getInstance(myProject)) {
+          @Override
+          protected void consumeRevision(@NotNull String path, long revision) {
+            checkCanceled();
+
+            VirtualFile vFile = findVirtualFile(path);
+            if (update != null) {
+              update.versioned(path, revision, vFile);
+            }
+            if (vFile != null) {
+              localFiles.remove(vFile);
+              if (isUnder(vFile, result.ignoredDirectories)) {
+                result.versionedInIgnoredDirectories.add(VcsUtil.getFilePath(vFile));
+              }
+            }
+            else {
+              if (LOG.isDebugEnabled()) {
+                LOG.debug("locally missing file reported: " + path);
+              }
+              result.missingFiles.add(path);
+            }
           }
+        });
+        checkCanceled();
 
-          // see https://youtrack.jetbrains.com/issue/IDEA-39796
-          File ioFile = new File(path);
-          String appleForkPath = FileUtil.toSystemIndependentName(ioFile.getParent()) + "/%" + ioFile.getName();
-          return fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(appleForkPath));
+        if (update != null) {
+          for (VirtualFile file : queriedLocalFiles) {
+            if (localFiles.contains(file)) {
+              update.unversioned(file);
+            }
+          }
+          update.commit();
         }
-      });
-      checkCanceled();
+      }
 
       if (force) {
         result.localOnly.addAll(localFiles);
@@ -103,6 +151,70 @@ public abstract class UnversionedScopeScanner {
     return result;
   }
 
+  /**
+   * Classifies the files of the scope whose local state matches the have snapshot, and collects the rest to be checked with p4:
+   * versioned files are removed from {@code localFiles}, snapshot files missing locally are added to {@code missingFiles}.
+   */
+  private static void classifyBySnapshot(PerforceHaveSnapshot snapshot, ConnectionKey key, Collection<FilePath> scope,
+                                         Set<VirtualFile> localFiles, boolean trustUnversioned,
+                                         Collection<FilePath> toQuery, Set<VirtualFile> queriedLocalFiles, Set<String> missingFiles) {
+    for (Iterator<VirtualFile> iterator = localFiles.iterator(); iterator.hasNext(); ) {
+      VirtualFile file = iterator.next();
+      switch (snapshot.getState(key, file, trustUnversioned)) {
+        case VERSIONED -> iterator.remove();
+        case UNVERSIONED -> { }
+        case UNKNOWN -> {
+          queriedLocalFiles.add(file);
+          toQuery.add(VcsUtil.getFilePath(file));
+        }
+      }
+    }
+    List<String> recordedMissing = new ArrayList<>();
+    for (String path : snapshot.getVersionedPathsUnder(key, scope, recordedMissing)) {
+      if (findVirtualFile(path) == null) {
+        // deleted locally, or removed from the have list by a sync outside the IDE
+        toQuery.add(VcsUtil.getFilePath(path, false));
+      }
+    }
+    List<String> restored = new ArrayList<>();
+    for (String path : recordedMissing) {
+      VirtualFile file = findVirtualFile(path);
+      if (file == null && !new File(path).exists()) {
+        missingFiles.add(path);
+        continue;
+      }
+      // restored locally since recorded (revert, undo of a delete, a copy made outside the IDE)
+      restored.add(path);
+      if (file == null || !queriedLocalFiles.contains(file)) {
+        toQuery.add(VcsUtil.getFilePath(path, false));
+      }
+    }
+    if (!restored.isEmpty()) {
+      snapshot.forget(key, restored);
+    }
+  }
+
+  private static boolean isUnder(VirtualFile file, Set<VirtualFile> directories) {
+    if (directories.isEmpty()) return false;
+    for (VirtualFile parent = file.getParent(); parent != null; parent = parent.getParent()) {
+      if (directories.contains(parent)) return true;
+    }
+    return false;
+  }
+
+  private static VirtualFile findVirtualFile(String path) {
+    LocalFileSystem fs = LocalFileSystem.getInstance();
+    VirtualFile vFile = fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(path));
+    if (vFile != null) {
+      return vFile;
+    }
+
+    // see https://youtrack.jetbrains.com/issue/IDEA-39796
+    File ioFile = new File(path);
+    String appleForkPath = FileUtil.toSystemIndependentName(ioFile.getParent()) + "/%" + ioFile.getName();
+    return fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(appleForkPath));
+  }
+
   private PathsHelper collectPaths(Collection<FilePath> value) {
     final PathsHelper helper = new PathsHelper(PerforceManager.getInstance(myProject));
     for (final FilePath dir : value) {
@@ -130,6 +242,15 @@ public abstract class UnversionedScopeScanner {
     final Set<String> missingFiles = new HashSet<>();
     final List<VirtualFile> localOnly = new ArrayList<>();
     final Set<VirtualFile> allLocalFiles = new HashSet<>();
+    /**
+     * The scope directories that were walked, and the directories under them skipped as wholly ignored by P4IGNORE
+     */
+    final List<FilePath> walkedRoots = new ArrayList<>();
+    final Set<VirtualFile> ignoredDirectories = new HashSet<>();
+    /**
+     * Files in the have list under {@link #ignoredDirectories}: P4IGNORE doesn't apply to them, so they aren't ignored with the directory
+     */
+    final Set<FilePath> versionedInIgnoredDirectories = new HashSet<>();
   }
 
   private Set<VirtualFile> enumerateLocalFiles(Collection<FilePath> roots) {
@@ -151,6 +272,118 @@ public abstract class UnversionedScopeScanner {
     return localFiles;
   }
 
+  /**
+   * @return the compiled P4IGNORE rules to skip ignored directories with, when ignored files are detected by matching them locally
+   */
+  private @Nullable P4IgnoresMappingsHelper createIgnoresHelper(P4Connection connection) throws VcsException {
+    if (!AdvancedSettings.getBoolean("vcs.process.ignored") || !PerforceSettings.getSettings(myProject).USE_PATTERN_MATCHING_IGNORE) {
+      return null;
+    }
+    ServerVersion serverVersion = PerforceManager.getInstance(myProject).getServerVersion(connection);
+    if (serverVersion == null || !serverVersion.supportsIgnoresCommand()) return null;
+    return P4IgnoresMappingsHelper.create(myProject, connection);
+  }
+
+  /**
+   * Same as {@link #enumerateLocalFiles}, but the top directories of the scope are expanded in the calling thread
+   * and the subtrees below them are walked in {@link #SCAN_PARALLELISM} threads.
+   * Directories wholly ignored by {@code ignores} aren't entered, and are collected into {@link ScanResult#ignoredDirectories}.
+   */
+  private Set<VirtualFile> enumerateLocalFilesInParallel(Collection<FilePath> roots, @Nullable P4IgnoresMappingsHelper ignores,
+                                                         ScanResult result) throws VcsException {
+    Stopwatch sw = Stopwatch.createStarted();
+    ProjectLevelVcsManager vcsManager = ProjectLevelVcsManager.getInstance(myProject);
+    Set<VirtualFile> localFiles = ConcurrentHashMap.newKeySet();
+    Set<VirtualFile> ignoredDirs = ConcurrentHashMap.newKeySet();
+    AtomicInteger dirCount = new AtomicInteger();
+
+    // (directory, its vcs root) pairs to walk, split until there are enough of them to keep all threads busy
+    List<Pair<VirtualFile, VirtualFile>> subtrees = new ArrayList<>();
+    for (FilePath root : roots) {
+      VirtualFile file = root.getVirtualFile();
+      if (file == null || !file.isValid()) continue;
+      VirtualFile vcsRoot = vcsManager.getVcsRootFor(file);
+      if (vcsRoot == null || isIgnoredByVcs(vcsManager, file)) continue;
+      if (file.isDirectory()) {
+        result.walkedRoots.add(root);
+        subtrees.add(Pair.create(file, vcsRoot));
+      }
+      else if (!skipPotentiallyIgnored(file)) {
+        localFiles.add(file);
+      }
+    }
+    for (int depth = 0; depth < 3 && !subtrees.isEmpty() && subtrees.size() < SCAN_PARALLELISM * 4; depth++) {
+      List<Pair<VirtualFile, VirtualFile>> next = new ArrayList<>();
+      for (Pair<VirtualFile, VirtualFile> subtree : subtrees) {
+        checkCanceled();
+        if (!acceptDirectory(vcsManager, subtree.first, subtree.second, ignores, ignoredDirs)) continue;
+        dirCount.incrementAndGet();
+        for (VirtualFile child : subtree.first.getChildren()) {
+          if (child.isDirectory()) {
+            next.add(Pair.create(child, subtree.second));
+          }
+          else if (!isIgnoredByVcs(vcsManager, child) && !skipPotentiallyIgnored(child)) {
+            localFiles.add(child);
+          }
+        }
+      }
+      subtrees = next;
+    }
+
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (Pair<VirtualFile, VirtualFile> subtree : subtrees) {
+        futures.add(ourScanExecutor.submit(() -> VfsUtilCore.visitChildrenRecursively(subtree.first, new VirtualFileVisitor<Void>(VirtualFileVisitor.NO_FOLLOW_SYMLINKS) {
+          @Override
+          public @NotNull Result visitFileEx(@NotNull VirtualFile file) {
+            if (Thread.currentThread().isInterrupted()) return skipTo(subtree.first);
+            if (file.isDirectory()) {
+              if (!acceptDirectory(vcsManager, file, subtree.second, ignores, ignoredDirs)) return SKIP_CHILDREN;
+              dirCount.incrementAndGet();
+            }
+            else if (!isIgnoredByVcs(vcsManager, file) && !skipPotentiallyIgnored(file)) {
+              localFiles.add(file);
+            }
+            return CONTINUE;
+          }
+        })));
+      }
+      for (Future<?> future : futures) {
+        PerforceFutures.waitFor(future, this::checkCanceled);
+      }
+    }
+    finally {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+
+    result.ignoredDirectories.addAll(ignoredDirs);
+    sw.stop();
+    if (LOG.isDebugEnabled()) {
+      long millis = Math.max(1, sw.elapsed().toMillis());
+      LOG.debug("scanned %d files in %d directories in %d ms (%d files/s), skipped %d ignored directories"
+                  .formatted(localFiles.size(), dirCount.get(), millis, localFiles.size() * 1000L / millis, ignoredDirs.size()));
+    }
+    return new HashSet<>(localFiles);
+  }
+
+  private static boolean acceptDirectory(ProjectLevelVcsManager vcsManager, VirtualFile dir, VirtualFile vcsRoot,
+                                         @Nullable P4IgnoresMappingsHelper ignores, Set<VirtualFile> ignoredDirs) {
+    if (isIgnoredByVcs(vcsManager, dir)) return false;
+    // a nested root is walked with its own scope
+    if (!dir.equals(vcsRoot) && !vcsRoot.equals(vcsManager.getVcsRootFor(dir))) return false;
+    if (ignores != null && !dir.equals(vcsRoot) && ignores.isIgnoredDirectory(dir.toNioPath())) {
+      ignoredDirs.add(dir);
+      return false;
+    }
+    return true;
+  }
+
+  private static boolean isIgnoredByVcs(ProjectLevelVcsManager vcsManager, VirtualFile file) {
+    return ReadAction.compute(() -> vcsManager.isIgnored(file));
+  }
+
   private boolean skipPotentiallyIgnored(VirtualFile file) {
     return Registry.is("p4.ignore.all.potentially.ignored") && VcsIgnoreManager.getInstance(myProject).isPotentiallyIgnoredFile(file);
   }
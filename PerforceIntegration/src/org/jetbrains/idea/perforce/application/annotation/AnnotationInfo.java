@@ -16,8 +16,13 @@
 package org.jetbrains.idea.perforce.application.annotation;
 
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.LineTokenizer;
 import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.diff.Diff;
+import com.intellij.util.diff.FilesTooBigForDiffException;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.PerforceBundle;
 
 import java.io.IOException;
@@ -57,6 +62,105 @@ public final class AnnotationInfo {
     myRevisions = revisions.toLongArray();
   }
 
+  private AnnotationInfo(String content, long[] revisions, boolean useChangelistNumbers) {
+    myContent = content;
+    myRevisions = revisions;
+    myUseChangelistNumbers = useChangelistNumbers;
+  }
+
+  /**
+   * Annotates the next revision of the file from this annotation, the way {@code p4 annotate} would if that revision was an edit:
+   * unchanged lines keep their revisions, and inserted or modified ones get the given revision (a changelist number when
+   * {@link #isUseChangelistNumbers()}).
+   *
+   * @param content          the file content at the next revision
+   * @param ignoreWhitespace whether lines differing only in whitespace are unchanged, as with {@code p4 annotate -dw}
+   * The diff isn't the one of the server, so when a changed block could be aligned with the unchanged lines in more than one way
+   * (e.g. a line inserted next to an equal one), the lines could be attributed differently than by {@code p4 annotate}.
+   * Such revisions aren't annotated here.
+   *
+   * @return the annotation of the next revision, or {@code null} if the contents are too big to compare or the diff is ambiguous
+   */
+  public @Nullable AnnotationInfo withNextRevision(@NotNull String content, long revision, boolean ignoreWhitespace) {
+    String[] before = LineTokenizer.tokenize(myContent, false, true);
+    String[] after = LineTokenizer.tokenize(content, false, true);
+    if (before.length != myRevisions.length) return null;
+
+    String[] normalizedBefore = normalize(before, ignoreWhitespace);
+    String[] normalizedAfter = normalize(after, ignoreWhitespace);
+    Diff.Change change;
+    try {
+      change = Diff.buildChanges(normalizedBefore, normalizedAfter);
+    }
+    catch (FilesTooBigForDiffException e) {
+      return null;
+    }
+    for (Diff.Change c = change; c != null; c = c.link) {
+      if (canSlide(normalizedAfter, c.line1, c.inserted) || canSlide(normalizedBefore, c.line0, c.deleted)) return null;
+    }
+
+    long[] revisions = new long[after.length];
+    int beforeLine = 0;
+    int afterLine = 0;
+    for (; change != null; change = change.link) {
+      while (afterLine < change.line1) {
+        revisions[afterLine++] = myRevisions[beforeLine++];
+      }
+      for (int i = 0; i < change.inserted; i++) {
+        revisions[afterLine++] = revision;
+      }
+      beforeLine += change.deleted;
+    }
+    while (afterLine < after.length) {
+      revisions[afterLine++] = myRevisions[beforeLine++];
+    }
+
+    StringBuilder newContent = new StringBuilder(content.length() + after.length);
+    for (String line : after) {
+      newContent.append(line).append("\n");
+    }
+    return new AnnotationInfo(newContent.toString(), revisions, myUseChangelistNumbers);
+  }
+
+  /**
+   * @return whether the block of {@code count} lines starting at {@code start} could be moved by a line up or down
+   * and still be a valid diff, i.e. whether it ends with the line before it or starts with the line after it
+   */
+  private static boolean canSlide(String[] lines, int start, int count) {
+    if (count == 0) return false;
+    int end = start + count;
+    return start > 0 && lines[start - 1].equals(lines[end - 1]) ||
+           end < lines.length && lines[end].equals(lines[start]);
+  }
+
+  private static String[] normalize(String[] lines, boolean ignoreWhitespace) {
+    if (!ignoreWhitespace) return lines;
+    String[] result = new String[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      StringBuilder line = new StringBuilder(lines[i].length());
+      for (int j = 0; j < lines[i].length(); j++) {
+        char c = lines[i].charAt(j);
+        if (!Character.isWhitespace(c)) {
+          line.append(c);
+        }
+      }
+      result[i] = line.toString();
+    }
+    return result;
+  }
+
+  /**
+   * @return the {@code p4 annotate -q} output this annotation is parsed from
+   */
+  public @NotNull String toOutput() {
+    String[] lines = LineTokenizer.tokenize(myContent, false, true);
+    StringBuilder output = new StringBuilder(myContent.length() + lines.length * 8);
+    for (int i = 0; i < Math.min(lines.length, myRevisions.length); i++) {
+      output.append(myRevisions[i]).append(": ").append(lines[i]).append("\n");
+    }
+    return output.toString();
+  }
+
   public String getContent() {
     return myContent;
   }
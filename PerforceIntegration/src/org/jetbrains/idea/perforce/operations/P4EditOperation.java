@@ -7,18 +7,24 @@ import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.FileStatus;
+import com.intellij.openapi.vcs.VcsConnectionProblem;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.*;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ProcessingContext;
+import com.intellij.util.containers.MultiMap;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
 import org.jetbrains.idea.perforce.perforce.FStat;
 import org.jetbrains.idea.perforce.perforce.P4File;
 import org.jetbrains.idea.perforce.perforce.PerforceCachingContentRevision;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
+
+import java.util.*;
 
 
 public class P4EditOperation extends VcsOperationOnPath {
@@ -74,48 +80,169 @@ public class P4EditOperation extends VcsOperationOnPath {
       final P4File p4File = P4File.createInefficientFromLocalPath(myPath);
       FStat p4FStat = p4File.getFstat(project, true);
 
-      if (p4FStat == null) return;
-      if ((p4FStat.status == FStat.STATUS_NOT_ADDED || p4FStat.status == FStat.STATUS_ONLY_LOCAL) &&
-          p4FStat.local != FStat.LOCAL_BRANCHING) {
-        throw new VcsException(
-          PerforceBundle.message("confirmation.text.auto.edit.file.not.registered.on.server", p4File.getLocalPath()));
-      }
-      else if (p4FStat.status == FStat.STATUS_DELETED) {
-        throw new VcsException(PerforceBundle.message("exception.text.file.deleted.from.server.cannot.edit", p4File.getLocalPath()));
-      }
-      else if (p4FStat.local == FStat.LOCAL_MOVE_DELETING) {
-        return; // edit already done by rename/move handlers
-      }
-      else if (p4FStat.local != FStat.LOCAL_CHECKED_IN && p4FStat.local != FStat.LOCAL_INTEGRATING &&
-               p4FStat.local != FStat.LOCAL_BRANCHING) {
-        throw new VcsException(
-          PerforceBundle.message("exception.text.file..should.not.be.readonly.cannot.edit", p4File.getLocalPath()));
-      }
+      if (p4FStat == null || !checkCanEdit(p4File, p4FStat)) return;
 
       long changeListNumber = getPerforceChangeList(project, p4File, context);
       runner.edit(p4File, changeListNumber);
     }
     catch (VcsException e) {
-      if (mySuppressErrors) {
-        // in allwrite workspace, 'p4 edit' is executed when modifying a file that's unchanged according to IDE status.
-        // "not changed" file status might've been outdated, so the file might be not available for 'p4 edit'. Not a big deal.
-        LOG.debug(e);
-      } else {
-        // check if file was deleted while we were waiting to perform background edit
-        String message = StringUtil.toLowerCase(e.getMessage());
-        if (!message.contains(CANNOT_FIND_ERROR) && !message.contains(CANNOT_FIND_ERROR_2)) {
-          throw e;
-        }
+      if (!isIgnorable(e)) {
+        throw e;
       }
     } finally {
-      if (myNeedPathRefresh) {
-        VirtualFile vFile = getFilePath().getVirtualFile();
-        if (vFile != null) {
-          vFile.refresh(true, false);
-          vcs.asyncEditCompleted(vFile);
+      refreshPath(vcs);
+    }
+    markPathDirty(project);
+  }
+
+  /**
+   * Edits the files of several operations on one connection with one 'p4 fstat' and one 'p4 edit' per target changelist,
+   * instead of spawning two p4 processes per file. If a batched 'p4 edit' fails, its files are edited one by one,
+   * so that every operation reports or suppresses its own error the same way {@link #execute} does.
+   * Connection problems aren't retried file by file but thrown, for {@link VcsOperationLog} to push the operations back.
+   */
+  static void executeBatch(Project project, P4Connection connection, Collection<P4EditOperation> operations, ProcessingContext context)
+    throws VcsException {
+    final Ref<PerforceVcs> vcsRef = new Ref<>();
+    final Ref<PerforceRunner> runnerRef = new Ref<>();
+    ApplicationManager.getApplication().runReadAction(() -> {
+      if (project.isDisposed()) return;
+      vcsRef.set(PerforceVcs.getInstance(project));
+      runnerRef.set(PerforceRunner.getInstance(project));
+    });
+
+    PerforceVcs vcs = vcsRef.get();
+    PerforceRunner runner = runnerRef.get();
+    if (vcs == null) return;
+
+    Map<P4File, P4EditOperation> byFile = new LinkedHashMap<>();
+    for (P4EditOperation operation : operations) {
+      byFile.put(P4File.createInefficientFromLocalPath(operation.myPath), operation);
+    }
+
+    Map<P4File, FStat> fstats;
+    try {
+      fstats = runner.fstatBulk(new ArrayList<>(byFile.keySet()));
+    }
+    catch (VcsConnectionProblem e) {
+      throw e;
+    }
+    catch (VcsException e) {
+      LOG.debug("Batched fstat failed, editing files one by one", e);
+      fstats = Collections.emptyMap();
+    }
+
+    VcsException error = null;
+    Set<P4EditOperation> executedSeparately = new HashSet<>();
+    MultiMap<Long, P4File> byChangeList = new MultiMap<>();
+    for (Map.Entry<P4File, P4EditOperation> entry : byFile.entrySet()) {
+      P4File p4File = entry.getKey();
+      P4EditOperation operation = entry.getValue();
+      FStat p4FStat = fstats.get(p4File);
+      if (p4FStat == null) {
+        executedSeparately.add(operation);
+        error = executeSeparately(project, operation, context, error);
+        continue;
+      }
+      try {
+        if (operation.checkCanEdit(p4File, p4FStat)) {
+          byChangeList.putValue(operation.getPerforceChangeList(project, p4File, context), p4File);
+        }
+      }
+      catch (VcsException e) {
+        if (!operation.isIgnorable(e) && error == null) {
+          error = e;
+        }
+      }
+    }
+
+    for (Long changeListNumber : byChangeList.keySet()) {
+      List<P4File> files = new ArrayList<>(byChangeList.get(changeListNumber));
+      try {
+        runner.editAll(files, changeListNumber, false, connection);
+      }
+      catch (VcsConnectionProblem e) {
+        throw e;
+      }
+      catch (VcsException e) {
+        LOG.debug("Batched edit failed, editing files one by one", e);
+        for (P4File p4File : files) {
+          P4EditOperation operation = byFile.get(p4File);
+          executedSeparately.add(operation);
+          error = executeSeparately(project, operation, context, error);
         }
       }
     }
+
+    for (P4EditOperation operation : byFile.values()) {
+      if (!executedSeparately.contains(operation)) {
+        operation.refreshPath(vcs);
+        operation.markPathDirty(project);
+      }
+    }
+
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  private static @Nullable VcsException executeSeparately(Project project, P4EditOperation operation, ProcessingContext context,
+                                                          @Nullable VcsException firstError) throws VcsConnectionProblem {
+    try {
+      operation.execute(project, context);
+      return firstError;
+    }
+    catch (VcsConnectionProblem e) {
+      throw e;
+    }
+    catch (VcsException e) {
+      return firstError == null ? e : firstError;
+    }
+  }
+
+  private boolean checkCanEdit(P4File p4File, FStat p4FStat) throws VcsException {
+    if ((p4FStat.status == FStat.STATUS_NOT_ADDED || p4FStat.status == FStat.STATUS_ONLY_LOCAL) &&
+        p4FStat.local != FStat.LOCAL_BRANCHING) {
+      throw new VcsException(
+        PerforceBundle.message("confirmation.text.auto.edit.file.not.registered.on.server", p4File.getLocalPath()));
+    }
+    else if (p4FStat.status == FStat.STATUS_DELETED) {
+      throw new VcsException(PerforceBundle.message("exception.text.file.deleted.from.server.cannot.edit", p4File.getLocalPath()));
+    }
+    else if (p4FStat.local == FStat.LOCAL_MOVE_DELETING) {
+      return false; // edit already done by rename/move handlers
+    }
+    else if (p4FStat.local != FStat.LOCAL_CHECKED_IN && p4FStat.local != FStat.LOCAL_INTEGRATING &&
+             p4FStat.local != FStat.LOCAL_BRANCHING) {
+      throw new VcsException(
+        PerforceBundle.message("exception.text.file..should.not.be.readonly.cannot.edit", p4File.getLocalPath()));
+    }
+    return true;
+  }
+
+  private boolean isIgnorable(VcsException e) {
+    if (mySuppressErrors) {
+      // in allwrite workspace, 'p4 edit' is executed when modifying a file that's unchanged according to IDE status.
+      // "not changed" file status might've been outdated, so the file might be not available for 'p4 edit'. Not a big deal.
+      LOG.debug(e);
+      return true;
+    }
+    // check if file was deleted while we were waiting to perform background edit
+    String message = StringUtil.toLowerCase(e.getMessage());
+    return message.contains(CANNOT_FIND_ERROR) || message.contains(CANNOT_FIND_ERROR_2);
+  }
+
+  private void refreshPath(PerforceVcs vcs) {
+    if (myNeedPathRefresh) {
+      VirtualFile vFile = getFilePath().getVirtualFile();
+      if (vFile != null) {
+        vFile.refresh(true, false);
+        vcs.asyncEditCompleted(vFile);
+      }
+    }
+  }
+
+  private void markPathDirty(Project project) {
     if (myNeedPathRefresh) {
       final FilePath filePath = getFilePath();
       VcsDirtyScopeManager.getInstance(project).fileDirty(filePath);
@@ -241,10 +241,15 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
         }
       }
 
-      if (myRemaining.iterator().next() instanceof P4RevertOperation) {
+      VcsOperation first = myRemaining.iterator().next();
+      if (first instanceof P4RevertOperation) {
         for (final P4Connection connection : byConnection.keySet()) {
           mergeRevert(result, connection, byConnection.get(connection));
         }
+      } else if (first instanceof P4EditOperation) {
+        for (final P4Connection connection : byConnection.keySet()) {
+          mergeEdit(result, connection, byConnection.get(connection));
+        }
       } else {
         for (VcsOperation operation : byConnection.values()) {
           handleNonMergeableOperation(result, operation);
@@ -273,6 +278,18 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
       }, operations);
     }
 
+    private void mergeEdit(LinkedHashMap<ThrowableRunnable<VcsException>, Collection<VcsOperation>> result,
+                           final @NotNull P4Connection connection,
+                           final Collection<VcsOperation> operations) {
+      if (operations.size() == 1) {
+        handleNonMergeableOperation(result, operations.iterator().next());
+        return;
+      }
+
+      result.put(() -> P4EditOperation.executeBatch(myProject, connection, ContainerUtil.map(operations, op -> (P4EditOperation)op), myContext),
+                 operations);
+    }
+
     private void handleNonMergeableOperation(LinkedHashMap<ThrowableRunnable<VcsException>, Collection<VcsOperation>> result,
                                              final VcsOperation operation) {
       result.put(() -> operation.execute(myProject, myContext), Collections.singletonList(operation));
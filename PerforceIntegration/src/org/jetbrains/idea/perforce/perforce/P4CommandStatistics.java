@@ -0,0 +1,76 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Number of p4 processes spawned by {@link PerforceRunner} and their latencies, per command.
+ * Shows whether an operation is dominated by process creation, i.e. whether it's worth batching.
+ */
+public final class P4CommandStatistics {
+  private final ConcurrentMap<String, CommandStat> myStats = new ConcurrentHashMap<>();
+
+  void record(@NotNull String command, int argumentCount, long nanos) {
+    myStats.merge(command, new CommandStat(1, argumentCount, nanos, nanos), CommandStat::plus);
+  }
+
+  /**
+   * Returns the statistics collected so far, sorted by command name, and starts collecting anew.
+   */
+  public @NotNull Map<String, CommandStat> drain() {
+    Map<String, CommandStat> result = new TreeMap<>();
+    for (String command : new ArrayList<>(myStats.keySet())) {
+      CommandStat stat = myStats.remove(command);
+      if (stat != null) {
+        result.put(command, stat);
+      }
+    }
+    return result;
+  }
+
+  public static final class CommandStat {
+    private final int mySpawnCount;
+    private final long myArgumentCount;
+    private final long myTotalNanos;
+    private final long myMaxNanos;
+
+    private CommandStat(int spawnCount, long argumentCount, long totalNanos, long maxNanos) {
+      mySpawnCount = spawnCount;
+      myArgumentCount = argumentCount;
+      myTotalNanos = totalNanos;
+      myMaxNanos = maxNanos;
+    }
+
+    private CommandStat plus(@NotNull CommandStat other) {
+      return new CommandStat(mySpawnCount + other.mySpawnCount, myArgumentCount + other.myArgumentCount,
+                             myTotalNanos + other.myTotalNanos, Math.max(myMaxNanos, other.myMaxNanos));
+    }
+
+    public int getSpawnCount() {
+      return mySpawnCount;
+    }
+
+    public long getArgumentCount() {
+      return myArgumentCount;
+    }
+
+    public long getTotalMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(myTotalNanos);
+    }
+
+    public long getMaxMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(myMaxNanos);
+    }
+
+    @Override
+    public String toString() {
+      return "%d spawns, %d args, %d ms total, %d ms max".formatted(mySpawnCount, myArgumentCount, getTotalMillis(), getMaxMillis());
+    }
+  }
+}
@@ -70,6 +70,25 @@ public final class PerforceCachingContentRevision extends PerforceContentRevisio
     return content;
   }
 
+  /**
+   * Loads the content into the persistent caches unless it's already there, without keeping it in memory.
+   */
+  public void prefetch() throws VcsException {
+    if (myOffline || myRevision <= 0) return;
+    VirtualFile vFile = myCurrentPath.getVirtualFile();
+    if (vFile == null || !vFile.isValid() || hasCachedContent(vFile)) return;
+    loadContent();
+  }
+
+  private boolean hasCachedContent(VirtualFile vFile) {
+    try (DataInputStream stream = PERFORCE_CONTENT_ATTRIBUTE.readFileAttribute(vFile)) {
+      return stream != null && stream.readLong() == myRevision;
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
   private byte @Nullable [] loadCachedContent(final VirtualFile vFile) throws IOException {
     if (LOG.isDebugEnabled()) {
       LOG.debug("loadCachedContent: " + vFile + ", offline=" + myOffline);
@@ -1,5 +1,6 @@
 package org.jetbrains.idea.perforce.perforce;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
@@ -14,28 +15,51 @@ import org.jetbrains.idea.perforce.application.PerforceManager;
 import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class PerforceChangeCache {
+  private static final Logger LOG = Logger.getInstance(PerforceChangeCache.class);
+
   private final PerforceRunner myRunner;
   private final PerforceManager myPerforceManager;
+  private final boolean mySubmitted;
   private final Map<Pair<Long, ConnectionKey>, List<PerforceChange>> myCache = new ConcurrentHashMap<>();
 
   public PerforceChangeCache(Project project) {
+    this(project, false);
+  }
+
+  /**
+   * @param submitted whether the cache is only asked about submitted changelists, whose files are then also kept on disk
+   *                  by {@link PerforceSubmittedChangesCache}
+   */
+  public PerforceChangeCache(Project project, boolean submitted) {
     myRunner = PerforceRunner.getInstance(project);
     myPerforceManager = PerforceManager.getInstance(project);
+    mySubmitted = submitted;
   }
 
   public @Unmodifiable List<PerforceChange> getChanges(P4Connection connection, final long changeListNumber, final @Nullable VirtualFile vcsRoot) {
     List<PerforceChange> all = myCache.get(createKey(connection, changeListNumber));
     if (all == null) {
       try {
-        all = myRunner.getChanges(connection, changeListNumber);
+        all = mySubmitted
+              ? myRunner.describeSubmitted(connection, Collections.singletonList(changeListNumber)).get(changeListNumber)
+              : myRunner.getChanges(connection, changeListNumber);
       }
       catch (VcsException e) {
+        if (mySubmitted) {
+          // not cached, so that the list is described again on the next request instead of staying empty
+          LOG.debug("Can't describe changelist " + changeListNumber, e);
+          return Collections.emptyList();
+        }
+        all = null;
+      }
+      if (all == null) {
         all = Collections.emptyList();
       }
       setChanges(connection, changeListNumber, all);
@@ -51,6 +75,17 @@ public class PerforceChangeCache {
     });
   }
 
+  /**
+   * Loads the files of the given submitted changelists at once, so that {@link #getChanges} doesn't describe them one by one.
+   */
+  public void prefetch(P4Connection connection, @NotNull Collection<Long> changeListNumbers) throws VcsException {
+    List<Long> missing = ContainerUtil.filter(changeListNumbers, number -> !myCache.containsKey(createKey(connection, number)));
+    if (missing.isEmpty()) return;
+    for (Map.Entry<Long, List<PerforceChange>> entry : myRunner.describeSubmitted(connection, missing).entrySet()) {
+      setChanges(connection, entry.getKey(), entry.getValue());
+    }
+  }
+
   public void setChanges(P4Connection connection, final long changeListNumber, @NotNull List<PerforceChange> changes) {
     myCache.put(createKey(connection, changeListNumber), changes);
   }
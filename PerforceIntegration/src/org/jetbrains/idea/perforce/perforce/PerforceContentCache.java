@@ -0,0 +1,80 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.util.SystemProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Pattern;
+
+/**
+ * Disk cache of depot file contents at fixed revisions ({@code //depot/path#3}). Such contents never change on the server,
+ * so they are kept across restarts and shared by all projects.
+ * <p>
+ * Entries are keyed by the server, client, depot path and revision. The client is a part of the key because {@code p4 print}
+ * applies its line end settings. Contents are deflated unless that doesn't make them smaller
+ * ({@code -Dperforce.content.cache.compress=false} turns it off). Once the entries take more than {@code perforce.content.cache.size.mb}
+ * megabytes, the least recently used ones are evicted.
+ */
+@Service
+public final class PerforceContentCache {
+  private static final Pattern FIXED_REVISION = Pattern.compile("#\\d+");
+  private static final long DEFAULT_MAX_SIZE = SystemProperties.getIntProperty("perforce.content.cache.size.mb", 256) * 1024L * 1024L;
+  private static final boolean COMPRESS = SystemProperties.getBooleanProperty("perforce.content.cache.compress", true);
+
+  private final PersistentLruCache myCache;
+
+  public static PerforceContentCache getInstance() {
+    return ApplicationManager.getApplication().getService(PerforceContentCache.class);
+  }
+
+  public PerforceContentCache() {
+    this(Paths.get(PathManager.getSystemPath(), "perforce", "content"), DEFAULT_MAX_SIZE, COMPRESS);
+  }
+
+  @TestOnly
+  PerforceContentCache(@NotNull Path dir, long maxSize, boolean compress) {
+    myCache = new PersistentLruCache(dir, maxSize, compress);
+  }
+
+  /**
+   * Only contents at a fixed file revision are immutable; "#head", labels, dates or shelves ("@=123") can change.
+   */
+  public static boolean isCacheable(@Nullable String revision) {
+    return revision != null && FIXED_REVISION.matcher(revision).matches();
+  }
+
+  public boolean contains(@NotNull ConnectionKey connection, @NotNull String depotPath, @NotNull String revision) {
+    return myCache.contains(createKey(connection, depotPath, revision));
+  }
+
+  public byte @Nullable [] get(@NotNull ConnectionKey connection, @NotNull String depotPath, @NotNull String revision) {
+    if (!isCacheable(revision)) return null;
+    return myCache.get(createKey(connection, depotPath, revision));
+  }
+
+  public void put(@NotNull ConnectionKey connection, @NotNull String depotPath, @NotNull String revision, byte @NotNull [] content) {
+    if (!isCacheable(revision)) return;
+    myCache.put(createKey(connection, depotPath, revision), content);
+  }
+
+  @TestOnly
+  public void clear() {
+    myCache.clear();
+  }
+
+  @TestOnly
+  long getTotalSize() {
+    return myCache.getTotalSize();
+  }
+
+  private static String createKey(ConnectionKey connection, String depotPath, String revision) {
+    return connection.getServer() + "\n" + connection.getClient() + "\n" + depotPath + revision;
+  }
+}
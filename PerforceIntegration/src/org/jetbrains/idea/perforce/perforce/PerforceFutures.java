@@ -0,0 +1,48 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vcs.VcsException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waiting for the p4 work submitted to the plugin's pooled executors, without blocking cancellation of the waiting thread.
+ */
+public final class PerforceFutures {
+  private PerforceFutures() {
+  }
+
+  public static <T> T waitFor(@NotNull Future<T> future) throws VcsException {
+    return waitFor(future, ProgressManager::checkCanceled);
+  }
+
+  /**
+   * Waits for {@code future}, calling {@code checkCanceled} every 50 ms.
+   * A failure of the task is rethrown as is when it's a {@link VcsException} or unchecked, and wrapped into a {@link VcsException} otherwise.
+   */
+  public static <T> T waitFor(@NotNull Future<T> future, @NotNull Runnable checkCanceled) throws VcsException {
+    while (true) {
+      checkCanceled.run();
+      try {
+        return future.get(50, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) {
+      }
+      catch (InterruptedException e) {
+        throw new ProcessCanceledException(e);
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof VcsException) throw (VcsException)cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+        if (cause instanceof Error) throw (Error)cause;
+        throw new VcsException(cause);
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.SystemProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Disk cache of {@code p4 filelog} and {@code p4 annotate} outputs, shared by all projects and kept across restarts.
+ * <ul>
+ *   <li>A file log is stored per path and filelog options together with the last change submitted to the server when it
+ *   was taken, and is valid until another change is submitted: integration records of the file and the histories followed
+ *   with {@code filelog -i} change with submits to other files.</li>
+ *   <li>An annotation of a fixed depot revision never changes, so it's stored per depot path, revision and annotate options.
+ *   The latest annotated revision of each path is remembered as well, to annotate newer revisions incrementally.</li>
+ * </ul>
+ * Edits of submitted changelist descriptions don't submit a change, they aren't noticed until the next submit to the server.
+ * The entries take at most {@code perforce.history.cache.size.mb} megabytes ({@code 0} turns the cache off).
+ */
+@Service
+public final class PerforceHistoryCache {
+  private static final long DEFAULT_MAX_SIZE = SystemProperties.getIntProperty("perforce.history.cache.size.mb", 128) * 1024L * 1024L;
+
+  private final PersistentLruCache myCache;
+
+  public static PerforceHistoryCache getInstance() {
+    return ApplicationManager.getApplication().getService(PerforceHistoryCache.class);
+  }
+
+  public PerforceHistoryCache() {
+    this(Paths.get(PathManager.getSystemPath(), "perforce", "history"), DEFAULT_MAX_SIZE);
+  }
+
+  @TestOnly
+  PerforceHistoryCache(@NotNull Path dir, long maxSize) {
+    myCache = new PersistentLruCache(dir, maxSize, true);
+  }
+
+  public boolean isEnabled() {
+    return myCache.getMaxSize() > 0;
+  }
+
+  public @Nullable String getFilelog(@NotNull ConnectionKey connection, @NotNull String path, @NotNull String options, long lastChange) {
+    String value = getText(filelogKey(connection, path, options));
+    if (value == null) return null;
+    int separator = value.indexOf('\n');
+    if (separator < 0 || !String.valueOf(lastChange).equals(value.substring(0, separator))) return null;
+    return value.substring(separator + 1);
+  }
+
+  public void putFilelog(@NotNull ConnectionKey connection, @NotNull String path, @NotNull String options, long lastChange,
+                         @NotNull String output) {
+    putText(filelogKey(connection, path, options), lastChange + "\n" + output);
+  }
+
+  public @Nullable String getAnnotation(@NotNull ConnectionKey connection, @NotNull String depotPath, long revision, @NotNull String options) {
+    return getText(annotationKey(connection, depotPath, options) + "#" + revision);
+  }
+
+  public void putAnnotation(@NotNull ConnectionKey connection, @NotNull String depotPath, long revision, @NotNull String options,
+                            @NotNull String output) {
+    String key = annotationKey(connection, depotPath, options);
+    putText(key + "#" + revision, output);
+    if (getLatestAnnotatedRevision(connection, depotPath, options) < revision) {
+      putText(key + "#latest", String.valueOf(revision));
+    }
+  }
+
+  /**
+   * @return the newest revision of the depot path with a cached annotation, or {@code -1}
+   */
+  public long getLatestAnnotatedRevision(@NotNull ConnectionKey connection, @NotNull String depotPath, @NotNull String options) {
+    String value = getText(annotationKey(connection, depotPath, options) + "#latest");
+    return value == null ? -1 : StringUtil.parseLong(value, -1);
+  }
+
+  @TestOnly
+  public void clear() {
+    myCache.clear();
+  }
+
+  private @Nullable String getText(String key) {
+    if (!isEnabled()) return null;
+    byte[] bytes = myCache.get(key);
+    return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private void putText(String key, String value) {
+    if (!isEnabled()) return;
+    myCache.put(key, value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // filelog also accepts local paths, which depend on the client view
+  private static String filelogKey(ConnectionKey connection, String path, String options) {
+    return "filelog\n" + connection.getServer() + "\n" + connection.getClient() + "\n" + options + "\n" + path;
+  }
+
+  private static String annotationKey(ConnectionKey connection, String depotPath, String options) {
+    return "annotate\n" + connection.getServer() + "\n" + options + "\n" + depotPath;
+  }
+}
@@ -24,10 +24,12 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.PerforceBundle;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 public final class PerforceOutputMessageParser extends OutputMessageParser {
@@ -49,6 +51,20 @@ public final class PerforceOutputMessageParser extends OutputMessageParser {
     return result;
   }
 
+  /**
+   * Streaming counterpart of {@link #processOpenedOutput(String)}: every line of 'p4 opened' output is a separate record.
+   */
+  public static void processOpenedOutput(final BufferedReader reader, final Consumer<? super PerforceChange> consumer) throws IOException {
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty()) continue;
+      final PerforceChange change = new PerforceOutputMessageParser(line).readNextOpened();
+      if (change != null) {
+        consumer.accept(change);
+      }
+    }
+  }
+
   private @Nullable PerforceChange readNextOpened() {
     if (myLines.isEmpty()) return null;
     myCurrentLine = myLines.remove(0);
@@ -19,12 +19,12 @@ import com.google.common.collect.Lists;
 import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsSafe;
 import com.intellij.openapi.util.Pair;
-import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.SystemInfoRt;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.LineTokenizer;
@@ -44,8 +44,12 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.serviceContainer.NonInjectable;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.ArrayUtilRt;
+import com.intellij.util.PairConsumer;
 import com.intellij.util.SystemProperties;
+import com.intellij.util.ThrowableConsumer;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.CollectionFactory;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.FastUtilHashingStrategies;
 import com.intellij.util.containers.JBIterable;
 import com.intellij.util.containers.MultiMap;
@@ -78,7 +82,9 @@ import org.jetbrains.idea.perforce.perforce.login.PerforceLoginManager;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.sql.Time;
 import java.time.Instant;
@@ -86,6 +92,8 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -159,6 +167,10 @@ public final class PerforceRunner implements PerforceRunnerI {
   public static final @NonNls String CLIENT_FILE_PREFIX = "... clientFile ";
 
   private static final int CHUNK_SIZE = SystemProperties.getIntProperty("p4.chunk.size", 2000);
+  private static final int INCREMENTAL_ANNOTATION_STEPS = SystemProperties.getIntProperty("perforce.annotate.incremental.steps", 10);
+  private static final int DESCRIBE_BATCH_SIZE = SystemProperties.getIntProperty("perforce.describe.batch.size", 50);
+  private static final ExecutorService ourDescribeExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+    "Perforce Describe", Math.max(1, SystemProperties.getIntProperty("perforce.describe.parallelism", 4)));
 
   public static final String[] CHANGE_FORM_FIELDS = new String[]{CHANGE,
     DATE,
@@ -193,6 +205,7 @@ public final class PerforceRunner implements PerforceRunnerI {
 
   private final PerforceManager myPerforceManager;
   private final LoginSupport myLoginManager;
+  private final P4CommandStatistics myCommandStatistics = new P4CommandStatistics();
 
   public static PerforceRunner getInstance(Project project) {
     return project.getService(PerforceRunner.class);
@@ -218,6 +231,10 @@ public final class PerforceRunner implements PerforceRunnerI {
     return myProxy.getProxy();
   }
 
+  public @NotNull P4CommandStatistics getCommandStatistics() {
+    return myCommandStatistics;
+  }
+
   public Map<String, List<String>> getInfo(final @NotNull P4Connection connection) throws VcsException {
     final @NonNls String[] p4args = {"info"};
     final ExecResult execResult = executeP4Command(p4args, connection);
@@ -279,38 +296,31 @@ public final class PerforceRunner implements PerforceRunnerI {
   }
 
   public Map<P4File, FStat> fstatBulk(final List<P4File> files) throws VcsException {
-    if (files.isEmpty()) return Collections.emptyMap();
+    final Map<P4File, FStat> result = new LinkedHashMap<>();
+    fstatBulk(files, result::put);
+    return result;
+  }
+
+  /**
+   * Same as {@link #fstatBulk(List)}, but hands every file status to {@code consumer} as soon as p4 prints it,
+   * without keeping the whole command output in memory.
+   */
+  public void fstatBulk(final List<P4File> files, final PairConsumer<? super P4File, ? super FStat> consumer) throws VcsException {
+    if (files.isEmpty()) return;
 
     P4Connection connection = getNotNullConnection(files.get(0));
     Set<String> p4Args = new LinkedHashSet<>();
     for (P4File file : files) {
       p4Args.add(file.getEscapedPath());
     }
-    ExecResult execResult = executeP4Command(new String[]{"fstat"}, p4Args, null, new PerforceContext(connection));
-
-    final Map<P4File, FStat> result = new LinkedHashMap<>();
-    String stderr = execResult.getStderr();
 
     final Map<String, P4File> path2File = CollectionFactory.createFilePathMap();
     for (P4File file : files) {
       path2File.put(FileUtil.toSystemIndependentName(file.getLocalPath()), file);
     }
 
-    for (String line : StringUtil.splitByLines(stderr)) {
-      int index = line.indexOf(NO_SUCH_FILE_MESSAGE);
-      if (index < 0) index = line.indexOf(NOT_IN_CLIENT_VIEW_MESSAGE);
-      if (index >= 0) {
-        FStat fStat = new FStat();
-        fStat.status = line.contains(NO_SUCH_FILE_MESSAGE) ? FStat.Status.NOT_ADDED : FStat.Status.NOT_IN_CLIENTSPEC;
-        result.put(getP4FileByPath(line.substring(0, index), path2File), fStat);
-      } else {
-        checkError(execResult, connection);
-      }
-    }
-
-    try {
-      execResult.allowSafeStdoutUsage(stream -> {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    ExecResult execResult = executeP4CommandStreaming(new String[]{"fstat"}, p4Args, new PerforceContext(connection),
+                                                      StandardCharsets.UTF_8, reader -> {
         while (true) {
           try {
             FStat fStat = FStat.parseFStat(reader);
@@ -318,21 +328,27 @@ public final class PerforceRunner implements PerforceRunnerI {
               break;
             }
 
-            result.put(getP4FileByPath(fStat.clientFile, path2File), fStat);
+            consumer.consume(getP4FileByPath(fStat.clientFile, path2File), fStat);
           }
           catch (VcsException e) {
             throw new IOException(e);
           }
         }
       });
-    }
-    catch (IOException e) {
-      if (e.getCause() instanceof VcsException) {
-        throw (VcsException)e.getCause();
+
+    String stderr = execResult.getStderr();
+    for (String line : StringUtil.splitByLines(stderr)) {
+      int index = line.indexOf(NO_SUCH_FILE_MESSAGE);
+      if (index < 0) index = line.indexOf(NOT_IN_CLIENT_VIEW_MESSAGE);
+      if (index >= 0) {
+        FStat fStat = new FStat();
+        fStat.status = line.contains(NO_SUCH_FILE_MESSAGE) ? FStat.Status.NOT_ADDED : FStat.Status.NOT_IN_CLIENTSPEC;
+        consumer.consume(getP4FileByPath(line.substring(0, index), path2File), fStat);
+      } else {
+        checkError(execResult, connection);
       }
-      throw new VcsException(e);
     }
-    return result;
+    checkStreamingError(execResult);
   }
 
   private static P4File getP4FileByPath(String path, Map<String, P4File> path2File) throws VcsException {
@@ -670,6 +686,67 @@ public final class PerforceRunner implements PerforceRunnerI {
     return result;
   }
 
+  /**
+   * Returns the files of the given submitted changelists. They are taken from {@link PerforceSubmittedChangesCache} when possible,
+   * the rest is described in batches of {@code perforce.describe.batch.size} lists, {@code perforce.describe.parallelism} batches at once.
+   * Lists unknown to the server are missing from the result.
+   *
+   * @throws VcsException if a batch can't be described; the batches described before it are kept in the cache
+   */
+  public @NotNull Map<Long, List<PerforceChange>> describeSubmitted(@NotNull P4Connection connection, @NotNull Collection<Long> numbers)
+    throws VcsException {
+    PerforceClient client = myPerforceManager.getClient(connection);
+    PerforceSubmittedChangesCache cache = PerforceSubmittedChangesCache.getInstance();
+    ConnectionKey key = connection.getConnectionKey();
+
+    Map<Long, List<PerforceChange>> result = new HashMap<>();
+    List<Long> missing = new ArrayList<>();
+    for (Long number : numbers) {
+      PerforceSubmittedChangesCache.Description cached = cache.getDescription(key, number);
+      if (cached != null) {
+        result.put(number, createPerforceChanges(client, number, cached));
+      }
+      else {
+        missing.add(number);
+      }
+    }
+    if (missing.isEmpty()) return result;
+
+    List<Future<Map<Long, Pair<ChangeListData, List<FileChange>>>>> futures = new ArrayList<>();
+    try {
+      for (List<Long> batch : Lists.partition(missing, Math.max(1, DESCRIBE_BATCH_SIZE))) {
+        Callable<Map<Long, Pair<ChangeListData, List<FileChange>>>> task = () -> describeAll(connection, batch, false);
+        futures.add(ourDescribeExecutor.submit(task));
+      }
+      for (Future<Map<Long, Pair<ChangeListData, List<FileChange>>>> future : futures) {
+        for (Map.Entry<Long, Pair<ChangeListData, List<FileChange>>> entry : PerforceFutures.waitFor(future).entrySet()) {
+          ChangeListData data = entry.getValue().first;
+          PerforceSubmittedChangesCache.Description description = PerforceSubmittedChangesCache.Description.create(data, entry.getValue().second);
+          cache.putDescription(key, entry.getKey(), description);
+          result.put(entry.getKey(), createPerforceChanges(client, entry.getKey(), description));
+        }
+      }
+    }
+    finally {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return result;
+  }
+
+  private static @NotNull List<PerforceChange> createPerforceChanges(PerforceClient client, long number,
+                                                                     PerforceSubmittedChangesCache.Description description)
+    throws VcsException {
+    List<PerforceChange> converted = new ArrayList<>(description.getFiles().size());
+    for (PerforceSubmittedChangesCache.SubmittedFile file : description.getFiles()) {
+      ProgressManager.checkCanceled();
+      final File localFile = PerforceManager.getFileByDepotName(file.getDepotPath(), client);
+      converted.add(new PerforceChange(file.getType(), localFile, file.getDepotPath(), file.getRevision(), number, description.getDescription()));
+    }
+    return converted;
+  }
+
   private static @NotNull List<PerforceChange> createPerforceChanges(PerforceClient client,
                                                                      ChangeListData data,
                                                                      List<FileChange> changes)
@@ -1007,7 +1084,19 @@ public final class PerforceRunner implements PerforceRunnerI {
     String interval = dateSpec(settings.getDateAfterFilter(), settings.getDateBeforeFilter(), settings.getChangeAfterFilter(),
                         settings.getChangeBeforeFilter(), settings.STRICTLY_AFTER);
     final List<String> fileSpecs = List.of(rootP4File.getRecursivePath() + interval);
-    return getSubmittedChangeLists(getNotNullConnection(rootP4File), client, user, maxCount, showIntegrated, fileSpecs);
+    P4Connection connection = getNotNullConnection(rootP4File);
+    PerforceChangeCache changeCache = new PerforceChangeCache(myProject, true);
+    List<PerforceChangeList> result = new ArrayList<>();
+    getSubmittedChangeLists(connection, client, user, maxCount, showIntegrated, fileSpecs, changeCache, result::add);
+    // the committed changes views read the files of every list, describe them together instead of one by one
+    try {
+      changeCache.prefetch(connection, ContainerUtil.map(result, PerforceChangeList::getNumber));
+    }
+    catch (VcsException e) {
+      // the lists that weren't prefetched are described one by one when their files are requested
+      LOG.info("Can't describe submitted changelists", e);
+    }
+    return result;
   }
 
   public List<PerforceChangeList> getSubmittedChangeLists(@NotNull P4Connection connection,
@@ -1015,6 +1104,31 @@ public final class PerforceRunner implements PerforceRunnerI {
                                                            @Nullable String user,
                                                            int maxCount, boolean showIntegrated, List<String> fileSpecs)
     throws VcsException {
+    final List<PerforceChangeList> result = new ArrayList<>();
+    getSubmittedChangeLists(connection, client, user, maxCount, showIntegrated, fileSpecs, result::add);
+    return result;
+  }
+
+  /**
+   * Streaming version of {@link #getSubmittedChangeLists(P4Connection, String, String, int, boolean, List)}:
+   * every change list is handed to {@code consumer} as soon as its description is read.
+   */
+  public void getSubmittedChangeLists(@NotNull P4Connection connection,
+                                      @Nullable String client,
+                                      @Nullable String user,
+                                      int maxCount, boolean showIntegrated, List<String> fileSpecs,
+                                      @NotNull Consumer<? super PerforceChangeList> consumer)
+    throws VcsException {
+    getSubmittedChangeLists(connection, client, user, maxCount, showIntegrated, fileSpecs, new PerforceChangeCache(myProject, true), consumer);
+  }
+
+  private void getSubmittedChangeLists(@NotNull P4Connection connection,
+                                       @Nullable String client,
+                                       @Nullable String user,
+                                       int maxCount, boolean showIntegrated, List<String> fileSpecs,
+                                       @NotNull PerforceChangeCache changeCache,
+                                       @NotNull Consumer<? super PerforceChangeList> consumer)
+    throws VcsException {
     final CommandArguments arguments = CommandArguments.createOn(P4Command.changes);
     arguments.append("-s").append("submitted");
     if (showIntegrated) {
@@ -1029,6 +1143,16 @@ public final class PerforceRunner implements PerforceRunnerI {
     if (user != null && !user.isEmpty()) {
       arguments.append("-u").append(user);
     }
+
+    // with -i, changes integrated later can be older than the ones already cached
+    if (!showIntegrated && fileSpecs.size() == 1 && !fileSpecs.get(0).contains("@") && !fileSpecs.get(0).contains("#") &&
+        PerforceSubmittedChangesCache.getInstance().isEnabled()) {
+      for (ChangeListData data : getSubmittedChangesIncrementally(connection, arguments, fileSpecs.get(0), maxCount)) {
+        consumer.accept(new PerforceChangeList(data, myProject, connection, changeCache));
+      }
+      return;
+    }
+
     if (maxCount > 0) {
       arguments.append("-m").append(maxCount);
     }
@@ -1037,9 +1161,86 @@ public final class PerforceRunner implements PerforceRunnerI {
       arguments.append(spec);
     }
 
-    final ExecResult execResult = executeP4Command(arguments.getArguments(), connection);
+    final ExecResult execResult = executeP4CommandStreaming(
+      arguments.getArguments(), Collections.emptyList(), new PerforceContext(connection), mySettings.getConsoleCharset(),
+      reader -> OutputMessageParser.processChangesOutput(
+        reader, data -> consumer.accept(new PerforceChangeList(data, myProject, connection, changeCache))));
     checkError(execResult, connection);
-    return parsePerforceChangeLists(execResult.getStdout(), connection, new PerforceChangeCache(myProject));
+    checkStreamingError(execResult);
+  }
+
+  /**
+   * Returns the newest {@code maxCount} (all if not positive) submitted changes of {@code spec}, taking the ones seen before
+   * from {@link PerforceSubmittedChangesCache}: only the changes submitted since, and the older ones beyond the cached page, are
+   * requested from the server.
+   */
+  private List<ChangeListData> getSubmittedChangesIncrementally(@NotNull P4Connection connection,
+                                                                @NotNull CommandArguments arguments,
+                                                                @NotNull String spec,
+                                                                int maxCount) throws VcsException {
+    PerforceSubmittedChangesCache cache = PerforceSubmittedChangesCache.getInstance();
+    String query = StringUtil.join(arguments.getArguments(), " ") + " " + spec;
+    PerforceSubmittedChangesCache.ChangesPage cached = cache.getChanges(connection.getConnectionKey(), query);
+
+    List<ChangeListData> lists;
+    boolean complete;
+    boolean modified;
+    if (cached == null || cached.getLists().isEmpty()) {
+      lists = loadSubmittedChanges(connection, arguments, spec, maxCount);
+      complete = maxCount <= 0 || lists.size() < maxCount;
+      modified = true;
+    }
+    else {
+      long newest = cached.getLists().get(0).NUMBER;
+      List<ChangeListData> newer = loadSubmittedChanges(connection, arguments, spec + "@" + (newest + 1) + ",@" + NOW, maxCount);
+      if (maxCount > 0 && newer.size() >= maxCount) {
+        // there may be a gap between the new changes and the cached ones
+        lists = newer;
+        complete = false;
+      }
+      else {
+        lists = new ArrayList<>(newer.size() + cached.getLists().size());
+        lists.addAll(newer);
+        lists.addAll(cached.getLists());
+        complete = cached.isComplete();
+      }
+      modified = !newer.isEmpty();
+    }
+
+    if (!complete && (maxCount <= 0 || lists.size() < maxCount) && !lists.isEmpty()) {
+      long oldest = lists.get(lists.size() - 1).NUMBER;
+      int rest = maxCount > 0 ? maxCount - lists.size() : 0;
+      List<ChangeListData> older = oldest > 1 ? loadSubmittedChanges(connection, arguments, spec + "@" + (oldest - 1), rest)
+                                              : Collections.emptyList();
+      lists = new ArrayList<>(lists);
+      lists.addAll(older);
+      complete = rest <= 0 || older.size() < rest;
+      modified = true;
+    }
+
+    if (modified) {
+      cache.putChanges(connection.getConnectionKey(), query, new PerforceSubmittedChangesCache.ChangesPage(lists, complete));
+    }
+    return maxCount > 0 && lists.size() > maxCount ? lists.subList(0, maxCount) : lists;
+  }
+
+  private List<ChangeListData> loadSubmittedChanges(@NotNull P4Connection connection,
+                                                    @NotNull CommandArguments arguments,
+                                                    @NotNull String spec,
+                                                    int maxCount) throws VcsException {
+    CommandArguments page = arguments.createCopy();
+    if (maxCount > 0) {
+      page.append("-m").append(maxCount);
+    }
+    page.append(spec);
+
+    List<ChangeListData> result = new ArrayList<>();
+    ExecResult execResult = executeP4CommandStreaming(page.getArguments(), Collections.emptyList(), new PerforceContext(connection),
+                                                      mySettings.getConsoleCharset(),
+                                                      reader -> OutputMessageParser.processChangesOutput(reader, result::add));
+    checkError(execResult, connection);
+    checkStreamingError(execResult);
+    return result;
   }
 
   private static String dateSpec(final Date after, final Date before, final Long afterChange, final Long beforeChange, boolean strictlyAfter) {
@@ -1092,34 +1293,42 @@ public final class PerforceRunner implements PerforceRunnerI {
   }
 
   public List<PerforceChange> opened(final P4Connection connection, final Collection<FilePath> paths, boolean throwIfNotUnderClient) throws VcsException {
+    final List<PerforceChange> result = new ArrayList<>();
+    opened(connection, paths, throwIfNotUnderClient, result::add);
+    return result;
+  }
+
+  /**
+   * Streaming version of {@link #opened(P4Connection, Collection, boolean)}: every opened file is handed to {@code consumer}
+   * as soon as p4 reports it.
+   */
+  public void opened(final P4Connection connection, final Collection<FilePath> paths, boolean throwIfNotUnderClient,
+                     final @NotNull Consumer<? super PerforceChange> consumer) throws VcsException {
     if (paths.size() > OPENED_SIZE) {
-      List<PerforceChange> result = new ArrayList<>();
       for (List<FilePath> filePaths : JBIterable.from(paths).split(OPENED_SIZE, false)) {
-        result.addAll(openedImpl(connection, filePaths, throwIfNotUnderClient));
+        openedImpl(connection, filePaths, throwIfNotUnderClient, consumer);
       }
-      return result;
+      return;
     }
-    return openedImpl(connection, paths, throwIfNotUnderClient);
+    openedImpl(connection, paths, throwIfNotUnderClient, consumer);
   }
 
-  private List<PerforceChange> openedImpl(final P4Connection connection, final Collection<FilePath> paths, final boolean throwIfNotUnderClient) throws VcsException {
+  private void openedImpl(final P4Connection connection, final Collection<FilePath> paths, final boolean throwIfNotUnderClient,
+                          final Consumer<? super PerforceChange> consumer) throws VcsException {
     final CommandArguments args = CommandArguments.createOn(P4Command.opened);
     for (FilePath path : paths) {
       args.append(P4File.create(path).getEscapedPath());
     }
-    final ExecResult execResult = executeP4Command(args.getArguments(), connection);
+    final ExecResult execResult = executeP4CommandStreaming(
+      args.getArguments(), Collections.emptyList(), new PerforceContext(connection), mySettings.getConsoleCharset(),
+      reader -> PerforceOutputMessageParser.processOpenedOutput(reader, consumer));
     final String err = StringUtil.toLowerCase(execResult.getStderr());
     if ((! throwIfNotUnderClient) && (err.contains(STANDARD_REVERT_UNCHANGED_ERROR_MESSAGE) ||
         err.contains(NOT_UNDER_CLIENT_ROOT_MESSAGE) || err.contains(NOT_IN_CLIENT_VIEW_MESSAGE))) {
     } else {
       checkError(execResult, connection);
     }
-    try {
-      return PerforceOutputMessageParser.processOpenedOutput(execResult.getStdout());
-    }
-    catch (IOException e) {
-      throw new VcsException(e);
-    }
+    checkStreamingError(execResult);
   }
 
   private static String getDescription(final Map<String, List<String>> changeForm) {
@@ -1244,6 +1453,14 @@ public final class PerforceRunner implements PerforceRunnerI {
     return getByteContent(baseRevision.getDepotPath(), baseRevision.getRevisionNum(), connection);
   }
   public byte @NotNull [] getByteContent(final String depotPath, final @Nullable String revisionNumber, @NotNull P4Connection connection) throws VcsException {
+    boolean cacheable = PerforceContentCache.isCacheable(revisionNumber) && depotPath.startsWith("//");
+    if (cacheable) {
+      byte[] cached = PerforceContentCache.getInstance().get(connection.getConnectionKey(), depotPath, revisionNumber);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
     File tempFile = null;
     try {
       tempFile = FileUtil.createTempFile("ijP4Print", "");
@@ -1251,7 +1468,11 @@ public final class PerforceRunner implements PerforceRunnerI {
       final ExecResult execResult = executeP4Command(p4args, connection);
       checkError(execResult, connection);
       ContentRevisionCache.checkContentsSize(depotPath, tempFile.length());
-      return FileUtil.loadFileBytes(tempFile);
+      byte[] content = FileUtil.loadFileBytes(tempFile);
+      if (cacheable) {
+        PerforceContentCache.getInstance().put(connection.getConnectionKey(), depotPath, revisionNumber, content);
+      }
+      return content;
     }
     catch (IOException e) {
       throw new VcsException(e);
@@ -1446,6 +1667,22 @@ public final class PerforceRunner implements PerforceRunnerI {
     return haveRevisions.isEmpty() ? -1 : haveRevisions.values().iterator().nextLong();
   }
 
+  /**
+   * Same as {@link #haveRevision(P4File)} for many files of one connection, asked in one p4 call per {@link #CHUNK_SIZE} files.
+   * The result maps system-dependent local paths to have revisions; files not in the have list are absent from it.
+   */
+  public @NotNull Object2LongMap<String> haveRevisions(@NotNull P4Connection connection, @NotNull Collection<P4File> files) throws VcsException {
+    Object2LongMap<String> haveRevisions = new Object2LongOpenHashMap<>();
+    if (files.isEmpty()) return haveRevisions;
+
+    List<String> fileSpecs = new ArrayList<>(files.size());
+    for (P4File file : files) {
+      fileSpecs.add(getP4FilePath(file, false, false));
+    }
+    doExecute(fileSpecs, connection, new P4HaveParser(myPerforceManager, haveRevisions), false);
+    return haveRevisions;
+  }
+
   public VcsRevisionNumber getCurrentRevision(final P4File p4File) {
     try {
       final long curRev = haveRevision(p4File);
@@ -1487,7 +1724,14 @@ public final class PerforceRunner implements PerforceRunnerI {
     PerforceContext context = new PerforceContext(connection, longTimeout, false);
 
     for (List<String> chunk : Lists.partition(new ArrayList<>(new LinkedHashSet<>(filesSpec)), CHUNK_SIZE)) {
-      final ExecResult execResult = executeP4Command(new String[]{consumer.getCommand().getName()}, chunk, null, context);
+      final ExecResult execResult = executeP4Command(new String[]{consumer.getCommand().getName()}, chunk, null, context, stream -> {
+        try {
+          consumer.readOutput(stream);
+        }
+        catch (VcsException e) {
+          throw new IOException(e);
+        }
+      });
       final String stderr = execResult.getStderr();
       final boolean notUnderRoot =
         stderr.contains(NOT_OPENED_ON_CLIENT_MESSAGE) || stderr.contains(NOT_ON_CLIENT_MESSAGE) || stderr.contains(NOT_UNDER_CLIENT_ROOT_MESSAGE);
@@ -1501,23 +1745,7 @@ public final class PerforceRunner implements PerforceRunnerI {
       } else {
         LOG.debug("Problem while doing '" + consumer.getCommand().getName() + "': " + stderr);
       }
-      final Ref<VcsException> vcsExceptionRef = new Ref<>();
-      try {
-        execResult.allowSafeStdoutUsage(inputStream -> {
-          try {
-            consumer.readOutput(inputStream);
-          }
-          catch (VcsException e) {
-            vcsExceptionRef.set(e);
-          }
-        });
-      }
-      catch (IOException e) {
-        throw new VcsException(e);
-      }
-      if (! vcsExceptionRef.isNull()) {
-        throw vcsExceptionRef.get();
-      }
+      checkStreamingError(execResult);
     }
   }
 
@@ -1526,11 +1754,49 @@ public final class PerforceRunner implements PerforceRunnerI {
   }
 
   public P4Revision[] filelog(@NotNull P4Connection connection, @NotNull String path, boolean showBranches) throws VcsException {
-    CommandArguments arguments = createFilelogArgs(showBranches, connection).append(path);
-    final ExecResult execResult = executeP4Command(arguments.getArguments(), connection);
+    CommandArguments arguments = createFilelogArgs(showBranches, connection);
+    boolean newDateFormat = isFilelogNewDateVersion(connection);
+
+    PerforceHistoryCache cache = PerforceHistoryCache.getInstance();
+    String options = StringUtil.join(arguments.getArguments(), " ");
+    boolean cacheable = cache.isEnabled() && isSingleFilePath(path);
+    // integration records and the histories followed with -i change when other files are submitted, not only this one,
+    // so a log is valid while no change at all is submitted; it's taken before the log so that a submit in between isn't missed
+    long lastChange = cacheable ? getLastSubmittedChange(connection) : -1;
+    if (lastChange > 0) {
+      String cached = cache.getFilelog(connection.getConnectionKey(), path, options, lastChange);
+      if (cached != null) {
+        return parseLogOutput(cached, newDateFormat);
+      }
+    }
+
+    final ExecResult execResult = executeP4Command(arguments.append(path).getArguments(), connection);
     checkError(execResult, connection);
 
-    return parseLogOutput(execResult, isFilelogNewDateVersion(connection));
+    String output = execResult.getStdout();
+    P4Revision[] revisions = parseLogOutput(output, newDateFormat);
+    if (lastChange > 0 && revisions.length > 0) {
+      cache.putFilelog(connection.getConnectionKey(), path, options, lastChange, output);
+    }
+    return revisions;
+  }
+
+  private static boolean isSingleFilePath(String path) {
+    return !path.endsWith("...") && path.indexOf('*') < 0 && path.indexOf('@') < 0 && path.indexOf('#') < 0;
+  }
+
+  /**
+   * @return the number of the last change submitted to the server, or -1 if it can't be told
+   */
+  private long getLastSubmittedChange(@NotNull P4Connection connection) throws VcsException {
+    ExecResult execResult = executeP4Command(new String[]{"changes", "-m", "1", "-s", "submitted"}, connection);
+    if (execResult.getExitCode() != 0 || !execResult.getStderr().isEmpty()) return -1;
+    for (String line : StringUtil.splitByLines(execResult.getStdout())) {
+      if (line.startsWith("Change ")) {
+        return StringUtil.parseLong(StringUtil.substringBefore(line.substring("Change ".length()), " "), -1);
+      }
+    }
+    return -1;
   }
 
   public List<String> files(final Collection<String> escapedPaths, final P4Connection connection) throws VcsException {
@@ -1566,9 +1832,9 @@ public final class PerforceRunner implements PerforceRunnerI {
     return serverVersion.getVersionYear() >= 2003 || serverVersion.getVersionYear() == 2002 && serverVersion.getVersionNum() > 1;
   }
 
-  private static P4Revision[] parseLogOutput(final ExecResult execResult, boolean newDateFormat) throws VcsException {
+  private static P4Revision[] parseLogOutput(final String output, boolean newDateFormat) throws VcsException {
     try {
-      final List<P4Revision> p4Revisions = OutputMessageParser.processLogOutput(execResult.getStdout(), newDateFormat);
+      final List<P4Revision> p4Revisions = OutputMessageParser.processLogOutput(output, newDateFormat);
       return p4Revisions.toArray(new P4Revision[0]);
     }
     catch (DateTimeParseException e) {
@@ -1577,33 +1843,93 @@ public final class PerforceRunner implements PerforceRunnerI {
   }
 
   public AnnotationInfo annotate(P4Connection connection, String filePath, long revision) throws VcsException {
-    if (revision != -1) {
-      filePath += "#" + revision;
-    }
-    List<String> commands = new ArrayList<>();
-    commands.add("annotate");
-    commands.add("-q");
+    return annotate(connection, filePath, revision, null);
+  }
+
+  /**
+   * Annotations of fixed depot revisions ({@code //depot/path} and a revision other than {@code -1}) are cached in {@link PerforceHistoryCache}.
+   * If the file log is given, and the revisions since the latest cached annotation are just a few edits, the annotation is computed
+   * from the cached one and the contents of these revisions instead of running {@code p4 annotate}, which is slow for files with long histories.
+   * If the local diff of any of these revisions is ambiguous (see {@link AnnotationInfo#withNextRevision}), {@code p4 annotate} is run after all.
+   */
+  public AnnotationInfo annotate(P4Connection connection, String filePath, long revision, P4Revision @Nullable [] fileLog) throws VcsException {
+    List<String> options = new ArrayList<>();
+    options.add("-q");
     boolean useChangelistNumbers = false;
     if (mySettings.SHOW_BRANCHES_HISTORY && isAnnotateBranchSupported(connection)) {
-      commands.add("-i");
+      options.add("-i");
       useChangelistNumbers = true;
     }
-    if (isAnnotateIgnoringWhitespaceSupported(connection)) {
-      commands.add("-dw");
-    } else {
-      commands.add("-dl");
-    }
-    commands.add(filePath);
-    final ExecResult execResult = executeP4Command(ArrayUtilRt.toStringArray(commands), connection);
-    checkError(execResult, connection);
+    boolean ignoreWhitespace = isAnnotateIgnoringWhitespaceSupported(connection);
+    options.add(ignoreWhitespace ? "-dw" : "-dl");
+
+    PerforceHistoryCache cache = PerforceHistoryCache.getInstance();
+    String optionString = StringUtil.join(options, " ");
+    boolean cacheable = cache.isEnabled() && revision > 0 && filePath.startsWith("//") && isSingleFilePath(filePath);
     try {
-      return new AnnotationInfo(execResult.getStdout(), useChangelistNumbers);
+      if (cacheable) {
+        String cached = cache.getAnnotation(connection.getConnectionKey(), filePath, revision, optionString);
+        if (cached != null) {
+          return new AnnotationInfo(cached, useChangelistNumbers);
+        }
+
+        AnnotationInfo incremental = fileLog == null ? null :
+                                     annotateIncrementally(connection, filePath, revision, fileLog, optionString, useChangelistNumbers, ignoreWhitespace);
+        if (incremental != null) {
+          cache.putAnnotation(connection.getConnectionKey(), filePath, revision, optionString, incremental.toOutput());
+          return incremental;
+        }
+      }
+
+      List<String> commands = new ArrayList<>();
+      commands.add("annotate");
+      commands.addAll(options);
+      commands.add(revision != -1 ? filePath + "#" + revision : filePath);
+      final ExecResult execResult = executeP4Command(ArrayUtilRt.toStringArray(commands), connection);
+      checkError(execResult, connection);
+      String output = execResult.getStdout();
+      AnnotationInfo info = new AnnotationInfo(output, useChangelistNumbers);
+      if (cacheable) {
+        cache.putAnnotation(connection.getConnectionKey(), filePath, revision, optionString, output);
+      }
+      return info;
     }
     catch (IOException e) {
       throw new VcsException(e);
     }
   }
 
+  private @Nullable AnnotationInfo annotateIncrementally(P4Connection connection, String depotPath, long revision, P4Revision[] fileLog,
+                                                         String options, boolean useChangelistNumbers, boolean ignoreWhitespace)
+    throws VcsException, IOException {
+    PerforceHistoryCache cache = PerforceHistoryCache.getInstance();
+    long base = cache.getLatestAnnotatedRevision(connection.getConnectionKey(), depotPath, options);
+    if (base <= 0 || base >= revision || revision - base > INCREMENTAL_ANNOTATION_STEPS) return null;
+
+    // with -i, lines of integrated revisions are attributed to the source changes, which needs the server
+    List<P4Revision> steps = new ArrayList<>();
+    for (long number = base + 1; number <= revision; number++) {
+      long revisionNumber = number;
+      P4Revision step = ContainerUtil.find(fileLog, r -> r.getRevisionNumber() == revisionNumber && depotPath.equals(r.getDepotPath()));
+      if (step == null || !"edit".equals(step.getAction())) return null;
+      steps.add(step);
+    }
+
+    String cached = cache.getAnnotation(connection.getConnectionKey(), depotPath, base, options);
+    if (cached == null) return null;
+
+    AnnotationInfo info = new AnnotationInfo(cached, useChangelistNumbers);
+    for (P4Revision step : steps) {
+      ExecResult execResult = executeP4Command(new String[]{"print", "-q", depotPath + "#" + step.getRevisionNumber()}, connection);
+      checkError(execResult, connection);
+      long annotation = useChangelistNumbers ? step.getChangeNumber() : step.getRevisionNumber();
+      info = info.withNextRevision(execResult.getStdout(), annotation, ignoreWhitespace);
+      if (info == null) return null;
+    }
+    LOG.debug("Annotated " + depotPath + "#" + revision + " incrementally from #" + base);
+    return info;
+  }
+
   private boolean isAnnotateBranchSupported(final @Nullable P4Connection connection) throws VcsException {
     ServerVersion version = myPerforceManager.getServerVersion(connection);
     if (version == null) return false;
@@ -1680,8 +2006,42 @@ public final class PerforceRunner implements PerforceRunnerI {
   }
 
   private ExecResult executeP4Command(@NonNls String[] p4cmd, Collection<String> args, final @Nullable StringBuffer inputStream, @NotNull PerforceContext ctx) {
+    return executeP4Command(p4cmd, args, inputStream, ctx, null);
+  }
+
+  /**
+   * Runs the command handing its stdout to {@code stdoutReader} while p4 is still writing it, so that huge outputs
+   * (fstat, have, opened, changes on big workspaces) are parsed record by record instead of being collected first.
+   * The reader runs on the thread reading the output, before the command errors can be checked; its own errors are reported
+   * by {@link #checkStreamingError}, which callers invoke after checking the command errors.
+   */
+  private ExecResult executeP4CommandStreaming(@NonNls String[] p4cmd, Collection<String> args, @NotNull PerforceContext ctx,
+                                               @NotNull Charset charset,
+                                               @NotNull ThrowableConsumer<? super BufferedReader, IOException> stdoutReader) {
+    return executeP4Command(p4cmd, args, null, ctx,
+                            stream -> stdoutReader.consume(new BufferedReader(new InputStreamReader(stream, charset))));
+  }
+
+  private static void checkStreamingError(@NotNull ExecResult execResult) throws VcsException {
+    IOException e = execResult.getStdoutConsumerException();
+    if (e != null) {
+      // a reader checking for cancellation stops the refresh, it isn't an error of the command
+      if (e.getCause() instanceof ProcessCanceledException) {
+        throw (ProcessCanceledException)e.getCause();
+      }
+      if (e.getCause() instanceof VcsException) {
+        throw (VcsException)e.getCause();
+      }
+      throw new VcsException(e);
+    }
+  }
+
+  private ExecResult executeP4Command(@NonNls String[] p4cmd, Collection<String> args, final @Nullable StringBuffer inputStream,
+                                      @NotNull PerforceContext ctx,
+                                      @Nullable ThrowableConsumer<InputStream, IOException> stdoutConsumer) {
     // construct the command-line
     final ExecResult retVal = new ExecResult();
+    retVal.setStdoutConsumer(stdoutConsumer);
     if (!mySettings.ENABLED) {
       retVal.setException(new VcsException(PerforceBundle.message("exception.text.perforce.integration.is.disabled")));
       retVal.setStderr(PerforceBundle.message("exception.text.perforce.integration.is.disabled"));
@@ -1709,7 +2069,13 @@ public final class PerforceRunner implements PerforceRunnerI {
         p4args = ArrayUtil.mergeArrays(p4cmd, ArrayUtilRt.toStringArray(args));
       }
 
-      ctx.runP4Command(mySettings, p4args, retVal, inputStream);
+      long start = System.nanoTime();
+      try {
+        ctx.runP4Command(mySettings, p4args, retVal, inputStream);
+      }
+      finally {
+        myCommandStatistics.record(p4cmd.length > 0 ? p4cmd[0] : "", args.size(), System.nanoTime() - start);
+      }
     }
     catch (PerforceTimeoutException | VcsException | InterruptedException | IOException e) {
       retVal.setException(e);
@@ -1729,7 +2095,7 @@ public final class PerforceRunner implements PerforceRunnerI {
       try {
         if (!ctx.justLogged && myLoginManager.silentLogin(ctx.connection)) {
           retVal.cleanup();
-          return executeP4Command(p4cmd, args, inputStream, new PerforceContext(ctx.connection, ctx.longTimeout, true));
+          return executeP4Command(p4cmd, args, inputStream, new PerforceContext(ctx.connection, ctx.longTimeout, true), stdoutConsumer);
         }
       }
       catch (VcsException e) {
@@ -0,0 +1,229 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.io.IOUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.idea.perforce.ChangeListData;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+import org.jetbrains.idea.perforce.changesBrowser.FileChange;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disk cache of submitted changelists, shared by all projects and kept across restarts:
+ * <ul>
+ *   <li>the files of every described submitted changelist, which never change;</li>
+ *   <li>for a {@code p4 changes} query without a revision range, the newest changelists it returned so far, newest first,
+ *   and whether they reach back to the first change. The next query then only asks the server for the changelists
+ *   submitted since, and for older ones when more are requested than cached.</li>
+ * </ul>
+ * Edited descriptions and obliterated changelists aren't noticed. The entries take at most {@code perforce.changes.cache.size.mb}
+ * megabytes ({@code 0} turns the cache off).
+ */
+@Service
+public final class PerforceSubmittedChangesCache {
+  private static final Logger LOG = Logger.getInstance(PerforceSubmittedChangesCache.class);
+  private static final long DEFAULT_MAX_SIZE = SystemProperties.getIntProperty("perforce.changes.cache.size.mb", 128) * 1024L * 1024L;
+
+  private final PersistentLruCache myCache;
+
+  public static PerforceSubmittedChangesCache getInstance() {
+    return ApplicationManager.getApplication().getService(PerforceSubmittedChangesCache.class);
+  }
+
+  public PerforceSubmittedChangesCache() {
+    this(Paths.get(PathManager.getSystemPath(), "perforce", "changes"), DEFAULT_MAX_SIZE);
+  }
+
+  @TestOnly
+  PerforceSubmittedChangesCache(@NotNull Path dir, long maxSize) {
+    myCache = new PersistentLruCache(dir, maxSize, true);
+  }
+
+  public boolean isEnabled() {
+    return myCache.getMaxSize() > 0;
+  }
+
+  public @Nullable Description getDescription(@NotNull ConnectionKey connection, long number) {
+    byte[] bytes = isEnabled() ? myCache.get(describeKey(connection, number)) : null;
+    if (bytes == null) return null;
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      String description = IOUtil.readString(in);
+      int count = in.readInt();
+      List<SubmittedFile> files = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        files.add(new SubmittedFile(in.readInt(), in.readUTF(), in.readLong()));
+      }
+      return new Description(description, files);
+    }
+    catch (IOException e) {
+      LOG.info("Can't read cached description of change " + number, e);
+      return null;
+    }
+  }
+
+  public void putDescription(@NotNull ConnectionKey connection, long number, @NotNull Description description) {
+    if (!isEnabled()) return;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      IOUtil.writeString(description.getDescription(), out);
+      out.writeInt(description.getFiles().size());
+      for (SubmittedFile file : description.getFiles()) {
+        out.writeInt(file.getType());
+        out.writeUTF(file.getDepotPath());
+        out.writeLong(file.getRevision());
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return;
+    }
+    myCache.put(describeKey(connection, number), bytes.toByteArray());
+  }
+
+  public @Nullable ChangesPage getChanges(@NotNull ConnectionKey connection, @NotNull String query) {
+    byte[] bytes = isEnabled() ? myCache.get(changesKey(connection, query)) : null;
+    if (bytes == null) return null;
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      boolean complete = in.readBoolean();
+      int count = in.readInt();
+      List<ChangeListData> lists = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        ChangeListData data = new ChangeListData();
+        data.NUMBER = in.readLong();
+        data.DESCRIPTION = IOUtil.readString(in);
+        data.USER = IOUtil.readString(in);
+        data.CLIENT = IOUtil.readString(in);
+        data.DATE = IOUtil.readString(in);
+        lists.add(data);
+      }
+      return new ChangesPage(lists, complete);
+    }
+    catch (IOException e) {
+      LOG.info("Can't read cached changes of " + query, e);
+      return null;
+    }
+  }
+
+  public void putChanges(@NotNull ConnectionKey connection, @NotNull String query, @NotNull ChangesPage page) {
+    if (!isEnabled()) return;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeBoolean(page.isComplete());
+      out.writeInt(page.getLists().size());
+      for (ChangeListData data : page.getLists()) {
+        out.writeLong(data.NUMBER);
+        IOUtil.writeString(data.DESCRIPTION, out);
+        IOUtil.writeString(data.USER, out);
+        IOUtil.writeString(data.CLIENT, out);
+        IOUtil.writeString(data.DATE, out);
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return;
+    }
+    myCache.put(changesKey(connection, query), bytes.toByteArray());
+  }
+
+  @TestOnly
+  public void clear() {
+    myCache.clear();
+  }
+
+  private static String describeKey(ConnectionKey connection, long number) {
+    return "describe\n" + connection.getServer() + "\n" + number;
+  }
+
+  // the queried path may be a local one, which depends on the client view
+  private static String changesKey(ConnectionKey connection, String query) {
+    return "changes\n" + connection.getServer() + "\n" + connection.getClient() + "\n" + query;
+  }
+
+  public static final class Description {
+    private final String myDescription;
+    private final List<SubmittedFile> myFiles;
+
+    public Description(String description, @NotNull List<SubmittedFile> files) {
+      myDescription = description;
+      myFiles = files;
+    }
+
+    public static @NotNull Description create(@NotNull ChangeListData data, @NotNull List<FileChange> changes) {
+      List<SubmittedFile> files = new ArrayList<>(changes.size());
+      for (FileChange change : changes) {
+        files.add(new SubmittedFile(change.getType(), change.getDepotPath(), change.getRevisionAfter()));
+      }
+      return new Description(data.DESCRIPTION, files);
+    }
+
+    public String getDescription() {
+      return myDescription;
+    }
+
+    public @NotNull List<SubmittedFile> getFiles() {
+      return myFiles;
+    }
+  }
+
+  public static final class SubmittedFile {
+    private final int myType;
+    private final String myDepotPath;
+    private final long myRevision;
+
+    public SubmittedFile(int type, @NotNull String depotPath, long revision) {
+      myType = type;
+      myDepotPath = depotPath;
+      myRevision = revision;
+    }
+
+    /**
+     * @see PerforceAbstractChange#getType()
+     */
+    public int getType() {
+      return myType;
+    }
+
+    public @NotNull String getDepotPath() {
+      return myDepotPath;
+    }
+
+    public long getRevision() {
+      return myRevision;
+    }
+  }
+
+  public static final class ChangesPage {
+    private final List<ChangeListData> myLists;
+    private final boolean myComplete;
+
+    public ChangesPage(@NotNull List<ChangeListData> lists, boolean complete) {
+      myLists = lists;
+      myComplete = complete;
+    }
+
+    /**
+     * @return changelists, newest first
+     */
+    public @NotNull List<ChangeListData> getLists() {
+      return myLists;
+    }
+
+    /**
+     * @return whether there are no changelists older than the last one
+     */
+    public boolean isComplete() {
+      return myComplete;
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.io.DigestUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Size-bounded store of byte arrays on disk, keyed by strings, behind {@link PerforceContentCache}, {@link PerforceHistoryCache}
+ * and {@link PerforceSubmittedChangesCache}.
+ * <p>
+ * An entry is a file named by a hash of its key. The file repeats the full key, so hash collisions read as misses.
+ * Values are deflated unless that doesn't make them smaller. Once the entries take more than {@code maxSize} bytes,
+ * the least recently used ones are evicted; the use order survives restarts as the modification time of the entry files.
+ */
+final class PersistentLruCache {
+  private static final Logger LOG = Logger.getInstance(PersistentLruCache.class);
+  private static final int VERSION = 1;
+
+  private final Path myDir;
+  private final long myMaxSize;
+  private final boolean myCompress;
+
+  private final Object myLock = new Object();
+  // entry file name -> file size, least recently used first
+  private final LinkedHashMap<String, Long> myEntries = new LinkedHashMap<>(16, 0.75f, true);
+  private long myTotalSize;
+  private boolean myLoaded;
+
+  PersistentLruCache(@NotNull Path dir, long maxSize, boolean compress) {
+    myDir = dir;
+    myMaxSize = maxSize;
+    myCompress = compress;
+  }
+
+  long getMaxSize() {
+    return myMaxSize;
+  }
+
+  boolean contains(@NotNull String key) {
+    ensureLoaded();
+    synchronized (myLock) {
+      return myEntries.containsKey(fileName(key));
+    }
+  }
+
+  byte @Nullable [] get(@NotNull String key) {
+    ensureLoaded();
+
+    String name = fileName(key);
+    synchronized (myLock) {
+      if (myEntries.get(name) == null) return null; // also moves the entry to the most recently used end
+    }
+
+    Path file = myDir.resolve(name);
+    try {
+      byte[] content = read(file, key);
+      if (content != null) {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        return content;
+      }
+    }
+    catch (NoSuchFileException e) {
+      // evicted meanwhile
+    }
+    catch (IOException | DataFormatException e) {
+      LOG.info("Can't read cache entry " + file, e);
+    }
+    remove(name);
+    return null;
+  }
+
+  void put(@NotNull String key, byte @NotNull [] content) {
+    if (content.length > myMaxSize) return;
+    ensureLoaded();
+
+    String name = fileName(key);
+    Path file = myDir.resolve(name);
+    long size;
+    try {
+      Files.createDirectories(myDir);
+      Path temp = Files.createTempFile(myDir, name, ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        write(out, key, content);
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      size = Files.size(file);
+    }
+    catch (IOException e) {
+      LOG.info("Can't write cache entry " + file, e);
+      return;
+    }
+
+    List<String> evicted = new ArrayList<>();
+    synchronized (myLock) {
+      Long old = myEntries.put(name, size);
+      myTotalSize += size - (old == null ? 0 : old);
+      Iterator<Map.Entry<String, Long>> iterator = myEntries.entrySet().iterator();
+      while (myTotalSize > myMaxSize && iterator.hasNext()) {
+        Map.Entry<String, Long> eldest = iterator.next();
+        if (eldest.getKey().equals(name)) continue;
+        myTotalSize -= eldest.getValue();
+        evicted.add(eldest.getKey());
+        iterator.remove();
+      }
+    }
+    for (String evictedName : evicted) {
+      deleteQuietly(myDir.resolve(evictedName));
+    }
+  }
+
+  void clear() {
+    List<String> names;
+    synchronized (myLock) {
+      ensureLoaded();
+      names = new ArrayList<>(myEntries.keySet());
+    }
+    for (String name : names) {
+      remove(name);
+    }
+  }
+
+  long getTotalSize() {
+    ensureLoaded();
+    synchronized (myLock) {
+      return myTotalSize;
+    }
+  }
+
+  private void remove(String name) {
+    synchronized (myLock) {
+      Long size = myEntries.remove(name);
+      if (size != null) {
+        myTotalSize -= size;
+      }
+    }
+    deleteQuietly(myDir.resolve(name));
+  }
+
+  private void ensureLoaded() {
+    synchronized (myLock) {
+      if (myLoaded) return;
+      myLoaded = true;
+
+      if (!Files.isDirectory(myDir)) return;
+      List<Map.Entry<String, BasicFileAttributes>> files = new ArrayList<>();
+      try (Stream<Path> stream = Files.list(myDir)) {
+        stream.forEach(file -> {
+          String name = file.getFileName().toString();
+          if (name.endsWith(".tmp")) {
+            deleteQuietly(file); // left by an interrupted put
+            return;
+          }
+          try {
+            files.add(Map.entry(name, Files.readAttributes(file, BasicFileAttributes.class)));
+          }
+          catch (IOException ignored) {
+          }
+        });
+      }
+      catch (IOException e) {
+        LOG.info("Can't read cache " + myDir, e);
+        return;
+      }
+      files.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+      for (Map.Entry<String, BasicFileAttributes> entry : files) {
+        myEntries.put(entry.getKey(), entry.getValue().size());
+        myTotalSize += entry.getValue().size();
+      }
+    }
+  }
+
+  private void write(DataOutputStream out, String key, byte[] content) throws IOException {
+    byte[] deflated = myCompress ? deflate(content) : null;
+    boolean compressed = deflated != null && deflated.length < content.length;
+    out.writeInt(VERSION);
+    out.writeUTF(key);
+    out.writeBoolean(compressed);
+    out.writeInt(content.length);
+    if (compressed) {
+      out.writeInt(deflated.length);
+      out.write(deflated);
+    }
+    else {
+      out.write(content);
+    }
+  }
+
+  private static byte @Nullable [] read(Path file, String key) throws IOException, DataFormatException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != VERSION || !key.equals(in.readUTF())) return null;
+
+      boolean compressed = in.readBoolean();
+      byte[] content = new byte[in.readInt()];
+      if (!compressed) {
+        in.readFully(content);
+        return content;
+      }
+
+      byte[] deflated = new byte[in.readInt()];
+      in.readFully(deflated);
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(deflated);
+        int length = 0;
+        while (length < content.length && !inflater.finished()) {
+          int read = inflater.inflate(content, length, content.length - length);
+          if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+          length += read;
+        }
+        return length == content.length ? content : null;
+      }
+      finally {
+        inflater.end();
+      }
+    }
+  }
+
+  private static byte[] deflate(byte[] content) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(content);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  private static String fileName(String key) {
+    return DigestUtil.sha256Hex(key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+  }
+}
@@ -167,7 +167,7 @@ public abstract class AbstractP4Connection implements P4Connection {
 
       worker = new MyInterruptibleProcess(project, proc, perforceSettings.getServerTimeout());
 
-      processWaiter = new PerforceProcessWaiter();
+      processWaiter = new PerforceProcessWaiter(worker.getInputStream(), retVal.getStdoutConsumer());
       worker.setOnBeforeInterrupt(processWaiter::cancelListeners);
       rc = processWaiter.execute(worker, perforceSettings.getServerTimeout());
     }
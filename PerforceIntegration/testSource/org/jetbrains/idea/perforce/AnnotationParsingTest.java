@@ -42,4 +42,46 @@ public class AnnotationParsingTest extends TestCase{
     assertEquals(2, annotationInfo.getRevision(1));
     assertEquals(300300300300300L, annotationInfo.getRevision(2));
   }
+
+  public void testNextRevision() throws Exception {
+    AnnotationInfo base = new AnnotationInfo("1: a\n2: b\n1: c\n", false);
+    AnnotationInfo next = base.withNextRevision("a\nnew\nc\nend", 3, false);
+    assertNotNull(next);
+    assertEquals("a\nnew\nc\nend\n", next.getContent());
+    assertEquals(4, next.getLineCount());
+    assertEquals(1, next.getRevision(0));
+    assertEquals(3, next.getRevision(1));
+    assertEquals(1, next.getRevision(2));
+    assertEquals(3, next.getRevision(3));
+
+    assertEquals(next.toOutput(), new AnnotationInfo(next.toOutput(), false).toOutput());
+    assertEquals("1: a\n3: new\n1: c\n3: end\n", next.toOutput());
+  }
+
+  public void testNextRevisionIgnoringWhitespace() throws Exception {
+    AnnotationInfo base = new AnnotationInfo("10: if (a) {\n11:   b();\n", true);
+
+    AnnotationInfo next = base.withNextRevision("if (a) {\n    b();\r\n", 12, true);
+    assertNotNull(next);
+    assertEquals(10, next.getRevision(0));
+    assertEquals(11, next.getRevision(1));
+
+    next = base.withNextRevision("if (a) {\n    b();\n", 12, false);
+    assertNotNull(next);
+    assertEquals(10, next.getRevision(0));
+    assertEquals(12, next.getRevision(1));
+  }
+
+  public void testAmbiguousNextRevisionIsNotAnnotated() throws Exception {
+    AnnotationInfo base = new AnnotationInfo("1: a\n2: }\n3: b\n", false);
+
+    // p4 may attribute either of the braces to the new revision
+    assertNull(base.withNextRevision("a\n}\n}\nb\n", 4, false));
+    // and keep the revision of either of them
+    assertNull(new AnnotationInfo("1: a\n2: }\n3: }\n4: b\n", false).withNextRevision("a\n}\nb\n", 5, false));
+
+    AnnotationInfo next = base.withNextRevision("a\n}\nc\nb\n", 4, false);
+    assertNotNull(next);
+    assertEquals("1: a\n2: }\n4: c\n3: b\n", next.toOutput());
+  }
 }
@@ -0,0 +1,33 @@
+package org.jetbrains.idea.perforce;
+
+import com.intellij.openapi.util.SystemInfo;
+import junit.framework.TestCase;
+import org.jetbrains.idea.perforce.application.P4IgnoresMappingsHelper;
+
+import java.nio.file.Path;
+
+public class P4IgnoresMappingsTest extends TestCase {
+  @Override
+  protected void runTest() throws Throwable {
+    if (SystemInfo.isUnix) {
+      super.runTest();
+    }
+  }
+
+  public void testWhollyIgnoredDirectories() {
+    P4IgnoresMappingsHelper helper = P4IgnoresMappingsHelper.parse("/ws/.../build/...\n/ws/out/...\n/ws/.../*.class\n");
+    assertTrue(helper.isIgnoredDirectory(Path.of("/ws/module/build")));
+    assertTrue(helper.isIgnoredDirectory(Path.of("/ws/a/b/build")));
+    assertTrue(helper.isIgnoredDirectory(Path.of("/ws/out")));
+    assertFalse(helper.isIgnoredDirectory(Path.of("/ws/output")));
+    assertFalse(helper.isIgnoredDirectory(Path.of("/ws/src")));
+    assertFalse(helper.isIgnoredDirectory(Path.of("/ws")));
+  }
+
+  public void testExclusionsKeepDirectoriesWalked() {
+    P4IgnoresMappingsHelper helper = P4IgnoresMappingsHelper.parse("!/ws/out/keep.txt\n/ws/out/...\n/ws/gen/...\n!/ws/.../*.java\n");
+    assertFalse(helper.isIgnoredDirectory(Path.of("/ws/out")));
+    assertTrue(helper.isIgnoredDirectory(Path.of("/ws/gen")));
+    assertFalse(helper.isIgnoredDirectory(Path.of("/ws/other")));
+  }
+}
@@ -16,10 +16,12 @@ import com.intellij.testFramework.EdtTestUtil;
 import com.intellij.testFramework.vcs.DuringChangeListManagerUpdateTestScheme;
 import com.intellij.util.CollectConsumer;
 import com.intellij.util.ExceptionUtil;
+import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.idea.perforce.application.PerforceCommittedChangesProvider;
 import org.jetbrains.idea.perforce.application.PerforceRepositoryLocation;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
 import org.jetbrains.idea.perforce.changesBrowser.PerforceChangeBrowserSettings;
+import org.jetbrains.idea.perforce.perforce.PerforceChangeList;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
 import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection;
 import org.junit.Assert;
@@ -1019,6 +1021,35 @@ public class PerforceChangeProviderTest extends PerforceTestCase {
     assertFalse(callback.getResult().toString(), callback.getResult().contains("describe -s 1"));
   }
 
+  @Test
+  public void testCommittedChangesAreLoadedIncrementally() throws VcsException {
+    createFileInCommand("a.txt", "");
+    addFile("a.txt");
+    submitDefaultList("first");
+    createFileInCommand("b.txt", "");
+    addFile("b.txt");
+    submitDefaultList("second");
+
+    PerforceCommittedChangesProvider provider = PerforceVcs.getInstance(myProject).getCommittedChangesProvider();
+    PerforceRepositoryLocation location = PerforceRepositoryLocation.create(myWorkingCopyDir, myProject);
+    PerforceChangeBrowserSettings settings = new PerforceChangeBrowserSettings();
+    assertSize(2, provider.getCommittedChanges(settings, location, 100));
+
+    createFileInCommand("c.txt", "");
+    addFile("c.txt");
+    submitDefaultList("third");
+
+    List<String> commands = AbstractP4Connection.dumpCommands(myTestRootDisposable);
+    List<PerforceChangeList> lists = provider.getCommittedChanges(settings, location, 100);
+    assertEquals(Arrays.asList(3L, 2L, 1L), ContainerUtil.map(lists, PerforceChangeList::getNumber));
+    assertEquals("c.txt", assertOneElement(lists.get(0).getChanges()).getAfterRevision().getFile().getName());
+    assertEquals("b.txt", assertOneElement(lists.get(1).getChanges()).getAfterRevision().getFile().getName());
+
+    assertTrue(commands.toString(), ContainerUtil.exists(commands, c -> c.startsWith("changes") && c.endsWith("@3,@now")));
+    assertTrue(commands.toString(), commands.contains("describe -s 3"));
+    assertFalse(commands.toString(), ContainerUtil.exists(commands, c -> c.startsWith("describe") && (c.contains(" 1") || c.contains(" 2"))));
+  }
+
   @Test
   public void testChangesAfterUnshelveConflict() throws VcsException {
     VirtualFile file = createFileInCommand("a.txt", "");
@@ -1137,6 +1168,27 @@ public class PerforceChangeProviderTest extends PerforceTestCase {
     assertEmpty(getChangeListManager().getUnversionedFiles());
   }
 
+  @Test
+  public void testRestoredFileIsNotLocallyDeleted() throws IOException {
+    enableSilentOperation(VcsConfiguration.StandardConfirmation.ADD);
+    createFileInCommand("a.txt", "content");
+    submitDefaultList("initial");
+    refreshChanges();
+
+    File file = new File(VfsUtilCore.virtualToIoFile(myWorkingCopyDir), "a.txt");
+    FileUtil.delete(file);
+    refreshVfs();
+    refreshChanges();
+    assertOneElement(getChangeListManager().getDeletedFiles());
+
+    // restored outside the IDE, while the have snapshot still records it as missing
+    FileUtil.writeToFile(file, "content");
+    refreshVfs();
+    refreshChanges();
+    assertEmpty(getChangeListManager().getDeletedFiles());
+    assertEmpty(getChangeListManager().getUnversionedFiles());
+  }
+
   @Test
   public void testReportingFileTypeIgnoredFiles() {
     setStandardConfirmation("Perforce", VcsConfiguration.StandardConfirmation.ADD, VcsShowConfirmationOption.Value.DO_NOTHING_SILENTLY);
@@ -1,18 +1,32 @@
 package org.jetbrains.idea.perforce;
 
 import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.progress.PerformInBackgroundOption;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.VcsConfiguration;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.impl.DebugUtil;
+import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
+import org.jetbrains.idea.perforce.operations.P4EditOperation;
+import org.jetbrains.idea.perforce.operations.VcsOperation;
 import org.jetbrains.idea.perforce.operations.VcsOperationLog;
+import org.jetbrains.idea.perforce.perforce.FStat;
+import org.jetbrains.idea.perforce.perforce.P4File;
+import org.jetbrains.idea.perforce.perforce.PerforceRunner;
 import org.jetbrains.idea.perforce.perforce.PerforceSettings;
+import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 import static com.intellij.testFramework.UsefulTestCase.assertOneElement;
-import static junit.framework.TestCase.assertFalse;
-import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.*;
+import static org.junit.Assume.assumeFalse;
 
 public class PerforceConnectionProblemsTest extends PerforceTestCase {
   @Override
@@ -33,6 +47,45 @@ public class PerforceConnectionProblemsTest extends PerforceTestCase {
     assertOneElement(VcsOperationLog.getInstance(myProject).getPendingOperations());
   }
 
+  /**
+   * The records streamed by {@code fstat} reach the consumer on the output reading thread before the command errors are checked,
+   * so a p4 error after partially consumed output must still fail the command.
+   */
+  @Test
+  public void testErrorAfterStreamedOutput() throws Exception {
+    assumeFalse(SystemInfo.isWindows);
+    VirtualFile file = createFileInCommand("a.txt", "original");
+    submitDefaultList("initial");
+
+    PerforceSettings settings = PerforceSettings.getSettings(myProject);
+    String realP4 = settings.pathToExec;
+    File fakeP4 = new File(FileUtil.createTempDirectory("fake_p4", null), "p4");
+    FileUtil.writeToFile(fakeP4, "#!/bin/sh\n" +
+                                 "case \" $* \" in *\" fstat \"*)\n" +
+                                 "  printf '... depotFile //depot/a.txt\\n... clientFile %s\\n... headRev 1\\n\\n' '" + file.getPath() + "'\n" +
+                                 "  echo 'Perforce client error: connection dropped' >&2\n" +
+                                 "  exit 1;;\n" +
+                                 "esac\n" +
+                                 "exec '" + realP4 + "' \"$@\"\n");
+    assertTrue(fakeP4.setExecutable(true));
+    settings.pathToExec = fakeP4.getPath();
+    try {
+      List<FStat> consumed = ContainerUtil.createConcurrentList();
+      try {
+        PerforceRunner.getInstance(myProject).fstatBulk(List.of(P4File.create(file)), (p4File, fStat) -> consumed.add(fStat));
+        fail("p4 error is not reported");
+      }
+      catch (VcsException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("connection dropped"));
+      }
+      assertOneElement(consumed);
+    }
+    finally {
+      settings.pathToExec = realP4;
+      FileUtil.delete(fakeP4.getParentFile());
+    }
+  }
+
   @Test
   public void testAddWhenDisconnected() {
     DebugUtil.sleep(3000); //todo ensure PerforceBaseInfoWorker.refreshInfo passes
@@ -69,6 +122,26 @@ public class PerforceConnectionProblemsTest extends PerforceTestCase {
     assertSingleOfflineChange();
   }
 
+  @Test
+  public void testQueuedEditsWhenDisconnected() {
+    List<VirtualFile> files = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      files.add(createFileInCommand("a" + i + ".txt", "original"));
+    }
+    submitDefaultList("initial");
+    refreshVfs();
+    refreshChanges();
+
+    stopPerforceServer();
+    List<String> commands = AbstractP4Connection.dumpCommands(myTestRootDisposable);
+    List<VcsOperation> operations = ContainerUtil.map(files, file -> (VcsOperation)new P4EditOperation("Default", file));
+    VcsOperationLog.getInstance(myProject).runOperations(operations, "Edit", PerformInBackgroundOption.DEAF, new ArrayList<>());
+
+    // the batch is pushed back as a whole instead of every file waiting for its own connection timeout
+    assertEquals(3, VcsOperationLog.getInstance(myProject).getPendingOperations().size());
+    assertTrue(commands.toString(), ContainerUtil.filter(commands, cmd -> cmd.startsWith("edit ") || cmd.startsWith("fstat ")).size() <= 1);
+  }
+
   @Test
   public void testDeleteWhenDisconnected() {
     final VirtualFile file = createFileInCommand("a.txt", "original");
@@ -26,6 +26,7 @@ import org.jetbrains.idea.perforce.application.annotation.PerforceFileAnnotation
 import org.jetbrains.idea.perforce.perforce.P4Revision
 import org.jetbrains.idea.perforce.perforce.PerforceChangeList
 import org.jetbrains.idea.perforce.perforce.PerforceSettings
+import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection
 import org.junit.Assert.*
 import org.junit.Test
 import java.nio.charset.StandardCharsets
@@ -124,6 +125,30 @@ class PerforceHistoryTest : PerforceTestCase() {
     assertTrue(revision!!.submitMessage.contains("initial"))
   }
 
+  @Test
+  fun `test annotation of a new revision is computed from the cached one`() {
+    val file = createFileInCommand(createDirInCommand(workingCopyDir, "subdir"), "a.txt", "aaa\nbbb")
+    refreshChanges()
+    submitDefaultList("initial")
+    createTestAnnotation(file)
+
+    verify(runP4WithClient("edit", file.path))
+    setFileText(file, "aaa\nccc\nbbb")
+    submitDefaultList("added ccc")
+
+    val commands = AbstractP4Connection.dumpCommands(myTestRootDisposable)
+    val fileAnnotation = createTestAnnotation(file)
+    assertTrue(fileAnnotation.findRevisionForLine(0)!!.submitMessage.contains("initial"))
+    assertTrue(fileAnnotation.findRevisionForLine(1)!!.submitMessage.contains("added ccc"))
+    assertTrue(fileAnnotation.findRevisionForLine(2)!!.submitMessage.contains("initial"))
+    assertFalse(commands.toString(), commands.any { it.startsWith("annotate") })
+
+    val filelogCount = commands.count { it.startsWith("filelog") }
+    createTestAnnotation(file)
+    assertEquals(commands.toString(), filelogCount, commands.count { it.startsWith("filelog") })
+    assertFalse(commands.toString(), commands.any { it.startsWith("annotate") })
+  }
+
   @Test
   fun `test annotate FilePath`() {
     var file = createFileInCommand(myWorkingCopyDir, "a.txt", "aaa")
@@ -8,6 +8,7 @@ import com.intellij.openapi.vcs.VcsShowConfirmationOption
 import com.intellij.testFramework.UsefulTestCase.*
 import org.jetbrains.idea.perforce.application.PerforceRepositoryLocation
 import org.jetbrains.idea.perforce.application.PerforceVcs
+import org.jetbrains.idea.perforce.perforce.PerforceSettings
 import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection
 import org.jetbrains.idea.perforce.perforce.connections.P4ConfigFields
 import org.junit.After
@@ -110,6 +111,38 @@ class WithIgnoresCommandTest : PerforceIgnoredTest() {
     return "2016.2"
   }
 
+  @Test
+  fun `files in ignored directory with pattern matching`() {
+    PerforceSettings.getSettings(myProject).USE_PATTERN_MATCHING_IGNORE = true
+    setStandardConfirmation("Perforce", VcsConfiguration.StandardConfirmation.ADD, VcsShowConfirmationOption.Value.DO_NOTHING_SILENTLY)
+
+    ignoreFiles(System.lineSeparator() + "build/")
+    val b = createFileInCommand("b.txt", "")
+    val generated = createFileInCommand(createDirInCommand(workingCopyDir, "build"), "generated.txt", "")
+    refreshChanges()
+
+    assertSameElements(changeListManager.unversionedFiles, b)
+    assertEquals(FileStatus.IGNORED, FileStatusManager.getInstance(myProject).getStatus(generated))
+  }
+
+  @Test
+  fun `submitted file in ignored directory with pattern matching`() {
+    PerforceSettings.getSettings(myProject).USE_PATTERN_MATCHING_IGNORE = true
+    setStandardConfirmation("Perforce", VcsConfiguration.StandardConfirmation.ADD, VcsShowConfirmationOption.Value.DO_NOTHING_SILENTLY)
+
+    val build = createDirInCommand(workingCopyDir, "build")
+    val submitted = createFileInCommand(build, "submitted.txt", "")
+    addFile("build/submitted.txt")
+    submitDefaultList("initial")
+
+    ignoreFiles(System.lineSeparator() + "build/")
+    val generated = createFileInCommand(build, "generated.txt", "")
+    refreshChanges()
+
+    assertEquals(FileStatus.NOT_CHANGED, FileStatusManager.getInstance(myProject).getStatus(submitted))
+    assertEquals(FileStatus.IGNORED, FileStatusManager.getInstance(myProject).getStatus(generated))
+  }
+
   @After
   override fun after() {
     try {
@@ -3,6 +3,7 @@ package org.jetbrains.idea.perforce;
 import com.intellij.execution.process.ProcessOutput;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.PerformInBackgroundOption;
 import com.intellij.openapi.vcs.*;
 import com.intellij.openapi.vcs.annotate.FileAnnotation;
 import com.intellij.openapi.vcs.changes.Change;
@@ -14,6 +15,7 @@ import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.testFramework.EdtTestUtil;
 import com.intellij.testFramework.vcs.DuringChangeListManagerUpdateTestScheme;
 import com.intellij.util.concurrency.Semaphore;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.vcsUtil.VcsUtil;
 import org.jetbrains.idea.perforce.actions.ActionEdit;
 import org.jetbrains.idea.perforce.actions.RevertAllUnchangedFilesAction;
@@ -21,8 +23,11 @@ import org.jetbrains.idea.perforce.application.PerforceVcs;
 import org.jetbrains.idea.perforce.operations.P4AddOperation;
 import org.jetbrains.idea.perforce.operations.P4DeleteOperation;
 import org.jetbrains.idea.perforce.operations.P4EditOperation;
+import org.jetbrains.idea.perforce.operations.VcsOperation;
+import org.jetbrains.idea.perforce.operations.VcsOperationLog;
 import org.jetbrains.idea.perforce.perforce.PerforceChangeListHelper;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
+import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection;
 import org.jetbrains.idea.perforce.perforce.jobs.ConnectionSelector;
 import org.junit.Assert;
 import org.junit.Before;
@@ -64,6 +69,31 @@ public class PerforceOperationsTest extends PerforceTestCase {
     verifyOpened("a.txt", "edit");
   }
 
+  @Test
+  public void testQueuedEditsRunInOneCommand() {
+    enableSilentOperation(VcsConfiguration.StandardConfirmation.ADD);
+    List<VirtualFile> files = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      files.add(createFileInCommand("a" + i + ".txt", ""));
+    }
+    refreshChanges();
+    submitDefaultList("initial");
+
+    List<String> commands = AbstractP4Connection.dumpCommands(myTestRootDisposable);
+    List<VcsOperation> operations = new ArrayList<>();
+    for (VirtualFile file : files) {
+      operations.add(new P4EditOperation("Default", file));
+    }
+    List<VcsException> exceptions = new ArrayList<>();
+    VcsOperationLog.getInstance(myProject).runOperations(operations, "Edit", PerformInBackgroundOption.DEAF, exceptions);
+    assertEmpty(exceptions);
+
+    for (VirtualFile file : files) {
+      verifyOpened(file.getName(), "edit");
+    }
+    assertSize(1, ContainerUtil.filter(commands, cmd -> cmd.startsWith("edit ") || cmd.matches("-x \\S+ edit.*")));
+  }
+
   @Test
   public void testDeleteOperation() throws Exception {
     enableSilentOperation(VcsConfiguration.StandardConfirmation.ADD);
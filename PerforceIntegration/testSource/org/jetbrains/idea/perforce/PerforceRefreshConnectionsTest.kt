@@ -0,0 +1,78 @@
+package org.jetbrains.idea.perforce
+
+import com.intellij.openapi.progress.ProcessCanceledException
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.progress.util.ProgressIndicatorBase
+import com.intellij.openapi.vcs.VcsException
+import com.intellij.testFramework.LightPlatformTestCase
+import org.jetbrains.idea.perforce.application.PerforceChangeProvider
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection
+import org.jetbrains.idea.perforce.perforce.connections.PerforceLocalConnection
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class PerforceRefreshConnectionsTest : LightPlatformTestCase() {
+  private val first = PerforceLocalConnection("/work/first")
+  private val second = PerforceLocalConnection("/work/second")
+
+  fun testResultsFollowConnectionOrder() {
+    val progress = ProgressIndicatorBase().apply { start() }
+    val result = PerforceChangeProvider.forEachConnection(listOf(first, second), progress, "test") { connection ->
+      assertSame(progress, ProgressManager.getInstance().progressIndicator)
+      // the first connection answers last
+      if (connection == first) Thread.sleep(200)
+      name(connection)
+    }
+    assertEquals(listOf("first", "second"), result)
+  }
+
+  fun testFailureIsPropagated() {
+    val progress = ProgressIndicatorBase().apply { start() }
+    try {
+      PerforceChangeProvider.forEachConnection(listOf(first, second), progress, "test") { connection ->
+        if (connection == second) throw VcsException("second is down")
+        name(connection)
+      }
+      fail("failure of a connection is not reported")
+    }
+    catch (e: VcsException) {
+      assertEquals("second is down", e.message)
+    }
+  }
+
+  fun testCancellationReachesWorkers() {
+    val progress = ProgressIndicatorBase().apply { start() }
+    val started = CountDownLatch(2)
+    val canceled = CountDownLatch(2)
+    val caller = Thread {
+      started.await(10, TimeUnit.SECONDS)
+      progress.cancel()
+    }
+    caller.start()
+    try {
+      PerforceChangeProvider.forEachConnection(listOf(first, second), progress, "test") {
+        started.countDown()
+        try {
+          // a p4 command waiting for the server checks the indicator of its thread
+          while (true) {
+            ProgressManager.checkCanceled()
+            Thread.onSpinWait()
+          }
+        }
+        catch (e: ProcessCanceledException) {
+          canceled.countDown()
+          throw e
+        }
+      }
+      fail("cancellation is not reported")
+    }
+    catch (_: ProcessCanceledException) {
+    }
+    finally {
+      caller.join()
+    }
+    assertTrue(canceled.await(10, TimeUnit.SECONDS))
+  }
+
+  private fun name(connection: P4Connection): String = if (connection == first) "first" else "second"
+}
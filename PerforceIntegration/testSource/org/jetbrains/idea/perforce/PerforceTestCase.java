@@ -38,8 +38,11 @@ import org.jetbrains.idea.perforce.application.*;
 import org.jetbrains.idea.perforce.application.annotation.PerforceFileAnnotation;
 import org.jetbrains.idea.perforce.perforce.FormParser;
 import org.jetbrains.idea.perforce.perforce.PerforceChangeListHelper;
+import org.jetbrains.idea.perforce.perforce.PerforceContentCache;
+import org.jetbrains.idea.perforce.perforce.PerforceHistoryCache;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
 import org.jetbrains.idea.perforce.perforce.PerforceSettings;
+import org.jetbrains.idea.perforce.perforce.PerforceSubmittedChangesCache;
 import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection;
 import org.jetbrains.idea.perforce.perforce.connections.P4ConfigFields;
 import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
@@ -86,6 +89,10 @@ public abstract class PerforceTestCase extends AbstractJunitVcsTestCase {
     myTempDirFixture = IdeaTestFixtureFactory.getFixtureFactory().createTempDirTestFixture();
     myTempDirFixture.setUp();
     TestApplicationManager.getInstance();
+    // every test starts a fresh server on the same port, so entries cached by earlier tests would be stale
+    PerforceContentCache.getInstance().clear();
+    PerforceHistoryCache.getInstance().clear();
+    PerforceSubmittedChangesCache.getInstance().clear();
 
     String tempDir = myTempDirFixture.findOrCreateDir(FileUtil.sanitizeFileName(getTestName())).getPath();
 
@@ -9,12 +9,15 @@ import com.intellij.openapi.vcs.changes.VcsDirtyScopeManager;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.idea.perforce.application.PerforceChangeProvider;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
+import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class UnversionedTest extends PerforceTestCase {
@@ -119,4 +122,30 @@ public class UnversionedTest extends PerforceTestCase {
     assertEquals(FileStatus.UNKNOWN, myChangeListManager.getStatus(b));
   }
 
+  @Test
+  public void testUnchangedVersionedFileIsNotQueriedAfterForceRefresh() {
+    final VirtualFile a = createFileInCommand("a.txt", "a");
+    final VirtualFile b = createFileInCommand("b.txt", "b");
+    verify(runP4WithClient("add", new File(myClientRoot, "a.txt").toString()));
+    submitFile("//depot/a.txt");
+    a.refresh(false, false);
+
+    PerforceChangeProvider changeProvider = (PerforceChangeProvider)PerforceVcs.getInstance(myProject).getChangeProvider();
+    changeProvider.discardCache();
+    myDirtyScopeManager.markEverythingDirty();
+    myChangeListManager.ensureUpToDate();
+    assertEquals(FileStatus.NOT_CHANGED, myChangeListManager.getStatus(a));
+    assertEquals(FileStatus.UNKNOWN, myChangeListManager.getStatus(b));
+
+    List<String> commands = AbstractP4Connection.dumpCommands(myTestRootDisposable);
+    changeProvider.discardCache();
+    myDirtyScopeManager.markEverythingDirty();
+    myChangeListManager.ensureUpToDate();
+    assertEquals(FileStatus.NOT_CHANGED, myChangeListManager.getStatus(a));
+    assertEquals(FileStatus.UNKNOWN, myChangeListManager.getStatus(b));
+
+    // the have-list snapshot already knows a.txt, only the unversioned b.txt is asked again
+    commands.forEach(cmd -> assertFalse(cmd, cmd.contains("a.txt")));
+  }
+
 }
@@ -0,0 +1,104 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+public class PerforceContentCacheTest extends TestCase {
+  private static final ConnectionKey KEY = new ConnectionKey("server:1666", "client", "user");
+
+  private Path myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("p4content", null).toPath();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testOnlyFixedRevisionsAreCached() {
+    assertTrue(PerforceContentCache.isCacheable("#3"));
+    assertFalse(PerforceContentCache.isCacheable(null));
+    assertFalse(PerforceContentCache.isCacheable("#head"));
+    assertFalse(PerforceContentCache.isCacheable("#have"));
+    assertFalse(PerforceContentCache.isCacheable("@=12"));
+    assertFalse(PerforceContentCache.isCacheable("@label"));
+
+    PerforceContentCache cache = new PerforceContentCache(myDir, 1024 * 1024, true);
+    cache.put(KEY, "//depot/a.txt", "#head", bytes("content"));
+    assertNull(cache.get(KEY, "//depot/a.txt", "#head"));
+  }
+
+  public void testRoundTrip() {
+    for (boolean compress : new boolean[]{true, false}) {
+      PerforceContentCache cache = new PerforceContentCache(myDir.resolve(String.valueOf(compress)), 1024 * 1024, compress);
+      byte[] text = bytes("line\n".repeat(1000));
+      byte[] random = new byte[5000];
+      new Random(42).nextBytes(random);
+
+      cache.put(KEY, "//depot/a.txt", "#1", text);
+      cache.put(KEY, "//depot/b.bin", "#2", random);
+      cache.put(KEY, "//depot/empty.txt", "#1", new byte[0]);
+
+      assertTrue(Arrays.equals(text, cache.get(KEY, "//depot/a.txt", "#1")));
+      assertTrue(Arrays.equals(random, cache.get(KEY, "//depot/b.bin", "#2")));
+      assertEquals(0, cache.get(KEY, "//depot/empty.txt", "#1").length);
+      assertNull(cache.get(KEY, "//depot/a.txt", "#2"));
+      assertNull(cache.get(new ConnectionKey("server:1666", "other", "user"), "//depot/a.txt", "#1"));
+      if (compress) {
+        assertTrue(cache.getTotalSize() < text.length + random.length);
+      }
+    }
+  }
+
+  public void testLeastRecentlyUsedIsEvicted() {
+    PerforceContentCache cache = new PerforceContentCache(myDir, 2500, false);
+    cache.put(KEY, "//depot/a", "#1", new byte[1000]);
+    cache.put(KEY, "//depot/b", "#1", new byte[1000]);
+    assertNotNull(cache.get(KEY, "//depot/a", "#1"));
+
+    cache.put(KEY, "//depot/c", "#1", new byte[1000]);
+
+    assertNotNull(cache.get(KEY, "//depot/a", "#1"));
+    assertNull(cache.get(KEY, "//depot/b", "#1"));
+    assertNotNull(cache.get(KEY, "//depot/c", "#1"));
+    assertTrue(cache.getTotalSize() <= 2500);
+  }
+
+  public void testEntriesSurviveRestart() throws IOException {
+    PerforceContentCache cache = new PerforceContentCache(myDir, 1024 * 1024, true);
+    cache.put(KEY, "//depot/a.txt", "#5", bytes("persisted"));
+
+    PerforceContentCache reopened = new PerforceContentCache(myDir, 1024 * 1024, true);
+    assertTrue(reopened.contains(KEY, "//depot/a.txt", "#5"));
+    assertEquals("persisted", new String(reopened.get(KEY, "//depot/a.txt", "#5"), StandardCharsets.UTF_8));
+
+    File[] files = myDir.toFile().listFiles();
+    assertNotNull(files);
+    assertEquals(1, files.length);
+    FileUtil.writeToFile(files[0], "garbage");
+    PerforceContentCache corrupted = new PerforceContentCache(myDir, 1024 * 1024, true);
+    assertNull(corrupted.get(KEY, "//depot/a.txt", "#5"));
+    assertFalse(corrupted.contains(KEY, "//depot/a.txt", "#5"));
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,63 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+
+import java.nio.file.Path;
+
+public class PerforceHistoryCacheTest extends TestCase {
+  private static final ConnectionKey KEY = new ConnectionKey("server:1666", "client", "user");
+  private static final String OPTIONS = "-q -dw";
+
+  private Path myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("p4history", null).toPath();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testFilelogIsValidWhileNoChangeIsSubmitted() {
+    PerforceHistoryCache cache = new PerforceHistoryCache(myDir, 1024 * 1024);
+    cache.putFilelog(KEY, "//depot/a.txt", "filelog -i -l", 12, "... #2 change 12\n");
+
+    assertEquals("... #2 change 12\n", cache.getFilelog(KEY, "//depot/a.txt", "filelog -i -l", 12));
+    assertNull(cache.getFilelog(KEY, "//depot/a.txt", "filelog -i -l", 13));
+    assertNull(cache.getFilelog(KEY, "//depot/a.txt", "filelog -l", 12));
+    assertNull(cache.getFilelog(new ConnectionKey("server:1666", "other", "user"), "//depot/a.txt", "filelog -i -l", 12));
+
+    cache.putFilelog(KEY, "//depot/a.txt", "filelog -i -l", 13, "... #3 change 13\n");
+    assertNull(cache.getFilelog(KEY, "//depot/a.txt", "filelog -i -l", 12));
+    assertEquals("... #3 change 13\n", new PerforceHistoryCache(myDir, 1024 * 1024).getFilelog(KEY, "//depot/a.txt", "filelog -i -l", 13));
+  }
+
+  public void testLatestAnnotatedRevision() {
+    PerforceHistoryCache cache = new PerforceHistoryCache(myDir, 1024 * 1024);
+    assertEquals(-1, cache.getLatestAnnotatedRevision(KEY, "//depot/a.txt", OPTIONS));
+
+    cache.putAnnotation(KEY, "//depot/a.txt", 5, OPTIONS, "5: a\n");
+    cache.putAnnotation(KEY, "//depot/a.txt", 3, OPTIONS, "3: a\n");
+    assertEquals(5, cache.getLatestAnnotatedRevision(KEY, "//depot/a.txt", OPTIONS));
+    assertEquals(-1, cache.getLatestAnnotatedRevision(KEY, "//depot/a.txt", "-q -i -dw"));
+    assertEquals("3: a\n", cache.getAnnotation(KEY, "//depot/a.txt", 3, OPTIONS));
+    assertNull(cache.getAnnotation(KEY, "//depot/a.txt", 4, OPTIONS));
+  }
+
+  public void testDisabled() {
+    PerforceHistoryCache cache = new PerforceHistoryCache(myDir, 0);
+    assertFalse(cache.isEnabled());
+    cache.putAnnotation(KEY, "//depot/a.txt", 5, OPTIONS, "5: a\n");
+    assertNull(cache.getAnnotation(KEY, "//depot/a.txt", 5, OPTIONS));
+  }
+}
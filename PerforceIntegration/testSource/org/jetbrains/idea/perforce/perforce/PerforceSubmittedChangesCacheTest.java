@@ -0,0 +1,76 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.idea.perforce.ChangeListData;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public class PerforceSubmittedChangesCacheTest extends TestCase {
+  private static final ConnectionKey KEY = new ConnectionKey("server:1666", "client", "user");
+
+  private Path myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("p4changes", null).toPath();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testDescriptionRoundTrip() {
+    PerforceSubmittedChangesCache cache = new PerforceSubmittedChangesCache(myDir, 1024 * 1024);
+    cache.putDescription(KEY, 12, new PerforceSubmittedChangesCache.Description("fix\nmultiline", List.of(
+      new PerforceSubmittedChangesCache.SubmittedFile(PerforceAbstractChange.EDIT, "//depot/a.txt", 3),
+      new PerforceSubmittedChangesCache.SubmittedFile(PerforceAbstractChange.ADD, "//depot/b.txt", 1))));
+
+    PerforceSubmittedChangesCache.Description description = new PerforceSubmittedChangesCache(myDir, 1024 * 1024).getDescription(KEY, 12);
+    assertNotNull(description);
+    assertEquals("fix\nmultiline", description.getDescription());
+    assertEquals(2, description.getFiles().size());
+    assertEquals(PerforceAbstractChange.EDIT, description.getFiles().get(0).getType());
+    assertEquals("//depot/a.txt", description.getFiles().get(0).getDepotPath());
+    assertEquals(3, description.getFiles().get(0).getRevision());
+    assertEquals(PerforceAbstractChange.ADD, description.getFiles().get(1).getType());
+
+    assertNull(cache.getDescription(KEY, 13));
+    assertNull(cache.getDescription(new ConnectionKey("other:1666", "client", "user"), 12));
+  }
+
+  public void testChangesRoundTrip() {
+    PerforceSubmittedChangesCache cache = new PerforceSubmittedChangesCache(myDir, 1024 * 1024);
+    cache.putChanges(KEY, "changes -s submitted //depot/...", new PerforceSubmittedChangesCache.ChangesPage(
+      List.of(createData(5, "second"), createData(2, null)), false));
+
+    PerforceSubmittedChangesCache.ChangesPage page = cache.getChanges(KEY, "changes -s submitted //depot/...");
+    assertNotNull(page);
+    assertFalse(page.isComplete());
+    assertEquals(2, page.getLists().size());
+    assertEquals(createData(5, "second"), page.getLists().get(0));
+    assertEquals(createData(2, null), page.getLists().get(1));
+
+    assertNull(cache.getChanges(KEY, "changes -s submitted -u user //depot/..."));
+    assertNull(cache.getChanges(new ConnectionKey("server:1666", "other", "user"), "changes -s submitted //depot/..."));
+  }
+
+  private static ChangeListData createData(long number, String description) {
+    ChangeListData data = new ChangeListData();
+    data.NUMBER = number;
+    data.DESCRIPTION = description;
+    data.USER = "user";
+    data.CLIENT = "client";
+    data.DATE = "2024/01/02 03:04:05";
+    return data;
+  }
+}
@@ -0,0 +1,174 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.ThrowableConsumer;
+import junit.framework.TestCase;
+import org.jetbrains.idea.perforce.ChangeListData;
+import org.jetbrains.idea.perforce.StreamGobbler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StreamingOutputParsingTest extends TestCase {
+  private static final Logger LOG = Logger.getInstance(StreamingOutputParsingTest.class);
+  private static final int BENCHMARK_FSTAT_RECORDS = 200_000;
+
+  public void testChangesStreamingMatchesBuffered() throws IOException {
+    String output = """
+      Change 3 on 2024/01/03 10:00:00 by user@client 'Third'
+
+      \tThird
+      \tmulti-line description
+
+      Change 2 on 2024/01/02 10:00:00 by other@client2 'Second'
+
+      \tSecond
+
+      Change 1 on 2024/01/01 10:00:00 by user@client 'First'
+
+      \tFirst
+      """;
+
+    List<ChangeListData> buffered = OutputMessageParser.processChangesOutput(output);
+    List<ChangeListData> streamed = new ArrayList<>();
+    OutputMessageParser.processChangesOutput(new BufferedReader(new StringReader(output)), streamed::add);
+
+    assertEquals(3, streamed.size());
+    for (int i = 0; i < buffered.size(); i++) {
+      assertEquals(buffered.get(i).NUMBER, streamed.get(i).NUMBER);
+      assertEquals(buffered.get(i).USER, streamed.get(i).USER);
+      assertEquals(buffered.get(i).CLIENT, streamed.get(i).CLIENT);
+      assertEquals(buffered.get(i).DATE, streamed.get(i).DATE);
+      assertEquals(buffered.get(i).DESCRIPTION, streamed.get(i).DESCRIPTION);
+    }
+    assertEquals("Third\nmulti-line description", streamed.get(0).DESCRIPTION);
+  }
+
+  public void testOpenedStreamingMatchesBuffered() throws IOException {
+    String output = """
+      //depot/a.txt#3 - edit default change (text)
+      //depot/b.txt#1 - add change 12 (text)
+      //depot/c.txt#7 - delete change 15 (binary)
+      """;
+
+    List<PerforceChange> buffered = PerforceOutputMessageParser.processOpenedOutput(output);
+    List<PerforceChange> streamed = new ArrayList<>();
+    PerforceOutputMessageParser.processOpenedOutput(new BufferedReader(new StringReader(output)), streamed::add);
+
+    assertEquals(3, streamed.size());
+    for (int i = 0; i < buffered.size(); i++) {
+      assertEquals(buffered.get(i).getDepotPath(), streamed.get(i).getDepotPath());
+      assertEquals(buffered.get(i).getRevision(), streamed.get(i).getRevision());
+      assertEquals(buffered.get(i).getChangeList(), streamed.get(i).getChangeList());
+      assertEquals(buffered.get(i).getType(), streamed.get(i).getType());
+    }
+  }
+
+  public void testFStatFromFakeP4() throws Exception {
+    if (SystemInfo.isWindows) return;
+    compareFStatFromFakeP4(1_000);
+  }
+
+  /**
+   * Benchmark: a fake p4 executable replays a recorded fstat output of {@link #BENCHMARK_FSTAT_RECORDS} files,
+   * which is parsed once after collecting the output and once while the process writes it.
+   * Run with {@code -Dperforce.streaming.benchmark=true}.
+   */
+  public void testFStatFromFakeP4Benchmark() throws Exception {
+    if (SystemInfo.isWindows || !Boolean.getBoolean("perforce.streaming.benchmark")) return;
+    long[] millis = compareFStatFromFakeP4(BENCHMARK_FSTAT_RECORDS);
+    LOG.info("fstat of " + BENCHMARK_FSTAT_RECORDS + " files: buffered " + millis[0] + " ms, streaming " + millis[1] + " ms");
+  }
+
+  /**
+   * @return the time taken to parse the collected output and to parse the output while it's written, in ms
+   */
+  private static long[] compareFStatFromFakeP4(int records) throws Exception {
+    File dir = FileUtil.createTempDirectory("fake_p4", null);
+    try {
+      File recorded = new File(dir, "fstat.out");
+      try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(recorded), StandardCharsets.UTF_8))) {
+        for (int i = 0; i < records; i++) {
+          writer.write("... depotFile //depot/module" + (i % 100) + "/File" + i + ".java\n");
+          writer.write("... clientFile /work/module" + (i % 100) + "/File" + i + ".java\n");
+          writer.write("... headAction edit\n");
+          writer.write("... headType text\n");
+          writer.write("... headTime 1094486436\n");
+          writer.write("... headRev 3\n");
+          writer.write("... headChange " + (i + 1) + "\n");
+          writer.write("... haveRev 3\n\n");
+        }
+      }
+      File p4 = new File(dir, "p4");
+      FileUtil.writeToFile(p4, "#!/bin/sh\ncat '" + recorded.getPath() + "'\n");
+      assertTrue(p4.setExecutable(true));
+
+      long start = System.nanoTime();
+      StreamGobbler buffered = runFakeP4(p4, null);
+      List<FStat> collected = new ArrayList<>();
+      buffered.allowSafeStreamUsage(stream -> readFStats(stream, collected));
+      long bufferedMillis = (System.nanoTime() - start) / 1_000_000;
+
+      start = System.nanoTime();
+      List<FStat> streamed = new ArrayList<>();
+      StreamGobbler streaming = runFakeP4(p4, stream -> readFStats(stream, streamed));
+      long streamingMillis = (System.nanoTime() - start) / 1_000_000;
+
+      assertNull(streaming.getConsumerException());
+      assertEquals(records, collected.size());
+      assertEquals(records, streamed.size());
+      assertEquals(collected.get(records - 1).clientFile, streamed.get(records - 1).clientFile);
+      assertEquals(recorded.length(), streaming.getResultLength());
+      return new long[]{bufferedMillis, streamingMillis};
+    }
+    finally {
+      FileUtil.delete(dir);
+    }
+  }
+
+  public void testConsumerErrorDoesNotBlockProcess() throws Exception {
+    if (SystemInfo.isWindows) return;
+
+    File dir = FileUtil.createTempDirectory("fake_p4", null);
+    try {
+      File p4 = new File(dir, "p4");
+      // much more output than fits into a pipe buffer
+      FileUtil.writeToFile(p4, "#!/bin/sh\ni=0\nwhile [ $i -lt 20000 ]; do echo \"garbage line $i\"; i=$((i+1)); done\n");
+      assertTrue(p4.setExecutable(true));
+
+      StreamGobbler streaming = runFakeP4(p4, stream -> readFStats(stream, new ArrayList<>()));
+      assertNotNull(streaming.getConsumerException());
+      assertTrue(streaming.getConsumerException().getCause() instanceof VcsException);
+    }
+    finally {
+      FileUtil.delete(dir);
+    }
+  }
+
+  private static StreamGobbler runFakeP4(File p4, ThrowableConsumer<InputStream, IOException> consumer)
+    throws IOException, InterruptedException {
+    Process process = new ProcessBuilder(p4.getPath()).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+    StreamGobbler gobbler = new StreamGobbler(process.getInputStream(), consumer);
+    gobbler.run();
+    assertEquals(0, process.waitFor());
+    return gobbler;
+  }
+
+  private static void readFStats(InputStream stream, List<FStat> result) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    try {
+      FStat fStat;
+      while ((fStat = FStat.parseFStat(reader)) != null) {
+        result.add(fStat);
+      }
+    }
+    catch (VcsException e) {
+      throw new IOException(e);
+    }
+  }
+}
@@ -12,6 +12,7 @@ buildscript {
       id("org.jetbrains.kotlin.jvm") version "2.1.0"
       id("org.jetbrains.intellij.platform") version "2.2.1"
       id("org.jetbrains.intellij.platform.settings") version "2.2.1"
+      id("me.champeau.jmh") version "0.7.2"
     }
   }
 }
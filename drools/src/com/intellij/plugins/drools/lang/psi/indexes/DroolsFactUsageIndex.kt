@@ -0,0 +1,139 @@
+// Copyright 2000-2024 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package com.intellij.plugins.drools.lang.psi.indexes
+
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.plugins.drools.DroolsFileType
+import com.intellij.plugins.drools.lang.lexer.DroolsTokenTypes
+import com.intellij.plugins.drools.lang.psi.*
+import com.intellij.psi.*
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.search.SearchScope
+import com.intellij.psi.search.searches.ClassInheritorsSearch
+import com.intellij.psi.util.CachedValue
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.psi.util.PsiTreeUtil
+import com.intellij.util.Processor
+import com.intellij.util.indexing.*
+import com.intellij.util.io.EnumeratorStringDescriptor
+import com.intellij.util.io.KeyDescriptor
+
+/**
+ * Records, per `.drl` file, the short names of the fact types it mentions (LHS patterns, imports, declared and referenced types, types
+ * in Java consequences), the identifiers used in constraints and consequences, and the identifiers accessed through a qualifier whose
+ * type is not known without resolving it (`$o.customer.name`, `c.getName()`, members assigned in a `modify` block).
+ *
+ * Property and method usage searches only visit files mentioning the member and either the class or an untyped access to the member.
+ */
+internal class DroolsFactUsageIndex : ScalarIndexExtension<String>() {
+
+  companion object {
+    val id: ID<String, Void> = ID.create("drools.factUsageIndex")
+
+    private const val TYPE_PREFIX = "T:"
+    private const val MEMBER_PREFIX = "M:"
+    private const val UNTYPED_ACCESS_PREFIX = "A:"
+
+    // classes like java.lang.Object have too many inheritors for the type names to narrow anything
+    private const val MAX_FACT_TYPE_NAMES = 1000
+
+    private val FACT_TYPE_NAMES_KEY = Key.create<CachedValue<Set<String>?>>("drools.factTypeNames")
+
+    /**
+     * Narrows `scope` to the Drools files mentioning one of `memberNames` and either `psiClass` (or one of its inheritors)
+     * or an access to the member through an untyped qualifier.
+     * Local scopes are returned unchanged, so is `scope` when the class has too many inheritors to narrow it.
+     */
+    @JvmStatic
+    fun restrictToFactUsages(scope: SearchScope, psiClass: PsiClass, memberNames: Collection<String>): SearchScope {
+      if (scope !is GlobalSearchScope) return scope
+      val typeNames = factTypeNames(psiClass) ?: return scope
+      val project = psiClass.project
+      val memberFiles = findFiles(project, memberNames.map { MEMBER_PREFIX + it }, scope)
+      if (memberFiles.isEmpty()) return GlobalSearchScope.EMPTY_SCOPE
+      val factFiles = findFiles(project, typeNames.map { TYPE_PREFIX + it } + memberNames.map { UNTYPED_ACCESS_PREFIX + it }, scope)
+      return GlobalSearchScope.filesScope(project, memberFiles.intersect(factFiles))
+    }
+
+    private fun factTypeNames(psiClass: PsiClass): Set<String>? {
+      return CachedValuesManager.getManager(psiClass.project).getCachedValue(psiClass, FACT_TYPE_NAMES_KEY, {
+        val names = mutableSetOf<String>()
+        psiClass.name?.let { names.add(it) }
+        val complete = ClassInheritorsSearch.search(psiClass, GlobalSearchScope.allScope(psiClass.project), true).forEach(Processor { inheritor ->
+          inheritor.name?.let { names.add(it) }
+          names.size <= MAX_FACT_TYPE_NAMES
+        })
+        CachedValueProvider.Result.create(if (complete) names else null, PsiModificationTracker.MODIFICATION_COUNT)
+      }, false)
+    }
+
+    private fun findFiles(project: Project, keys: Collection<String>, scope: GlobalSearchScope): Set<VirtualFile> {
+      val restricted = GlobalSearchScope.getScopeRestrictedByFileTypes(scope, DroolsFileType.DROOLS_FILE_TYPE)
+      val files = mutableSetOf<VirtualFile>()
+      for (key in keys) {
+        files.addAll(FileBasedIndex.getInstance().getContainingFiles(id, key, restricted))
+      }
+      return files
+    }
+
+    private fun isQualified(identifier: DroolsIdentifier): Boolean {
+      val previous = PsiTreeUtil.prevLeaf(identifier, true)?.node?.elementType
+      return previous == DroolsTokenTypes.DOT || previous == DroolsTokenTypes.NULL_DOT
+    }
+  }
+
+  override fun getName(): ID<String, Void> = id
+
+  override fun getIndexer(): DataIndexer<String, Void, FileContent> {
+    return DataIndexer { inputData ->
+      val file = inputData.psiFile as? DroolsFile ?: return@DataIndexer emptyMap<String, Void>()
+      val keys = hashMapOf<String, Void?>()
+      for (import in file.imports) {
+        import.importedClassName?.let { keys[TYPE_PREFIX + StringUtil.getShortName(it)] = null }
+      }
+      file.accept(object : PsiRecursiveElementWalkingVisitor() {
+        override fun visitElement(element: PsiElement) {
+          when (element) {
+            is DroolsLhsPatternType -> addTypeKey(element.qualifiedIdentifier)
+            is DroolsType -> addTypeKey(element.qualifiedIdentifier)
+            is DroolsCreatedQualifiedIdentifier -> addTypeKey(element.qualifiedIdentifier)
+            is DroolsTypeDeclaration -> element.name?.let { keys[TYPE_PREFIX + it] = null }
+            is DroolsIdentifier -> {
+              keys[MEMBER_PREFIX + element.text] = null
+              if (isQualified(element) || PsiTreeUtil.getParentOfType(element, DroolsModifyRhsStatement::class.java) != null) {
+                keys[UNTYPED_ACCESS_PREFIX + element.text] = null
+              }
+            }
+            // consequences are parsed as Java
+            is PsiJavaCodeReferenceElement -> element.referenceName?.let { name ->
+              keys[MEMBER_PREFIX + name] = null
+              keys[TYPE_PREFIX + name] = null
+              if (element is PsiReferenceExpression) {
+                keys[UNTYPED_ACCESS_PREFIX + name] = null
+              }
+            }
+          }
+          super.visitElement(element)
+        }
+
+        private fun addTypeKey(qualifiedIdentifier: DroolsQualifiedIdentifier?) {
+          qualifiedIdentifier?.identifierList?.lastOrNull()?.let { keys[TYPE_PREFIX + it.text] = null }
+        }
+      })
+      @Suppress("UNCHECKED_CAST")
+      keys as Map<String, Void>
+    }
+  }
+
+  override fun getKeyDescriptor(): KeyDescriptor<String> = EnumeratorStringDescriptor.INSTANCE
+
+  override fun getVersion(): Int = 2
+
+  override fun getInputFilter(): FileBasedIndex.InputFilter = DefaultFileTypeSpecificInputFilter(DroolsFileType.DROOLS_FILE_TYPE)
+
+  override fun dependsOnFileContent(): Boolean = true
+}
@@ -0,0 +1,219 @@
+// Copyright 2000-2024 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package com.intellij.plugins.drools.lang.psi.indexes
+
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.plugins.drools.DroolsFileType
+import com.intellij.plugins.drools.lang.psi.*
+import com.intellij.psi.PsiManager
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.util.PsiTreeUtil
+import com.intellij.util.indexing.*
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.DataInputOutputUtil
+import com.intellij.util.io.EnumeratorStringDescriptor
+import com.intellij.util.io.KeyDescriptor
+import java.io.DataInput
+import java.io.DataOutput
+
+/**
+ * Maps rule names, rule attribute values and the fact types each rule reads (LHS patterns) or writes (`insert`, `insertLogical`,
+ * `modify`, `update`, `retract`/`delete`) to the start offsets of the matching rules, so rule-base wide queries only parse the
+ * files that contain a hit.
+ */
+internal class DroolsRuleIndex : FileBasedIndexExtension<String, List<Int>>() {
+
+  companion object {
+    val id: ID<String, List<Int>> = ID.create("drools.ruleIndex")
+
+    private const val NAME_PREFIX = "N:"
+    private const val ATTRIBUTE_PREFIX = "A:"
+    private const val READ_PREFIX = "R:"
+    private const val WRITE_PREFIX = "W:"
+
+    @JvmStatic
+    fun findRulesByName(project: Project, ruleName: String, scope: GlobalSearchScope): List<DroolsRuleStatement> =
+      findRules(project, NAME_PREFIX + ruleName, scope)
+
+    /**
+     * Rules declaring `attributeName` (e.g. `agenda-group` or `salience`) with the given value; string values are matched unquoted.
+     */
+    @JvmStatic
+    fun findRulesByAttribute(project: Project, attributeName: String, value: String, scope: GlobalSearchScope): List<DroolsRuleStatement> =
+      findRules(project, attributeKey(attributeName, value), scope)
+
+    /**
+     * Rules with a LHS pattern on the fact type with the given short name, i.e. the rules affected when such a fact changes.
+     */
+    @JvmStatic
+    fun findRulesReading(project: Project, factTypeName: String, scope: GlobalSearchScope): List<DroolsRuleStatement> =
+      findRules(project, READ_PREFIX + factTypeName, scope)
+
+    @JvmStatic
+    fun findRulesWriting(project: Project, factTypeName: String, scope: GlobalSearchScope): List<DroolsRuleStatement> =
+      findRules(project, WRITE_PREFIX + factTypeName, scope)
+
+    /**
+     * Whether [findRulesByAttribute] finds a rule other than [except], checked on the index only without parsing any file.
+     */
+    @JvmStatic
+    fun hasRulesByAttribute(attributeName: String, value: String, scope: GlobalSearchScope, except: DroolsRuleStatement?): Boolean =
+      hasRules(attributeKey(attributeName, value), scope, except)
+
+    /**
+     * Whether [findRulesReading] finds a rule other than [except], checked on the index only without parsing any file.
+     */
+    @JvmStatic
+    fun hasRulesReading(factTypeName: String, scope: GlobalSearchScope, except: DroolsRuleStatement?): Boolean =
+      hasRules(READ_PREFIX + factTypeName, scope, except)
+
+    /**
+     * Whether [findRulesWriting] finds a rule other than [except], checked on the index only without parsing any file.
+     */
+    @JvmStatic
+    fun hasRulesWriting(factTypeName: String, scope: GlobalSearchScope, except: DroolsRuleStatement?): Boolean =
+      hasRules(WRITE_PREFIX + factTypeName, scope, except)
+
+    private fun findRules(project: Project, key: String, scope: GlobalSearchScope): List<DroolsRuleStatement> {
+      val psiManager = PsiManager.getInstance(project)
+      val result = mutableListOf<DroolsRuleStatement>()
+      FileBasedIndex.getInstance().processValues(id, key, null, { file, offsets ->
+        val droolsFile = psiManager.findFile(file) as? DroolsFile ?: return@processValues true
+        for (offset in offsets) {
+          PsiTreeUtil.findElementOfClassAtOffset(droolsFile, offset, DroolsRuleStatement::class.java, true)?.let { result.add(it) }
+        }
+        true
+      }, GlobalSearchScope.getScopeRestrictedByFileTypes(scope, DroolsFileType.DROOLS_FILE_TYPE))
+      return result
+    }
+
+    private fun hasRules(key: String, scope: GlobalSearchScope, except: DroolsRuleStatement?): Boolean {
+      val exceptFile = except?.containingFile?.virtualFile
+      val exceptOffset = except?.textRange?.startOffset
+      return !FileBasedIndex.getInstance().processValues(id, key, null, { file, offsets ->
+        offsets.all { file == exceptFile && it == exceptOffset }
+      }, GlobalSearchScope.getScopeRestrictedByFileTypes(scope, DroolsFileType.DROOLS_FILE_TYPE))
+    }
+
+    /**
+     * Processes the names of all rules in [scope], unquoted.
+     */
+    fun processRuleNames(project: Project, scope: GlobalSearchScope, processor: (String) -> Boolean): Boolean =
+      FileBasedIndex.getInstance().processAllKeys(id, { key ->
+        !key.startsWith(NAME_PREFIX) || processor(key.substring(NAME_PREFIX.length))
+      }, GlobalSearchScope.getScopeRestrictedByFileTypes(scope, DroolsFileType.DROOLS_FILE_TYPE), null)
+
+    /**
+     * Short name of the fact type a LHS pattern matches, as stored under the "reading" key of its rule.
+     */
+    fun patternTypeName(pattern: DroolsLhsPattern): String? = shortName(pattern.lhsPatternType.qualifiedIdentifier)
+
+    /**
+     * Short names of the fact types `insert`, `insertLogical`, `modify`, `update` or `retract`/`delete` [statement] writes,
+     * as stored under the "writing" key of its rule.
+     */
+    fun writtenFactTypes(statement: DroolsSimpleRhsStatement): Collection<String> {
+      val rule = PsiTreeUtil.getParentOfType(statement, DroolsRuleStatement::class.java) ?: return emptyList()
+      return writtenTypes(statement, lhsBindings(rule))
+    }
+
+    private fun lhsBindings(rule: DroolsRuleStatement): Map<String, Set<String>> {
+      val bindings = hashMapOf<String, MutableSet<String>>()
+      val lhs = rule.lhs ?: return bindings
+      for (pattern in PsiTreeUtil.findChildrenOfType(lhs, DroolsLhsPattern::class.java)) {
+        val typeName = patternTypeName(pattern) ?: continue
+        val bind = pattern.parent as? DroolsLhsPatternBind
+        bind?.name?.let { bindings.getOrPut(it) { mutableSetOf() }.add(typeName) }
+      }
+      return bindings
+    }
+
+    private fun writtenTypes(statement: DroolsSimpleRhsStatement, bindings: Map<String, Set<String>>): Collection<String> {
+      val target = when (statement) {
+        is DroolsInsertRhsStatement -> statement.parExpr?.expression
+        is DroolsInsertLogicalRhsStatement -> statement.expressionList.firstOrNull()
+        is DroolsModifyRhsStatement -> statement.expressionList.firstOrNull()
+        is DroolsUpdateRhsStatement -> statement.parExpr?.expression
+        is DroolsRetractRhsStatement -> statement.parExpr?.expression
+        else -> null
+      } ?: return emptyList()
+      val creator = PsiTreeUtil.findChildOfType(target, DroolsCreatedQualifiedIdentifier::class.java, false)
+      if (creator != null) {
+        return listOfNotNull(shortName(creator.qualifiedIdentifier))
+      }
+      return bindings[target.text.trim()] ?: emptyList()
+    }
+
+    private fun shortName(qualifiedIdentifier: DroolsQualifiedIdentifier?): String? =
+      qualifiedIdentifier?.identifierList?.lastOrNull()?.text
+
+    private fun attributeKey(attributeName: String, value: String) = "$ATTRIBUTE_PREFIX$attributeName=${StringUtil.unquoteString(value)}"
+  }
+
+  override fun getName(): ID<String, List<Int>> = id
+
+  override fun getIndexer(): DataIndexer<String, List<Int>, FileContent> {
+    return DataIndexer { inputData ->
+      val file = inputData.psiFile as? DroolsFile ?: return@DataIndexer emptyMap<String, List<Int>>()
+      val result = hashMapOf<String, MutableList<Int>>()
+      for (rule in file.rules) {
+        val offset = rule.textRange.startOffset
+        val keys = linkedSetOf<String>()
+        keys.add(NAME_PREFIX + StringUtil.unquoteString(rule.ruleName.stringId.text))
+        rule.ruleAttributes?.attributeList?.forEach { attribute ->
+          val value = attribute.expression ?: attribute.decimal ?: attribute.chunk
+          if (value != null) keys.add(attributeKey(attribute.attributeName, value.text))
+        }
+        rule.lhs?.let { lhs ->
+          for (pattern in PsiTreeUtil.findChildrenOfType(lhs, DroolsLhsPattern::class.java)) {
+            keys.add(READ_PREFIX + (patternTypeName(pattern) ?: continue))
+          }
+        }
+        val bindings = lhsBindings(rule)
+        for (rhs in rule.rhsList) {
+          for (statement in PsiTreeUtil.findChildrenOfType(rhs, DroolsSimpleRhsStatement::class.java)) {
+            for (typeName in writtenTypes(statement, bindings)) {
+              keys.add(WRITE_PREFIX + typeName)
+            }
+          }
+        }
+        for (key in keys) {
+          result.getOrPut(key) { mutableListOf() }.add(offset)
+        }
+      }
+      result
+    }
+  }
+
+  override fun getKeyDescriptor(): KeyDescriptor<String> = EnumeratorStringDescriptor.INSTANCE
+
+  override fun getValueExternalizer(): DataExternalizer<List<Int>> = OffsetsExternalizer
+
+  override fun getVersion(): Int = 1
+
+  override fun getInputFilter(): FileBasedIndex.InputFilter = DefaultFileTypeSpecificInputFilter(DroolsFileType.DROOLS_FILE_TYPE)
+
+  override fun dependsOnFileContent(): Boolean = true
+
+  private object OffsetsExternalizer : DataExternalizer<List<Int>> {
+    override fun save(out: DataOutput, value: List<Int>) {
+      DataInputOutputUtil.writeINT(out, value.size)
+      var previous = 0
+      for (offset in value) {
+        DataInputOutputUtil.writeINT(out, offset - previous)
+        previous = offset
+      }
+    }
+
+    override fun read(input: DataInput): List<Int> {
+      val size = DataInputOutputUtil.readINT(input)
+      val result = ArrayList<Int>(size)
+      var previous = 0
+      repeat(size) {
+        previous += DataInputOutputUtil.readINT(input)
+        result.add(previous)
+      }
+      return result
+    }
+  }
+}
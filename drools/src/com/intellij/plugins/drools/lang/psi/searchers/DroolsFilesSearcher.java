@@ -6,6 +6,7 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.plugins.drools.lang.psi.DroolsFile;
 import com.intellij.plugins.drools.lang.psi.DroolsFunctionStatement;
 import com.intellij.plugins.drools.lang.psi.DroolsVariable;
+import com.intellij.plugins.drools.lang.psi.indexes.DroolsFactUsageIndex;
 import com.intellij.plugins.drools.lang.psi.util.DroolsBeanPropertyLightVariable;
 import com.intellij.plugins.drools.lang.psi.util.DroolsLightClass;
 import com.intellij.plugins.drools.lang.psi.util.processors.DroolsFunctionsProcessor;
@@ -13,11 +14,14 @@ import com.intellij.psi.*;
 import com.intellij.psi.impl.beanProperties.BeanProperty;
 import com.intellij.psi.impl.beanProperties.BeanPropertyElement;
 import com.intellij.psi.search.RequestResultProcessor;
+import com.intellij.psi.search.SearchScope;
 import com.intellij.psi.search.UsageSearchContext;
 import com.intellij.psi.search.searches.ReferencesSearch;
 import com.intellij.util.Processor;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 public final class DroolsFilesSearcher extends QueryExecutorBase<PsiReference, ReferencesSearch.SearchParameters> {
 
   public DroolsFilesSearcher() {
@@ -61,10 +65,15 @@ public final class DroolsFilesSearcher extends QueryExecutorBase<PsiReference, R
     if (search.getContainingFile() instanceof DroolsFile) {
       final String propertyName = search.getName();
       final PsiMethod method = search.getMethod();
+      final PsiClass psiClass = method.getContainingClass();
 
-      parameters.getOptimizer().searchWord(propertyName, parameters.getEffectiveSearchScope(), UsageSearchContext.ANY, false, method,
+      SearchScope scope = parameters.getEffectiveSearchScope();
+      if (psiClass != null) {
+        scope = DroolsFactUsageIndex.restrictToFactUsages(scope, psiClass, List.of(propertyName, method.getName()));
+      }
+      parameters.getOptimizer().searchWord(propertyName, scope, UsageSearchContext.ANY, false, method,
                                            new DroolsBeanPropertyResultProcessor(search));
-      parameters.getOptimizer().searchWord(method.getName(), parameters.getEffectiveSearchScope(), UsageSearchContext.ANY, false, method);
+      parameters.getOptimizer().searchWord(method.getName(), scope, UsageSearchContext.ANY, false, method);
     }
   }
 
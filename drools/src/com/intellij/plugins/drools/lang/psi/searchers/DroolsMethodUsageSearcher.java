@@ -3,6 +3,7 @@ package com.intellij.plugins.drools.lang.psi.searchers;
 
 import com.intellij.openapi.application.QueryExecutorBase;
 import com.intellij.plugins.drools.DroolsFileType;
+import com.intellij.plugins.drools.lang.psi.indexes.DroolsFactUsageIndex;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.beanProperties.BeanPropertyElement;
 import com.intellij.psi.impl.light.LightVariableBuilder;
@@ -15,6 +16,8 @@ import com.intellij.psi.util.PropertyUtilBase;
 import com.intellij.util.Processor;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 public final class DroolsMethodUsageSearcher extends QueryExecutorBase<PsiReference, MethodReferencesSearch.SearchParameters> {
 
   public DroolsMethodUsageSearcher() {
@@ -35,6 +38,7 @@ public final class DroolsMethodUsageSearcher extends QueryExecutorBase<PsiRefere
       scope = GlobalSearchScope.getScopeRestrictedByFileTypes((GlobalSearchScope)scope, DroolsFileType.DROOLS_FILE_TYPE);
     }
     final String propName = PropertyUtilBase.getPropertyNameByGetter(method);
+    scope = DroolsFactUsageIndex.restrictToFactUsages(scope, psiClass, List.of(propName, method.getName()));
     queryParameters.getOptimizer().searchWord(propName, scope, UsageSearchContext.ANY, true, method, new MethodRequestResultProcessor(method));
   }
 
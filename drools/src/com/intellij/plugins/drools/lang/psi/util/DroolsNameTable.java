@@ -0,0 +1,104 @@
+// Copyright 2000-2024 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package com.intellij.plugins.drools.lang.psi.util;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.plugins.drools.lang.psi.*;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PropertyUtilBase;
+import com.intellij.util.containers.MultiMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+
+/**
+ * Simple-name lookup table of the top-level declarations of a {@link DroolsFile}: imports, declared types, globals, functions and
+ * queries. Only names are stored, so the table depends on the file itself and is rebuilt when the file changes; resolving imported
+ * names to classes and packages is left to the caller.
+ */
+public final class DroolsNameTable {
+  private final MultiMap<String, String> myImportedClasses = new MultiMap<>();
+  private final MultiMap<String, String> myImportedPackages = new MultiMap<>();
+  private final MultiMap<String, DroolsTypeDeclaration> myDeclaredTypes = new MultiMap<>();
+  private final MultiMap<String, PsiElement> myMembers = new MultiMap<>();
+
+  private DroolsNameTable(@NotNull DroolsFile droolsFile) {
+    for (DroolsImport droolsImport : droolsFile.getImports()) {
+      String className = droolsImport.getImportedClassName();
+      if (className != null) {
+        myImportedClasses.putValue(StringUtil.getShortName(className), className);
+      }
+      String packageName = droolsImport.getImportedPackage();
+      if (packageName != null) {
+        myImportedPackages.putValue(StringUtil.getShortName(packageName), packageName);
+      }
+    }
+    String currentPackage = DroolsResolveUtil.getCurrentPackage(droolsFile);
+    if (!StringUtil.isEmptyOrSpaces(currentPackage)) {
+      myImportedPackages.putValue(StringUtil.getShortName(currentPackage), currentPackage);
+    }
+    for (DroolsDeclareStatement declaration : droolsFile.getDeclarations()) {
+      DroolsTypeDeclaration typeDeclaration = declaration.getTypeDeclaration();
+      if (typeDeclaration != null && typeDeclaration.getName() != null) {
+        myDeclaredTypes.putValue(typeDeclaration.getName(), typeDeclaration);
+      }
+    }
+    for (DroolsGlobalStatement global : droolsFile.getGlobalVariables()) {
+      putMember(global.getName(), global);
+    }
+    for (DroolsFunctionStatement function : droolsFile.getFunctions()) {
+      putMethod(function);
+    }
+    for (DroolsQueryStatement query : droolsFile.getQueries()) {
+      putMethod(query);
+    }
+  }
+
+  public static @NotNull DroolsNameTable getInstance(@NotNull DroolsFile droolsFile) {
+    return CachedValuesManager.getCachedValue(droolsFile, () ->
+      CachedValueProvider.Result.create(new DroolsNameTable(droolsFile), droolsFile));
+  }
+
+  /**
+   * @return qualified names of the explicitly imported classes with the given short name
+   */
+  public @NotNull Collection<String> getImportedClasses(@NotNull String shortName) {
+    return myImportedClasses.get(shortName);
+  }
+
+  /**
+   * @return qualified names of the wildcard-imported packages and the current package whose last component is the given name
+   */
+  public @NotNull Collection<String> getImportedPackages(@NotNull String shortName) {
+    return myImportedPackages.get(shortName);
+  }
+
+  public @NotNull Collection<DroolsTypeDeclaration> getDeclaredTypes(@NotNull String name) {
+    return myDeclaredTypes.get(name);
+  }
+
+  /**
+   * @return globals, functions and queries with the given name; functions and queries that look like getters are also returned
+   * for their property name
+   */
+  public @NotNull Collection<PsiElement> getMembers(@NotNull String name) {
+    return myMembers.get(name);
+  }
+
+  private void putMethod(@NotNull PsiMethod method) {
+    String name = method.getName();
+    putMember(name, method);
+    String propertyName = PropertyUtilBase.getPropertyName(name);
+    if (propertyName != null && !propertyName.equals(name)) {
+      putMember(propertyName, method);
+    }
+  }
+
+  private void putMember(String name, @NotNull PsiElement element) {
+    if (name != null) {
+      myMembers.putValue(name, element);
+    }
+  }
+}
@@ -121,6 +121,10 @@ public final class DroolsResolveUtil {
   private static boolean processFunctions(CollectProcessor<PsiElement> processor, DroolsReference reference) {
     PsiFile containingFile = reference.getContainingFile();
     if (containingFile instanceof DroolsFile) {
+      String name = getNameToResolve(processor);
+      if (name != null) {
+        return processMembersByName((DroolsFile)containingFile, name, DroolsFunctionStatement.class, processor);
+      }
       for (DroolsFunctionStatement functionStatement : ((DroolsFile)containingFile).getFunctions()) {
         if (!processor.process(functionStatement)) return false;
       }
@@ -151,6 +155,10 @@ public final class DroolsResolveUtil {
   private static boolean processQueries(CollectProcessor<PsiElement> processor, DroolsReference reference) {
     PsiFile containingFile = reference.getContainingFile();
     if (containingFile instanceof DroolsFile) {
+      String name = getNameToResolve(processor);
+      if (name != null) {
+        return processMembersByName((DroolsFile)containingFile, name, DroolsQueryStatement.class, processor);
+      }
       for (DroolsQueryStatement queryStatement : ((DroolsFile)containingFile).getQueries()) {
         if (!processor.process(queryStatement)) return false;
       }
@@ -161,6 +169,10 @@ public final class DroolsResolveUtil {
   private static boolean processGlobalVariables(CollectProcessor<PsiElement> processor, DroolsReference reference) {
     PsiFile containingFile = reference.getContainingFile();
     if (containingFile instanceof DroolsFile) {
+      String name = getNameToResolve(processor);
+      if (name != null) {
+        return processMembersByName((DroolsFile)containingFile, name, DroolsGlobalStatement.class, processor);
+      }
       for (DroolsGlobalStatement globalStatement : ((DroolsFile)containingFile).getGlobalVariables()) {
         if (!processor.process(globalStatement)) return false;
       }
@@ -168,6 +180,28 @@ public final class DroolsResolveUtil {
     return true;
   }
 
+  private static boolean processMembersByName(@NotNull DroolsFile droolsFile,
+                                              @NotNull String name,
+                                              @NotNull Class<? extends PsiElement> memberClass,
+                                              @NotNull CollectProcessor<PsiElement> processor) {
+    for (PsiElement member : DroolsNameTable.getInstance(droolsFile).getMembers(name)) {
+      if (memberClass.isInstance(member) && !processor.process(member)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return the simple name being resolved if the processor only accepts elements with that name, {@code null} if the processor
+   * collects all variants (completion)
+   */
+  private static @Nullable String getNameToResolve(@NotNull CollectProcessor<PsiElement> processor) {
+    if (processor instanceof MyReferenceResolvePsiElementProcessor resolveProcessor) {
+      String name = resolveProcessor.myTextToResolve;
+      return StringUtil.isJavaIdentifier(name) ? name : null;
+    }
+    return null;
+  }
+
   private static boolean processModifyStatements(@NotNull CollectProcessor<PsiElement> processor,
                                                  DroolsReference reference) {
     final DroolsModifyRhsStatement modifyRhsStatement = PsiTreeUtil.getParentOfType(reference, DroolsModifyRhsStatement.class);
@@ -435,6 +469,10 @@ public final class DroolsResolveUtil {
   private static boolean processSimplePackageOrClass(CollectProcessor<PsiElement> processor, DroolsReference reference) {
     DroolsFile droolsFile = PsiTreeUtil.getParentOfType(reference, DroolsFile.class);
     if (droolsFile != null) {
+      String name = getNameToResolve(processor);
+      if (name != null) {
+        return processSimplePackageOrClassByName(processor, droolsFile, name);
+      }
       final GlobalSearchScope scope = getSearchScope(droolsFile);
       if (!processTopPackage(processor, scope, reference.getProject())) return false;
       for (PsiPackage aPackage : getImportedPackages(droolsFile)) {
@@ -460,6 +498,46 @@ public final class DroolsResolveUtil {
     return true;
   }
 
+  /**
+   * Same candidates as the enumeration in {@link #processSimplePackageOrClass}, but looked up by name: top-level packages,
+   * imported and current packages, {@code java.lang} classes, explicitly imported classes and declared types.
+   */
+  private static boolean processSimplePackageOrClassByName(@NotNull CollectProcessor<PsiElement> processor,
+                                                           @NotNull DroolsFile droolsFile,
+                                                           @NotNull String name) {
+    final Project project = droolsFile.getProject();
+    final JavaPsiFacade facade = JavaPsiFacade.getInstance(project);
+    final GlobalSearchScope scope = getSearchScope(droolsFile);
+    final DroolsNameTable nameTable = DroolsNameTable.getInstance(droolsFile);
+
+    final PsiPackage topLevelPackage = facade.findPackage(name);
+    if (topLevelPackage != null && topLevelPackage.getDirectories(scope).length > 0) {
+      if (!processor.process(topLevelPackage)) return false;
+    }
+    for (String packageName : nameTable.getImportedPackages(name)) {
+      final PsiPackage importedPackage = facade.findPackage(packageName);
+      if (importedPackage != null && !processor.process(importedPackage)) return false;
+    }
+
+    final GlobalSearchScope allScope = GlobalSearchScope.allScope(project);
+    if ("lang".equals(name)) {
+      final PsiPackage javaLangPackage = getJavaLangPackage(project);
+      if (javaLangPackage != null && !processor.process(javaLangPackage)) return false;
+    }
+    final PsiClass javaLangClass = facade.findClass(CommonClassNames.DEFAULT_PACKAGE + "." + name, allScope);
+    if (javaLangClass != null && !processor.process(javaLangClass)) return false;
+
+    for (String className : nameTable.getImportedClasses(name)) {
+      final PsiClass psiClass = facade.findClass(className, scope);
+      if (psiClass != null && !processor.process(new DroolsLightClass(psiClass))) return false;
+    }
+
+    for (DroolsTypeDeclaration typeDeclaration : nameTable.getDeclaredTypes(name)) {
+      if (!processor.process(typeDeclaration)) return false;
+    }
+    return true;
+  }
+
   private static boolean processTopPackage(CollectProcessor<PsiElement> processor,
                                            @NotNull GlobalSearchScope searchScope,
                                            Project project) {
@@ -0,0 +1,52 @@
+// Copyright 2000-2024 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package com.intellij.plugins.drools.lang.support
+
+import com.intellij.navigation.ChooseByNameContributorEx
+import com.intellij.navigation.ItemPresentation
+import com.intellij.navigation.NavigationItem
+import com.intellij.plugins.drools.JbossDroolsIcons
+import com.intellij.plugins.drools.lang.psi.DroolsRuleStatement
+import com.intellij.plugins.drools.lang.psi.indexes.DroolsRuleIndex
+import com.intellij.pom.Navigatable
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.util.Processor
+import com.intellij.util.indexing.FindSymbolParameters
+import com.intellij.util.indexing.IdFilter
+import javax.swing.Icon
+
+/**
+ * Contributes the rules of `.drl` files to "Go to Symbol".
+ */
+internal class DroolsGotoRuleContributor : ChooseByNameContributorEx {
+
+  override fun processNames(processor: Processor<in String>, scope: GlobalSearchScope, filter: IdFilter?) {
+    val project = scope.project ?: return
+    DroolsRuleIndex.processRuleNames(project, scope) { processor.process(it) }
+  }
+
+  override fun processElementsWithName(name: String, processor: Processor<in NavigationItem>, parameters: FindSymbolParameters) {
+    for (rule in DroolsRuleIndex.findRulesByName(parameters.project, name, parameters.searchScope)) {
+      if (!processor.process(DroolsRuleNavigationItem(rule, name))) return
+    }
+  }
+}
+
+private class DroolsRuleNavigationItem(private val rule: DroolsRuleStatement, private val ruleName: String) : NavigationItem, ItemPresentation {
+  override fun getName(): String = ruleName
+
+  override fun getPresentation(): ItemPresentation = this
+
+  override fun getPresentableText(): String = ruleName
+
+  override fun getLocationString(): String? = rule.containingFile?.name
+
+  override fun getIcon(unused: Boolean): Icon = JbossDroolsIcons.Drools_16
+
+  override fun navigate(requestFocus: Boolean) {
+    (rule as? Navigatable)?.navigate(requestFocus)
+  }
+
+  override fun canNavigate(): Boolean = (rule as? Navigatable)?.canNavigate() == true
+
+  override fun canNavigateToSource(): Boolean = (rule as? Navigatable)?.canNavigateToSource() == true
+}
@@ -0,0 +1,84 @@
+// Copyright 2000-2024 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package com.intellij.plugins.drools.lang.support
+
+import com.intellij.codeInsight.daemon.RelatedItemLineMarkerInfo
+import com.intellij.codeInsight.daemon.RelatedItemLineMarkerProvider
+import com.intellij.codeInsight.navigation.NavigationGutterIconBuilder
+import com.intellij.icons.AllIcons
+import com.intellij.openapi.util.NotNullLazyValue
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.plugins.drools.DroolsBundle
+import com.intellij.plugins.drools.lang.psi.*
+import com.intellij.plugins.drools.lang.psi.indexes.DroolsRuleIndex
+import com.intellij.psi.PsiElement
+import com.intellij.psi.util.PsiTreeUtil
+import javax.swing.Icon
+
+private val GROUP_ATTRIBUTES = setOf("agenda-group", "activation-group", "ruleflow-group")
+
+/**
+ * Links rules through the rule index:
+ *  - a LHS pattern type to the rules inserting, modifying or retracting facts of that type,
+ *  - an `insert`/`modify`/`update`/`retract` statement to the rules matching the facts it writes,
+ *  - an `agenda-group`, `activation-group` or `ruleflow-group` attribute to the other rules of the group.
+ */
+internal class DroolsRuleLineMarkerProvider : RelatedItemLineMarkerProvider() {
+
+  override fun collectNavigationMarkers(element: PsiElement, result: MutableCollection<in RelatedItemLineMarkerInfo<*>>) {
+    if (element.firstChild != null) return
+    val parent = element.parent ?: return
+    when {
+      parent is DroolsIdentifier -> {
+        val qualifiedIdentifier = parent.parent as? DroolsQualifiedIdentifier ?: return
+        val pattern = (qualifiedIdentifier.parent as? DroolsLhsPatternType)?.parent as? DroolsLhsPattern ?: return
+        if (qualifiedIdentifier.identifierList.lastOrNull() != parent) return
+        val typeName = DroolsRuleIndex.patternTypeName(pattern) ?: return
+        val scope = element.resolveScope
+        val ownRule = ownRule(element)
+        if (!DroolsRuleIndex.hasRulesWriting(typeName, scope, ownRule)) return
+        addMarker(element, ownRule, AllIcons.Gutter.WriteAccess, DroolsBundle.message("drools.rule.marker.writing", typeName), result) {
+          DroolsRuleIndex.findRulesWriting(element.project, typeName, scope)
+        }
+      }
+      parent is DroolsSimpleRhsStatement && parent.firstChild == element -> {
+        val typeNames = DroolsRuleIndex.writtenFactTypes(parent)
+        val scope = element.resolveScope
+        val ownRule = ownRule(element)
+        if (typeNames.none { DroolsRuleIndex.hasRulesReading(it, scope, ownRule) }) return
+        addMarker(element, ownRule, AllIcons.Gutter.ReadAccess,
+                  DroolsBundle.message("drools.rule.marker.reading", typeNames.joinToString()), result) {
+          typeNames.flatMap { DroolsRuleIndex.findRulesReading(element.project, it, scope) }
+        }
+      }
+      parent is DroolsAttribute && parent.firstChild == element && parent.attributeName in GROUP_ATTRIBUTES -> {
+        val value = parent.expression?.text ?: return
+        val attributeName = parent.attributeName
+        val scope = element.resolveScope
+        val ownRule = ownRule(element)
+        if (!DroolsRuleIndex.hasRulesByAttribute(attributeName, value, scope, ownRule)) return
+        addMarker(element, ownRule, AllIcons.Gutter.SiblingInheritedMethod,
+                  DroolsBundle.message("drools.rule.marker.group", attributeName, StringUtil.unquoteString(value)), result) {
+          DroolsRuleIndex.findRulesByAttribute(element.project, attributeName, value, scope)
+        }
+      }
+    }
+  }
+
+  private fun ownRule(element: PsiElement): DroolsRuleStatement? = PsiTreeUtil.getParentOfType(element, DroolsRuleStatement::class.java)
+
+  /**
+   * The marker is shown on an index existence check only, the rules are looked up when it is clicked.
+   */
+  private fun addMarker(element: PsiElement,
+                        ownRule: DroolsRuleStatement?,
+                        icon: Icon,
+                        tooltip: String,
+                        result: MutableCollection<in RelatedItemLineMarkerInfo<*>>,
+                        rules: () -> Collection<DroolsRuleStatement>) {
+    result.add(NavigationGutterIconBuilder.create(icon)
+                 .setTargets(NotNullLazyValue.lazy { rules().filter { it != ownRule }.distinct() })
+                 .setTooltipText(tooltip)
+                 .setPopupTitle(tooltip)
+                 .createLineMarkerInfo(element))
+  }
+}
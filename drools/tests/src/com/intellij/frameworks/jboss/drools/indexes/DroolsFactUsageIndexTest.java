@@ -0,0 +1,112 @@
+// Copyright 2000-2024 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package com.intellij.frameworks.jboss.drools.indexes;
+
+import com.intellij.frameworks.jboss.drools.DroolsLightTestCase;
+import com.intellij.plugins.drools.lang.psi.indexes.DroolsFactUsageIndex;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.SearchScope;
+
+import java.util.List;
+
+public class DroolsFactUsageIndexTest extends DroolsLightTestCase {
+
+  private PsiClass myCustomer;
+
+  @Override
+  protected String getTestDirectory() {
+    return "highlighting";
+  }
+
+  @Override
+  protected void performSetUp() {
+    myCustomer = myFixture.addClass("""
+      package com.acme;
+      public class Customer {
+        public String getName() { return null; }
+        public void setName(String name) {}
+      }""");
+    myFixture.addClass("package com.acme; public class Order { public Customer getCustomer() { return null; } }");
+    myFixture.addClass("package com.acme; public class Invoice { public String getName() { return null; } }");
+  }
+
+  public void testPatternOfImportedType() {
+    PsiFile file = myFixture.addFileToProject("rules/pattern.drl", """
+      package com.acme.rules
+      import com.acme.Customer;
+
+      rule "named"
+        when
+          Customer( name == "x" )
+        then
+      end
+      """);
+    assertTrue(restrictedScope().contains(file.getVirtualFile()));
+  }
+
+  public void testChainedAccess() {
+    PsiFile file = myFixture.addFileToProject("rules/chained.drl", """
+      package com.acme.rules
+      import com.acme.Order;
+
+      rule "customer of order"
+        when
+          $o : Order( customer.name == "x" )
+        then
+          System.out.println($o.getCustomer().getName());
+      end
+      """);
+    assertTrue(restrictedScope().contains(file.getVirtualFile()));
+  }
+
+  public void testChainedAccessInConstraintOnly() {
+    PsiFile file = myFixture.addFileToProject("rules/chained-constraint.drl", """
+      package com.acme.rules
+      import com.acme.Order;
+
+      rule "customer of order"
+        when
+          $o : Order( $c : customer, $c.name == "x" )
+        then
+      end
+      """);
+    assertTrue(restrictedScope().contains(file.getVirtualFile()));
+  }
+
+  public void testUnimportedSamePackageType() {
+    PsiFile file = myFixture.addFileToProject("com/acme/same-package.drl", """
+      package com.acme
+
+      rule "rename"
+        when
+        then
+          Customer c = new Customer();
+          c.setName("x");
+      end
+      """);
+    assertTrue(restrictedScope(List.of("name", "setName")).contains(file.getVirtualFile()));
+  }
+
+  public void testUnrelatedTypeIsSkipped() {
+    PsiFile file = myFixture.addFileToProject("rules/invoice.drl", """
+      package com.acme.rules
+      import com.acme.Invoice;
+
+      rule "invoice"
+        when
+          Invoice( name == "x" )
+        then
+      end
+      """);
+    assertFalse(restrictedScope().contains(file.getVirtualFile()));
+  }
+
+  private SearchScope restrictedScope() {
+    return restrictedScope(List.of("name", "getName"));
+  }
+
+  private SearchScope restrictedScope(List<String> memberNames) {
+    return DroolsFactUsageIndex.restrictToFactUsages(GlobalSearchScope.projectScope(getProject()), myCustomer, memberNames);
+  }
+}
@@ -0,0 +1,116 @@
+// Copyright 2000-2024 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package com.intellij.frameworks.jboss.drools.indexes;
+
+import com.intellij.codeInsight.daemon.GutterMark;
+import com.intellij.frameworks.jboss.drools.DroolsLightTestCase;
+import com.intellij.navigation.NavigationItem;
+import com.intellij.plugins.drools.lang.psi.DroolsRuleStatement;
+import com.intellij.plugins.drools.lang.psi.indexes.DroolsRuleIndex;
+import com.intellij.plugins.drools.lang.support.DroolsGotoRuleContributor;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.FindSymbolParameters;
+
+import java.util.List;
+
+public class DroolsRuleIndexTest extends DroolsLightTestCase {
+
+  @Override
+  protected String getTestDirectory() {
+    return "highlighting";
+  }
+
+  @Override
+  protected void performSetUp() {
+    myFixture.addClass("package com.acme; public class Order { public int getTotal() { return 0; } }");
+    myFixture.addClass("package com.acme; public class Alert { public Alert(String message) {} }");
+    myFixture.addFileToProject("rules/orders.drl", """
+      package com.acme.rules
+      import com.acme.Order;
+      import com.acme.Alert;
+
+      rule "big order"
+        agenda-group "orders"
+        salience 10
+        when
+          o : Order( total > 100 )
+        then
+          insert( new Alert("big") );
+          modify( o ) { }
+      end
+
+      rule "cleanup"
+        agenda-group "housekeeping"
+        when
+          a : Alert()
+        then
+          retract( a );
+      end
+      """);
+  }
+
+  public void testFindByName() {
+    assertSameElements(ruleNames(DroolsRuleIndex.findRulesByName(getProject(), "cleanup", scope())), "\"cleanup\"");
+  }
+
+  public void testFindByAttribute() {
+    assertSameElements(ruleNames(DroolsRuleIndex.findRulesByAttribute(getProject(), "agenda-group", "orders", scope())), "\"big order\"");
+    assertSameElements(ruleNames(DroolsRuleIndex.findRulesByAttribute(getProject(), "salience", "10", scope())), "\"big order\"");
+  }
+
+  public void testFindByFactDependencies() {
+    assertSameElements(ruleNames(DroolsRuleIndex.findRulesReading(getProject(), "Order", scope())), "\"big order\"");
+    assertSameElements(ruleNames(DroolsRuleIndex.findRulesWriting(getProject(), "Order", scope())), "\"big order\"");
+    assertSameElements(ruleNames(DroolsRuleIndex.findRulesWriting(getProject(), "Alert", scope())), "\"big order\"", "\"cleanup\"");
+  }
+
+  public void testHasRulesExceptOwn() {
+    DroolsRuleStatement bigOrder = DroolsRuleIndex.findRulesByName(getProject(), "big order", scope()).get(0);
+    assertTrue(DroolsRuleIndex.hasRulesWriting("Order", scope(), null));
+    assertFalse(DroolsRuleIndex.hasRulesWriting("Order", scope(), bigOrder));
+    assertTrue(DroolsRuleIndex.hasRulesWriting("Alert", scope(), bigOrder));
+    assertFalse(DroolsRuleIndex.hasRulesReading("Customer", scope(), null));
+    assertFalse(DroolsRuleIndex.hasRulesByAttribute("agenda-group", "orders", scope(), bigOrder));
+  }
+
+  public void testGotoRule() {
+    DroolsGotoRuleContributor contributor = new DroolsGotoRuleContributor();
+    CommonProcessors.CollectProcessor<String> names = new CommonProcessors.CollectProcessor<>();
+    contributor.processNames(names, scope(), null);
+    assertSameElements(names.getResults(), "big order", "cleanup");
+
+    CommonProcessors.CollectProcessor<NavigationItem> items = new CommonProcessors.CollectProcessor<>();
+    contributor.processElementsWithName("cleanup", items, FindSymbolParameters.wrap("cleanup", getProject(), false));
+    assertSameElements(ContainerUtil.map(items.getResults(), NavigationItem::getName), "cleanup");
+  }
+
+  public void testRelatedRuleMarkers() {
+    myFixture.configureByText("alerts.drl", """
+      package com.acme.rules
+      import com.acme.Alert;
+      import com.acme.Order;
+
+      rule "log alert"
+        agenda-group "orders"
+        when
+          Alert()
+        then
+          insert( new Order() );
+      end
+      """);
+    List<String> tooltips = ContainerUtil.map(myFixture.findAllGutters(), GutterMark::getTooltipText);
+    assertSameElements(tooltips,
+                       "Other rules of agenda-group 'orders'",
+                       "Rules inserting, modifying or retracting Alert",
+                       "Rules matching Order");
+  }
+
+  private GlobalSearchScope scope() {
+    return GlobalSearchScope.projectScope(getProject());
+  }
+
+  private static List<String> ruleNames(List<DroolsRuleStatement> rules) {
+    return ContainerUtil.map(rules, rule -> rule.getRuleName().getText());
+  }
+}
@@ -0,0 +1,58 @@
+// Copyright 2000-2024 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package com.intellij.frameworks.jboss.drools.performance;
+
+import com.intellij.frameworks.jboss.drools.DroolsLightTestCase;
+import com.intellij.psi.PsiManager;
+import com.intellij.tools.ide.metrics.benchmark.Benchmark;
+
+public class DroolsResolvePerformanceTest extends DroolsLightTestCase {
+  private static final int DOMAIN_CLASSES = 500;
+  private static final int RULE_FILES = 200;
+  private static final int RULES_PER_FILE = 20;
+
+  @Override
+  protected String getTestDirectory() {
+    return "highlighting";
+  }
+
+  public void testHighlightingInLargeRuleBase() {
+    for (int i = 0; i < DOMAIN_CLASSES; i++) {
+      myFixture.addClass("package com.acme.domain;\n" +
+                         "public class Fact" + i + " {\n" +
+                         "  public int getValue() { return 0; }\n" +
+                         "  public String getName() { return null; }\n" +
+                         "}");
+    }
+    for (int i = 0; i < RULE_FILES; i++) {
+      myFixture.addFileToProject("rules/rules" + i + ".drl", generateRuleFile(i));
+    }
+    myFixture.configureByText("target.drl", generateRuleFile(RULE_FILES));
+
+    Benchmark.newBenchmark(getTestName(false), () -> myFixture.doHighlighting())
+      .setup(() -> PsiManager.getInstance(getProject()).dropPsiCaches())
+      .start();
+  }
+
+  private static String generateRuleFile(int index) {
+    StringBuilder text = new StringBuilder();
+    text.append("package com.acme.rules").append(index).append("\n\n");
+    text.append("import com.acme.domain.*;\n");
+    for (int i = 0; i < 10; i++) {
+      text.append("import com.acme.domain.Fact").append((index + i) % DOMAIN_CLASSES).append(";\n");
+    }
+    text.append("global java.lang.Integer threshold;\n\n");
+    text.append("declare Alert").append(index).append("\n  message : String\nend\n\n");
+    text.append("function int twice(int value) {\n  return value * 2;\n}\n\n");
+    for (int r = 0; r < RULES_PER_FILE; r++) {
+      String fact = "Fact" + (index + r % 10) % DOMAIN_CLASSES;
+      text.append("rule \"rule_").append(index).append('_').append(r).append("\"\n");
+      text.append("  when\n");
+      text.append("    f : ").append(fact).append("( value > threshold, name != null )\n");
+      text.append("  then\n");
+      text.append("    Integer doubled = twice(f.getValue());\n");
+      text.append("    insert(new Alert").append(index).append("());\n");
+      text.append("end\n\n");
+    }
+    return text.toString();
+  }
+}
@@ -11,6 +11,7 @@ plugins {
   id("java")
   id("org.jetbrains.kotlin.jvm")
   id("org.jetbrains.intellij")
+  id("me.champeau.jmh")
 }
 
 dependencies {
@@ -37,9 +38,23 @@ sourceSets {
       java.srcDirs(defaultPluginRunMode.testSourcesDirs)
       resources.srcDirs(defaultPluginRunMode.testResourcesDirs)
     }
+    jmh {
+      java.srcDirs("protoeditor-core/benchmark")
+    }
   }
 }
 
+/**
+ * Lexer, parser, stub and annotator benchmarks over a synthetic corpus: `./gradlew jmh`.
+ * The PSI benchmarks start a light test fixture, so the test classpath is included.
+ */
+jmh {
+  jmhVersion.set("1.37")
+  includeTests.set(true)
+  profilers.add("gc")
+  resultFormat.set("JSON")
+}
+
 tasks {
   val manipulatePluginXml by registering {
     dependsOn(named("processResources"))
@@ -66,6 +81,9 @@ tasks {
   named("test") {
     dependsOn(manipulatePluginXml)
   }
+  named("jmh") {
+    dependsOn(manipulatePluginXml)
+  }
   test {
     systemProperty("ij.protoeditor.test.home.path", "${rootProject.rootDir}")
   }
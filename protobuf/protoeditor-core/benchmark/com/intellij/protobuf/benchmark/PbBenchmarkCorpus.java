@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.benchmark;
+
+/**
+ * Deterministic synthetic sources for the protoeditor benchmarks.
+ *
+ * <p>Each corpus entry stresses a different part of the grammar: deeply nested messages, huge
+ * enums, files with many imports, and large prototext documents. The text is generated rather
+ * than checked in so the sizes can be tuned with JMH parameters.
+ */
+public enum PbBenchmarkCorpus {
+  DEEP_NESTING("deep_nesting.proto") {
+    @Override
+    String generate(int size) {
+      StringBuilder text = header();
+      for (int depth = 0; depth < size; depth++) {
+        indent(text, depth).append("message Level").append(depth).append(" {\n");
+        indent(text, depth + 1)
+          .append("optional string name_").append(depth).append(" = 1 [deprecated = true];\n");
+        indent(text, depth + 1)
+          .append("repeated Level").append(depth).append(" siblings = 2;\n");
+        indent(text, depth + 1).append("oneof choice_").append(depth).append(" {\n");
+        indent(text, depth + 2).append("int64 id = 3;\n");
+        indent(text, depth + 2).append("bytes payload = 4;\n");
+        indent(text, depth + 1).append("}\n");
+      }
+      for (int depth = size - 1; depth >= 0; depth--) {
+        indent(text, depth).append("}\n");
+      }
+      return text.toString();
+    }
+  },
+  HUGE_ENUM("huge_enum.proto") {
+    @Override
+    String generate(int size) {
+      StringBuilder text = header();
+      text.append("enum Huge {\n");
+      text.append("  option allow_alias = true;\n");
+      text.append("  HUGE_UNSPECIFIED = 0;\n");
+      for (int i = 1; i < size * 50; i++) {
+        text.append("  HUGE_VALUE_").append(i).append(" = ").append(i);
+        if (i % 10 == 0) {
+          text.append(" [deprecated = true]");
+        }
+        text.append(";\n");
+      }
+      text.append("  reserved ").append(size * 50).append(" to max;\n");
+      text.append("}\n");
+      return text.toString();
+    }
+  },
+  MANY_IMPORTS("many_imports.proto") {
+    @Override
+    String generate(int size) {
+      StringBuilder text = header();
+      for (int i = 0; i < size * 5; i++) {
+        text.append("import \"benchmark/dep/dep_").append(i).append(".proto\";\n");
+      }
+      text.append("\nmessage UsesImports {\n");
+      for (int i = 0; i < size * 5; i++) {
+        text.append("  optional benchmark.dep.Dep").append(i).append(" dep_").append(i)
+          .append(" = ").append(i + 1).append(";\n");
+      }
+      text.append("}\n");
+      return text.toString();
+    }
+  },
+  LARGE_TEXTPROTO("large.textproto") {
+    @Override
+    String generate(int size) {
+      StringBuilder text = new StringBuilder();
+      text.append("# proto-file: benchmark/deep_nesting.proto\n");
+      text.append("# proto-message: benchmark.Level0\n\n");
+      for (int i = 0; i < size * 50; i++) {
+        text.append("siblings {\n");
+        text.append("  name_0: \"entry ").append(i).append("\\n\"\n");
+        text.append("  id: ").append(i * 31L).append("\n");
+        text.append("  siblings { payload: \"\\x00\\x01\\x02\" }\n");
+        text.append("}\n");
+      }
+      return text.toString();
+    }
+  };
+
+  private final String fileName;
+
+  PbBenchmarkCorpus(String fileName) {
+    this.fileName = fileName;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public boolean isPrototext() {
+    return fileName.endsWith(".textproto");
+  }
+
+  /** Returns the source text, scaled by <code>size</code>. */
+  abstract String generate(int size);
+
+  /** Returns a file declaring the messages referenced by {@link #MANY_IMPORTS}. */
+  static String generateDependency(int index) {
+    return "syntax = \"proto2\";\n"
+           + "package benchmark.dep;\n"
+           + "message Dep" + index + " { optional int32 value = 1; }\n";
+  }
+
+  private static StringBuilder header() {
+    return new StringBuilder("syntax = \"proto2\";\n\npackage benchmark;\n\n");
+  }
+
+  private static StringBuilder indent(StringBuilder text, int depth) {
+    return text.append("  ".repeat(depth));
+  }
+}
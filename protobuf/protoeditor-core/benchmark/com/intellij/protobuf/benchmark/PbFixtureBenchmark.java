@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.benchmark;
+
+import com.intellij.openapi.fileTypes.LanguageFileType;
+import com.intellij.protobuf.lang.PbFileType;
+import com.intellij.protobuf.lang.PbTextFileType;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.testFramework.EdtTestUtil;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.testFramework.fixtures.CodeInsightTestFixture;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
+import com.intellij.testFramework.fixtures.TestFixtureBuilder;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Base state for the benchmarks that need a running application: a light code insight fixture is
+ * set up once per trial, with the corpus file open in the editor.
+ *
+ * <p>Subclasses declare the <code>corpus</code> and <code>size</code> parameters, so that each of
+ * them can restrict the corpus to the files it applies to.
+ */
+@State(Scope.Benchmark)
+public abstract class PbFixtureBenchmark {
+
+  protected String text;
+  protected CodeInsightTestFixture fixture;
+
+  protected abstract PbBenchmarkCorpus corpus();
+
+  protected abstract int size();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    PbBenchmarkCorpus corpus = corpus();
+    int size = size();
+    text = corpus.generate(size);
+    IdeaTestFixtureFactory factory = IdeaTestFixtureFactory.getFixtureFactory();
+    TestFixtureBuilder<IdeaProjectTestFixture> builder =
+      factory.createLightFixtureBuilder(LightProjectDescriptor.EMPTY_PROJECT_DESCRIPTOR, getClass().getName());
+    fixture = factory.createCodeInsightFixture(builder.getFixture());
+    EdtTestUtil.runInEdtAndWait(() -> {
+      fixture.setUp();
+      if (corpus == PbBenchmarkCorpus.MANY_IMPORTS) {
+        for (int i = 0; i < size * 5; i++) {
+          fixture.addFileToProject(
+            "benchmark/dep/dep_" + i + ".proto", PbBenchmarkCorpus.generateDependency(i));
+        }
+      }
+      if (corpus == PbBenchmarkCorpus.LARGE_TEXTPROTO) {
+        fixture.addFileToProject(
+          "benchmark/deep_nesting.proto", PbBenchmarkCorpus.DEEP_NESTING.generate(2));
+      }
+      fixture.configureByText(corpus.getFileName(), text);
+    });
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    EdtTestUtil.runInEdtAndWait(() -> fixture.tearDown());
+  }
+
+  protected PsiFile createFile() {
+    PbBenchmarkCorpus corpus = corpus();
+    LanguageFileType fileType = corpus.isPrototext() ? PbTextFileType.INSTANCE : PbFileType.INSTANCE;
+    return PsiFileFactory.getInstance(fixture.getProject())
+      .createFileFromText(corpus.getFileName(), fileType, text);
+  }
+}
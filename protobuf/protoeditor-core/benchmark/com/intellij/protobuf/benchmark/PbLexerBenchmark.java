@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.benchmark;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.protobuf.lang.lexer.ProtoLexer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/** Measures raw {@link ProtoLexer} throughput over the benchmark corpus. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PbLexerBenchmark {
+
+  @Param({"DEEP_NESTING", "HUGE_ENUM", "MANY_IMPORTS", "LARGE_TEXTPROTO"})
+  public PbBenchmarkCorpus corpus;
+
+  @Param({"100"})
+  public int size;
+
+  private String text;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    text = corpus.generate(size);
+  }
+
+  @Benchmark
+  public void lex(Blackhole blackhole) {
+    Lexer lexer = corpus.isPrototext()
+                  ? ProtoLexer.forPrototext()
+                  : ProtoLexer.forProtobufWithKeywords();
+    lexer.start(text);
+    while (lexer.getTokenType() != null) {
+      blackhole.consume(lexer.getTokenType());
+      lexer.advance();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.benchmark;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.psi.PsiManager;
+import com.intellij.testFramework.EdtTestUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and annotation over the benchmark corpus.
+ *
+ * <p>Run with the JMH <code>gc</code> profiler (configured in the Gradle build) to see allocation
+ * rates alongside throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PbPsiBenchmark extends PbFixtureBenchmark {
+
+  @Param({"DEEP_NESTING", "HUGE_ENUM", "MANY_IMPORTS", "LARGE_TEXTPROTO"})
+  public PbBenchmarkCorpus corpus;
+
+  @Param({"100"})
+  public int size;
+
+  @Override
+  protected PbBenchmarkCorpus corpus() {
+    return corpus;
+  }
+
+  @Override
+  protected int size() {
+    return size;
+  }
+
+  @Benchmark
+  public Object parse() {
+    return ReadAction.compute(() -> createFile().getNode().getLastChildNode());
+  }
+
+  @Benchmark
+  public Object annotate() {
+    return EdtTestUtil.runInEdtAndGet(() -> {
+      // Drop cached trackers and resolve results so each invocation annotates from scratch.
+      PsiManager.getInstance(fixture.getProject()).dropPsiCaches();
+      return fixture.doHighlighting();
+    });
+  }
+}
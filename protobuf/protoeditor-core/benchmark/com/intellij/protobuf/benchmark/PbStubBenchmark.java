@@ -0,0 +1,63 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.benchmark;
+
+import com.intellij.lang.LanguageParserDefinitions;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.protobuf.lang.PbLanguage;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.tree.IStubFileElementType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures stub building over the proto files of the benchmark corpus. Prototext files are not
+ * stubbed, so the prototext corpus is left out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PbStubBenchmark extends PbFixtureBenchmark {
+
+  @Param({"DEEP_NESTING", "HUGE_ENUM", "MANY_IMPORTS"})
+  public PbBenchmarkCorpus corpus;
+
+  @Param({"100"})
+  public int size;
+
+  @Override
+  protected PbBenchmarkCorpus corpus() {
+    return corpus;
+  }
+
+  @Override
+  protected int size() {
+    return size;
+  }
+
+  @Benchmark
+  public Object buildStubs() {
+    IStubFileElementType<?> fileElementType =
+      (IStubFileElementType<?>)LanguageParserDefinitions.INSTANCE.forLanguage(PbLanguage.INSTANCE).getFileNodeType();
+    return ReadAction.compute(() -> {
+      StubElement<?> stub = fileElementType.getBuilder().buildStubTree(createFile());
+      return stub.getChildrenStubs();
+    });
+  }
+}
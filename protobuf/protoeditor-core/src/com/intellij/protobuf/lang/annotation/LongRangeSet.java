@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.annotation;
+
+import java.util.Arrays;
+
+/**
+ * A set of disjoint, closed <code>long</code> intervals kept sorted by their lower bound.
+ *
+ * <p>Intervals are stored in two parallel primitive arrays so that lookups are a binary search
+ * without boxing. Callers are expected to check for overlaps with {@link #findOverlapping} before
+ * calling {@link #add}; overlapping intervals are never merged.
+ */
+final class LongRangeSet {
+
+  private long[] lowers = new long[4];
+  private long[] uppers = new long[4];
+  private int size;
+
+  /** Adds the interval <code>[lower, upper]</code>, which must not overlap an existing one. */
+  void add(long lower, long upper) {
+    int index = insertionPoint(lower);
+    if (size == lowers.length) {
+      lowers = Arrays.copyOf(lowers, size * 2);
+      uppers = Arrays.copyOf(uppers, size * 2);
+    }
+    System.arraycopy(lowers, index, lowers, index + 1, size - index);
+    System.arraycopy(uppers, index, uppers, index + 1, size - index);
+    lowers[index] = lower;
+    uppers[index] = upper;
+    size++;
+  }
+
+  /** Returns <code>true</code> if <code>value</code> lies within any interval of this set. */
+  boolean contains(long value) {
+    int index = insertionPoint(value) - 1;
+    return index >= 0 && uppers[index] >= value;
+  }
+
+  /**
+   * Returns the index of the lowest interval overlapping <code>[lower, upper]</code>, or
+   * <code>-1</code> if there is none. Use {@link #lowerAt} and {@link #upperAt} to read it.
+   */
+  int findOverlapping(long lower, long upper) {
+    int index = insertionPoint(lower) - 1;
+    if (index >= 0 && uppers[index] >= lower) {
+      return index;
+    }
+    index++;
+    if (index < size && lowers[index] <= upper) {
+      return index;
+    }
+    return -1;
+  }
+
+  long lowerAt(int index) {
+    return lowers[index];
+  }
+
+  long upperAt(int index) {
+    return uppers[index];
+  }
+
+  /** Returns the index of the first interval whose lower bound is greater than <code>value</code>. */
+  private int insertionPoint(long value) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (lowers[mid] <= value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
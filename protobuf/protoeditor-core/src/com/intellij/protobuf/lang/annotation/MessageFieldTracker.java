@@ -16,7 +16,8 @@
 package com.intellij.protobuf.lang.annotation;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.*;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
 import com.intellij.codeInspection.util.InspectionMessage;
 import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.HighlightSeverity;
@@ -28,8 +29,13 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Visits statements in a message type to track field numbers, reserved, and extension statements.
@@ -108,54 +114,70 @@ final class MessageFieldTracker {
     }
   }
 
-  /** Visits a message body to find problems, and queues them in the {@link MessageFieldTracker}. */
+  /**
+   * Visits a message body to find problems, and queues them in the {@link MessageFieldTracker}.
+   *
+   * <p>The body's children are walked once and bucketed by statement kind; reserved statements are
+   * then processed before extension statements, which are processed before fields, so that checks
+   * do not depend on declaration order. Field numbers and ranges are tracked with primitive
+   * structures since generated messages may declare thousands of fields.
+   */
   private final class ProblemsVisitor {
 
-    private final RangeSet<Long> reservedFieldNumbers = TreeRangeSet.create();
-    private final RangeSet<Long> extensionFieldNumbers = TreeRangeSet.create();
+    private final LongRangeSet reservedFieldNumbers = new LongRangeSet();
+    private final LongRangeSet extensionFieldNumbers = new LongRangeSet();
     private final Set<String> reservedNames = new HashSet<>();
-    private final Map<Long, String> fieldNumberToField = new HashMap<>();
+    private final Long2ObjectOpenHashMap<String> fieldNumberToField = new Long2ObjectOpenHashMap<>();
+    private Boolean isMessageSet;
 
     void visit(PbMessageType messageType) {
-      visitReserved(messageType);
-      visitExtensions(messageType);
-      visitFields(messageType);
-    }
-
-    private void visitReserved(PbMessageType messageType) {
-      for (PbReservedStatement reservedStatement :
-          messageType.getBody().getReservedStatementList()) {
-        for (PbReservedRange reservedRange : reservedStatement.getReservedRangeList()) {
-          visitReservedRange(reservedStatement, reservedRange);
-        }
-        for (PbIdentifierValue reservedName : reservedStatement.getIdentifierValueList()) {
-          if (messageType.getPbFile().getSyntaxLevel() instanceof SyntaxLevel.Edition) {
-            visitReservedName(reservedStatement, reservedName);
-          } else {
-            queueError(
-                reservedStatement,
-                reservedName,
-                PbLangBundle.message("editions.field.reserved.identifier"));
-          }
+      PbMessageBody body = messageType.getBody();
+      if (body == null) {
+        return;
+      }
+      List<PbReservedStatement> reservedStatements = new ArrayList<>();
+      List<PbExtensionsStatement> extensionsStatements = new ArrayList<>();
+      for (PsiElement child = body.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child instanceof PbReservedStatement reservedStatement) {
+          reservedStatements.add(reservedStatement);
+        } else if (child instanceof PbExtensionsStatement extensionsStatement) {
+          extensionsStatements.add(extensionsStatement);
         }
-        for (PbStringValue reservedName : reservedStatement.getStringValueList()) {
-          if (!(messageType.getPbFile().getSyntaxLevel() instanceof SyntaxLevel.Edition)) {
-            visitReservedName(reservedStatement, reservedName);
-          } else {
-            queueError(
-                reservedStatement,
-                reservedName,
-                PbLangBundle.message("editions.field.reserved.string"));
-          }
+      }
+      boolean isEdition = messageType.getPbFile().getSyntaxLevel() instanceof SyntaxLevel.Edition;
+      for (PbReservedStatement reservedStatement : reservedStatements) {
+        visitReserved(reservedStatement, isEdition);
+      }
+      for (PbExtensionsStatement extensionsStatement : extensionsStatements) {
+        for (PbExtensionRange extensionRange : extensionsStatement.getExtensionRangeList()) {
+          visitExtensionRange(extensionsStatement, extensionRange);
         }
       }
+      visitFields(messageType);
     }
 
-    private void visitExtensions(PbMessageType messageType) {
-      for (PbExtensionsStatement extensionsStatement :
-          messageType.getBody().getExtensionsStatementList()) {
-        for (PbExtensionRange extensionRange : extensionsStatement.getExtensionRangeList()) {
-          visitExtensionRange(extensionsStatement, extensionRange);
+    private void visitReserved(PbReservedStatement reservedStatement, boolean isEdition) {
+      for (PbReservedRange reservedRange : reservedStatement.getReservedRangeList()) {
+        visitReservedRange(reservedStatement, reservedRange);
+      }
+      for (PbIdentifierValue reservedName : reservedStatement.getIdentifierValueList()) {
+        if (isEdition) {
+          visitReservedName(reservedStatement, reservedName);
+        } else {
+          queueError(
+              reservedStatement,
+              reservedName,
+              PbLangBundle.message("editions.field.reserved.identifier"));
+        }
+      }
+      for (PbStringValue reservedName : reservedStatement.getStringValueList()) {
+        if (!isEdition) {
+          visitReservedName(reservedStatement, reservedName);
+        } else {
+          queueError(
+              reservedStatement,
+              reservedName,
+              PbLangBundle.message("editions.field.reserved.string"));
         }
       }
     }
@@ -171,7 +193,7 @@ final class MessageFieldTracker {
         }
         PbNumberValue fieldNumberValue = field.getFieldNumber();
         if (fieldNumberValue != null) {
-          visitFieldNumber(field, fieldName, fieldNumberValue);
+          visitFieldNumber(messageType, field, fieldName, fieldNumberValue);
         }
       }
     }
@@ -196,38 +218,20 @@ final class MessageFieldTracker {
       if (to < from) {
         return;
       }
-      Range<Long> newRange = Range.closed(from, to);
-      Optional<Range<Long>> overlappingRange = findPreviousOverlappingReservedRange(newRange);
-      if (overlappingRange.isPresent()) {
+      int overlapping = reservedFieldNumbers.findOverlapping(from, to);
+      if (overlapping >= 0) {
         queueError(
             reservedStatement,
             reservedRange,
             PbLangBundle.message(
                 "reserved.range.overlaps.existing",
-                newRange.lowerEndpoint(),
-                newRange.upperEndpoint(),
-                overlappingRange.get().lowerEndpoint(),
-                overlappingRange.get().upperEndpoint()));
+                from,
+                to,
+                reservedFieldNumbers.lowerAt(overlapping),
+                reservedFieldNumbers.upperAt(overlapping)));
         return;
       }
-      reservedFieldNumbers.add(newRange);
-    }
-
-    private Optional<Range<Long>> findPreviousOverlappingReservedRange(Range<Long> newRange) {
-      return findPreviousOverlappingRange(reservedFieldNumbers, newRange);
-    }
-
-    private Optional<Range<Long>> findPreviousOverlappingExtensionRange(Range<Long> newRange) {
-      return findPreviousOverlappingRange(extensionFieldNumbers, newRange);
-    }
-
-    private static Optional<Range<Long>> findPreviousOverlappingRange(
-      RangeSet<Long> ranges, Range<Long> newRange) {
-      RangeSet<Long> intersection = ranges.subRangeSet(newRange);
-      if (intersection.isEmpty()) {
-        return Optional.empty();
-      }
-      return ranges.asRanges().stream().filter(range -> range.isConnected(newRange)).findFirst();
+      reservedFieldNumbers.add(from, to);
     }
 
     private void visitReservedName(
@@ -271,45 +275,43 @@ final class MessageFieldTracker {
             PbLangBundle.message("extension.number.greater.than.max", max));
         return;
       }
-      Range<Long> newRange = Range.closed(from, to);
-      Optional<Range<Long>> overlappingExtensionRange =
-          findPreviousOverlappingExtensionRange(newRange);
-      if (overlappingExtensionRange.isPresent()) {
+      int overlappingExtension = extensionFieldNumbers.findOverlapping(from, to);
+      if (overlappingExtension >= 0) {
         queueError(
             extensionsStatement,
             extensionRange,
             PbLangBundle.message(
                 "extension.range.overlaps.existing",
-                newRange.lowerEndpoint(),
-                newRange.upperEndpoint(),
-                overlappingExtensionRange.get().lowerEndpoint(),
-                overlappingExtensionRange.get().upperEndpoint()));
+                from,
+                to,
+                extensionFieldNumbers.lowerAt(overlappingExtension),
+                extensionFieldNumbers.upperAt(overlappingExtension)));
         return;
       }
-      Optional<Range<Long>> overlappingReservedRange =
-          findPreviousOverlappingReservedRange(newRange);
-      if (overlappingReservedRange.isPresent()) {
+      int overlappingReserved = reservedFieldNumbers.findOverlapping(from, to);
+      if (overlappingReserved >= 0) {
         queueError(
             extensionsStatement,
             extensionRange,
             PbLangBundle.message(
                 "extension.range.overlaps.reserved.range",
-                newRange.lowerEndpoint(),
-                newRange.upperEndpoint(),
-                overlappingReservedRange.get().lowerEndpoint(),
-                overlappingReservedRange.get().upperEndpoint()));
+                from,
+                to,
+                reservedFieldNumbers.lowerAt(overlappingReserved),
+                reservedFieldNumbers.upperAt(overlappingReserved)));
         return;
       }
-      extensionFieldNumbers.add(newRange);
+      extensionFieldNumbers.add(from, to);
     }
 
-    private void visitFieldNumber(PbField field, String fieldName, PbNumberValue fieldNumberValue) {
+    private void visitFieldNumber(
+        PbMessageType messageType, PbField field, String fieldName, PbNumberValue fieldNumberValue) {
       if (!fieldNumberValue.isValidInt32()) {
         queueError(field, fieldNumberValue, PbLangBundle.message("integer.value.out.of.range"));
         return;
       }
       long fieldNumber = Preconditions.checkNotNull(fieldNumberValue.getLongValue());
-      long maxFieldNumber = getMaxFieldNumber(field);
+      long maxFieldNumber = getMaxFieldNumber(messageType, field);
       if (fieldNumber <= 0) {
         queueError(field, fieldNumberValue, PbLangBundle.message("field.number.must.be.positive"));
       } else if (PbField.NUMBERS_RESERVED_BY_PROTO.contains(fieldNumber)) {
@@ -363,7 +365,7 @@ final class MessageFieldTracker {
       }
     }
 
-    private static long getMaxFieldNumber(PbField field) {
+    private long getMaxFieldNumber(PbMessageType messageType, PbField field) {
       PbMessageType parent;
       PbTypeName extendee = field.getExtendee();
       if (extendee != null) {
@@ -371,6 +373,16 @@ final class MessageFieldTracker {
       } else {
         parent = PsiTreeUtil.getParentOfType(field, PbMessageType.class);
       }
+      if (parent == messageType) {
+        // Resolving the message_set_wire_format option is not free, so do it once per message.
+        if (isMessageSet == null) {
+          isMessageSet = messageType.isMessageSet();
+        }
+        if (isMessageSet) {
+          return PbField.MAX_MESSAGE_SET_FIELD_NUMBER;
+        }
+        return PbField.MAX_FIELD_NUMBER;
+      }
       if (parent != null && parent.isMessageSet()) {
         return PbField.MAX_MESSAGE_SET_FIELD_NUMBER;
       }
@@ -22,6 +22,9 @@ import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiWhiteSpace;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
@@ -41,7 +44,18 @@ public final class ProtoFromSourceComments {
 
   private ProtoFromSourceComments() {}
 
+  /**
+   * Returns the .proto file named in the header comments of generated code. The result is cached
+   * per generated file, since navigation calls this for every element of the file.
+   */
   public static @Nullable PbFile findProtoOfGeneratedCode(String commentPrefix, PsiFile file) {
+    return CachedValuesManager.getCachedValue(
+        file,
+        () -> CachedValueProvider.Result.create(
+            computeProtoOfGeneratedCode(file), PsiModificationTracker.MODIFICATION_COUNT));
+  }
+
+  private static @Nullable PbFile computeProtoOfGeneratedCode(PsiFile file) {
     boolean foundGeneratedComment = false;
     String source = null;
     for (PsiElement element = file.getFirstChild();
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.annotation;
+
+import com.intellij.protobuf.fixtures.PbCodeInsightFixtureTestCase;
+import com.intellij.tools.ide.metrics.benchmark.Benchmark;
+
+/** Performance tests for {@link PbAnnotator} on messages with many fields and ranges. */
+public class PbAnnotatorPerformanceTest extends PbCodeInsightFixtureTestCase {
+
+  private static final int FIELD_COUNT = 5000;
+
+  public void testMessageWithManyFields() {
+    StringBuilder text = new StringBuilder();
+    text.append("syntax = \"proto2\";\n\n");
+    text.append("message Huge {\n");
+    // Reserve every third number above the fields, and leave room for extensions at the end.
+    for (int i = 0; i < FIELD_COUNT; i++) {
+      long reserved = FIELD_COUNT + 1 + i * 3L;
+      text.append("  reserved ").append(reserved).append(" to ").append(reserved + 1).append(";\n");
+      text.append("  reserved \"reserved_").append(i).append("\";\n");
+    }
+    text.append("  extensions 100000 to max;\n");
+    for (int i = 1; i <= FIELD_COUNT; i++) {
+      text.append("  optional int32 field_").append(i).append(" = ").append(i).append(";\n");
+    }
+    text.append("}\n");
+    myFixture.configureByText("huge.proto", text.toString());
+
+    Benchmark.newBenchmark(getTestName(false), () -> myFixture.checkHighlighting())
+      .setup(() -> getPsiManager().dropPsiCaches())
+      .start();
+  }
+}
@@ -38,6 +38,10 @@ import java.util.function.Predicate;
 /**
  * {@link FindUsagesHandlerFactory} for proto elements. Returns Java elements corresponding to
  * generated code, which will then become additional search targets.
+ *
+ * <p>The Java elements are found by their generated names through {@link JavaPsiFacade}, which is
+ * already an index lookup, so unlike goto declaration this doesn't use {@link
+ * PbJavaGeneratedNameIndex}.
  */
 public class PbJavaFindUsagesHandlerFactory extends FindUsagesHandlerFactory {
 
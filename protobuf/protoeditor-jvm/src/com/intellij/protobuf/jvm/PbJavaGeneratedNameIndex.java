@@ -0,0 +1,168 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.jvm;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.protobuf.jvm.names.JavaNameGenerator;
+import com.intellij.protobuf.jvm.names.NameGeneratorSelector;
+import com.intellij.protobuf.lang.PbFileType;
+import com.intellij.protobuf.lang.psi.*;
+import com.intellij.protobuf.lang.psi.util.PbPsiUtil;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.QualifiedName;
+import com.intellij.util.ObjectUtils;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.indexing.FileBasedIndex.InputFilter;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.intellij.util.io.externalizer.StringCollectionExternalizer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Index from fully-qualified generated Java class names (messages, enums and oneof case enums) to
+ * the qualified names of the proto symbols that generate them.
+ *
+ * <p>Names are produced with the {@link JavaNameGenerator}s selected for each file, so the index
+ * agrees with {@link PbJavaOuterClassIndex} and with the name matchers used during navigation.
+ */
+public class PbJavaGeneratedNameIndex extends FileBasedIndexExtension<String, List<String>> {
+
+  public static final ID<String, List<String>> INDEX_ID =
+      ID.create("protoeditor.java.generated.name.index");
+  private static final DataIndexer<String, List<String>, FileContent> INDEXER_INSTANCE =
+      new GeneratedNameIndexer();
+
+  /**
+   * Returns the proto symbols in <code>scope</code> that generate a Java class named
+   * <code>javaClassName</code>, grouped by file.
+   */
+  public static Map<PbFile, List<PbSymbol>> getSymbolsForJavaClass(
+      Project project, String javaClassName, GlobalSearchScope scope) {
+    Map<PbFile, List<PbSymbol>> results = new LinkedHashMap<>();
+    PsiManager psiManager = PsiManager.getInstance(project);
+    FileBasedIndex.getInstance().processValues(
+        INDEX_ID,
+        javaClassName,
+        null,
+        (VirtualFile file, List<String> symbolNames) -> {
+          PbFile pbFile = ObjectUtils.tryCast(psiManager.findFile(file), PbFile.class);
+          if (pbFile == null) {
+            return true;
+          }
+          Map<QualifiedName, Collection<PbSymbol>> localSymbols = pbFile.getLocalQualifiedSymbolMap();
+          for (String symbolName : symbolNames) {
+            Collection<PbSymbol> symbols = localSymbols.get(QualifiedName.fromDottedString(symbolName));
+            if (symbols != null && !symbols.isEmpty()) {
+              results.computeIfAbsent(pbFile, f -> new ArrayList<>()).addAll(symbols);
+            }
+          }
+          return true;
+        },
+        scope);
+    return results;
+  }
+
+  @Override
+  public @NotNull InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(PbFileType.INSTANCE) {
+      @Override
+      public boolean acceptInput(final @NotNull VirtualFile file) {
+        return file.isInLocalFileSystem();
+      }
+    };
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public @NotNull ID<String, List<String>> getName() {
+    return INDEX_ID;
+  }
+
+  @Override
+  public @NotNull DataIndexer<String, List<String>, FileContent> getIndexer() {
+    return INDEXER_INSTANCE;
+  }
+
+  @Override
+  public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  public @NotNull DataExternalizer<List<String>> getValueExternalizer() {
+    return StringCollectionExternalizer.STRING_LIST_EXTERNALIZER;
+  }
+
+  @Override
+  public int getVersion() {
+    return 0;
+  }
+
+  private static class GeneratedNameIndexer implements DataIndexer<String, List<String>, FileContent> {
+
+    @Override
+    public @NotNull Map<String, List<String>> map(@NotNull FileContent inputData) {
+      PbFile pbFile = ObjectUtils.tryCast(inputData.getPsiFile(), PbFile.class);
+      if (pbFile == null) {
+        return Collections.emptyMap();
+      }
+      List<JavaNameGenerator> nameGenerators = NameGeneratorSelector.selectForFile(pbFile);
+      Map<String, List<String>> result = new HashMap<>();
+      for (PbSymbol symbol : ContainerUtil.flatten(pbFile.getLocalQualifiedSymbolMap().values())) {
+        QualifiedName symbolName = symbol.getQualifiedName();
+        if (symbolName == null) {
+          continue;
+        }
+        for (JavaNameGenerator nameGenerator : nameGenerators) {
+          for (String javaClassName : generatedClassNames(nameGenerator, symbol)) {
+            List<String> symbolNames = result.computeIfAbsent(javaClassName, k -> new ArrayList<>());
+            String name = symbolName.toString();
+            if (!symbolNames.contains(name)) {
+              symbolNames.add(name);
+            }
+          }
+        }
+      }
+      return result;
+    }
+
+    private static Collection<String> generatedClassNames(
+        JavaNameGenerator nameGenerator, PbSymbol symbol) {
+      if (PbPsiUtil.isMessageElement(symbol)) {
+        return nameGenerator.messageClassNames((PbMessageType) symbol);
+      }
+      if (PbPsiUtil.isEnumElement(symbol)) {
+        return ContainerUtil.createMaybeSingletonList(
+            nameGenerator.enumClassName((PbEnumDefinition) symbol));
+      }
+      if (PbPsiUtil.isOneofElement(symbol)) {
+        return ContainerUtil.createMaybeSingletonList(
+            nameGenerator.oneofEnumClassName((PbOneofDefinition) symbol));
+      }
+      return Collections.emptyList();
+    }
+  }
+}
@@ -32,10 +32,7 @@ import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 /**
  * Handles goto declaration from java generated code -> .proto files.
@@ -71,6 +68,15 @@ public class PbJavaGotoDeclarationHandler implements GotoDeclarationHandler {
       return null;
     }
     Project project = resolved.getProject();
+    List<PsiElement> results = new ArrayList<>();
+    for (Map.Entry<PbFile, List<PbSymbol>> entry : findIndexedSymbols(project, context).entrySet()) {
+      results.addAll(findMatchingElements(entry.getKey(), entry.getValue(), context));
+    }
+    if (!results.isEmpty()) {
+      return results.toArray(PsiElement.EMPTY_ARRAY);
+    }
+    // The index knows nothing about the context class (e.g. the name generators disagree with the
+    // compiled code), so check all symbols of the files with a matching outer class.
     Collection<PbFile> matchedFiles =
       PbJavaOuterClassIndex.getFilesWithOuterClass(
         project, context.outerClass.getQualifiedName(), GlobalSearchScope.allScope(project));
@@ -83,15 +89,41 @@ public class PbJavaGotoDeclarationHandler implements GotoDeclarationHandler {
       }
       matchedFiles = ImmutableList.of(matchingFile);
     }
-    List<PsiElement> results = new ArrayList<>();
     for (PbFile file : matchedFiles) {
-      results.addAll(findMatchingElements(file, context));
+      results.addAll(
+        findMatchingElements(file, ContainerUtil.flatten(file.getLocalQualifiedSymbolMap().values()), context));
     }
     // Don't include the original resolved element. If a user really wanted to see the
     // generated bytecode, they could use "Go To Implementation" instead of "Declaration".
     return results.toArray(PsiElement.EMPTY_ARRAY);
   }
 
+  /**
+   * Looks up the proto symbols generating the context class in {@link PbJavaGeneratedNameIndex}, so
+   * that only those symbols need to be checked against the name matchers.
+   */
+  private static Map<PbFile, List<PbSymbol>> findIndexedSymbols(
+    Project project, PbJavaGotoDeclarationContext context) {
+    GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+    Map<PbFile, List<PbSymbol>> results = new LinkedHashMap<>();
+    for (String className : candidateClassNames(context.javaClass)) {
+      PbJavaGeneratedNameIndex.getSymbolsForJavaClass(project, className, scope)
+        .forEach((file, symbols) -> results.computeIfAbsent(file, f -> new ArrayList<>()).addAll(symbols));
+    }
+    return results;
+  }
+
+  /** The context class name, plus the enclosing message class name if the context is a Builder. */
+  private static List<String> candidateClassNames(PsiClass contextClass) {
+    List<String> names = new ArrayList<>(2);
+    ContainerUtil.addIfNotNull(names, contextClass.getQualifiedName());
+    PsiClass containingClass = contextClass.getContainingClass();
+    if (!contextClass.isEnum() && "Builder".equals(contextClass.getName()) && containingClass != null) {
+      ContainerUtil.addIfNotNull(names, containingClass.getQualifiedName());
+    }
+    return names;
+  }
+
   private static @Nullable PbFile matchingProtoFileFromSource(PsiElement resolvedReference) {
     if (!(resolvedReference.getContainingFile() instanceof PsiCompiledFile)) {
       return null;
@@ -104,7 +136,8 @@ public class PbJavaGotoDeclarationHandler implements GotoDeclarationHandler {
     return ProtoFromSourceComments.findProtoOfGeneratedCode("//", possibleSourceFile);
   }
 
-  private static List<PsiElement> findMatchingElements(PbFile file, PbJavaGotoDeclarationContext context) {
+  private static List<PsiElement> findMatchingElements(
+    PbFile file, Collection<PbSymbol> candidates, PbJavaGotoDeclarationContext context) {
     // At this point we know that file has an outer class matching the caret.
     // - We know that contextClass represents a message and is nested within the outer class.
     //   Thus, find the matching message in the file.
@@ -125,10 +158,10 @@ public class PbJavaGotoDeclarationHandler implements GotoDeclarationHandler {
       ContainerUtil.map(NameGeneratorSelector.selectForFile(file),
                         generator -> generator.toNameMatcher(context));
     if (context.javaClass.isEnum()) {
-      findMatchingEnumElement(file, context, nameMatchers, results, matchedTypeElements);
+      findMatchingEnumElement(candidates, context, nameMatchers, results, matchedTypeElements);
     }
     else {
-      findMatchingClassElement(file, context, nameMatchers, results, matchedTypeElements);
+      findMatchingClassElement(candidates, context, nameMatchers, results, matchedTypeElements);
     }
     if (results.isEmpty()) {
       return matchedTypeElements;
@@ -137,13 +170,13 @@ public class PbJavaGotoDeclarationHandler implements GotoDeclarationHandler {
   }
 
   private static void findMatchingEnumElement(
-    PbFile file,
+    Collection<PbSymbol> candidates,
     PbJavaGotoDeclarationContext context,
     List<NameMatcher> nameMatchers,
     List<PsiElement> results,
     List<PsiElement> matchedTypeElements) {
     boolean searchEnumValues = context.resolvedElement instanceof PsiEnumConstant;
-    for (PbSymbol symbol : ContainerUtil.flatten(file.getLocalQualifiedSymbolMap().values())) {
+    for (PbSymbol symbol : candidates) {
       if (PbPsiUtil.isEnumElement(symbol)) {
         PbEnumDefinition enumDefinition = (PbEnumDefinition)symbol;
         for (NameMatcher matcher : nameMatchers) {
@@ -191,13 +224,13 @@ public class PbJavaGotoDeclarationHandler implements GotoDeclarationHandler {
   }
 
   private static void findMatchingClassElement(
-    PbFile file,
+    Collection<PbSymbol> candidates,
     PbJavaGotoDeclarationContext context,
     List<NameMatcher> nameMatchers,
     List<PsiElement> results,
     List<PsiElement> matchedTypeElements) {
     boolean searchFields = context.resolvedElement instanceof PsiMember;
-    for (PbSymbol symbol : ContainerUtil.flatten(file.getLocalQualifiedSymbolMap().values())) {
+    for (PbSymbol symbol : candidates) {
       if (PbPsiUtil.isMessageElement(symbol)) {
         PbMessageType message = (PbMessageType)symbol;
         for (NameMatcher matcher : nameMatchers) {
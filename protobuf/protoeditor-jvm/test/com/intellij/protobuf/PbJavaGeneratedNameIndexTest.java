@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf;
+
+import com.intellij.protobuf.jvm.PbJavaGeneratedNameIndex;
+import com.intellij.protobuf.lang.psi.PbFile;
+import com.intellij.protobuf.lang.psi.PbSymbol;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+import com.intellij.util.containers.ContainerUtil;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/** Tests for {@link PbJavaGeneratedNameIndex}. */
+public class PbJavaGeneratedNameIndexTest extends LightJavaCodeInsightFixtureTestCase {
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFixture.setTestDataPath(getTestDataPath());
+    myFixture.copyFileToProject(new File(getTestDataPath(), "proto/Proto2.proto").getPath(), "protos/Proto2.proto");
+  }
+
+  @Override
+  public String getTestDataPath() {
+    return TestUtils.getTestHomeDirectory() + "/protoeditor-jvm/testData/";
+  }
+
+  public void testMessageClasses() {
+    assertThat(symbolsFor("com.test.api_v2.Proto2.M1")).containsExactly("com.proto.pack.api_v2.M1");
+    assertThat(symbolsFor("com.test.api_v2.Proto2.M1OrBuilder")).containsExactly("com.proto.pack.api_v2.M1");
+    assertThat(symbolsFor("com.test.api_v2.Proto2.M1.NestedM1"))
+      .containsExactly("com.proto.pack.api_v2.M1.NestedM1");
+  }
+
+  public void testEnumClasses() {
+    assertThat(symbolsFor("com.test.api_v2.Proto2.Shapes")).containsExactly("com.proto.pack.api_v2.Shapes");
+    assertThat(symbolsFor("com.test.api_v2.Proto2.M1.NestedEnum"))
+      .containsExactly("com.proto.pack.api_v2.M1.NestedEnum");
+  }
+
+  public void testOneofCaseClass() {
+    assertThat(symbolsFor("com.test.api_v2.Proto2.M1.TestOneofCase"))
+      .containsExactly("com.proto.pack.api_v2.M1.test_oneof");
+  }
+
+  public void testUnknownClass() {
+    assertThat(symbolsFor("com.test.api_v2.Proto2")).isEmpty();
+    assertThat(symbolsFor("com.test.api_v2.Proto2.M1.Builder")).isEmpty();
+    assertThat(symbolsFor("com.proto.pack.api_v2.M1")).isEmpty();
+  }
+
+  private List<String> symbolsFor(String javaClassName) {
+    Map<PbFile, List<PbSymbol>> symbols =
+      PbJavaGeneratedNameIndex.getSymbolsForJavaClass(
+        getProject(), javaClassName, GlobalSearchScope.allScope(getProject()));
+    return ContainerUtil.map(
+      ContainerUtil.flatten(symbols.values()), symbol -> String.valueOf(symbol.getQualifiedName()));
+  }
+}
@@ -17,6 +17,7 @@ package com.intellij.protobuf.python;
 
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.intellij.codeInsight.navigation.actions.GotoDeclarationHandler;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.protobuf.lang.psi.PbElement;
@@ -24,18 +25,17 @@ import com.intellij.protobuf.lang.psi.PbFile;
 import com.intellij.protobuf.lang.psi.PbSymbol;
 import com.intellij.protobuf.shared.gencode.ProtoFromSourceComments;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.QualifiedName;
 import com.jetbrains.python.PythonLanguage;
 import com.jetbrains.python.psi.PyFile;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.AbstractMap;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import static java.util.stream.Collectors.toList;
-
 /** Handles goto declaration from python generated code -> .proto files. */
 public final class PbPythonGotoDeclarationHandler implements GotoDeclarationHandler {
 
@@ -108,30 +108,21 @@ public final class PbPythonGotoDeclarationHandler implements GotoDeclarationHand
       return ImmutableList.of();
     }
     String desiredSymbol = fileLocalSymbol.replace('.', '_');
-    Map<QualifiedName, Collection<PbSymbol>> fileSymbols = pbFile.getLocalQualifiedSymbolMap();
-    int numPackageComponents = pbFile.getPackageQualifiedName().getComponentCount();
-    List<PbSymbol> matches =
-        fileSymbols
-            .entrySet()
-            .stream()
-            .flatMap(e -> e.getValue()
-                .stream()
-                .map(v -> new AbstractMap.SimpleEntry<>(e.getKey(), v)))
-            .filter(
-                entry -> {
-                  QualifiedName qualifiedName = entry.getKey();
-                  String candidateLastComponent = qualifiedName.getLastComponent();
-                  if (candidateLastComponent == null
-                      || !desiredSymbol.endsWith(candidateLastComponent)) {
-                    return false;
-                  }
-                  return qualifiedName
-                      .removeHead(numPackageComponents)
-                      .join("_")
-                      .equals(desiredSymbol);
-                })
-            .map(Map.Entry::getValue)
-            .collect(toList());
-    return ImmutableList.copyOf(matches);
+    return getNormalizedSymbolMap(pbFile).get(desiredSymbol);
+  }
+
+  /** Maps the '_'-joined file-local name of each symbol in the file to the symbols. */
+  private static ImmutableListMultimap<String, PbSymbol> getNormalizedSymbolMap(PbFile pbFile) {
+    return CachedValuesManager.getCachedValue(
+        pbFile,
+        () -> {
+          int numPackageComponents = pbFile.getPackageQualifiedName().getComponentCount();
+          ImmutableListMultimap.Builder<String, PbSymbol> builder = ImmutableListMultimap.builder();
+          for (Map.Entry<QualifiedName, Collection<PbSymbol>> entry :
+              pbFile.getLocalQualifiedSymbolMap().entrySet()) {
+            builder.putAll(entry.getKey().removeHead(numPackageComponents).join("_"), entry.getValue());
+          }
+          return CachedValueProvider.Result.create(builder.build(), pbFile);
+        });
   }
 }
@@ -114,6 +114,27 @@ class CoverageStatisticsData(val coverageComputationState: QodanaCoverageComputa
     reportCoveredLines.incrementAndGet()
   }
 
+  /**
+   * Raw line counters, to be stored by a shard run and added up with [addCounters] when the shards are merged.
+   */
+  fun counters(): Map<String, Int> = mapOf(
+    "totalLines" to totalLines.get(),
+    "coveredLines" to coveredLines.get(),
+    "freshLines" to freshLines.get(),
+    "freshCoveredLines" to freshCoveredLines.get(),
+    "reportTotalLines" to reportTotalLines.get(),
+    "reportCoveredLines" to reportCoveredLines.get(),
+  )
+
+  fun addCounters(counters: Map<String, Int>) {
+    totalLines.addAndGet(counters["totalLines"] ?: 0)
+    coveredLines.addAndGet(counters["coveredLines"] ?: 0)
+    freshLines.addAndGet(counters["freshLines"] ?: 0)
+    freshCoveredLines.addAndGet(counters["freshCoveredLines"] ?: 0)
+    reportTotalLines.addAndGet(counters["reportTotalLines"] ?: 0)
+    reportCoveredLines.addAndGet(counters["reportCoveredLines"] ?: 0)
+  }
+
   fun getChangedRanges(virtualFileUrl: String) = changedRanges.getOrDefault(virtualFileUrl, null)
 }
 
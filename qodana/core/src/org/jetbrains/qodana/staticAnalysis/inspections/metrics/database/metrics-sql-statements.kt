@@ -26,6 +26,24 @@ fun MetricTable.getSumStatement(sumColumn: MetricTableColumn): String {
   return "SELECT SUM(${sumColumn.columnName}) FROM $tableName;"
 }
 
+/**
+ * Replaces the rows of every file present in the table of the attached database [sourceSchema] with the rows stored there.
+ */
+fun MetricTable.getCopyFromSourceStatement(sourceSchema: String): String {
+  val file = filePathColumn.columnName
+  return "DELETE FROM $tableName WHERE $file IN (SELECT $file FROM $sourceSchema.$tableName);" +
+         "INSERT INTO $tableName SELECT * FROM $sourceSchema.$tableName;"
+}
+
+fun MetricTable.Companion.getCopyFromSourceStatementForAllTables(sourceSchema: String): String {
+  val copyStatements: String = EP.extensionList.joinToString(separator = "") { it.getCopyFromSourceStatement(sourceSchema) }
+  return """
+    BEGIN TRANSACTION;
+    $copyStatements
+    COMMIT;
+    """.trimIndent()
+}
+
 fun MetricTable.Companion.getSchemaForAllTables(): String {
   val tables: List<MetricTable> = EP.extensionList
   val createStatements: String = tables.joinToString(separator = "") { it.getCreateStatement() }
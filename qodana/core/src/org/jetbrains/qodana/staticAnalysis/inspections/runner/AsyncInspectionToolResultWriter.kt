@@ -5,17 +5,18 @@ import com.intellij.openapi.components.PathMacroManager
 import com.intellij.openapi.diagnostic.logger
 import com.intellij.openapi.project.Project
 import com.intellij.platform.util.coroutines.childScope
-import com.jetbrains.qodana.sarif.SarifUtil
-import com.jetbrains.qodana.sarif.model.Result
 import kotlinx.coroutines.*
 import kotlinx.coroutines.channels.Channel
 import org.jetbrains.qodana.staticAnalysis.StaticAnalysisDispatchers
 import org.jetbrains.qodana.staticAnalysis.profile.QodanaProfile
+import org.jetbrains.qodana.staticAnalysis.sarif.SourceTextCache
 import org.jetbrains.qodana.staticAnalysis.sarif.fingerprints.BaselineEqualityV1
 import org.jetbrains.qodana.staticAnalysis.sarif.fingerprints.fingerprintOf
 
 private val LOG = logger<AsyncInspectionToolResultWriter>()
 
+private const val MAX_BATCH_SIZE = 1000
+
 internal class AsyncInspectionToolResultWriter(
   private val scope: CoroutineScope,
   val project: Project,
@@ -24,7 +25,9 @@ internal class AsyncInspectionToolResultWriter(
   private val macroManager: PathMacroManager
 ) {
   private val channel: Channel<List<Problem>> = Channel(1000)
-  private val gson = SarifUtil.createGson()
+
+  /** Texts of the files results are reported in; shared by batches because consecutive batches usually hit the same files */
+  private val sourceTexts = SourceTextCache()
 
   private val writerJob: Job =
     // WHY IO? – Database stuff, need to investigate and refactor
@@ -32,9 +35,12 @@ internal class AsyncInspectionToolResultWriter(
     scope.launch(StaticAnalysisDispatchers.IO, CoroutineStart.LAZY) {
       LOG.info("Async result writer started")
       for (problems in channel) {
-        for (problem in problems) {
-          writeProblem(problem, profileState)
+        val pending = problems.toMutableList()
+        // drain whatever is already queued, so that files are read once per batch and rows are written in few large transactions
+        while (pending.size < MAX_BATCH_SIZE) {
+          pending += channel.tryReceive().getOrNull() ?: break
         }
+        writeBatch(toRows(pending))
       }
     }
 
@@ -61,28 +67,75 @@ internal class AsyncInspectionToolResultWriter(
     scope.coroutineContext.job.cancelAndJoin()
   }
 
-  private suspend fun writeProblem(problem: Problem, profileState: QodanaProfile.QodanaProfileState) {
+  /**
+   * Converts [problems] grouped by file: groups are converted in parallel, while problems of one file are converted
+   * one after another and share the file text from [sourceTexts].
+   *
+   * Problems whose conversion [reads the database][Problem.readsDatabase] are converted sequentially in the writer coroutine,
+   * on the IO dispatcher: the database connection is not safe for concurrent use.
+   */
+  private suspend fun toRows(problems: List<Problem>): MutableList<ToolResultRow> = withContext(sourceTexts) {
+    val (readingDatabase, independent) = problems.partition { it.readsDatabase }
+    val rows = independent.groupBy { it.getFile() }.values
+      .map { fileProblems ->
+        async(StaticAnalysisDispatchers.Default) { fileProblems.mapNotNull { toRow(it, profileState) } }
+      }
+      .awaitAll()
+      .flatMapTo(mutableListOf()) { it }
+    readingDatabase.mapNotNullTo(rows) { toRow(it, profileState) }
+  }
+
+  private suspend fun toRow(problem: Problem, profileState: QodanaProfile.QodanaProfileState): ToolResultRow? {
     try {
-      val sarif = problem.getSarif(macroManager, database) ?: return
+      val sarif = problem.getSarif(macroManager, database) ?: return null
       val inspectionGroup = profileState.stateByInspectionId[sarif.ruleId]!!.inspectionGroup.name
       val fingerprint = requireNotNull(sarif.fingerprintOf(BaselineEqualityV1)) { "Fingerprints not generated" }
-      withContext(StaticAnalysisDispatchers.IO) {
-        database.insert(inspectionGroup,
-                        sarif.ruleId,
-                        fingerprint,
-                        gson.toJson(sarif, Result::class.java))
-
-        val hashFrom = problem.getRelatedProblemHashFrom()
-        if (hashFrom != null) {
-          database.insertRelatedProblem(hashFrom, gson.toJson(sarif, Result::class.java))
-        }
-      }
+      return ToolResultRow(inspectionGroup, sarif.ruleId, fingerprint, ToolResultEncoding.encode(sarif), problem.getRelatedProblemHashFrom())
     }
     catch (e: CancellationException) {
       throw e
     }
     catch(e: Exception) {
       LOG.warn(e)
+      return null
+    }
+  }
+
+  private suspend fun writeBatch(batch: MutableList<ToolResultRow>) {
+    if (batch.isEmpty()) return
+    try {
+      withContext(StaticAnalysisDispatchers.IO) {
+        try {
+          database.insertBatch(batch)
+        }
+        catch (e: CancellationException) {
+          throw e
+        }
+        catch (e: Exception) {
+          // the transaction was rolled back, retry row by row so that only the rows that cannot be written are lost
+          LOG.warn("Cannot write a batch of ${batch.size} results, writing them one by one", e)
+          writeOneByOne(batch)
+        }
+      }
+    }
+    finally {
+      batch.clear()
+    }
+  }
+
+  private fun writeOneByOne(rows: List<ToolResultRow>) {
+    var failed = 0
+    for (row in rows) {
+      try {
+        database.insertBatch(listOf(row))
+      }
+      catch (e: Exception) {
+        failed++
+        LOG.warn("Cannot write result of ${row.inspectionId}", e)
+      }
+    }
+    if (failed > 0) {
+      LOG.error("$failed of ${rows.size} results were not written to the results database")
     }
   }
 }
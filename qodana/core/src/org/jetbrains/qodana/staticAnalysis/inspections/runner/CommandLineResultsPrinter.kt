@@ -7,6 +7,12 @@ import org.jetbrains.qodana.staticAnalysis.inspections.metrics.CodeQualityMetric
 import org.jetbrains.qodana.staticAnalysis.inspections.runner.CommandLineTable.Companion.DEFAULT_COLUMN_SIZE
 import org.jetbrains.qodana.staticAnalysis.sarif.QodanaSeverity
 import org.jetbrains.qodana.staticAnalysis.sarif.qodanaSeverity
+import org.jetbrains.qodana.staticAnalysis.stat.InspectionCost
+import java.nio.file.Path
+import kotlin.io.path.Path
+import kotlin.io.path.relativeTo
+
+private const val PROFILE_TOP_SIZE = 20
 
 class CommandLineResultsPrinter(
   private val inspectionIdToName: (inspectionId: String) -> String,
@@ -151,6 +157,43 @@ class CommandLineResultsPrinter(
     }
   }
 
+  fun printInspectionProfile(costs: List<InspectionCost>, cpuTime: Boolean, projectPath: Path, limit: Int = PROFILE_TOP_SIZE) {
+    fun List<InspectionCost>.millis() = if (cpuTime) sumOf { it.cpuNanos } / 1_000_000 else sumOf { it.wallMillis }
+    val totalMillis = costs.millis()
+    fun List<InspectionCost>.row(name: String) = listOf(
+      name,
+      "%.2f".format(millis() / 1000.0),
+      "%.1f%%".format(if (totalMillis == 0L) 0.0 else millis() * 100.0 / totalMillis),
+      "%.1f".format(sumOf { it.allocatedBytes } / (1024.0 * 1024.0)),
+      sumOf { it.problemsCount }.toString(),
+    )
+    val header = listOf(
+      QodanaBundle.message(if (cpuTime) "cli.profile.table.header.cpu.time" else "cli.profile.table.header.wall.time"),
+      QodanaBundle.message("cli.profile.table.header.percent"),
+      QodanaBundle.message("cli.profile.table.header.allocated"),
+      QodanaBundle.message("cli.results.table.header.problems.count"),
+    )
+
+    val result = StringBuilder()
+    result.appendLine(System.lineSeparator() + QodanaBundle.message("cli.profile.title"))
+    result.appendLine(QodanaBundle.message("cli.profile.total", "%.2f".format(totalMillis / 1000.0), limit))
+
+    val byInspection = costs.groupBy { it.inspectionId }.entries
+      .sortedWith(compareByDescending<Map.Entry<String, List<InspectionCost>>> { it.value.millis() }.thenBy { it.key })
+      .take(limit)
+      .map { (id, inspectionCosts) -> inspectionCosts.row(inspectionIdToName(id)) }
+    result.appendLine(CommandLineTable(listOf(QodanaBundle.message("cli.results.table.header.inspection.name")) + header,
+                                       byInspection, listOf(CommandLineTable.DEFAULT_COLUMN_SIZE, 0, 0, 0, 0)).buildTable())
+
+    val byFile = costs.filter { it.filePath.isNotEmpty() }.groupBy { it.filePath }.entries
+      .sortedWith(compareByDescending<Map.Entry<String, List<InspectionCost>>> { it.value.millis() }.thenBy { it.key })
+      .take(limit)
+      .map { (path, fileCosts) -> fileCosts.row(Path(path).let { if (it.startsWith(projectPath)) it.relativeTo(projectPath).toString() else path }) }
+    result.appendLine(CommandLineTable(listOf(QodanaBundle.message("cli.sanity.results.table.header.file")) + header,
+                                       byFile, listOf(CommandLineTable.DEFAULT_COLUMN_SIZE, 0, 0, 0, 0)).buildTable())
+    cliPrinter.invoke(result.toString())
+  }
+
   private fun <T> printProblemsCountTable(
     sectionTitle: String,
     groupingMessage: String,
@@ -29,6 +29,8 @@ import org.jetbrains.qodana.staticAnalysis.sarif.writeReport
 import org.jetbrains.qodana.staticAnalysis.script.LocalChangesScript
 import org.jetbrains.qodana.staticAnalysis.script.QodanaScript
 import org.jetbrains.qodana.staticAnalysis.script.QodanaScriptResult
+import org.jetbrains.qodana.staticAnalysis.stat.INSPECTION_PROFILE_FOLDED_FILE
+import org.jetbrains.qodana.staticAnalysis.stat.writeFoldedStacks
 import java.io.IOException
 import kotlin.io.path.exists
 
@@ -138,6 +140,16 @@ class QodanaRunner(val script: QodanaScript, private val config: QodanaConfig, p
         commandLineResultsPrinter?.printCodeQualityMetrics(metrics, sectionTitle = QodanaBundle.message("cli.metrics.title"))
       }
 
+      val inspectionProfile = scriptResult.inspectionProfile
+      if (inspectionProfile != null) {
+        // CPU time is not measured when the JVM does not support thread CPU time
+        val cpuTime = inspectionProfile.any { it.cpuNanos > 0 }
+        commandLineResultsPrinter?.printInspectionProfile(inspectionProfile, cpuTime, config.projectPath)
+        runInterruptible(StaticAnalysisDispatchers.IO) {
+          writeFoldedStacks(inspectionProfile, config.projectPath, config.outPath.resolve(INSPECTION_PROFILE_FOLDED_FILE), cpuTime)
+        }
+      }
+
     }
     catch (e: Throwable) {
       val invocation = sarifRun.invocations.first()
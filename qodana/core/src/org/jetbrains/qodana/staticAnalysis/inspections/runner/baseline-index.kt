@@ -0,0 +1,229 @@
+package org.jetbrains.qodana.staticAnalysis.inspections.runner
+
+import com.google.gson.Gson
+import com.google.gson.JsonElement
+import com.google.gson.JsonObject
+import com.google.gson.JsonParser
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.intellij.openapi.util.io.FileUtilRt
+import com.intellij.openapi.util.io.NioFiles
+import com.jetbrains.qodana.sarif.SarifUtil
+import com.jetbrains.qodana.sarif.baseline.BaselineCalculation
+import com.jetbrains.qodana.sarif.model.Result
+import com.jetbrains.qodana.sarif.model.Run
+import com.jetbrains.qodana.sarif.model.SarifReport
+import org.intellij.lang.annotations.Language
+import org.jetbrains.sqlite.ObjectBinder
+import org.jetbrains.sqlite.SqliteConnection
+import java.nio.file.Path
+import kotlin.io.path.bufferedReader
+
+@Language("SQLite")
+private const val INDEX_SCHEMA = """
+  PRAGMA journal_mode = OFF;
+  PRAGMA synchronous = OFF;
+
+  BEGIN TRANSACTION;
+
+  CREATE TABLE fingerprints (
+    result INT,
+    fingerprint TEXT
+  );
+
+  CREATE INDEX idx_fingerprints_fingerprint ON fingerprints (fingerprint);
+
+  CREATE INDEX idx_fingerprints_result ON fingerprints (result);
+
+  COMMIT;
+"""
+
+private const val INSERT_FINGERPRINT = "INSERT INTO fingerprints VALUES (?, ?);"
+private const val SELECT_RESULT = "SELECT result FROM fingerprints WHERE fingerprint = ? LIMIT 1;"
+private const val DELETE_RESULT = "DELETE FROM fingerprints WHERE result = ?;"
+
+private const val INSERT_BATCH_SIZE = 10_000
+
+private const val EQUAL_INDICATOR_PREFIX = "${BaselineCalculation.EQUAL_INDICATOR}/"
+
+/**
+ * Baseline results indexed by their equal indicator fingerprints in an SQLite file, so that a baseline is compared
+ * without its results on the heap.
+ *
+ * Only the fingerprints are stored, the results are not needed when absent results are not reported.
+ * Baseline results without equal indicators can only be matched by [BaselineCalculation], they are kept in [unindexed]
+ * with the display only parts dropped, see [stripForMatching].
+ */
+internal class BaselineFingerprintIndex private constructor(
+  private val connection: SqliteConnection,
+  private val file: Path,
+  /**
+   * Runs of the baseline with only the results that have no equal indicators
+   */
+  val unindexed: SarifReport,
+) : AutoCloseable {
+  companion object {
+    /**
+     * Streams `runs[*].results` of [baselineFile] into a new index, one result at a time
+     */
+    fun build(baselineFile: Path): BaselineFingerprintIndex {
+      val file = FileUtilRt.createTempFile("qodana-baseline", ".db", true).toPath()
+      val connection = SqliteConnection(file)
+      try {
+        connection.execute(INDEX_SCHEMA)
+        val unindexed = BaselineIndexWriter(connection).write(baselineFile)
+        return BaselineFingerprintIndex(connection, file, unindexed)
+      }
+      catch (e: Throwable) {
+        connection.close()
+        NioFiles.deleteRecursively(file)
+        throw e
+      }
+    }
+  }
+
+  private val gson = SarifUtil.createGson()
+
+  /**
+   * Marks the results of [report] with the fingerprints of a baseline result as unchanged, a baseline result
+   * matches one result. The rest is compared by [BaselineCalculation] against [unindexed].
+   * Absent results are never added, the index does not keep them, so [options] must not include them.
+   */
+  fun compare(report: SarifReport, options: BaselineCalculation.Options) {
+    val runs = report.runs.orEmpty()
+    val allResults = runs.map { it.results }
+    connection.execute("BEGIN TRANSACTION;")
+    try {
+      val selectBinder = ObjectBinder(paramCount = 1)
+      connection.prepareStatement(SELECT_RESULT, selectBinder).use { select ->
+        for (run in runs) {
+          run.results = run.results?.filterTo(ArrayList()) { result ->
+            val fingerprints = equalIndicators(gson.toJsonTree(result.partialFingerprints))
+            val matched = fingerprints.firstNotNullOfOrNull { fingerprint ->
+              selectBinder.bind(fingerprint)
+              val resultSet = select.executeQuery()
+              if (resultSet.next()) resultSet.getInt(0) else null
+            }
+            if (matched != null) {
+              connection.execute(DELETE_RESULT, arrayOf(matched))
+              result.baselineState = Result.BaselineState.UNCHANGED
+            }
+            matched == null
+          }
+        }
+      }
+      // This mutates the `report` parameter! Only the unmatched results are left in it here.
+      BaselineCalculation.compare(report, unindexed, options)
+    }
+    finally {
+      runs.zip(allResults) { run, results -> run.results = results }
+      // matched results are deleted only to be matched once, the index is thrown away after the comparison
+      connection.execute("COMMIT;")
+    }
+  }
+
+  override fun close() {
+    connection.close()
+    NioFiles.deleteRecursively(file)
+  }
+}
+
+private class BaselineIndexWriter(private val connection: SqliteConnection) {
+  private val gson: Gson = SarifUtil.createGson()
+  private val binder = ObjectBinder(paramCount = 2, batchCountHint = INSERT_BATCH_SIZE)
+  private var resultCount = 0
+  private var batchSize = 0
+
+  /**
+   * The index is deleted if it throws, so nothing is rolled back
+   */
+  fun write(baselineFile: Path): SarifReport {
+    connection.execute("BEGIN TRANSACTION;")
+    val report = connection.prepareStatement(INSERT_FINGERPRINT, binder).use { insert ->
+      JsonReader(baselineFile.bufferedReader()).use { reader -> readReport(reader) { insert.executeBatch() } }
+    }
+    connection.execute("COMMIT;")
+    return report
+  }
+
+  private fun readReport(reader: JsonReader, flush: () -> Unit): SarifReport {
+    val reportJson = JsonObject()
+    var runs: MutableList<Run>? = null
+    reader.beginObject()
+    while (reader.hasNext()) {
+      val name = reader.nextName()
+      if (name != "runs" || reader.peek() != JsonToken.BEGIN_ARRAY) {
+        reportJson.add(name, JsonParser.parseReader(reader))
+        continue
+      }
+      runs = mutableListOf()
+      reader.beginArray()
+      while (reader.hasNext()) {
+        runs.add(readRun(reader, flush))
+      }
+      reader.endArray()
+    }
+    reader.endObject()
+    if (batchSize > 0) flush()
+    return gson.fromJson(reportJson, SarifReport::class.java).apply { this.runs = runs }
+  }
+
+  private fun readRun(reader: JsonReader, flush: () -> Unit): Run {
+    val runJson = JsonObject()
+    var results: MutableList<Result>? = null
+    reader.beginObject()
+    while (reader.hasNext()) {
+      val name = reader.nextName()
+      if (name != "results" || reader.peek() != JsonToken.BEGIN_ARRAY) {
+        runJson.add(name, JsonParser.parseReader(reader))
+        continue
+      }
+      results = mutableListOf()
+      reader.beginArray()
+      while (reader.hasNext()) {
+        val resultJson = JsonParser.parseReader(reader).asJsonObject
+        val fingerprints = equalIndicators(resultJson.get("partialFingerprints"))
+        if (fingerprints.isEmpty()) {
+          results.add(gson.fromJson(resultJson, Result::class.java).stripForMatching())
+          continue
+        }
+        val id = resultCount++
+        for (fingerprint in fingerprints) {
+          binder.bindMultiple(id, fingerprint)
+          binder.addBatch()
+          if (++batchSize == INSERT_BATCH_SIZE) {
+            flush()
+            batchSize = 0
+          }
+        }
+      }
+      reader.endArray()
+    }
+    reader.endObject()
+    return gson.fromJson(runJson, Run::class.java).apply { this.results = results }
+  }
+}
+
+/**
+ * `equalIndicator/v<version>=<value>` for each equal indicator in the `partialFingerprints` json
+ */
+private fun equalIndicators(partialFingerprints: JsonElement?): List<String> =
+  (partialFingerprints as? JsonObject)?.entrySet().orEmpty()
+    .filter { (key, value) -> key.startsWith(EQUAL_INDICATOR_PREFIX) && value.isJsonPrimitive }
+    .map { (key, value) -> "$key=${value.asString}" }
+
+/**
+ * Drops what is only displayed: code flows, graph traversals, stacks, fixes, attachments, related locations and markdown.
+ * Everything [BaselineCalculation] may compare results without fingerprints on (locations with their snippets and
+ * context regions, graphs, rule id, message text, properties) is kept.
+ */
+private fun Result.stripForMatching(): Result {
+  codeFlows = null
+  graphTraversals = null
+  stacks = null
+  fixes = null
+  attachments = null
+  relatedLocations = null
+  message?.markdown = null
+  return this
+}
@@ -25,7 +25,9 @@ private suspend fun readBaselineReport(
   baseline: String,
   projectPath: Path,
   readResults: Boolean = true,
-): SarifReport? {
+): SarifReport? = readBaseline(baseline, projectPath) { SarifUtil.readReport(it, readResults) }
+
+private suspend fun <T> readBaseline(baseline: String, projectPath: Path, read: (Path) -> T): T? {
   val baselineFile = runInterruptible(StaticAnalysisDispatchers.IO) {
     Path(baseline).takeIf(Path::isAbsolute) ?: projectPath.resolve(baseline)
   }
@@ -35,7 +37,7 @@ private suspend fun readBaselineReport(
   }
   try {
     return runInterruptible(StaticAnalysisDispatchers.IO) {
-      SarifUtil.readReport(baselineFile, readResults)
+      read(baselineFile)
     }
   }
   catch (e: JsonSyntaxException) {
@@ -50,6 +52,10 @@ private suspend fun readBaselineReport(
 internal suspend fun getBaselineReport(config: QodanaConfig, includeResults: Boolean = true): SarifReport? =
   config.baseline?.let { readBaselineReport(config.baseline, config.projectPath, includeResults) }
 
+/**
+ * Without absent results the baseline is compared through a [BaselineFingerprintIndex], its results are not loaded.
+ * Absent results are copied into the report, so then the baseline is read in full.
+ */
 internal suspend fun applyBaselineCalculation(
   report: SarifReport,
   config: QodanaConfig,
@@ -57,11 +63,20 @@ internal suspend fun applyBaselineCalculation(
   reporter: QodanaMessageReporter
 ) {
   if (config.baseline == null) return
+  val options = getOptions(scope, config)
+  if (!config.includeAbsent) {
+    val index = readBaseline(config.baseline, config.projectPath, BaselineFingerprintIndex::build)
+    if (index != null) {
+      index.use {
+        runInterruptible(StaticAnalysisDispatchers.IO) { it.compare(report, options) }
+      }
+      return
+    }
+  }
   val baseline = readBaselineReport(config.baseline, config.projectPath) ?: run {
     reporter.reportError("Can't find baseline report file: ${config.baseline}. Baseline will be calculated against empty report.")
     createSarifReport(emptyList())
   }
-  val options = getOptions(scope, config)
 
   // This mutates the `report` parameter!
   BaselineCalculation.compare(report, baseline, options)
@@ -89,6 +89,8 @@ class DuplicateCodeConsumer: GlobalOutputConsumer {
 }
 
 private class DuplicatesProblem(val element: Element): Problem {
+  override val readsDatabase: Boolean get() = true
+
   override suspend fun getSarif(macroManager: PathMacroManager, database: QodanaToolResultDatabase): Result? {
     macroManager.collapsePathsRecursively(element)
     var mainResult: Result? = null
@@ -23,6 +23,9 @@ interface Problem {
   fun getFile(): String?
   fun getModule(): String?
   fun getRelatedProblemHashFrom(): String? = null
+
+  /** Whether [getSarif] queries the database, such problems are converted one at a time on the writer's IO thread */
+  val readsDatabase: Boolean get() = false
 }
 
 internal class XmlProblem(private val element: Element,
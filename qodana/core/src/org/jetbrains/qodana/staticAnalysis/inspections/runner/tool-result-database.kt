@@ -2,12 +2,15 @@ package org.jetbrains.qodana.staticAnalysis.inspections.runner
 
 import com.intellij.openapi.util.io.NioFiles
 import org.intellij.lang.annotations.Language
+import org.jetbrains.qodana.staticAnalysis.inspections.metrics.database.getCopyFromSourceStatementForAllTables
 import org.jetbrains.qodana.staticAnalysis.inspections.metrics.database.getDeleteStatementForFile
 import org.jetbrains.qodana.staticAnalysis.inspections.metrics.database.getInsertStatement
 import org.jetbrains.qodana.staticAnalysis.inspections.metrics.database.getSchemaForAllTables
 import org.jetbrains.qodana.staticAnalysis.inspections.metrics.database.rowData.MetricTableRowData
 import org.jetbrains.qodana.staticAnalysis.inspections.metrics.database.rowData.getValues
 import org.jetbrains.qodana.staticAnalysis.inspections.metrics.database.tables.MetricTable
+import org.jetbrains.qodana.staticAnalysis.stat.InspectionCost
+import org.jetbrains.qodana.staticAnalysis.stat.InspectionProfilingService
 import org.jetbrains.sqlite.EmptyBinder
 import org.jetbrains.sqlite.ObjectBinder
 import org.jetbrains.sqlite.SqliteConnection
@@ -22,7 +25,7 @@ private const val TABLE_SCHEMA = """
     inspectionGroup TEXT,
     inspection TEXT,
     hash TEXT,
-    json TEXT
+    result BLOB
   );
   
   CREATE INDEX idx_results_inspection_hash ON results (inspection, hash);
@@ -40,16 +43,31 @@ private const val TABLE_SCHEMA = """
   
   CREATE TABLE related_problem (
     hash TEXT,
-    json TEXT
+    result BLOB
   );
   
   CREATE INDEX idx_related_problem_hash ON related_problem (hash);
   
+  CREATE TABLE inspection_profile (
+    inspection TEXT,
+    file TEXT,
+    wall_ms INT,
+    cpu_ns INT,
+    allocated_bytes INT,
+    problems INT,
+    invocations INT
+  );
+  
+  CREATE TABLE coverage_statistics (
+    name TEXT,
+    value INT
+  );
+  
   COMMIT;
 """
 
 private const val INSERT_STATEMENT = "INSERT INTO results VALUES (?, ?, ?, ?);"
-private const val SELECT_STATEMENT = "SELECT inspection, hash, json FROM results WHERE inspectionGroup = ? ORDER BY inspection, hash;"
+private const val SELECT_STATEMENT = "SELECT inspection, hash, result FROM results WHERE inspectionGroup = ? ORDER BY inspection, hash;"
 
 private const val SELECT_INSPECTION_IDS = "SELECT DISTINCT inspection FROM results;"
 
@@ -57,7 +75,45 @@ private const val INSERT_DUPLICATES_STATEMENT = "INSERT INTO duplicates VALUES (
 private const val SELECT_DUPLICATES_STATEMENT = "SELECT json FROM duplicates WHERE file = ? AND line = ? AND start = ? ORDER BY hash;"
 
 private const val INSERT_RELATED_PROBLEM = "INSERT INTO related_problem VALUES (?, ?);"
-private const val SELECT_RELATED_PROBLEM = "SELECT json FROM related_problem WHERE hash = ?;"
+private const val SELECT_RELATED_PROBLEM = "SELECT result FROM related_problem WHERE hash = ?;"
+
+private const val INSERT_INSPECTION_PROFILE = "INSERT INTO inspection_profile VALUES (?, ?, ?, ?, ?, ?, ?);"
+
+private const val INSERT_COVERAGE_STATISTICS = "INSERT INTO coverage_statistics VALUES (?, ?);"
+private const val SELECT_COVERAGE_STATISTICS = "SELECT name, SUM(value) FROM coverage_statistics GROUP BY name ORDER BY name;"
+
+private const val ATTACH_STATEMENT = "ATTACH DATABASE ? AS source;"
+private const val DETACH_STATEMENT = "DETACH DATABASE source;"
+
+@Language("SQLite")
+private const val COPY_FROM_SOURCE_STATEMENT = """
+  BEGIN TRANSACTION;
+
+  INSERT INTO results
+  SELECT * FROM source.results AS s
+  WHERE NOT EXISTS (
+    SELECT 1 FROM results AS r WHERE r.inspection = s.inspection AND r.hash = s.hash AND r.result = s.result
+  );
+
+  INSERT INTO related_problem
+  SELECT * FROM source.related_problem AS s
+  WHERE NOT EXISTS (
+    SELECT 1 FROM related_problem AS r WHERE r.hash = s.hash AND r.result = s.result
+  );
+
+  INSERT INTO duplicates
+  SELECT * FROM source.duplicates AS s
+  WHERE NOT EXISTS (
+    SELECT 1 FROM duplicates AS d
+    WHERE d.file = s.file AND d.line = s.line AND d.start = s.start AND d.end = s.end AND d.hash = s.hash AND d.json = s.json
+  );
+
+  INSERT INTO inspection_profile SELECT * FROM source.inspection_profile;
+
+  INSERT INTO coverage_statistics SELECT * FROM source.coverage_statistics;
+
+  COMMIT;
+"""
 
 internal const val QODANA_DB_FILENAME = "tool-results.db"
 
@@ -85,23 +141,149 @@ class QodanaToolResultDatabase private constructor(private val connection: Sqlit
       QodanaToolResultDatabase(SqliteConnection(path.resolve(QODANA_DB_FILENAME)))
   }
 
+  /**
+   * Guards every write: transactions are started on the shared connection, so a write from another thread must not
+   * run in the middle of one and be committed or rolled back with it.
+   */
+  private val writeLock = Any()
+
   fun insert(inspectionGroup: String, inspectionId: String, hash: String, json: String) {
-    connection.execute(INSERT_STATEMENT, arrayOf(inspectionGroup, inspectionId, hash, json))
+    synchronized(writeLock) {
+      connection.execute(INSERT_STATEMENT, arrayOf(inspectionGroup, inspectionId, hash, ToolResultEncoding.encode(json)))
+    }
+  }
+
+  /**
+   * Inserts [rows] (and their related problem entries) with prepared statements in a single transaction.
+   * Nothing is inserted if it throws.
+   */
+  fun insertBatch(rows: List<ToolResultRow>) {
+    if (rows.isEmpty()) return
+    synchronized(writeLock) {
+      connection.execute("BEGIN TRANSACTION;")
+      var committed = false
+      try {
+        val resultBinder = ObjectBinder(paramCount = 4, batchCountHint = rows.size)
+        connection.prepareStatement(INSERT_STATEMENT, resultBinder).use { statement ->
+          for (row in rows) {
+            resultBinder.bindMultiple(row.inspectionGroup, row.inspectionId, row.hash, row.data)
+            resultBinder.addBatch()
+          }
+          statement.executeBatch()
+        }
+        val relatedRows = rows.filter { it.relatedProblemHash != null }
+        if (relatedRows.isNotEmpty()) {
+          val relatedBinder = ObjectBinder(paramCount = 2, batchCountHint = relatedRows.size)
+          connection.prepareStatement(INSERT_RELATED_PROBLEM, relatedBinder).use { statement ->
+            for (row in relatedRows) {
+              relatedBinder.bindMultiple(row.relatedProblemHash, row.data)
+              relatedBinder.addBatch()
+            }
+            statement.executeBatch()
+          }
+        }
+        connection.execute("COMMIT;")
+        committed = true
+      }
+      finally {
+        if (!committed) connection.execute("ROLLBACK;")
+      }
+    }
+  }
+
+  /**
+   * Copies the results, related problems, duplicates, metrics, inspection profile and coverage statistics
+   * of the database stored in [directory] into this one.
+   * Results, related problems and duplicates that are already present byte for byte are skipped, so the ones reported
+   * by several sources are kept once. Metric rows of a file replace the ones stored for it, coverage statistics add up.
+   */
+  fun copyResultsFrom(directory: Path) {
+    synchronized(writeLock) {
+      connection.execute(ATTACH_STATEMENT, arrayOf(directory.resolve(QODANA_DB_FILENAME).toString()))
+      try {
+        connection.execute(COPY_FROM_SOURCE_STATEMENT)
+        @Language("SQLite") val copyMetricsStatement: String = MetricTable.getCopyFromSourceStatementForAllTables("source")
+        connection.execute(copyMetricsStatement)
+      }
+      finally {
+        connection.execute(DETACH_STATEMENT)
+      }
+    }
+  }
+
+  /**
+   * Stores the per-inspection, per-file costs of an analysis profiled with [InspectionProfilingService].
+   */
+  fun insertInspectionProfile(costs: List<InspectionCost>) {
+    if (costs.isEmpty()) return
+    synchronized(writeLock) {
+      connection.execute("BEGIN TRANSACTION;")
+      var committed = false
+      try {
+        val binder = ObjectBinder(paramCount = 7, batchCountHint = costs.size)
+        connection.prepareStatement(INSERT_INSPECTION_PROFILE, binder).use { statement ->
+          for (cost in costs) {
+            binder.bindMultiple(cost.inspectionId, cost.filePath, cost.wallMillis, cost.cpuNanos, cost.allocatedBytes,
+                                cost.problemsCount, cost.invocationsCount)
+            binder.addBatch()
+          }
+          statement.executeBatch()
+        }
+        connection.execute("COMMIT;")
+        committed = true
+      }
+      finally {
+        if (!committed) connection.execute("ROLLBACK;")
+      }
+    }
+  }
+
+  /**
+   * Stores the raw counters of [org.jetbrains.qodana.staticAnalysis.inspections.coverageData.CoverageStatisticsData],
+   * so that the statistics of several runs can be added up with [selectCoverageStatistics].
+   */
+  fun insertCoverageStatistics(counters: Map<String, Int>) {
+    if (counters.isEmpty()) return
+    synchronized(writeLock) {
+      connection.execute("BEGIN TRANSACTION;")
+      var committed = false
+      try {
+        for ((name, value) in counters) {
+          connection.execute(INSERT_COVERAGE_STATISTICS, arrayOf(name, value))
+        }
+        connection.execute("COMMIT;")
+        committed = true
+      }
+      finally {
+        if (!committed) connection.execute("ROLLBACK;")
+      }
+    }
   }
 
+  fun selectCoverageStatistics(): Map<String, Int> =
+    MetricColumnClosableQuery(connection.prepareStatement(SELECT_COVERAGE_STATISTICS, EmptyBinder), 2).use { query ->
+      query.executeQuery().filter { it.isNotEmpty() }.associate { (name, value) -> name to value.toInt() }
+    }
+
   fun insertDuplicate(file: String, line: Int, start: Int, end: Int, hash: String, json: String) {
-    connection.execute(INSERT_DUPLICATES_STATEMENT, arrayOf(file, line, start, end, hash, json))
+    synchronized(writeLock) {
+      connection.execute(INSERT_DUPLICATES_STATEMENT, arrayOf(file, line, start, end, hash, json))
+    }
   }
 
   fun insertMetricsData(rowData: MetricTableRowData) {
     val metricTable: MetricTable = rowData.metricTable
     @Language("SQLite") val insertStatement: String = metricTable.getInsertStatement()
-    connection.execute(insertStatement, rowData.getValues())
+    synchronized(writeLock) {
+      connection.execute(insertStatement, rowData.getValues())
+    }
   }
 
   fun deleteMetricsDataForFile(filePath: String, metricTable: MetricTable) {
     @Language("SQLite") val deleteStatement: String = metricTable.getDeleteStatementForFile()
-    connection.execute(deleteStatement, arrayOf(filePath))
+    synchronized(writeLock) {
+      connection.execute(deleteStatement, arrayOf(filePath))
+    }
   }
 
   fun select(inspectionGroup: String): ToolResultsClosableQuery {
@@ -124,14 +306,16 @@ class QodanaToolResultDatabase private constructor(private val connection: Sqlit
   }
 
   fun insertRelatedProblem(hash: String, json: String) {
-    connection.execute(INSERT_RELATED_PROBLEM, arrayOf(hash, json))
+    synchronized(writeLock) {
+      connection.execute(INSERT_RELATED_PROBLEM, arrayOf(hash, ToolResultEncoding.encode(json)))
+    }
   }
 
-  fun selectRelatedProblems(hash: String): StringColumnClosableQuery {
+  fun selectRelatedProblems(hash: String): BlobColumnClosableQuery {
     val binder = ObjectBinder(paramCount = 1)
     val statement = connection.prepareStatement(SELECT_RELATED_PROBLEM, binder)
     binder.bindMultiple(hash)
-    return StringColumnClosableQuery(statement)
+    return BlobColumnClosableQuery(statement)
   }
 
   fun selectTriggeredInspectionIds(): StringColumnClosableQuery =
@@ -175,6 +359,22 @@ class QodanaToolResultDatabase private constructor(private val connection: Sqlit
     }
   }
 
+  class BlobColumnClosableQuery internal constructor(private val statement: SqlitePreparedStatement<*>) : AutoCloseable {
+    /**
+     * Provides iterable for sequential access to the underlying result set with encoded tool results
+     */
+    fun executeQuery() = sequence {
+      val resultSet = statement.executeQuery()
+      while (resultSet.next()) {
+        yield(resultSet.getBytes(0)!!)
+      }
+    }
+
+    override fun close() {
+      statement.close()
+    }
+  }
+
   class ToolResultsClosableQuery internal constructor(private val statement: SqlitePreparedStatement<*>) : AutoCloseable {
     /**
      * Provides iterable for sequential access to the underlying result set with tool results
@@ -184,7 +384,7 @@ class QodanaToolResultDatabase private constructor(private val connection: Sqlit
       while (resultSet.next()) {
         yield(ToolResultRecord(resultSet.getString(0)!!,
                                resultSet.getString(1)!!,
-                               resultSet.getString(2)!!))
+                               resultSet.getBytes(2)!!))
       }
     }
 
@@ -194,4 +394,22 @@ class QodanaToolResultDatabase private constructor(private val connection: Sqlit
   }
 }
 
-data class ToolResultRecord(val inspectionId: String, val hash: String, val json: String)
+/**
+ * Tool result as read from the database; [data] is the result in [ToolResultEncoding] form.
+ */
+class ToolResultRecord(val inspectionId: String, val hash: String, val data: ByteArray) {
+  val json: String
+    get() = ToolResultEncoding.decodeToString(data)
+}
+
+/**
+ * Tool result to be written with [QodanaToolResultDatabase.insertBatch]; [data] is the result in [ToolResultEncoding] form.
+ * When [relatedProblemHash] is set, the result is also stored as a related problem under that hash.
+ */
+class ToolResultRow(
+  val inspectionGroup: String,
+  val inspectionId: String,
+  val hash: String,
+  val data: ByteArray,
+  val relatedProblemHash: String? = null,
+)
@@ -0,0 +1,60 @@
+package org.jetbrains.qodana.staticAnalysis.inspections.runner
+
+import com.jetbrains.qodana.sarif.SarifUtil
+import com.jetbrains.qodana.sarif.model.Result
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.InputStreamReader
+import java.io.OutputStreamWriter
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
+
+/**
+ * On-disk form of SARIF [Result]s stored in [QodanaToolResultDatabase]: the Gson JSON of the result, deflated.
+ *
+ * Results are serialized straight into the compressor and parsed straight from the inflater,
+ * so no intermediate JSON strings are created on the write and read paths.
+ */
+internal object ToolResultEncoding {
+  private val gson = SarifUtil.createGson()
+
+  fun encode(result: Result): ByteArray = deflate { writer -> gson.toJson(result, Result::class.java, writer) }
+
+  fun encode(json: String): ByteArray = deflate { writer -> writer.write(json) }
+
+  fun decode(data: ByteArray): Result? {
+    val inflater = Inflater()
+    try {
+      return InputStreamReader(InflaterInputStream(ByteArrayInputStream(data), inflater), Charsets.UTF_8).use { reader ->
+        gson.fromJson(reader, Result::class.java)
+      }
+    }
+    finally {
+      inflater.end()
+    }
+  }
+
+  fun decodeToString(data: ByteArray): String {
+    val inflater = Inflater()
+    try {
+      return InflaterInputStream(ByteArrayInputStream(data), inflater).use { it.readBytes().toString(Charsets.UTF_8) }
+    }
+    finally {
+      inflater.end()
+    }
+  }
+
+  private inline fun deflate(write: (OutputStreamWriter) -> Unit): ByteArray {
+    val deflater = Deflater(Deflater.BEST_SPEED)
+    try {
+      val bytes = ByteArrayOutputStream()
+      OutputStreamWriter(DeflaterOutputStream(bytes, deflater), Charsets.UTF_8).use(write)
+      return bytes.toByteArray()
+    }
+    finally {
+      deflater.end()
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.jetbrains.qodana.staticAnalysis.sarif
+
+import com.intellij.lang.Language
+import com.intellij.openapi.util.text.LineColumn
+import kotlin.coroutines.AbstractCoroutineContextElement
+import kotlin.coroutines.CoroutineContext
+
+private const val DEFAULT_CACHED_FILES = 64
+
+/**
+ * Text of a source file with its line start offsets, so that line/column to offset conversions don't rescan the text.
+ * Lines are split the same way as [com.intellij.openapi.util.text.StringUtil.lineColToOffset] does: on `\n`, `\r` and `\r\n`.
+ */
+internal class SourceText(val text: String, val language: Language? = null) {
+  private val lineStarts: IntArray by lazy(LazyThreadSafetyMode.PUBLICATION) {
+    val starts = ArrayList<Int>()
+    starts.add(0)
+    var offset = 0
+    while (offset < text.length) {
+      val c = text[offset]
+      if (c == '\n' || c == '\r') {
+        if (c == '\r' && offset + 1 < text.length && text[offset + 1] == '\n') offset++
+        starts.add(offset + 1)
+      }
+      offset++
+    }
+    starts.toIntArray()
+  }
+
+  /** Same as [com.intellij.openapi.util.text.StringUtil.lineColToOffset]: `-1` when the text has fewer lines. */
+  fun lineColToOffset(line: Int, column: Int): Int =
+    if (line < lineStarts.size) lineStarts[line] + column else -1
+
+  /** Same as [com.intellij.openapi.util.text.StringUtil.offsetToLineColumn]: `null` for offsets past the end of the text. */
+  fun offsetToLineColumn(offset: Int): LineColumn? {
+    if (offset > text.length) return null
+    // offset between '\r' and '\n' counts as the start of the next line
+    if (offset > 0 && offset < text.length && text[offset - 1] == '\r' && text[offset] == '\n') {
+      return LineColumn.of(lineAt(offset) + 1, -1)
+    }
+    val line = lineAt(offset)
+    return LineColumn.of(line, offset - lineStarts[line])
+  }
+
+  private fun lineAt(offset: Int): Int {
+    val index = lineStarts.binarySearch(offset)
+    return if (index >= 0) index else -index - 2
+  }
+}
+
+/**
+ * Coroutine context element with the recently read [SourceText]s, keyed by file URL.
+ * Installed around result conversion, so that all results reported for a file read it once.
+ */
+internal class SourceTextCache(private val maxSize: Int = DEFAULT_CACHED_FILES) : AbstractCoroutineContextElement(SourceTextCache) {
+  companion object Key : CoroutineContext.Key<SourceTextCache>
+
+  private val texts = object : LinkedHashMap<String, SourceText?>(16, 0.75f, true) {
+    override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, SourceText?>?): Boolean = size > maxSize
+  }
+
+  suspend fun getOrLoad(url: String, load: suspend (String) -> SourceText?): SourceText? {
+    synchronized(texts) {
+      if (texts.containsKey(url)) return texts[url]
+    }
+    // concurrent loads of the same file are harmless, the text is the same
+    val loaded = load(url)
+    synchronized(texts) {
+      texts[url] = loaded
+    }
+    return loaded
+  }
+}
@@ -14,12 +14,11 @@ internal const val MAX_CONTEXT_CHARS_LENGTH = 1800
 class Border(offset: Int, line: Int, val text: String, private val lineBorder: IntRange) {
   var currentOffset = offset
   private var currentLine = line
-  private val chars = text.toCharArray()
 
   fun moveLeft(): Boolean {
     val nextOffset = currentOffset - 1
     if (nextOffset < 0) return false
-    if (chars[nextOffset] == '\n') {
+    if (text[nextOffset] == '\n') {
       if (!lineBorder.contains(currentLine - 1)) return false
       currentLine--
     }
@@ -30,7 +29,7 @@ class Border(offset: Int, line: Int, val text: String, private val lineBorder: I
   fun moveRight(): Boolean {
     val nextOffset = currentOffset + 1
     if (nextOffset < 0 || nextOffset > text.length) return false
-    if (chars[currentOffset] == '\n') {
+    if (text[currentOffset] == '\n') {
       if (!lineBorder.contains(currentLine + 1)) return false
       currentLine++
     }
@@ -42,15 +41,22 @@ class Border(offset: Int, line: Int, val text: String, private val lineBorder: I
 internal fun getContextRegion(problem: CommonDescriptor,
                               text: String,
                               linesMargin: Int = CONTEXT_MAX_LINES_MARGIN,
-                              fileLanguage: Language? = null): Region? {
+                              fileLanguage: Language? = null): Region? =
+  getContextRegion(problem, SourceText(text), linesMargin, fileLanguage)
+
+internal fun getContextRegion(problem: CommonDescriptor,
+                              source: SourceText,
+                              linesMargin: Int,
+                              fileLanguage: Language?): Region? {
   if (qodanaEnv().QODANA_DISABLE_COLLECT_CONTEXT.value != null) return null
 
-  val offset = getProblemOffset(text, problem) ?: return null
+  val text = source.text
+  val offset = getProblemOffset(source, problem) ?: return null
   val line = problem.line?.let { it - 1 } ?: return null
   if (problem.length == null) return null
   val leftBorder = Border(offset, line, text, IntRange(line - linesMargin, line + linesMargin))
 
-  val rightBorderLine = StringUtil.offsetToLineColumn(text, offset + problem.length)?.line ?: return null
+  val rightBorderLine = source.offsetToLineColumn(offset + problem.length)?.line ?: return null
 
   //non including border symbol itself
   val rightBorder = Border(offset + problem.length, rightBorderLine, text,
@@ -65,7 +71,7 @@ internal fun getContextRegion(problem: CommonDescriptor,
 
   val leftOffset = max(0, leftBorder.currentOffset)
   val rightOffset = min(rightBorder.currentOffset, text.length)
-  val lineColumn = StringUtil.offsetToLineColumn(text, leftOffset)
+  val lineColumn = source.offsetToLineColumn(leftOffset)!!
 
   val region = Region()
     .withStartColumn(lineColumn.column + 1)
@@ -85,4 +91,11 @@ internal fun getProblemOffset(text: String, problem: CommonDescriptor): Int? {
   val column = problem.column ?: return null
   assert(line >= 0)
   return StringUtil.lineColToOffset(text, line, column)
+}
+
+internal fun getProblemOffset(source: SourceText, problem: CommonDescriptor): Int? {
+  val line = problem.line?.let { it - 1 } ?: return null
+  val column = problem.column ?: return null
+  assert(line >= 0)
+  return source.lineColToOffset(line, column)
 }
\ No newline at end of file
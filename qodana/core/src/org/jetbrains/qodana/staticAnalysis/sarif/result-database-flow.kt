@@ -1,8 +1,7 @@
 package org.jetbrains.qodana.staticAnalysis.sarif
 
-import com.google.gson.JsonSyntaxException
+import com.google.gson.JsonParseException
 import com.intellij.openapi.diagnostic.logger
-import com.jetbrains.qodana.sarif.SarifUtil
 import com.jetbrains.qodana.sarif.model.Result
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.flow
@@ -11,9 +10,10 @@ import kotlinx.coroutines.flow.transform
 import org.jetbrains.qodana.staticAnalysis.StaticAnalysisDispatchers
 import org.jetbrains.qodana.staticAnalysis.inspections.runner.QodanaMessageReporter
 import org.jetbrains.qodana.staticAnalysis.inspections.runner.QodanaToolResultDatabase
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.ToolResultEncoding
+import java.io.IOException
 
 private val LOG = logger<QodanaToolResultDatabase>()
-private val GSON = SarifUtil.createGson()
 
 /**
  * Given a database filled with SARIF [Result]s provide the flow, to iterate over
@@ -33,7 +33,7 @@ fun QodanaToolResultDatabase.resultsFlowByGroup(inspectionGroup: String, message
 
 private fun QodanaToolResultDatabase.uniqueResultsFlow(inspectionGroup: String, messageReporter: QodanaMessageReporter): Flow<Result> = flow {
   select(inspectionGroup).use { query ->
-    val sameHashResults = mutableListOf<String>()
+    val sameHashResults = mutableListOf<ByteArray>()
     var previousHash = ""
     for (resultSet in query.executeQuery()) {
       if (previousHash != resultSet.hash && sameHashResults.any()) {
@@ -41,7 +41,7 @@ private fun QodanaToolResultDatabase.uniqueResultsFlow(inspectionGroup: String,
         sameHashResults.clear()
       }
       previousHash = resultSet.hash
-      sameHashResults.add(resultSet.json)
+      sameHashResults.add(resultSet.data)
     }
     processSameHash(sameHashResults, messageReporter)?.let { emit(it) }
   }
@@ -51,14 +51,14 @@ private fun QodanaToolResultDatabase.updateRelatedLocations(result: Result) {
   val rootHash = result.getOrAssignProperties()[RELATED_PROBLEMS_ROOT_HASH_PROP] as? String ?: return
 
   val locations = selectRelatedProblems(rootHash).use { query ->
-    val relatedResults = query.executeQuery().toList().parseResults()
+    val relatedResults = query.executeQuery().toList().decodeResults()
     relatedResults.flatMap { it.locations }
   }.toSet()
   result.relatedLocations = result.relatedLocations?.plus(locations) ?: locations
 }
 
-private fun processSameHash(resultJsons: List<String>, messageReporter: QodanaMessageReporter): Result? {
-  val results = resultJsons.parseResults()
+private fun processSameHash(encodedResults: List<ByteArray>, messageReporter: QodanaMessageReporter): Result? {
+  val results = encodedResults.decodeResults()
   if (results.isEmpty() || results.size == 1) return results.firstOrNull()
 
   val uniqueResults = results.toSet()
@@ -81,13 +81,18 @@ private fun processSameHash(resultJsons: List<String>, messageReporter: QodanaMe
   return resultToSubmit
 }
 
-fun List<String>.parseResults(): List<Result> {
-    return this.mapNotNull { json ->
-        try {
-            GSON.fromJson(json, Result::class.java)
-        } catch (e: JsonSyntaxException) {
-          LOG.error("Error of reading results in database '$json'", e)
-          null
-        }
+private fun List<ByteArray>.decodeResults(): List<Result> {
+  return this.mapNotNull { data ->
+    try {
+      ToolResultEncoding.decode(data)
     }
-}
\ No newline at end of file
+    catch (e: JsonParseException) {
+      LOG.error("Error of reading results in database", e)
+      null
+    }
+    catch (e: IOException) {
+      LOG.error("Error of reading results in database", e)
+      null
+    }
+  }
+}
@@ -18,6 +18,7 @@ import com.intellij.util.io.createDirectories
 import com.jetbrains.qodana.sarif.SarifUtil
 import com.jetbrains.qodana.sarif.model.*
 import com.jetbrains.qodana.sarif.model.Level.*
+import kotlinx.coroutines.currentCoroutineContext
 import kotlinx.coroutines.runInterruptible
 import kotlinx.coroutines.withContext
 import org.jetbrains.qodana.staticAnalysis.StaticAnalysisDispatchers
@@ -250,28 +251,33 @@ internal suspend fun getPhysicalLocation(problem: CommonDescriptor,
   val artifactLocation = getArtifactLocation(problem.file)
   val physicalLocation = PhysicalLocation().withArtifactLocation(artifactLocation)
 
-  val (text, virtualFile) = withContext(StaticAnalysisDispatchers.IO) {
-    val virtualFile = VirtualFileManager.getInstance().findFileByUrl(macroManager.expandPath(problem.file))
-    val text = loadTextFromVirtualFile(virtualFile)
-    text to virtualFile
-  }
-  val fileLanguage = LanguageUtil.getFileLanguage(virtualFile)
-  if (text != null) {
+  val url = macroManager.expandPath(problem.file)
+  val cache = currentCoroutineContext()[SourceTextCache]
+  val source = if (cache != null) cache.getOrLoad(url, ::loadSourceText) else loadSourceText(url)
+  if (source != null) {
     // the problem is a "whole file problem" in two cases:
     // the whole file reported or 0 range in start of the file
     // if the whole file is reported as a problem, do not put any region/context region
     // for "whole file" problems don't provide the code region
     val problemIsFile = problem.line == 1 && problem.column == 0 &&
-                        (problem.length == 0 || problem.length == text.length)
+                        (problem.length == 0 || problem.length == source.text.length)
     if (!problemIsFile) {
       physicalLocation
-        .withRegion(getRegion(problem, text))
-        .withContextRegion(getContextRegion(problem, text, linesMargin, fileLanguage))
+        .withRegion(getRegion(problem, source))
+        .withContextRegion(getContextRegion(problem, source, linesMargin, source.language))
     }
   }
   return physicalLocation
 }
 
+private suspend fun loadSourceText(url: String): SourceText? {
+  val (text, virtualFile) = withContext(StaticAnalysisDispatchers.IO) {
+    val virtualFile = VirtualFileManager.getInstance().findFileByUrl(url)
+    loadTextFromVirtualFile(virtualFile) to virtualFile
+  }
+  return text?.let { SourceText(it, LanguageUtil.getFileLanguage(virtualFile)) }
+}
+
 fun getArtifactLocation(fileUrl: String): ArtifactLocation? {
   return if (fileUrl.startsWith(PROJECT_DIR_PREFIX)) {
     ArtifactLocation().withUri(fileUrl.removePrefix(PROJECT_DIR_PREFIX)).withUriBaseId(SRCROOT_URI_BASE)
@@ -281,7 +287,8 @@ fun getArtifactLocation(fileUrl: String): ArtifactLocation? {
   }
 }
 
-internal fun getRegion(problem: CommonDescriptor, text: String) = getRegionByOffset(problem, text, getProblemOffset(text, problem))
+internal fun getRegion(problem: CommonDescriptor, source: SourceText) =
+  getRegionByOffset(problem, source.text, getProblemOffset(source, problem))
 
 internal fun getRegionByOffset(problem: CommonDescriptor, text: String, offset: Int?): Region? {
   if (offset == null || problem.line == null) return null
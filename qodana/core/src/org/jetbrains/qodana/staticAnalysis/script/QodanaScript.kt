@@ -10,6 +10,8 @@ import org.jetbrains.qodana.staticAnalysis.inspections.coverageData.precomputedC
 import org.jetbrains.qodana.staticAnalysis.inspections.runner.QodanaGlobalInspectionContext
 import org.jetbrains.qodana.staticAnalysis.inspections.runner.QodanaToolResultDatabase
 import org.jetbrains.qodana.staticAnalysis.profile.QodanaProfile
+import org.jetbrains.qodana.staticAnalysis.stat.InspectionCost
+import org.jetbrains.qodana.staticAnalysis.stat.InspectionProfilingService
 import java.io.File
 import java.nio.file.Path
 
@@ -22,7 +24,8 @@ data class QodanaScriptResult(
   val outputPath: Path,
   val coverageStats: CoverageStatisticsData?,
   val coverageFiles: List<Path>,
-  val inspectionNames: Map<String, String>
+  val inspectionNames: Map<String, String>,
+  val inspectionProfile: List<InspectionCost>? = null,
 ) {
 
   companion object {
@@ -43,7 +46,16 @@ data class QodanaScriptResult(
                 .associateWith { id -> ctx.effectiveProfile.getInspectionTool(id, nullPsiElement)?.displayName ?: id }
             }
         }
-      }
+      },
+      inspectionProfile = if (InspectionProfilingService.isEnabled) storeInspectionProfile(ctx) else null,
     )
+
+    private suspend fun storeInspectionProfile(ctx: QodanaGlobalInspectionContext): List<InspectionCost> {
+      val costs = InspectionProfilingService.getInstance(ctx.project).drain()
+      withContext(StaticAnalysisDispatchers.IO) {
+        QodanaToolResultDatabase.open(ctx.outputPath).use { it.insertInspectionProfile(costs) }
+      }
+      return costs
+    }
   }
 }
@@ -0,0 +1,93 @@
+package org.jetbrains.qodana.staticAnalysis.script.incremental
+
+import com.google.gson.GsonBuilder
+import com.google.gson.JsonParseException
+import com.google.gson.reflect.TypeToken
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.util.io.DigestUtil
+import com.jetbrains.qodana.sarif.SarifUtil
+import com.jetbrains.qodana.sarif.model.Result
+import org.jetbrains.annotations.VisibleForTesting
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.io.path.*
+
+private val LOG = logger<IncrementalResultsCache>()
+
+private const val STATE_FILE = "incremental-state.json"
+private const val RESULTS_FILE = "incremental-results.json"
+
+/**
+ * State of the previous run, persisted next to its results.
+ *
+ * [fileHashes] holds the content hash of every file that had results, keyed by its path relative to the project,
+ * [dirtyFiles] the files that were not committed at [revision]; it is null in states saved before it was recorded.
+ */
+internal data class IncrementalState(
+  val revision: String,
+  val profileHash: String,
+  val dependencyFingerprint: String,
+  val fileHashes: Map<String, String>,
+  val dirtyFiles: Set<String>?,
+)
+
+/**
+ * Directory holding the state and the SARIF results of the last incremental run.
+ * Results are written and read as a stream of [Result]s, so the cache never needs more memory than the report itself.
+ */
+internal class IncrementalResultsCache(@VisibleForTesting val directory: Path) {
+  private val stateGson = GsonBuilder().setPrettyPrinting().create()
+  private val resultsGson = SarifUtil.createGson()
+
+  fun loadState(): IncrementalState? {
+    val file = directory.resolve(STATE_FILE)
+    if (file.notExists() || directory.resolve(RESULTS_FILE).notExists()) return null
+    return try {
+      file.bufferedReader().use { stateGson.fromJson(it, IncrementalState::class.java) }
+    }
+    catch (e: JsonParseException) {
+      LOG.warn("Cannot read incremental analysis state from $file", e)
+      null
+    }
+    catch (e: IOException) {
+      LOG.warn("Cannot read incremental analysis state from $file", e)
+      null
+    }
+  }
+
+  fun loadResults(): List<Result> {
+    val file = directory.resolve(RESULTS_FILE)
+    return file.bufferedReader().use { reader ->
+      resultsGson.fromJson(reader, object : TypeToken<List<Result>>() {}.type)
+    }
+  }
+
+  fun save(state: IncrementalState, results: List<Result>) {
+    directory.createDirectories()
+    // results first: a state file without matching results is never picked up
+    directory.resolve(STATE_FILE).deleteIfExists()
+    directory.resolve(RESULTS_FILE).bufferedWriter().use { writer ->
+      resultsGson.toJson(results, object : TypeToken<List<Result>>() {}.type, writer)
+    }
+    directory.resolve(STATE_FILE).bufferedWriter().use { writer -> stateGson.toJson(state, writer) }
+  }
+
+  companion object {
+    fun hashContent(file: Path): String? {
+      if (!file.isRegularFile()) return null
+      val digest = DigestUtil.sha256()
+      Files.newInputStream(file).use { input ->
+        val buffer = ByteArray(64 * 1024)
+        while (true) {
+          val read = input.read(buffer)
+          if (read < 0) break
+          digest.update(buffer, 0, read)
+        }
+      }
+      return DigestUtil.digestToHash(digest)
+    }
+
+    fun hashText(text: String): String = DigestUtil.sha256Hex(text.toByteArray())
+  }
+}
@@ -0,0 +1,297 @@
+package org.jetbrains.qodana.staticAnalysis.script.incremental
+
+import com.intellij.codeInspection.GlobalSimpleInspectionTool
+import com.intellij.codeInspection.ex.GlobalInspectionToolWrapper
+import com.intellij.openapi.application.readAction
+import com.intellij.openapi.components.serviceAsync
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.module.ModuleUtilCore
+import com.intellij.openapi.roots.ModuleRootManager
+import com.intellij.openapi.roots.OrderEnumerator
+import com.intellij.openapi.roots.ProjectFileIndex
+import com.intellij.openapi.roots.ProjectRootManager
+import com.intellij.openapi.util.JDOMUtil
+import com.intellij.openapi.vcs.FilePath
+import com.intellij.openapi.vcs.VcsException
+import com.intellij.openapi.vfs.LocalFileSystem
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.toNioPathOrNull
+import com.intellij.profile.ProfileEx
+import com.jetbrains.qodana.sarif.model.Result
+import com.jetbrains.qodana.sarif.model.Run
+import com.jetbrains.qodana.sarif.model.SarifReport
+import kotlinx.coroutines.runInterruptible
+import kotlinx.coroutines.withContext
+import org.jdom.Element
+import org.jetbrains.qodana.staticAnalysis.StaticAnalysisDispatchers
+import org.jetbrains.qodana.staticAnalysis.inspections.config.QodanaConfig
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.*
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.externalTools.ExternalInspectionToolWrapper
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.startup.QodanaRunContextFactory
+import org.jetbrains.qodana.staticAnalysis.sarif.getOrAssignProperties
+import org.jetbrains.qodana.staticAnalysis.script.*
+import org.jetbrains.qodana.staticAnalysis.vcs.git.getChangedFilesSince
+import org.jetbrains.qodana.staticAnalysis.vcs.git.getHeadRevision
+import java.nio.file.Path
+import kotlin.io.path.Path
+import kotlin.io.path.invariantSeparatorsPathString
+import kotlin.io.path.relativeTo
+
+const val INCREMENTAL_SCRIPT_NAME = "incremental"
+private const val CACHE_DIR_ARG = "cache-dir"
+private const val DEFAULT_CACHE_DIR = ".qodana/incremental"
+private const val SRCROOT = "SRCROOT"
+
+/**
+ * `--script incremental[:cache-dir]` analyzes only the files changed since the run that filled the cache
+ * and takes the results of all other files from the cache.
+ *
+ * The cache is reused only if the inspection profile and the project dependencies are unchanged;
+ * otherwise, or without a usable git revision, the whole project is analyzed and the cache is refilled.
+ * Results not attached to a file are always taken from the current run.
+ *
+ * Only results of file-local inspections (local and global simple ones) are reused. Global inspections, such as unused declarations
+ * or duplicated code, need the whole project to find anything, so with any of them enabled the whole project is analyzed.
+ * A file-local result can still depend on other files (e.g. an unresolved call of a changed API), so along with the changed files
+ * all files of their modules and of the modules depending on them are analyzed again.
+ */
+internal class IncrementalScriptFactory : QodanaScriptFactory {
+  override val scriptName: String get() = INCREMENTAL_SCRIPT_NAME
+
+  override fun parseParameters(parameters: String): Map<String, String> =
+    if (parameters.isBlank()) emptyMap() else mapOf(CACHE_DIR_ARG to parameters)
+
+  override fun createScript(
+    config: QodanaConfig,
+    messageReporter: QodanaMessageReporter,
+    contextFactory: QodanaRunContextFactory,
+    parameters: UnvalidatedParameters,
+  ): QodanaScript {
+    val cacheDir = Path(parameters.optional<String>(CACHE_DIR_ARG) ?: DEFAULT_CACHE_DIR).let {
+      if (it.isAbsolute) it else config.projectPath.resolve(it)
+    }
+    return IncrementalScript(IncrementalRunContextFactory(contextFactory, IncrementalResultsCache(cacheDir)))
+  }
+}
+
+internal class IncrementalScript(private val runContextFactory: IncrementalRunContextFactory) :
+  DefaultScript(runContextFactory, AnalysisKind.INCREMENTAL) {
+
+  override suspend fun execute(report: SarifReport, run: Run, runContext: QodanaRunContext, inspectionContext: QodanaGlobalInspectionContext) {
+    try {
+      runContext.runAnalysis(context = inspectionContext)
+    }
+    finally {
+      runContext.project.serviceAsync<LocalChangesService>().isIncrementalAnalysis.set(false)
+    }
+    val computed = runContext.getResultsForInspectionGroup(inspectionContext)
+    val plan = runContextFactory.plan
+
+    val reused = plan.reusedResults.filter { it.relativeFile(runContext.config.projectPath) !in plan.recomputedFiles }
+    run.results = computed + reused
+
+    val reusedFiles = reused.mapNotNullTo(HashSet()) { it.relativeFile(runContext.config.projectPath) }
+    run.getOrAssignProperties()["incrementalAnalysis"] = mapOf<String, Any?>(
+      "reusedFiles" to reusedFiles.size,
+      "recomputedFiles" to if (plan.isFullRun) null else plan.recomputedFiles.size,
+      "fullRunReason" to plan.fullRunReason,
+    )
+    runContext.messageReporter.reportMessage(1, plan.describe(reusedFiles.size))
+
+    saveCache(runContext, plan, run.results)
+    applyBaselineCalculation(report, runContext.config, runContext.scope, runContext.messageReporter)
+  }
+
+  private suspend fun saveCache(runContext: QodanaRunContext, plan: IncrementalPlan, results: List<Result>) {
+    val revision = plan.currentRevision ?: return
+    val projectPath = runContext.config.projectPath
+    // uncommitted files are analyzed again by the next run, whatever their content is by then
+    val dirtyFiles = try {
+      getChangedFilesSince(runContext.project, revision).mapNotNullTo(HashSet()) { it.relativeFile(projectPath) }
+    }
+    catch (e: VcsException) {
+      runContext.messageReporter.reportError("Incremental analysis: results are not cached, cannot list uncommitted changes: ${e.message}")
+      return
+    }
+    runInterruptible(StaticAnalysisDispatchers.IO) {
+      val fileHashes = results.mapNotNullTo(HashSet()) { it.relativeFile(projectPath) }
+        .mapNotNull { file -> IncrementalResultsCache.hashContent(projectPath.resolve(file))?.let { file to it } }
+        .toMap()
+      val state = IncrementalState(revision, plan.profileHash, plan.dependencyFingerprint, fileHashes, dirtyFiles)
+      runContextFactory.cache.save(state, results)
+    }
+  }
+}
+
+/**
+ * What the current run analyzes: either everything ([isFullRun]), or only [recomputedFiles] with the results of
+ * all other files taken from [reusedResults].
+ */
+internal class IncrementalPlan(
+  val currentRevision: String?,
+  val profileHash: String,
+  val dependencyFingerprint: String,
+  val fullRunReason: String?,
+  val recomputedFiles: Set<String>,
+  val reusedResults: List<Result>,
+) {
+  val isFullRun: Boolean get() = fullRunReason != null
+
+  fun describe(reusedFileCount: Int): String =
+    if (isFullRun) "Incremental analysis: analyzed the whole project ($fullRunReason)"
+    else "Incremental analysis: recomputed ${recomputedFiles.size} changed files, reused results of $reusedFileCount files"
+}
+
+internal class IncrementalRunContextFactory(
+  private val delegate: QodanaRunContextFactory,
+  val cache: IncrementalResultsCache,
+) : QodanaRunContextFactory {
+  lateinit var plan: IncrementalPlan
+    private set
+
+  override suspend fun openRunContext(): QodanaRunContext {
+    val sourceContext = delegate.openRunContext()
+    val projectPath = sourceContext.config.projectPath
+    plan = withContext(StaticAnalysisDispatchers.IO) {
+      planIncrementalRun(
+        revision = getHeadRevision(sourceContext.project),
+        profileHash = profileHash(sourceContext),
+        dependencyFingerprint = dependencyFingerprint(sourceContext),
+        globalInspections = globalInspections(sourceContext),
+        cache = cache,
+        changedFilesSince = { revision ->
+          getChangedFilesSince(sourceContext.project, revision).mapNotNull { it.relativeFile(projectPath) }
+        },
+        dependentFiles = { files -> dependentFiles(sourceContext, files) },
+        hashContent = { file -> IncrementalResultsCache.hashContent(projectPath.resolve(file)) },
+        isProjectFile = { it.relativeFile(projectPath) != null },
+      )
+    }
+    if (plan.isFullRun) return sourceContext
+
+    sourceContext.project.serviceAsync<LocalChangesService>()
+      .isIncrementalAnalysis
+      .set(true)
+    return sourceContext.applyExternalFileScope(plan.recomputedFiles.map { Path(it) })
+  }
+
+  private fun profileHash(runContext: QodanaRunContext): String {
+    val profileElement = Element(ProfileEx.PROFILE)
+    runContext.qodanaProfile.effectiveProfile.writeExternal(profileElement)
+    return IncrementalResultsCache.hashText(JDOMUtil.write(profileElement))
+  }
+
+  /** Enabled inspections that analyze the project as a whole rather than file by file. */
+  private suspend fun globalInspections(runContext: QodanaRunContext): List<String> = readAction {
+    runContext.qodanaProfile.effectiveProfile.getAllEnabledInspectionTools(runContext.project)
+      .map { it.tool }
+      .filter { it is ExternalInspectionToolWrapper || it is GlobalInspectionToolWrapper && it.tool !is GlobalSimpleInspectionTool }
+      .map { it.shortName }
+      .sorted()
+  }
+
+  /** All files of the modules containing [files] and of the modules depending on them. */
+  private suspend fun dependentFiles(runContext: QodanaRunContext, files: Set<String>): Set<String> {
+    val projectPath = runContext.config.projectPath
+    val fs = LocalFileSystem.getInstance()
+    return readAction {
+      val fileIndex = ProjectFileIndex.getInstance(runContext.project)
+      val modules = HashSet<Module>()
+      for (file in files) {
+        // a deleted file belongs to the module of the closest existing directory
+        var path: Path? = projectPath.resolve(file)
+        var virtualFile: VirtualFile? = null
+        while (path != null && path.startsWith(projectPath) && virtualFile == null) {
+          virtualFile = fs.findFileByNioFile(path)
+          path = path.parent
+        }
+        val module = virtualFile?.let { fileIndex.getModuleForFile(it) } ?: continue
+        if (modules.add(module)) {
+          modules.addAll(ModuleUtilCore.getAllDependentModules(module))
+        }
+      }
+      val result = HashSet<String>()
+      for (module in modules) {
+        ModuleRootManager.getInstance(module).fileIndex.iterateContent { virtualFile ->
+          if (!virtualFile.isDirectory) {
+            val path = virtualFile.toNioPathOrNull()
+            if (path != null && path.startsWith(projectPath)) result.add(path.relativeTo(projectPath).invariantSeparatorsPathString)
+          }
+          true
+        }
+      }
+      result
+    }
+  }
+
+  private suspend fun dependencyFingerprint(runContext: QodanaRunContext): String {
+    val roots = readAction {
+      val libraries = OrderEnumerator.orderEntries(runContext.project).librariesOnly().classes().urls.sorted()
+      val sdk = ProjectRootManager.getInstance(runContext.project).projectSdk
+      libraries + listOfNotNull(sdk?.name, sdk?.versionString)
+    }
+    return IncrementalResultsCache.hashText(roots.joinToString("\n"))
+  }
+}
+
+/**
+ * Decides which files the run analyzes, all paths are relative to the project.
+ *
+ * A file is analyzed again if git reports it changed since the cached revision and its content differs from the cached one,
+ * if it was uncommitted when the cache was saved, or if its content no longer matches the hash stored with its results.
+ * The latter two catch edits that were discarded or reverted after the cache was saved, which git no longer reports.
+ * Along with these, [dependentFiles] of them are analyzed again, since their results may depend on the changed ones.
+ */
+internal suspend fun planIncrementalRun(
+  revision: String?,
+  profileHash: String,
+  dependencyFingerprint: String,
+  globalInspections: List<String>,
+  cache: IncrementalResultsCache,
+  changedFilesSince: suspend (String) -> Collection<String>,
+  dependentFiles: suspend (Set<String>) -> Collection<String>,
+  hashContent: (String) -> String?,
+  isProjectFile: (Result) -> Boolean,
+): IncrementalPlan {
+  fun fullRun(reason: String) = IncrementalPlan(revision, profileHash, dependencyFingerprint, reason, emptySet(), emptyList())
+
+  if (revision == null) return fullRun("no git revision")
+  if (globalInspections.isNotEmpty()) return fullRun("global inspections are enabled: ${globalInspections.joinToString()}")
+  val state = cache.loadState() ?: return fullRun("no cached results")
+  if (state.profileHash != profileHash) return fullRun("inspection profile changed")
+  if (state.dependencyFingerprint != dependencyFingerprint) return fullRun("project dependencies changed")
+  val dirtyFiles = state.dirtyFiles ?: return fullRun("cached results have no record of uncommitted files")
+
+  val changedFiles = try {
+    changedFilesSince(state.revision)
+  }
+  catch (e: VcsException) {
+    return fullRun("cannot compute changes since ${state.revision}: ${e.message}")
+  }
+  val recomputed = HashSet<String>(dirtyFiles)
+  for (file in changedFiles) {
+    // files with cached results are compared by content below, one changed and changed back keeps its results
+    if (file !in state.fileHashes) recomputed.add(file)
+  }
+  for ((file, hash) in state.fileHashes) {
+    if (hashContent(file) != hash) recomputed.add(file)
+  }
+  if (recomputed.isNotEmpty()) {
+    recomputed.addAll(dependentFiles(recomputed.toSet()))
+  }
+  val reusedResults = cache.loadResults().filter(isProjectFile)
+  return IncrementalPlan(revision, profileHash, dependencyFingerprint, null, recomputed, reusedResults)
+}
+
+private fun FilePath.relativeFile(projectPath: Path): String? {
+  val path = ioFile.toPath()
+  return if (path.startsWith(projectPath)) path.relativeTo(projectPath).invariantSeparatorsPathString else null
+}
+
+private fun Result.relativeFile(projectPath: Path): String? {
+  val artifactLocation = locations?.firstOrNull()?.physicalLocation?.artifactLocation ?: return null
+  val uri = artifactLocation.uri ?: return null
+  if (artifactLocation.uriBaseId == SRCROOT) return uri
+  val path = runCatching { Path(uri) }.getOrNull() ?: return null
+  return if (path.isAbsolute && path.startsWith(projectPath)) path.relativeTo(projectPath).invariantSeparatorsPathString else null
+}
@@ -0,0 +1,69 @@
+package org.jetbrains.qodana.staticAnalysis.script.shard
+
+import com.jetbrains.qodana.sarif.model.Run
+import com.jetbrains.qodana.sarif.model.SarifReport
+import kotlinx.coroutines.runInterruptible
+import org.jetbrains.annotations.VisibleForTesting
+import org.jetbrains.qodana.staticAnalysis.StaticAnalysisDispatchers
+import org.jetbrains.qodana.staticAnalysis.inspections.config.QodanaConfig
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.*
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.startup.QodanaRunContextFactory
+import org.jetbrains.qodana.staticAnalysis.script.*
+import java.nio.file.Path
+import kotlin.io.path.Path
+import kotlin.io.path.notExists
+
+const val MERGE_SHARDS_SCRIPT_NAME = "merge-shards"
+private const val SHARDS_ARG = "shards"
+
+/**
+ * `--script merge-shards:dir1,dir2,...` combines the output directories of `shard` runs into one report
+ * without analyzing anything. Results reported by several shards, e.g. project-level ones, are kept once;
+ * duplicates, metrics and coverage statistics of the shards are merged as well.
+ */
+internal class MergeShardsScriptFactory : QodanaScriptFactory {
+  override val scriptName: String get() = MERGE_SHARDS_SCRIPT_NAME
+
+  override fun parseParameters(parameters: String): Map<String, String> =
+    if (parameters.isBlank()) {
+      throw QodanaException("Cannot start $scriptName script without shard output directories")
+    }
+    else {
+      mapOf(SHARDS_ARG to parameters)
+    }
+
+  override fun createScript(
+    config: QodanaConfig,
+    messageReporter: QodanaMessageReporter,
+    contextFactory: QodanaRunContextFactory,
+    parameters: UnvalidatedParameters,
+  ): QodanaScript {
+    val shardDirectories = parameters.require<String>(SHARDS_ARG)
+      .split(',')
+      .filter { it.isNotBlank() }
+      .map { Path(it.trim()).let { p -> if (p.isAbsolute) p else config.projectPath.resolve(p) }.resolve(SHARD_RESULTS_DIR) }
+    for (directory in shardDirectories) {
+      if (directory.resolve(QODANA_DB_FILENAME).notExists()) throw QodanaException("Shard results $directory do not exist")
+    }
+    return MergeShardsScript(contextFactory, shardDirectories)
+  }
+}
+
+internal class MergeShardsScript(
+  runContextFactory: QodanaRunContextFactory,
+  @VisibleForTesting val shardDirectories: List<Path>,
+) : DefaultScript(runContextFactory, AnalysisKind.OTHER) {
+
+  override suspend fun execute(report: SarifReport, run: Run, runContext: QodanaRunContext, inspectionContext: QodanaGlobalInspectionContext) {
+    runInterruptible(StaticAnalysisDispatchers.IO) {
+      for (directory in shardDirectories) {
+        inspectionContext.database.copyResultsFrom(directory)
+      }
+      // reported by QodanaRunner from the context, the database only carries them over from the shards
+      inspectionContext.coverageStatisticsData.addCounters(inspectionContext.database.selectCoverageStatistics())
+    }
+    runContext.messageReporter.reportMessage(1, "Merged results of ${shardDirectories.size} shards")
+    run.results = runContext.getResultsForInspectionGroup(inspectionContext)
+    applyBaselineCalculation(report, runContext.config, runContext.scope, runContext.messageReporter)
+  }
+}
@@ -0,0 +1,130 @@
+package org.jetbrains.qodana.staticAnalysis.script.shard
+
+import com.intellij.openapi.module.ModuleUtilCore
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.toNioPathOrNull
+import com.intellij.psi.search.DelegatingGlobalSearchScope
+import com.intellij.psi.search.GlobalSearchScope
+import com.jetbrains.qodana.sarif.model.Run
+import com.jetbrains.qodana.sarif.model.SarifReport
+import kotlinx.coroutines.runInterruptible
+import org.jetbrains.annotations.VisibleForTesting
+import org.jetbrains.qodana.staticAnalysis.StaticAnalysisDispatchers
+import org.jetbrains.qodana.staticAnalysis.inspections.config.QodanaConfig
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.*
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.startup.QodanaRunContextFactory
+import org.jetbrains.qodana.staticAnalysis.scopes.QodanaAnalysisScope
+import org.jetbrains.qodana.staticAnalysis.script.*
+import java.nio.file.Path
+import kotlin.io.path.invariantSeparatorsPathString
+import kotlin.io.path.relativeTo
+
+const val SHARD_SCRIPT_NAME = "shard"
+private const val SHARD_ARG = "shard"
+
+/** Directory inside the output directory of a shard run holding the database read by the `merge-shards` script. */
+internal const val SHARD_RESULTS_DIR = "shard-results"
+
+enum class ShardPartitioning { FILE, MODULE }
+
+/**
+ * Selects the files of shard [index] (zero-based) out of [count].
+ * Files are partitioned by the hash of their project-relative path, or by the name of their module,
+ * so every process computes the same partition without coordination.
+ */
+data class ShardSpec(val index: Int, val count: Int, val partitioning: ShardPartitioning) {
+  fun contains(key: String): Boolean = Math.floorMod(key.hashCode(), count) == index
+
+  companion object {
+    /** Parses `index/count` or `index/count,module`. */
+    fun parse(value: String): ShardSpec {
+      val (shard, mode) = value.split(',', limit = 2).let { it[0].trim() to it.getOrNull(1)?.trim() }
+      val parts = shard.split('/')
+      val index = parts.getOrNull(0)?.toIntOrNull()
+      val count = parts.getOrNull(1)?.toIntOrNull()
+      if (parts.size != 2 || index == null || count == null || count <= 0 || index !in 0 until count) {
+        throw QodanaException("Shard must be given as 'index/count' with 0 <= index < count, but was '$value'")
+      }
+      val partitioning = when (mode) {
+        null, "file" -> ShardPartitioning.FILE
+        "module" -> ShardPartitioning.MODULE
+        else -> throw QodanaException("Unknown shard partitioning '$mode', expected 'file' or 'module'")
+      }
+      return ShardSpec(index, count, partitioning)
+    }
+  }
+}
+
+/**
+ * `--script shard:index/count[,module]` analyzes one deterministic part of the project and additionally stores
+ * its results under [SHARD_RESULTS_DIR] in the output directory, to be combined with `merge-shards`.
+ */
+internal class ShardScriptFactory : QodanaScriptFactory {
+  override val scriptName: String get() = SHARD_SCRIPT_NAME
+
+  override fun parseParameters(parameters: String): Map<String, String> =
+    if (parameters.isBlank()) {
+      throw QodanaException("Cannot start $scriptName script without 'index/count'")
+    }
+    else {
+      mapOf(SHARD_ARG to parameters)
+    }
+
+  override fun createScript(
+    config: QodanaConfig,
+    messageReporter: QodanaMessageReporter,
+    contextFactory: QodanaRunContextFactory,
+    parameters: UnvalidatedParameters,
+  ): QodanaScript {
+    val shard = ShardSpec.parse(parameters.require<String>(SHARD_ARG))
+    return ShardScript(ShardRunContextFactory(contextFactory, shard), config.outPath.resolve(SHARD_RESULTS_DIR))
+  }
+}
+
+internal class ShardScript(runContextFactory: ShardRunContextFactory, private val shardResultsPath: Path) :
+  DefaultScript(runContextFactory, AnalysisKind.OTHER) {
+
+  override suspend fun execute(report: SarifReport, run: Run, runContext: QodanaRunContext, inspectionContext: QodanaGlobalInspectionContext) {
+    super.execute(report, run, runContext, inspectionContext)
+    // the results are complete once they are read, the context database is closed only after the script
+    runInterruptible(StaticAnalysisDispatchers.IO) {
+      QodanaToolResultDatabase.create(shardResultsPath).use {
+        it.copyResultsFrom(inspectionContext.outputPath)
+        it.insertCoverageStatistics(inspectionContext.coverageStatisticsData.counters())
+      }
+    }
+  }
+}
+
+internal class ShardRunContextFactory(
+  private val delegate: QodanaRunContextFactory,
+  @VisibleForTesting val shard: ShardSpec,
+) : QodanaRunContextFactory {
+
+  override suspend fun openRunContext(): QodanaRunContext {
+    val context = delegate.openRunContext()
+    val baseScope = context.scope.toSearchScope() as? GlobalSearchScope ?: GlobalSearchScope.projectScope(context.project)
+    val shardScope = ShardSearchScope(baseScope, context.project, context.config.projectPath, shard)
+    context.messageReporter.reportMessage(1, "Analyzing shard ${shard.index + 1} of ${shard.count} (by ${shard.partitioning.name.lowercase()})")
+    return context.copy(scope = QodanaAnalysisScope(shardScope, context.project))
+  }
+}
+
+private class ShardSearchScope(
+  baseScope: GlobalSearchScope,
+  private val project: Project,
+  private val projectPath: Path,
+  private val shard: ShardSpec,
+) : DelegatingGlobalSearchScope(baseScope, shard) {
+
+  override fun contains(file: VirtualFile): Boolean = super.contains(file) && shard.contains(partitionKey(file))
+
+  private fun partitionKey(file: VirtualFile): String {
+    if (shard.partitioning == ShardPartitioning.MODULE) {
+      ModuleUtilCore.findModuleForFile(file, project)?.let { return it.name }
+    }
+    val path = file.toNioPathOrNull() ?: return file.path
+    return if (path.startsWith(projectPath)) path.relativeTo(projectPath).invariantSeparatorsPathString else file.path
+  }
+}
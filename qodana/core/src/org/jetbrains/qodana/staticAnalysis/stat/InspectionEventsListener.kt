@@ -23,6 +23,11 @@ class InspectionEventsListener : InspectListener {
     val service = project.getService(InspectionDurationsAggregatorService::class.java)
     service.addInspectionFinishedEvent(duration, problemsCount, tool, kind)
 
+    if (InspectionProfilingService.isEnabled) {
+      project.getService(InspectionProfilingService::class.java)
+        .addInspectionFinishedEvent(duration, threadId, problemsCount, tool, kind, file?.virtualFile)
+    }
+
     InspectionInfoQodanaReporterService.getInstance(project)
       .addInspectionFinishedEvent(duration, problemsCount, tool, kind, file?.virtualFile)
   }
@@ -0,0 +1,107 @@
+package org.jetbrains.qodana.staticAnalysis.stat
+
+import com.intellij.codeInspection.ex.InspectListener
+import com.intellij.codeInspection.ex.InspectionToolWrapper
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.serviceAsync
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Opt-in (`-Dqodana.inspections.profiling=true`) per-inspection, per-file cost profile of the analysis.
+ *
+ * Wall time and problem counts come from InspectionFinished events. CPU time and allocations are sampled on the
+ * inspecting thread: the delta since the previous event on the same thread is attributed to the finished inspection
+ * in proportion to its share of the wall time passed in between, so work done between inspections is not billed to them.
+ * Events delivered on a different thread than the one that ran the inspection contribute wall time and problems only.
+ */
+@Service(Service.Level.PROJECT)
+class InspectionProfilingService(val project: Project) {
+  companion object {
+    val isEnabled: Boolean
+      get() = java.lang.Boolean.getBoolean("qodana.inspections.profiling")
+
+    suspend fun getInstance(project: Project): InspectionProfilingService = project.serviceAsync()
+  }
+
+  private data class Key(val inspectionId: String, val filePath: String)
+
+  private class Cost(
+    var wallMillis: Long = 0,
+    var cpuNanos: Long = 0,
+    var allocatedBytes: Long = 0,
+    var problemsCount: Int = 0,
+    var invocationsCount: Int = 0,
+  )
+
+  private class ThreadSample(val wallNanos: Long, val cpuNanos: Long, val allocatedBytes: Long)
+
+  private val threadBean = (ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean)
+    ?.takeIf { it.isCurrentThreadCpuTimeSupported && it.isThreadAllocatedMemorySupported }
+    ?.also {
+      it.isThreadCpuTimeEnabled = true
+      it.isThreadAllocatedMemoryEnabled = true
+    }
+
+  private val lastSample = ThreadLocal<ThreadSample>()
+  private val costs = ConcurrentHashMap<Key, Cost>()
+
+  fun addInspectionFinishedEvent(duration: Long, threadId: Long, problemsCount: Int, tool: InspectionToolWrapper<*, *>,
+                                 kind: InspectListener.InspectionKind, file: VirtualFile?) {
+    if (kind == InspectListener.InspectionKind.LOCAL_PRIORITY) return
+
+    var cpuNanos = 0L
+    var allocatedBytes = 0L
+    val bean = threadBean
+    if (bean != null && threadId == Thread.currentThread().id) {
+      val sample = ThreadSample(System.nanoTime(), bean.currentThreadCpuTime, bean.getThreadAllocatedBytes(threadId))
+      val previous = lastSample.get()
+      lastSample.set(sample)
+      if (previous != null) {
+        val elapsed = sample.wallNanos - previous.wallNanos
+        val share = if (elapsed <= 0) 1.0 else (TimeUnit.MILLISECONDS.toNanos(duration).toDouble() / elapsed).coerceAtMost(1.0)
+        cpuNanos = ((sample.cpuNanos - previous.cpuNanos) * share).toLong()
+        allocatedBytes = ((sample.allocatedBytes - previous.allocatedBytes) * share).toLong()
+      }
+    }
+
+    costs.compute(Key(tool.shortName, file?.path ?: "")) { _, v ->
+      (v ?: Cost()).apply {
+        this.wallMillis += duration
+        this.cpuNanos += cpuNanos
+        this.allocatedBytes += allocatedBytes
+        this.problemsCount += problemsCount
+        this.invocationsCount += 1
+      }
+    }
+  }
+
+  /**
+   * Returns the costs collected so far and starts a new profile, so every analysis run of a script gets its own.
+   */
+  fun drain(): List<InspectionCost> {
+    val result = ArrayList<InspectionCost>(costs.size)
+    for (key in costs.keys.toList()) {
+      val cost = costs.remove(key) ?: continue
+      result.add(InspectionCost(key.inspectionId, key.filePath, cost.wallMillis, cost.cpuNanos, cost.allocatedBytes,
+                                cost.problemsCount, cost.invocationsCount))
+    }
+    return result
+  }
+}
+
+/**
+ * Cost of one inspection on one file; [filePath] is empty for project-wide (global) inspection runs.
+ */
+data class InspectionCost(
+  val inspectionId: String,
+  val filePath: String,
+  val wallMillis: Long,
+  val cpuNanos: Long,
+  val allocatedBytes: Long,
+  val problemsCount: Int,
+  val invocationsCount: Int,
+)
@@ -0,0 +1,40 @@
+package org.jetbrains.qodana.staticAnalysis.stat
+
+import java.io.Writer
+import java.nio.file.Path
+import kotlin.io.path.Path
+import kotlin.io.path.bufferedWriter
+import kotlin.io.path.invariantSeparatorsPathString
+import kotlin.io.path.relativeTo
+
+const val INSPECTION_PROFILE_FOLDED_FILE = "inspection-profile.folded"
+
+private const val PROJECT_FRAME = "<project>"
+
+/**
+ * Writes [costs] in the collapsed stack format read by flamegraph.pl, speedscope and async-profiler converters:
+ * one `inspection;dir;...;file value` line per inspection and file.
+ * Values are CPU microseconds when [cpuTime] is set, wall-clock microseconds otherwise.
+ */
+fun writeFoldedStacks(costs: List<InspectionCost>, projectPath: Path, file: Path, cpuTime: Boolean) {
+  file.bufferedWriter().use { writeFoldedStacks(costs, projectPath, it, cpuTime) }
+}
+
+fun writeFoldedStacks(costs: List<InspectionCost>, projectPath: Path, writer: Writer, cpuTime: Boolean) {
+  for (cost in costs.sortedWith(compareBy({ it.inspectionId }, { it.filePath }))) {
+    val value = if (cpuTime) cost.cpuNanos / 1000 else cost.wallMillis * 1000
+    if (value <= 0) continue
+    writer.append(cost.inspectionId.replace(';', '_'))
+    for (frame in fileFrames(cost.filePath, projectPath)) {
+      writer.append(';').append(frame.replace(';', '_'))
+    }
+    writer.append(' ').append(value.toString()).append('\n')
+  }
+}
+
+private fun fileFrames(filePath: String, projectPath: Path): List<String> {
+  if (filePath.isEmpty()) return listOf(PROJECT_FRAME)
+  val path = runCatching { Path(filePath) }.getOrNull() ?: return listOf(filePath)
+  val relative = if (path.startsWith(projectPath)) path.relativeTo(projectPath).invariantSeparatorsPathString else filePath
+  return relative.split('/').filter { it.isNotEmpty() }
+}
@@ -68,4 +68,33 @@ internal suspend fun resetHardLocal(project: Project, root: VirtualFile) {
   runInterruptible(StaticAnalysisDispatchers.IO) {
     Git.getInstance().runCommand(handler).getOutputOrThrow()
   }
-}
\ No newline at end of file
+}
+
+internal fun getHeadRevision(project: Project): String? =
+  GitRepositoryManager.getInstance(project).repositories.firstOrNull()?.currentRevision
+
+/**
+ * Files changed between [revision] and the working tree, including uncommitted and untracked changes.
+ */
+internal suspend fun getChangedFilesSince(project: Project, revision: String): List<FilePath> {
+  val repository = GitRepositoryManager.getInstance(project).repositories.firstOrNull()
+                   ?: throw QodanaException("Repository root is not detected")
+  val root = repository.root
+  val handler = GitLineHandler(project, root, GitCommand.DIFF)
+    .apply {
+      addParameters("--name-only", "--no-renames", revision)
+      endOptions()
+      ignoreAuthenticationMode = AuthenticationMode.SILENT
+      setWithMediator(false)
+    }
+  val output = runInterruptible(StaticAnalysisDispatchers.IO) {
+    Git.getInstance().runCommand(handler).getOutputOrThrow()
+  }
+  val committed = output.lines()
+    .filter { it.isNotBlank() }
+    .map { VcsUtil.getFilePath(root.url + "/" + git4idea.GitUtil.unescapePath(it)) }
+  val uncommitted = getStatus(project)
+    .filter { it.path.isNotBlank() }
+    .map { it.filePath }
+  return (committed + uncommitted).distinct()
+}
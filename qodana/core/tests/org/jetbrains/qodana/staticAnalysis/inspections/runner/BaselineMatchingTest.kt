@@ -0,0 +1,101 @@
+package org.jetbrains.qodana.staticAnalysis.inspections.runner
+
+import com.intellij.openapi.util.io.FileUtil
+import com.jetbrains.qodana.sarif.SarifUtil
+import com.jetbrains.qodana.sarif.baseline.BaselineCalculation
+import com.jetbrains.qodana.sarif.model.*
+import org.jetbrains.qodana.staticAnalysis.sarif.fingerprints.withPartialFingerprints
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.nio.file.Path
+
+class BaselineMatchingTest {
+
+  @Test
+  fun `indexed baseline gives the same states as the full one`() {
+    val baselineFile = writeBaseline(
+      result("Unchanged", "src/A.java", 10),
+      result("Unchanged", "src/B.java", 20, fingerprints = false),
+      result("Absent", "src/A.java", 30),
+      result("Absent", "src/C.java", 40, fingerprints = false),
+    )
+    val current = {
+      listOf(
+        result("Unchanged", "src/A.java", 10),
+        result("Unchanged", "src/A.java", 10),
+        result("Unchanged", "src/B.java", 20, fingerprints = false),
+        result("New", "src/A.java", 50),
+        result("New", "src/C.java", 60, fingerprints = false),
+      )
+    }
+
+    val full = report(current())
+    BaselineCalculation.compare(full, SarifUtil.readReport(baselineFile), BaselineCalculation.Options(false))
+    val indexed = report(current())
+    BaselineFingerprintIndex.build(baselineFile).use { it.compare(indexed, BaselineCalculation.Options(false)) }
+
+    assertEquals(states(full), states(indexed))
+  }
+
+  @Test
+  fun `only results without fingerprints are kept, with display only parts dropped`() {
+    val baselineFile = writeBaseline(
+      result("Fingerprinted", "src/A.java", 10),
+      result("Plain", "src/B.java", 20, fingerprints = false),
+    )
+
+    BaselineFingerprintIndex.build(baselineFile).use { index ->
+      val run = index.unindexed.runs.single()
+      assertEquals("test", run.tool.driver.name)
+      val result = run.results.single()
+      assertEquals("Plain", result.ruleId)
+      assertNull(result.codeFlows)
+      assertNull(result.relatedLocations)
+      assertNull(result.fixes)
+      assertNull(result.message.markdown)
+      assertEquals("snippet", result.locations.single().physicalLocation.region.snippet.text)
+    }
+  }
+
+  @Test
+  fun `compared report keeps all its results`() {
+    val baselineFile = writeBaseline(result("Unchanged", "src/A.java", 10))
+    val report = report(listOf(result("Unchanged", "src/A.java", 10), result("New", "src/A.java", 50)))
+
+    BaselineFingerprintIndex.build(baselineFile).use { it.compare(report, BaselineCalculation.Options(false)) }
+
+    assertEquals(listOf("New:50:NEW", "Unchanged:10:UNCHANGED"), states(report))
+  }
+
+  private fun states(report: SarifReport): List<String> =
+    report.runs.single().results.map { "${it.ruleId}:${it.locations.single().physicalLocation.region.startLine}:${it.baselineState}" }.sorted()
+
+  private fun writeBaseline(vararg results: Result): Path {
+    val file = FileUtil.createTempFile("baseline", ".sarif.json", true).toPath()
+    SarifUtil.writeReport(file, report(results.toList()))
+    return file
+  }
+
+  private fun report(results: List<Result>): SarifReport =
+    SarifReport()
+      .withVersion(SarifReport.Version._2_1_0)
+      .withRuns(listOf(Run().withTool(Tool().withDriver(ToolComponent().withName("test"))).withResults(results.toMutableList())))
+
+  private fun result(ruleId: String, file: String, line: Int, fingerprints: Boolean = true): Result {
+    val location = Location().withPhysicalLocation(
+      PhysicalLocation()
+        .withArtifactLocation(ArtifactLocation().withUri(file).withUriBaseId("SRCROOT"))
+        .withRegion(Region().withStartLine(line).withStartColumn(1).withCharLength(5).withSnippet(ArtifactContent().withText("snippet")))
+        .withContextRegion(Region().withStartLine(line - 1).withEndLine(line + 1).withSnippet(ArtifactContent().withText("context")))
+    )
+    val result = Result()
+      .withRuleId(ruleId)
+      .withMessage(Message().withText("$ruleId problem").withMarkdown("`$ruleId` problem"))
+      .withLocations(listOf(location))
+      .withRelatedLocations(setOf(Location().withMessage(Message().withText("related"))))
+      .withCodeFlows(listOf(CodeFlow().withMessage(Message().withText("flow"))))
+      .withFixes(listOf(Fix().withDescription(Message().withText("fix"))))
+    return if (fingerprints) result.withPartialFingerprints() else result
+  }
+}
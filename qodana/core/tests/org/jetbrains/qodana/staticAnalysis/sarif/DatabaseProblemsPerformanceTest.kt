@@ -0,0 +1,74 @@
+package org.jetbrains.qodana.staticAnalysis.sarif
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.tools.ide.metrics.benchmark.Benchmark
+import com.jetbrains.qodana.sarif.model.*
+import kotlinx.coroutines.flow.count
+import kotlinx.coroutines.runBlocking
+import org.jetbrains.qodana.staticAnalysis.QodanaTestCase
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.QodanaMessageReporter
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.QodanaToolResultDatabase
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.ToolResultEncoding
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.ToolResultRow
+import org.junit.Assume
+import org.junit.Test
+
+private const val RESULT_COUNT = 100_000
+private const val BATCH_SIZE = 1000
+
+/**
+ * Writes and reads back [RESULT_COUNT] results, too slow for the regular suite.
+ * Run with `-Dqodana.database.performance.tests=true`.
+ */
+class DatabaseProblemsPerformanceTest : QodanaTestCase() {
+  private val rows: List<ToolResultRow> by lazy {
+    List(RESULT_COUNT) { i ->
+      val result = Result()
+        .withRuleId("Inspection${i % 50}")
+        .withMessage(Message().withText("Problem number $i").withMarkdown("Problem number `$i`"))
+        .withLocations(listOf(Location().withPhysicalLocation(
+          PhysicalLocation()
+            .withArtifactLocation(ArtifactLocation().withUri("src/main/java/org/example/File${i / 20}.java").withUriBaseId("SRCROOT"))
+            .withRegion(Region().withStartLine(i % 500 + 1).withStartColumn(5).withCharLength(12))
+        )))
+      ToolResultRow("", result.ruleId, "hash$i", ToolResultEncoding.encode(result))
+    }
+  }
+
+  @Test
+  fun `write results in batches`() {
+    assumePerformanceTestsEnabled()
+    var database: QodanaToolResultDatabase? = null
+    try {
+      Benchmark.newBenchmark(getTestName(false)) {
+        rows.chunked(BATCH_SIZE).forEach { database!!.insertBatch(it) }
+      }.setup {
+        database?.close()
+        database = QodanaToolResultDatabase.create(FileUtil.createTempDirectory(getTestName(false), null, true).toPath())
+      }.start()
+    }
+    finally {
+      database?.close()
+    }
+  }
+
+  @Test
+  fun `read results back`() {
+    assumePerformanceTestsEnabled()
+    val database = QodanaToolResultDatabase.create(FileUtil.createTempDirectory(getTestName(false), null, true).toPath())
+    try {
+      rows.chunked(BATCH_SIZE).forEach { database.insertBatch(it) }
+      Benchmark.newBenchmark(getTestName(false)) {
+        val count = runBlocking { database.resultsFlowByGroup("", QodanaMessageReporter.DEFAULT).count() }
+        assertEquals(RESULT_COUNT, count)
+      }.start()
+    }
+    finally {
+      database.close()
+    }
+  }
+
+  private fun assumePerformanceTestsEnabled() {
+    Assume.assumeTrue(java.lang.Boolean.getBoolean("qodana.database.performance.tests"))
+  }
+}
@@ -0,0 +1,42 @@
+package org.jetbrains.qodana.staticAnalysis.sarif
+
+import com.intellij.openapi.util.text.StringUtil
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class SourceTextTest {
+  private val texts = listOf(
+    "",
+    "single line",
+    "first\nsecond\n\nfourth",
+    "windows\r\nline\r\nendings\r\n",
+    "old\rmac\rendings",
+    "mixed\r\n\n\r\rend",
+  )
+
+  @Test
+  fun `line and column to offset`() {
+    for (text in texts) {
+      val source = SourceText(text)
+      for (line in 0..6) {
+        for (column in 0..3) {
+          assertThat(source.lineColToOffset(line, column))
+            .describedAs("'$text' at $line:$column")
+            .isEqualTo(StringUtil.lineColToOffset(text, line, column))
+        }
+      }
+    }
+  }
+
+  @Test
+  fun `offset to line and column`() {
+    for (text in texts) {
+      val source = SourceText(text)
+      for (offset in 0..text.length + 1) {
+        assertThat(source.offsetToLineColumn(offset))
+          .describedAs("'$text' at $offset")
+          .isEqualTo(StringUtil.offsetToLineColumn(text, offset))
+      }
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package org.jetbrains.qodana.staticAnalysis.script
+
+import com.intellij.openapi.util.io.FileUtil
+import com.jetbrains.qodana.sarif.model.*
+import org.assertj.core.api.AbstractObjectAssert
+import org.assertj.core.api.Assertions.assertThat
+import org.jetbrains.qodana.staticAnalysis.QodanaTestCase
+import org.jetbrains.qodana.staticAnalysis.inspections.config.QodanaConfig
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.OutputFormat
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.QodanaMessageReporter
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.startup.QodanaRunContextFactory
+import org.jetbrains.qodana.staticAnalysis.script.incremental.*
+import org.junit.Test
+import org.junit.jupiter.api.fail
+import java.nio.file.Path
+import kotlin.io.path.Path
+
+class IncrementalScriptFactoryTest : QodanaTestCase() {
+  private val subject = IncrementalScriptFactory()
+
+  private fun createScript(args: Map<String, String>, projectPath: Path = Path("/absolute/project")) =
+    subject.createScript(
+      config = QodanaConfig.fromYaml(
+        projectPath,
+        Path("/output/is/ignored"),
+        resultsStorage = Path("/yet/another/ignored/path"),
+        outputFormat = OutputFormat.SARIF_AND_PROJECT_STRUCTURE
+      ),
+      messageReporter = QodanaMessageReporter.EMPTY,
+      contextFactory = QodanaRunContextFactory { fail("Not called", null) },
+      parameters = UnvalidatedParameters(INCREMENTAL_SCRIPT_NAME, args)
+    )
+
+  private inline fun <reified R : Any> AbstractObjectAssert<*, *>.isInstance() =
+    isExactlyInstanceOf(R::class.java).extracting { it as R }
+
+  @Test
+  fun `create script uses default cache directory`() = runTest {
+    assertThat(createScript(emptyMap())).isInstance<IncrementalScript>()
+      .extracting(DefaultScript::runContextFactory)
+      .isInstance<IncrementalRunContextFactory>()
+      .extracting { it.cache.directory }
+      .isEqualTo(Path("/absolute/project/.qodana/incremental"))
+  }
+
+  @Test
+  fun `create script resolves relative cache directory`() = runTest {
+    assertThat(createScript(subject.parseParameters("build/qodana-cache"))).isInstance<IncrementalScript>()
+      .extracting(DefaultScript::runContextFactory)
+      .isInstance<IncrementalRunContextFactory>()
+      .extracting { it.cache.directory }
+      .isEqualTo(Path("/absolute/project/build/qodana-cache"))
+  }
+
+  @Test
+  fun `cache round trip`() = runTest {
+    val cache = IncrementalResultsCache(FileUtil.createTempDirectory("incremental", null).toPath())
+    assertThat(cache.loadState()).isNull()
+
+    val result = result("src/A.java")
+    val state = IncrementalState("abc123", "profile", "deps", mapOf("src/A.java" to "hash"), setOf("src/B.java"))
+    cache.save(state, listOf(result))
+
+    assertThat(cache.loadState()).isEqualTo(state)
+    assertThat(cache.loadResults()).containsExactly(result)
+  }
+
+  @Test
+  fun `unchanged files reuse cached results`() = runTest {
+    val cache = cacheWith(IncrementalState("abc123", "profile", "deps", mapOf("src/A.java" to "a", "src/B.java" to "b"), emptySet()))
+
+    val plan = plan(cache, changedFiles = listOf("src/B.java", "src/C.java"), contents = mapOf("src/A.java" to "a", "src/B.java" to "b2"))
+
+    assertThat(plan.fullRunReason).isNull()
+    assertThat(plan.recomputedFiles).containsExactlyInAnyOrder("src/B.java", "src/C.java")
+    assertThat(plan.reusedResults).hasSize(2)
+  }
+
+  @Test
+  fun `file changed and changed back keeps cached results`() = runTest {
+    val cache = cacheWith(IncrementalState("abc123", "profile", "deps", mapOf("src/A.java" to "a"), emptySet()))
+
+    val plan = plan(cache, changedFiles = listOf("src/A.java"), contents = mapOf("src/A.java" to "a"))
+
+    assertThat(plan.recomputedFiles).isEmpty()
+  }
+
+  @Test
+  fun `dirty file reverted after caching is recomputed`() = runTest {
+    // cached while src/A.java and src/B.java had uncommitted edits, both were reverted since then so git reports nothing
+    val cache = cacheWith(IncrementalState("abc123", "profile", "deps", mapOf("src/A.java" to "dirty-a"), setOf("src/A.java", "src/B.java")))
+
+    val plan = plan(cache, changedFiles = emptyList(), contents = mapOf("src/A.java" to "a", "src/B.java" to "b"))
+
+    assertThat(plan.fullRunReason).isNull()
+    assertThat(plan.recomputedFiles).containsExactlyInAnyOrder("src/A.java", "src/B.java")
+  }
+
+  @Test
+  fun `cached file content differing from its hash is recomputed`() = runTest {
+    val cache = cacheWith(IncrementalState("abc123", "profile", "deps", mapOf("src/A.java" to "a", "src/B.java" to "b"), emptySet()))
+
+    val plan = plan(cache, changedFiles = emptyList(), contents = mapOf("src/A.java" to "a", "src/B.java" to "other"))
+
+    assertThat(plan.recomputedFiles).containsExactly("src/B.java")
+  }
+
+  @Test
+  fun `profile change forces full run`() = runTest {
+    val cache = cacheWith(IncrementalState("abc123", "other-profile", "deps", mapOf("src/A.java" to "a"), emptySet()))
+
+    val plan = plan(cache, changedFiles = emptyList(), contents = mapOf("src/A.java" to "a"))
+
+    assertThat(plan.fullRunReason).isEqualTo("inspection profile changed")
+    assertThat(plan.reusedResults).isEmpty()
+  }
+
+  @Test
+  fun `dependency change forces full run`() = runTest {
+    val cache = cacheWith(IncrementalState("abc123", "profile", "other-deps", mapOf("src/A.java" to "a"), emptySet()))
+
+    val plan = plan(cache, changedFiles = emptyList(), contents = mapOf("src/A.java" to "a"))
+
+    assertThat(plan.fullRunReason).isEqualTo("project dependencies changed")
+    assertThat(plan.reusedResults).isEmpty()
+  }
+
+  @Test
+  fun `state without uncommitted files forces full run`() = runTest {
+    val cache = cacheWith(IncrementalState("abc123", "profile", "deps", mapOf("src/A.java" to "a"), null))
+
+    val plan = plan(cache, changedFiles = emptyList(), contents = mapOf("src/A.java" to "a"))
+
+    assertThat(plan.isFullRun).isTrue()
+  }
+
+  @Test
+  fun `global inspections force full run`() = runTest {
+    val cache = cacheWith(IncrementalState("abc123", "profile", "deps", mapOf("src/A.java" to "a"), emptySet()))
+
+    val plan = plan(cache, changedFiles = emptyList(), contents = mapOf("src/A.java" to "a"), globalInspections = listOf("DuplicatedCode", "unused"))
+
+    assertThat(plan.fullRunReason).isEqualTo("global inspections are enabled: DuplicatedCode, unused")
+    assertThat(plan.reusedResults).isEmpty()
+  }
+
+  @Test
+  fun `files depending on changed files are recomputed`() = runTest {
+    val cache = cacheWith(IncrementalState("abc123", "profile", "deps", mapOf("src/A.java" to "a", "src/B.java" to "b", "lib/C.java" to "c"), emptySet()))
+
+    val plan = plan(cache, changedFiles = listOf("lib/C.java"), contents = mapOf("src/A.java" to "a", "src/B.java" to "b", "lib/C.java" to "c2"),
+                    dependents = mapOf("lib/C.java" to listOf("lib/C.java", "src/B.java")))
+
+    assertThat(plan.recomputedFiles).containsExactlyInAnyOrder("lib/C.java", "src/B.java")
+  }
+
+  private fun cacheWith(state: IncrementalState): IncrementalResultsCache {
+    val cache = IncrementalResultsCache(FileUtil.createTempDirectory("incremental", null).toPath())
+    cache.save(state, state.fileHashes.keys.map { result(it) })
+    return cache
+  }
+
+  private suspend fun plan(
+    cache: IncrementalResultsCache,
+    changedFiles: List<String>,
+    contents: Map<String, String>,
+    globalInspections: List<String> = emptyList(),
+    dependents: Map<String, List<String>> = emptyMap(),
+  ): IncrementalPlan =
+    planIncrementalRun(
+      revision = "def456",
+      profileHash = "profile",
+      dependencyFingerprint = "deps",
+      globalInspections = globalInspections,
+      cache = cache,
+      changedFilesSince = { changedFiles },
+      dependentFiles = { files -> files.flatMap { dependents[it].orEmpty() } },
+      hashContent = { contents[it] },
+      isProjectFile = { true },
+    )
+
+  private fun result(file: String): Result = Result()
+    .withRuleId("ConstantValue")
+    .withMessage(Message().withText("Condition is always true"))
+    .withLocations(listOf(Location().withPhysicalLocation(
+      PhysicalLocation().withArtifactLocation(ArtifactLocation().withUri(file).withUriBaseId("SRCROOT"))
+    )))
+}
@@ -0,0 +1,80 @@
+package org.jetbrains.qodana.staticAnalysis.script
+
+import com.intellij.testFramework.utils.io.deleteRecursively
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.jetbrains.qodana.staticAnalysis.QodanaTestCase
+import org.jetbrains.qodana.staticAnalysis.inspections.metrics.database.rowData.LinesOfCodeMetricTableRowData
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.QodanaException
+import org.jetbrains.qodana.staticAnalysis.inspections.runner.QodanaToolResultDatabase
+import org.jetbrains.qodana.staticAnalysis.script.shard.ShardPartitioning
+import org.jetbrains.qodana.staticAnalysis.script.shard.ShardScriptFactory
+import org.jetbrains.qodana.staticAnalysis.script.shard.ShardSpec
+import org.junit.Test
+import java.nio.file.Files
+
+class ShardScriptFactoryTest : QodanaTestCase() {
+  @Test
+  fun `parse shard`() {
+    assertThat(ShardSpec.parse("1/4")).isEqualTo(ShardSpec(1, 4, ShardPartitioning.FILE))
+    assertThat(ShardSpec.parse("0/2,module")).isEqualTo(ShardSpec(0, 2, ShardPartitioning.MODULE))
+  }
+
+  @Test
+  fun `reject invalid shard`() {
+    for (value in listOf("4/4", "-1/2", "1", "a/b", "0/0", "0/2,package")) {
+      assertThatThrownBy { ShardSpec.parse(value) }.isInstanceOf(QodanaException::class.java)
+    }
+    assertThatThrownBy { ShardScriptFactory().parseParameters("") }.isInstanceOf(QodanaException::class.java)
+  }
+
+  @Test
+  fun `every file belongs to exactly one shard`() {
+    val shards = List(3) { ShardSpec(it, 3, ShardPartitioning.FILE) }
+    val files = List(1000) { "src/dir${it % 17}/File$it.kt" }
+    for (file in files) {
+      assertThat(shards.count { it.contains(file) }).isEqualTo(1)
+    }
+    assertThat(shards).allMatch { shard -> files.any { shard.contains(it) } }
+  }
+
+  @Test
+  fun `merge shard databases`() {
+    val root = Files.createTempDirectory(javaClass.simpleName)
+    try {
+      val first = root.resolve("first")
+      val second = root.resolve("second")
+      QodanaToolResultDatabase.create(first).use {
+        it.insert("main", "Unused", "a", "{\"file\":\"A.kt\"}")
+        it.insert("main", "ProjectLevel", "p", "{\"project\":true}")
+        it.insertDuplicate("A.kt", 1, 0, 10, "d", "{\"duplicate\":\"A\"}")
+        it.insertMetricsData(LinesOfCodeMetricTableRowData("A.kt", 10))
+        it.insertCoverageStatistics(mapOf("totalLines" to 10, "coveredLines" to 5))
+      }
+      QodanaToolResultDatabase.create(second).use {
+        it.insert("main", "Unused", "b", "{\"file\":\"B.kt\"}")
+        it.insert("main", "ProjectLevel", "p", "{\"project\":true}")
+        it.insertDuplicate("B.kt", 2, 0, 10, "d", "{\"duplicate\":\"B\"}")
+        it.insertMetricsData(LinesOfCodeMetricTableRowData("B.kt", 20))
+        it.insertCoverageStatistics(mapOf("totalLines" to 30, "coveredLines" to 15))
+      }
+
+      QodanaToolResultDatabase.create(root.resolve("merged")).use { merged ->
+        merged.copyResultsFrom(first)
+        merged.copyResultsFrom(second)
+
+        val results = merged.select("main").use { query -> query.executeQuery().map { "${it.inspectionId}:${it.hash}" }.toList() }
+        assertThat(results).containsExactly("ProjectLevel:p", "Unused:a", "Unused:b")
+        assertThat(merged.selectDuplicate("A.kt", 1, 0).use { it.executeQuery().toList() }).containsExactly("{\"duplicate\":\"A\"}")
+        assertThat(merged.selectDuplicate("B.kt", 2, 0).use { it.executeQuery().toList() }).containsExactly("{\"duplicate\":\"B\"}")
+        val linesOfCode = merged.getResultsFromMetricsTable("SELECT filePath, numberOfLines FROM metrics_lines_of_code ORDER BY filePath;", 2)
+          .use { query -> query.executeQuery().map { it.joinToString(":") }.toList() }
+        assertThat(linesOfCode).containsExactly("A.kt:10", "B.kt:20")
+        assertThat(merged.selectCoverageStatistics()).isEqualTo(mapOf("coveredLines" to 20, "totalLines" to 40))
+      }
+    }
+    finally {
+      root.deleteRecursively()
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package org.jetbrains.qodana.staticAnalysis.stat
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.io.StringWriter
+import kotlin.io.path.Path
+
+class InspectionProfileExportTest {
+  private val projectPath = Path("/work/project")
+
+  private val costs = listOf(
+    InspectionCost("UnusedDeclaration", "", 1200, 900_000_000, 0, 3, 1),
+    InspectionCost("ConstantValue", "/work/project/src/main/A.java", 40, 25_000_000, 1024, 1, 1),
+    InspectionCost("ConstantValue", "/work/project/src/main/B.java", 10, 0, 0, 0, 1),
+    InspectionCost("Spelling;Typo", "/outside/C.txt", 5, 4_000, 0, 0, 1),
+  )
+
+  @Test
+  fun `folded stacks with cpu time`() {
+    val writer = StringWriter()
+    writeFoldedStacks(costs, projectPath, writer, cpuTime = true)
+    assertThat(writer.toString().lines().filter { it.isNotEmpty() }).containsExactly(
+      "ConstantValue;src;main;A.java 25000",
+      "Spelling_Typo;outside;C.txt 4",
+      "UnusedDeclaration;<project> 900000",
+    )
+  }
+
+  @Test
+  fun `folded stacks with wall time`() {
+    val writer = StringWriter()
+    writeFoldedStacks(costs, projectPath, writer, cpuTime = false)
+    assertThat(writer.toString().lines().filter { it.isNotEmpty() }).containsExactly(
+      "ConstantValue;src;main;A.java 40000",
+      "ConstantValue;src;main;B.java 10000",
+      "Spelling_Typo;outside;C.txt 5000",
+      "UnusedDeclaration;<project> 1200000",
+    )
+  }
+}
@@ -2,6 +2,15 @@ package org.jetbrains.qodana.staticAnalysis.inspections.coverage
 
 import com.intellij.rt.coverage.report.XMLProjectData
 import com.intellij.rt.coverage.report.XMLProjectData.*
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.io.InputStream
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamReader
 import kotlin.math.max
 import kotlin.math.min
 
@@ -78,4 +87,222 @@ fun XMLProjectData.merge(other: XMLProjectData) {
       addClass(otherClassInfo)
     }
   }
-}
\ No newline at end of file
+}
+private const val LINE_FIELDS = 4
+private const val ABSENT = -1
+
+// class counters, in ClassInfo constructor order: missed/covered lines, instructions, branches, methods
+private val CLASS_COUNTER_TYPES = listOf("LINE", "INSTRUCTION", "BRANCH", "METHOD")
+
+/**
+ * Merges JaCoCo XML reports into one [XMLProjectData] with the same rules as [XMLProjectData.merge],
+ * without building the per-report model: every report is read with StAX, its `line` and class counters are folded
+ * into per-file and per-class int arrays, and reports are parsed in parallel, at most [parallelism] at a time.
+ * Memory depends on the number of distinct files and lines, not on the number or the size of the reports.
+ */
+class StreamingXmlCoverageMerger(private val parallelism: Int = Runtime.getRuntime().availableProcessors().coerceAtMost(4)) {
+  private val files = ConcurrentHashMap<String, MergedLines>()
+  private val classes = ConcurrentHashMap<String, MergedClass>()
+
+  fun merge(reports: List<Path>): XMLProjectData {
+    if (reports.size <= 1 || parallelism <= 1) {
+      reports.forEach(::readReport)
+    }
+    else {
+      val executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Qodana coverage report merge", parallelism)
+      try {
+        val futures = reports.map { report -> executor.submit { readReport(report) } }
+        for (future in futures) {
+          try {
+            future.get()
+          }
+          catch (e: ExecutionException) {
+            throw e.cause ?: e
+          }
+        }
+      }
+      finally {
+        executor.shutdownNow()
+      }
+    }
+    return toProjectData()
+  }
+
+  fun readReport(report: Path) {
+    Files.newInputStream(report).buffered().use { readReport(it) }
+  }
+
+  fun readReport(input: InputStream) {
+    val reader = xmlInputFactory.createXMLStreamReader(input)
+    try {
+      var packageName = ""
+      var className: String? = null
+      var classFileName: String? = null
+      val classCounters = IntArray(CLASS_COUNTER_TYPES.size * 2)
+      var sourceFile: String? = null
+      val lines = LineBuffer()
+      while (reader.hasNext()) {
+        when (reader.next()) {
+          XMLStreamConstants.START_ELEMENT -> when (reader.localName) {
+            "package" -> packageName = reader.getAttributeValue(null, "name") ?: ""
+            "class" -> {
+              className = reader.getAttributeValue(null, "name")?.replace('/', '.')
+              classFileName = reader.getAttributeValue(null, "sourcefilename")
+              classCounters.fill(0)
+            }
+            "method" -> skipElement(reader) // method counters are not part of the model
+            "counter" -> if (className != null) {
+              val index = CLASS_COUNTER_TYPES.indexOf(reader.getAttributeValue(null, "type"))
+              if (index >= 0) {
+                classCounters[index * 2] = reader.intAttribute("missed")
+                classCounters[index * 2 + 1] = reader.intAttribute("covered")
+              }
+            }
+            "sourcefile" -> {
+              val name = reader.getAttributeValue(null, "name") ?: ""
+              sourceFile = if (packageName.isEmpty()) name else "$packageName/$name"
+              lines.clear()
+            }
+            "line" -> if (sourceFile != null) {
+              lines.add(reader.intAttribute("nr"), reader.intAttribute("mi"), reader.intAttribute("ci"),
+                        reader.intAttribute("mb"), reader.intAttribute("cb"))
+            }
+          }
+          XMLStreamConstants.END_ELEMENT -> when (reader.localName) {
+            "package" -> packageName = ""
+            "class" -> {
+              val name = className
+              if (name != null) {
+                classes.computeIfAbsent(name) { MergedClass(classFileName) }.merge(classCounters)
+              }
+              className = null
+            }
+            "sourcefile" -> {
+              val path = sourceFile
+              if (path != null) {
+                files.computeIfAbsent(path) { MergedLines() }.merge(lines)
+              }
+              sourceFile = null
+            }
+          }
+        }
+      }
+    }
+    finally {
+      reader.close()
+    }
+  }
+
+  private fun toProjectData(): XMLProjectData {
+    val data = XMLProjectData()
+    for ((path, merged) in files) {
+      data.addFile(merged.toFileInfo(path))
+    }
+    for ((name, merged) in classes) {
+      data.addClass(merged.toClassInfo(name))
+    }
+    return data
+  }
+
+  private fun skipElement(reader: XMLStreamReader) {
+    var depth = 1
+    while (depth > 0 && reader.hasNext()) {
+      when (reader.next()) {
+        XMLStreamConstants.START_ELEMENT -> depth++
+        XMLStreamConstants.END_ELEMENT -> depth--
+      }
+    }
+  }
+
+  private fun XMLStreamReader.intAttribute(name: String): Int = getAttributeValue(null, name)?.toIntOrNull() ?: 0
+
+  private companion object {
+    val xmlInputFactory: XMLInputFactory = XMLInputFactory.newFactory().apply {
+      // JaCoCo reports reference report.dtd, which is neither needed nor available
+      setProperty(XMLInputFactory.SUPPORT_DTD, false)
+      setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false)
+    }
+  }
+}
+
+/** Lines of one `sourcefile` element of one report, as `nr, mi, ci, mb, cb` quintuples. */
+private class LineBuffer {
+  var data = IntArray(5 * 64)
+  var size = 0
+
+  fun add(line: Int, mi: Int, ci: Int, mb: Int, cb: Int) {
+    if (size + 5 > data.size) data = data.copyOf(data.size * 2)
+    data[size] = line
+    data[size + 1] = mi
+    data[size + 2] = ci
+    data[size + 3] = mb
+    data[size + 4] = cb
+    size += 5
+  }
+
+  fun clear() {
+    size = 0
+  }
+}
+
+/** Merged counters of a file indexed by line number: `mi, ci, mb, cb` per line, `mi == -1` for lines without data. */
+private class MergedLines {
+  private var data = IntArray(0)
+
+  @Synchronized
+  fun merge(lines: LineBuffer) {
+    var maxLine = -1
+    for (i in 0 until lines.size step 5) maxLine = max(maxLine, lines.data[i])
+    if ((maxLine + 1) * LINE_FIELDS > data.size) {
+      val oldSize = data.size
+      data = data.copyOf((maxLine + 1) * LINE_FIELDS)
+      data.fill(ABSENT, oldSize, data.size)
+    }
+    for (i in 0 until lines.size step 5) {
+      val line = lines.data[i]
+      if (line < 0) continue
+      val base = line * LINE_FIELDS
+      if (data[base] == ABSENT) {
+        lines.data.copyInto(data, base, i + 1, i + 5)
+      }
+      else {
+        data[base] = min(data[base], lines.data[i + 1])
+        data[base + 1] = max(data[base + 1], lines.data[i + 2])
+        data[base + 2] = min(data[base + 2], lines.data[i + 3])
+        data[base + 3] = max(data[base + 3], lines.data[i + 4])
+      }
+    }
+  }
+
+  fun toFileInfo(path: String): FileInfo {
+    val fileInfo = FileInfo(path)
+    for (line in 0 until data.size / LINE_FIELDS) {
+      val base = line * LINE_FIELDS
+      if (data[base] == ABSENT) continue
+      fileInfo.lines.add(LineInfo(line, data[base], data[base + 1], data[base + 2], data[base + 3]))
+    }
+    return fileInfo
+  }
+}
+
+/** Merged class counters: missed counters are minimized, covered ones maximized, as in [ClassInfo.merge]. */
+private class MergedClass(private val fileName: String?) {
+  private var counters: IntArray? = null
+
+  @Synchronized
+  fun merge(other: IntArray) {
+    val current = counters
+    if (current == null) {
+      counters = other.copyOf()
+      return
+    }
+    for (i in current.indices) {
+      current[i] = if (i % 2 == 0) min(current[i], other[i]) else max(current[i], other[i])
+    }
+  }
+
+  fun toClassInfo(name: String): ClassInfo {
+    val c = counters ?: IntArray(CLASS_COUNTER_TYPES.size * 2)
+    return ClassInfo(name, fileName, c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7])
+  }
+}
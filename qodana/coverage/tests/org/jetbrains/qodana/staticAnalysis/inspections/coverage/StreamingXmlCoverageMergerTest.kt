@@ -0,0 +1,49 @@
+package org.jetbrains.qodana.staticAnalysis.inspections.coverage
+
+import com.intellij.openapi.util.io.FileUtil
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import kotlin.io.path.writeText
+
+class StreamingXmlCoverageMergerTest {
+  private fun report(methodCovered: Int, vararg lines: String) = """
+    <?xml version="1.0" encoding="UTF-8" standalone="yes"?><!DOCTYPE report PUBLIC "-//JACOCO//DTD Report 1.1//EN" "report.dtd">
+    <report name="r">
+      <package name="foo/bar">
+        <class name="foo/bar/Baz" sourcefilename="Baz.java">
+          <method name="m" desc="()V" line="3"><counter type="INSTRUCTION" missed="100" covered="100"/></method>
+          <counter type="LINE" missed="${2 - methodCovered}" covered="$methodCovered"/>
+          <counter type="METHOD" missed="${1 - methodCovered.coerceAtMost(1)}" covered="${methodCovered.coerceAtMost(1)}"/>
+        </class>
+        <sourcefile name="Baz.java">
+          ${lines.joinToString("\n")}
+          <counter type="LINE" missed="1" covered="1"/>
+        </sourcefile>
+        <counter type="LINE" missed="7" covered="7"/>
+      </package>
+    </report>
+  """.trimIndent()
+
+  @Test
+  fun `merges lines and classes of several reports`() {
+    val dir = FileUtil.createTempDirectory("coverage", null).toPath()
+    val reports = listOf(
+      report(0, """<line nr="3" mi="3" ci="0" mb="0" cb="0"/>""", """<line nr="5" mi="2" ci="0" mb="2" cb="0"/>"""),
+      report(1, """<line nr="3" mi="0" ci="3" mb="0" cb="0"/>""", """<line nr="5" mi="2" ci="0" mb="1" cb="1"/>"""),
+      report(0, """<line nr="7" mi="0" ci="1" mb="0" cb="0"/>"""),
+    ).mapIndexed { i, text -> dir.resolve("report-$i.xml").also { it.writeText(text) } }
+
+    val data = StreamingXmlCoverageMerger(parallelism = 2).merge(reports)
+
+    val file = data.getFile("foo/bar/Baz.java")!!
+    assertThat(file.lines.map { listOf(it.lineNumber, it.missedInstructions, it.coveredInstructions, it.missedBranches, it.coveredBranches) })
+      .containsExactly(listOf(3, 0, 3, 0, 0), listOf(5, 2, 0, 1, 1), listOf(7, 0, 1, 0, 0))
+
+    val cls = data.getClass("foo.bar.Baz")!!
+    assertThat(cls.fileName).isEqualTo("Baz.java")
+    assertThat(listOf(cls.missedLines, cls.coveredLines, cls.missedInstructions, cls.coveredInstructions, cls.missedMethods, cls.coveredMethods))
+      .containsExactly(1, 1, 0, 0, 0, 1)
+    assertThat(data.classes).hasSize(1)
+    assertThat(data.files).hasSize(1)
+  }
+}
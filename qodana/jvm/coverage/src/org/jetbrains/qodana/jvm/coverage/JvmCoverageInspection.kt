@@ -30,6 +30,7 @@ import org.jetbrains.qodana.staticAnalysis.stat.CoverageFeatureEventsCollector
 import org.jetbrains.uast.*
 import org.jetbrains.uast.java.UastAnonymousClassUtil
 import org.jetbrains.uast.visitor.AbstractUastNonRecursiveVisitor
+import java.nio.file.Path
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.reflect.KClass
 
@@ -278,12 +279,12 @@ class JvmCoverageInspection : CoverageInspectionBase() {
     val engine = CoverageEngine.EP_NAME.findExtensionOrFail(engineType.java)
     val suites = computeSuites(engine, coverageFiles, globalContext.project)
     if (suites.any()) {
-      val firstSuite = suites.first()
-      val report = (firstSuite as? XMLReportSuite)?.getReportData() ?: throw QodanaException("JaCoCo suite ${firstSuite.presentableName} is missing report data")
-      for (suite in suites.drop(1)) {
-        val add = (suite as? XMLReportSuite)?.getReportData() ?: throw QodanaException("JaCoCo suite ${suite.presentableName} is missing report data")
-        report.merge(add)
+      val reportFiles = suites.map { suite ->
+        (suite as? XMLReportSuite)?.coverageDataFileName?.let { Path.of(it) }
+        ?: throw QodanaException("JaCoCo suite ${suite.presentableName} is missing report data")
       }
+      // reports are streamed into one model instead of loading every suite's report and merging them pairwise
+      val report = StreamingXmlCoverageMerger().merge(reportFiles)
       if (globalContext.coverageComputationState().isIncrementalAnalysis()) {
         val stat = globalContext.coverageStatisticsData
         report.files.filter { fileInfo ->
@@ -22,6 +22,8 @@ import com.intellij.refactoring.actions.RenameElementAction
 import com.intellij.usageView.UsageInfo
 import com.intellij.usages.*
 import com.intellij.util.NullableFunction
+import org.intellij.terraform.config.model.Module
+import org.intellij.terraform.config.model.TfModuleSymbols
 import org.intellij.terraform.config.model.getTerraformSearchScope
 import org.intellij.terraform.config.patterns.TerraformPatterns
 import org.intellij.terraform.hcl.HCLBundle
@@ -70,6 +72,14 @@ abstract class TFDuplicatedInspectionBase : LocalInspectionTool() {
 
   abstract fun createVisitor(holder: ProblemsHolder): PsiElementVisitor
 
+  /**
+   * Answers from [TfModuleSymbols] without searching the module files, false when it is not available
+   */
+  protected fun isDeclaredOnce(module: Module, symbol: String): Boolean {
+    val symbols = TfModuleSymbols.getInstance(module) ?: return false
+    return symbols.getDeclarationsCount(symbol) < 2
+  }
+
   protected fun createNavigateToDupeFix(psiElement: PsiElement, single: Boolean): LocalQuickFix {
     val psiPointer = psiElement.createSmartPointer()
     return object : LocalQuickFix {
@@ -11,6 +11,7 @@ import com.intellij.openapi.project.Project
 import com.intellij.psi.PsiElementVisitor
 import com.intellij.psi.createSmartPointer
 import com.intellij.util.NullableFunction
+import org.intellij.terraform.config.model.TfModuleSymbols
 import org.intellij.terraform.config.model.getTerraformModule
 import org.intellij.terraform.config.patterns.TerraformPatterns
 import org.intellij.terraform.hcl.HCLBundle
@@ -41,6 +42,7 @@ class TFDuplicatedOutputInspection : TFDuplicatedInspectionBase() {
     val module = block.getTerraformModule()
 
     val name = block.getNameElementUnquoted(1) ?: return null
+    if (isDeclaredOnce(module, TfModuleSymbols.output(name))) return null
 
     val same = module.getDefinedOutputs().filter { name == it.getNameElementUnquoted(1) && !TerraformPatterns.ConfigOverrideFile.accepts(it.containingFile) }
     if (same.isEmpty()) return null
@@ -9,6 +9,7 @@ import com.intellij.openapi.project.Project
 import com.intellij.psi.PsiElementVisitor
 import com.intellij.psi.createSmartPointer
 import com.intellij.util.NullableFunction
+import org.intellij.terraform.config.model.TfModuleSymbols
 import org.intellij.terraform.config.model.getProviderFQName
 import org.intellij.terraform.config.model.getTerraformModule
 import org.intellij.terraform.config.patterns.TerraformPatterns
@@ -42,6 +43,7 @@ class TFDuplicatedProviderInspection : TFDuplicatedInspectionBase() {
     val module = block.getTerraformModule()
 
     val fqn = block.getProviderFQName() ?: return null
+    if (isDeclaredOnce(module, TfModuleSymbols.provider(fqn))) return null
 
     val same = module.getDefinedProviders().filter { it.second == fqn && !TerraformPatterns.ConfigOverrideFile.accepts(it.first.containingFile) }
     if (same.isEmpty()) return null
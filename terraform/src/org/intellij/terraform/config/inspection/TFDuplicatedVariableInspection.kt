@@ -11,6 +11,7 @@ import com.intellij.openapi.project.Project
 import com.intellij.psi.PsiElementVisitor
 import com.intellij.psi.createSmartPointer
 import com.intellij.util.NullableFunction
+import org.intellij.terraform.config.model.TfModuleSymbols
 import org.intellij.terraform.config.model.getTerraformModule
 import org.intellij.terraform.config.patterns.TerraformPatterns
 import org.intellij.terraform.hcl.HCLBundle
@@ -39,6 +40,7 @@ class TFDuplicatedVariableInspection : TFDuplicatedInspectionBase() {
     val module = block.getTerraformModule()
 
     val name = block.getNameElementUnquoted(1) ?: return null
+    if (isDeclaredOnce(module, TfModuleSymbols.variable(name))) return null
 
     val same = module.findVariables(name).filter { !TerraformPatterns.ConfigOverrideFile.accepts(it.declaration.containingFile) }
     if (same.isEmpty()) return null
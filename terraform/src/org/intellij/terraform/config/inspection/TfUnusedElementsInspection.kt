@@ -10,6 +10,7 @@ import com.intellij.psi.PsiElementVisitor
 import com.intellij.psi.PsiFile
 import com.intellij.psi.search.PsiSearchHelper
 import com.intellij.psi.search.searches.ReferencesSearch
+import org.intellij.terraform.config.model.TfModuleSymbols
 import org.intellij.terraform.config.model.getTerraformModule
 import org.intellij.terraform.config.patterns.TerraformPatterns
 import org.intellij.terraform.hcl.HCLBundle
@@ -42,15 +43,19 @@ internal class TfUnusedElementsInspection : LocalInspectionTool() {
     // Need to know is that a suitable hclElement before reference search (isElementUnused method)
     val unused = getHclUnusedElement(element, name) ?: return
 
-    if (isElementUnused(element, name)) {
+    if (isElementUnused(element, name, unused.symbol)) {
       val highlighted = HCLPsiUtil.getIdentifierPsi(element) ?: return
       holder.registerProblem(highlighted, unused.inspectionMessage, ProblemHighlightType.LIKE_UNUSED_SYMBOL, unused.quickFix)
     }
   }
 
-  private fun isElementUnused(element: HCLElement, name: String): Boolean {
+  private fun isElementUnused(element: HCLElement, name: String, symbol: String?): Boolean {
     ProgressIndicatorProvider.checkCanceled()
     val module = element.getTerraformModule()
+    val symbols = TfModuleSymbols.getInstance(module)
+    if (symbols != null && symbol != null) {
+      return !symbols.isReferenced(symbol)
+    }
     val searchScope = module.getTerraformModuleScope()
 
     val costSearch = PsiSearchHelper.getInstance(element.project).isCheapEnoughToSearch(name, searchScope, element.containingFile)
@@ -65,16 +70,19 @@ internal class TfUnusedElementsInspection : LocalInspectionTool() {
     TerraformPatterns.LocalProperty.accepts(element) -> object : HclUnusedElement {
       override val inspectionMessage: String = HCLBundle.message("unused.local.inspection.error.message", name)
       override val quickFix: LocalQuickFix = RemoveLocalQuickFix(element)
+      override val symbol: String = TfModuleSymbols.local(name)
     }
 
     TerraformPatterns.VariableRootBlock.accepts(element) -> object : HclUnusedElement {
       override val inspectionMessage: String = HCLBundle.message("unused.variable.inspection.error.message", name)
       override val quickFix: LocalQuickFix = RemoveVariableQuickFix(element)
+      override val symbol: String = TfModuleSymbols.variable(name)
     }
 
     TerraformPatterns.DataSourceRootBlock.accepts(element) -> object : HclUnusedElement {
       override val inspectionMessage: String = HCLBundle.message("unused.data.source.inspection.error.message", name)
       override val quickFix: LocalQuickFix = RemoveDataSourceQuickFix(element)
+      override val symbol: String? = (element as HCLBlock).getNameElementUnquoted(1)?.let { TfModuleSymbols.dataSource(it, name) }
     }
     else -> null
   }
@@ -83,6 +91,9 @@ internal class TfUnusedElementsInspection : LocalInspectionTool() {
 private interface HclUnusedElement {
   val inspectionMessage: String
   val quickFix: LocalQuickFix
+
+  // see TfModuleSymbols
+  val symbol: String?
 }
 
 private class RemoveVariableQuickFix(element: HCLElement) : RemovePsiElementQuickFix(element) {
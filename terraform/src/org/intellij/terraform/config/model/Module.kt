@@ -256,7 +256,7 @@ class Module private constructor(val moduleRoot: PsiFileSystemItem) {
 
   fun findLocal(name: String): Pair<String, HCLProperty>? {
     val visitor = CollectLocalsVisitor(name)
-    process(PsiElementProcessor { file -> file.acceptChildren(visitor); visitor.collected.isEmpty() })
+    processDeclaring(TfModuleSymbols.local(name), PsiElementProcessor { file -> file.acceptChildren(visitor); visitor.collected.isEmpty() })
     return visitor.collected.firstOrNull()
   }
 
@@ -278,9 +278,23 @@ class Module private constructor(val moduleRoot: PsiFileSystemItem) {
     })
   }
 
+  /**
+   * Processes only the files declaring [symbol] when [TfModuleSymbols] are available, all the files otherwise
+   */
+  private fun processDeclaring(symbol: String?, processor: PsiElementProcessor<HCLFile>): Boolean {
+    val symbols = symbol?.let { TfModuleSymbols.getInstance(this) } ?: return process(processor)
+    for (virtualFile in symbols.getDeclaringFiles(symbol).distinct()) {
+      val file = moduleRoot.manager.findFile(virtualFile) as? HCLFile ?: continue
+      if (file.language != TerraformLanguage) continue
+      if (!processor.execute(file)) return false
+    }
+    return true
+  }
+
   fun findResources(type: String?, name: String?): List<HCLBlock> {
     val found = ArrayList<HCLBlock>()
-    process(PsiElementProcessor { file ->
+    val symbol = if (type != null && name != null) TfModuleSymbols.resource(type, name) else null
+    processDeclaring(symbol, PsiElementProcessor { file ->
       file.acceptChildren(object : HCLElementVisitor() {
         override fun visitBlock(o: HCLBlock) {
           if (HCL_RESOURCE_IDENTIFIER != o.getNameElementUnquoted(0)) return
@@ -300,7 +314,8 @@ class Module private constructor(val moduleRoot: PsiFileSystemItem) {
 
   fun findDataSource(type: String?, name: String?): List<HCLBlock> {
     val found = ArrayList<HCLBlock>()
-    process(PsiElementProcessor { file ->
+    val symbol = if (type != null && name != null) TfModuleSymbols.dataSource(type, name) else null
+    processDeclaring(symbol, PsiElementProcessor { file ->
       file.acceptChildren(object : HCLElementVisitor() {
         override fun visitBlock(o: HCLBlock) {
           if (HCL_DATASOURCE_IDENTIFIER != o.getNameElementUnquoted(0)) return
@@ -0,0 +1,145 @@
+// Copyright 2000-2025 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package org.intellij.terraform.config.model
+
+import com.intellij.openapi.progress.ProgressIndicatorProvider
+import com.intellij.psi.PsiRecursiveVisitor
+import com.intellij.util.indexing.*
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.EnumeratorIntegerDescriptor
+import com.intellij.util.io.EnumeratorStringDescriptor
+import com.intellij.util.io.KeyDescriptor
+import org.intellij.terraform.config.Constants.HCL_DATASOURCE_IDENTIFIER
+import org.intellij.terraform.config.Constants.HCL_LOCALS_IDENTIFIER
+import org.intellij.terraform.config.Constants.HCL_OUTPUT_IDENTIFIER
+import org.intellij.terraform.config.Constants.HCL_PROVIDER_IDENTIFIER
+import org.intellij.terraform.config.Constants.HCL_RESOURCE_IDENTIFIER
+import org.intellij.terraform.config.Constants.HCL_VARIABLE_IDENTIFIER
+import org.intellij.terraform.config.TerraformFileType
+import org.intellij.terraform.hcl.psi.*
+import org.intellij.terraform.hcl.psi.common.Identifier
+import org.intellij.terraform.opentofu.OpenTofuFileType
+
+/**
+ * Declarations and references of variables, locals, resources, data sources, outputs and providers in a Terraform file,
+ * keyed by [TfModuleSymbols.declaration] and [TfModuleSymbols.reference], valued by the number of occurrences in the file.
+ *
+ * Terraform resolves symbols across all the files of a directory, see [TfModuleSymbols] for the data of a whole module.
+ */
+class TfModuleSymbolIndex : FileBasedIndexExtension<String, Int>() {
+
+  override fun getName(): ID<String, Int> = NAME
+
+  override fun getVersion(): Int = 0
+
+  override fun dependsOnFileContent(): Boolean = true
+
+  override fun getInputFilter(): FileBasedIndex.InputFilter = DefaultFileTypeSpecificInputFilter(TerraformFileType, OpenTofuFileType)
+
+  override fun getKeyDescriptor(): KeyDescriptor<String> = EnumeratorStringDescriptor.INSTANCE
+
+  override fun getValueExternalizer(): DataExternalizer<Int> = EnumeratorIntegerDescriptor.INSTANCE
+
+  override fun getIndexer(): DataIndexer<String, Int, FileContent> {
+    return DataIndexer { inputData ->
+      val file = inputData.psiFile as? HCLFile ?: return@DataIndexer emptyMap()
+      collectModuleSymbols(file, inputData.fileName.endsWith(".${TerraformFileType.TFVARS_EXTENSION}"))
+    }
+  }
+
+  companion object {
+    val NAME: ID<String, Int> = ID.create("TfModuleSymbolIndex")
+  }
+}
+
+internal fun collectModuleSymbols(file: HCLFile, isVariablesFile: Boolean): Map<String, Int> {
+  val symbols = HashMap<String, Int>()
+  fun add(key: String) {
+    symbols.merge(key, 1, Int::plus)
+  }
+
+  if (isVariablesFile) {
+    // values of the module variables
+    for (property in file.children.filterIsInstance<HCLProperty>()) {
+      add(TfModuleSymbols.reference(TfModuleSymbols.variable(property.name)))
+    }
+    return symbols
+  }
+
+  for (block in file.children.filterIsInstance<HCLBlock>()) {
+    val name1 = block.getNameElementUnquoted(1)
+    val name2 = block.getNameElementUnquoted(2)
+    val symbol = when (block.getNameElementUnquoted(0)) {
+      HCL_VARIABLE_IDENTIFIER -> name1?.let { TfModuleSymbols.variable(it) }
+      HCL_RESOURCE_IDENTIFIER -> if (name1 != null && name2 != null) TfModuleSymbols.resource(name1, name2) else null
+      HCL_DATASOURCE_IDENTIFIER -> if (name1 != null && name2 != null) TfModuleSymbols.dataSource(name1, name2) else null
+      HCL_OUTPUT_IDENTIFIER -> name1?.let { TfModuleSymbols.output(it) }
+      HCL_PROVIDER_IDENTIFIER -> block.getProviderFQName()?.let { TfModuleSymbols.provider(it) }
+      HCL_LOCALS_IDENTIFIER -> {
+        block.`object`?.propertyList?.forEach { add(TfModuleSymbols.declaration(TfModuleSymbols.local(it.name))) }
+        null
+      }
+      else -> null
+    }
+    symbol?.let { add(TfModuleSymbols.declaration(it)) }
+  }
+
+  file.acceptChildren(object : HCLElementVisitor(), PsiRecursiveVisitor {
+    override fun visitElement(element: HCLElement) {
+      ProgressIndicatorProvider.checkCanceled()
+      element.acceptChildren(this)
+    }
+
+    override fun visitSelectExpression(o: HCLSelectExpression) {
+      if (o.from is Identifier) {
+        getReferencedSymbol(selectChain(o))?.let { add(TfModuleSymbols.reference(it)) }
+      }
+      super.visitSelectExpression(o)
+    }
+
+    override fun visitStringLiteral(o: HCLStringLiteral) {
+      addTemplateReferences(o.text)
+    }
+
+    override fun visitHeredocLiteral(o: HCLHeredocLiteral) {
+      addTemplateReferences(o.text)
+    }
+
+    // interpolations are injected, only their text is available while indexing
+    private fun addTemplateReferences(text: String) {
+      if (!text.contains("\${") && !text.contains("%{")) return
+      for (match in TEMPLATE_REFERENCE.findAll(text)) {
+        getReferencedSymbol(match.value.split('.'))?.let { add(TfModuleSymbols.reference(it)) }
+      }
+    }
+  })
+  return symbols
+}
+
+// `data.aws_ami.ubuntu.id` -> [data, aws_ami, ubuntu], enough to tell the referenced symbol
+private fun selectChain(innermost: HCLSelectExpression): List<String> {
+  val parts = mutableListOf((innermost.from as Identifier).name ?: return emptyList())
+  var current = innermost
+  while (parts.size < 3 && current !is HCLIndexSelectExpression) {
+    val field = (current.field as? Identifier)?.name ?: break
+    parts.add(field)
+    val parent = current.parent as? HCLSelectExpression ?: break
+    if (parent.from !== current) break
+    current = parent
+  }
+  return parts
+}
+
+private fun getReferencedSymbol(parts: List<String>): String? {
+  if (parts.size < 2) return null
+  return when (parts[0]) {
+    "var" -> TfModuleSymbols.variable(parts[1])
+    "local" -> TfModuleSymbols.local(parts[1])
+    HCL_DATASOURCE_IDENTIFIER -> if (parts.size >= 3) TfModuleSymbols.dataSource(parts[1], parts[2]) else null
+    in NOT_RESOURCE_ROOTS -> null
+    else -> TfModuleSymbols.resource(parts[0], parts[1])
+  }
+}
+
+private val NOT_RESOURCE_ROOTS = setOf("module", "path", "terraform", "count", "each", "self")
+
+private val TEMPLATE_REFERENCE = Regex("(?<![\\w.-])[A-Za-z_][\\w-]*(\\.[A-Za-z_][\\w-]*){1,2}")
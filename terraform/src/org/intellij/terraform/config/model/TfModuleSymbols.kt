@@ -0,0 +1,93 @@
+// Copyright 2000-2025 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package org.intellij.terraform.config.model
+
+import com.intellij.openapi.fileTypes.FileTypeRegistry
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiDirectory
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.util.indexing.FileBasedIndex
+import com.intellij.util.indexing.IndexableFilesIndex
+import org.intellij.terraform.config.TerraformFileType
+import org.intellij.terraform.hcl.psi.HCLFile
+import org.intellij.terraform.opentofu.OpenTofuFileType
+
+/**
+ * Declarations and references of all the files of a module directory from [TfModuleSymbolIndex],
+ * answers whether a symbol is used or declared more than once without searching the files.
+ *
+ * Symbols are written the way Terraform references them: `var.name`, `local.name`, `type.name`, `data.type.name`,
+ * besides `output.name` and `provider.type[.alias]` which are only declared.
+ */
+class TfModuleSymbols private constructor(private val declarations: Map<String, List<VirtualFile>>,
+                                          private val references: Map<String, Int>) {
+
+  fun isReferenced(symbol: String): Boolean = references.containsKey(symbol)
+
+  fun getReferencesCount(symbol: String): Int = references[symbol] ?: 0
+
+  fun getDeclarationsCount(symbol: String): Int = declarations[symbol]?.size ?: 0
+
+  /**
+   * Files declaring the symbol, a file is repeated if it declares the symbol several times
+   */
+  fun getDeclaringFiles(symbol: String): List<VirtualFile> = declarations[symbol].orEmpty()
+
+  companion object {
+    fun variable(name: String): String = "var.$name"
+    fun local(name: String): String = "local.$name"
+    fun resource(type: String, name: String): String = "$type.$name"
+    fun dataSource(type: String, name: String): String = "data.$type.$name"
+    fun output(name: String): String = "output.$name"
+    fun provider(fqn: String): String = "provider.$fqn"
+
+    internal fun declaration(symbol: String): String = "d:$symbol"
+    internal fun reference(symbol: String): String = "r:$symbol"
+
+    /**
+     * @return null when the module is not a directory or indices are not available, callers search the files then
+     */
+    fun getInstance(module: Module): TfModuleSymbols? {
+      val directory = module.moduleRoot as? PsiDirectory ?: return null
+      if (isFallbackVariableSearchEnabled || DumbService.isDumb(directory.project)) return null
+      return CachedValuesManager.getCachedValue(directory, CachedValueProvider {
+        CachedValueProvider.Result.create(compute(directory), PsiModificationTracker.MODIFICATION_COUNT)
+      })
+    }
+
+    private fun compute(directory: PsiDirectory): TfModuleSymbols {
+      val project = directory.project
+      val fileBasedIndex = FileBasedIndex.getInstance()
+      val indexableFilesIndex = IndexableFilesIndex.getInstance(project)
+      val declarations = HashMap<String, MutableList<VirtualFile>>()
+      val references = HashMap<String, Int>()
+      for (file in directory.virtualFile.children) {
+        ProgressManager.checkCanceled()
+        if (file.isDirectory || !isTerraformFile(file)) continue
+        val symbols = if (indexableFilesIndex.shouldBeIndexed(file)) {
+          fileBasedIndex.getFileData(TfModuleSymbolIndex.NAME, file, project)
+        }
+        else {
+          // not indexed files of the module are still resolved against, IJPL-148978
+          val psiFile = directory.manager.findFile(file) as? HCLFile ?: continue
+          collectModuleSymbols(psiFile, file.extension == TerraformFileType.TFVARS_EXTENSION)
+        }
+        for ((key, count) in symbols) {
+          when {
+            key.startsWith("d:") -> declarations.getOrPut(key.substring(2)) { ArrayList(1) }.apply { repeat(count) { add(file) } }
+            key.startsWith("r:") -> references.merge(key.substring(2), count, Int::plus)
+          }
+        }
+      }
+      return TfModuleSymbols(declarations, references)
+    }
+
+    private fun isTerraformFile(file: VirtualFile): Boolean {
+      val fileTypes = FileTypeRegistry.getInstance()
+      return fileTypes.isFileOfType(file, TerraformFileType) || fileTypes.isFileOfType(file, OpenTofuFileType)
+    }
+  }
+}
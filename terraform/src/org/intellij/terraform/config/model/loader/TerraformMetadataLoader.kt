@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.node.ObjectNode
 import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.options.advanced.AdvancedSettings
 import com.intellij.openapi.progress.ProcessCanceledException
 import com.intellij.openapi.util.SystemInfo
@@ -15,8 +16,14 @@ import java.io.File
 import java.io.FileInputStream
 import java.io.InputStream
 
-class TerraformMetadataLoader {
-  private val pool = ReusePool()
+/**
+ * @param snapshot when set, the bundled providers found in it are loaded lazily from it instead of the json resources
+ * @param pool canonical instances of the eagerly loaded model elements; lazily loaded providers use their own pool
+ */
+class TerraformMetadataLoader internal constructor(private val snapshot: TerraformModelSnapshot?,
+                                                   private val pool: ReusePool = ReusePool()) {
+  constructor() : this(if (USE_SNAPSHOT) TerraformModelSnapshot.bundled else null)
+
   private val model = LoadingModel()
   private val context: LoadContext = LoadContext(pool, model)
 
@@ -39,6 +46,7 @@ class TerraformMetadataLoader {
       model.external.putAll(loadExternalInformation())
       loadExternal()
       loadBundled()
+      LOG.debug { "Model pool after loading the defaults:\n${pool.report()}" }
 
       return buildModel()
     }
@@ -92,8 +100,8 @@ class TerraformMetadataLoader {
           hintV.isArray -> SimpleValueHint(*hintV.mapNotNull { it.textValue() }.toTypedArray())
           else -> null
         }
-        val additional = LoadingModel.Additional(fqn, obj.string("description"), hint, obj.boolean("optional"),
-                                                 obj.boolean("required"))
+        val additional = LoadingModel.Additional(fqn, obj.string("description")?.let { pool.pool(it) }, hint?.let { pool.pool(it) },
+                                                 obj.boolean("optional"), obj.boolean("required"))
         map[fqn] = additional
       }
     }
@@ -106,6 +114,11 @@ class TerraformMetadataLoader {
 
     for (it in resources) {
       val file = it.ensureHavePrefix("/")
+      val entry = snapshot?.getEntry(file)
+      if (snapshot != null && entry != null) {
+        loadFromSnapshot(file, snapshot, entry)
+        continue
+      }
       val stream = getResource(file)
       if (stream == null) {
         LOG.warn("Resource '$file' was not found")
@@ -116,6 +129,17 @@ class TerraformMetadataLoader {
     }
   }
 
+  private fun loadFromSnapshot(file: String, snapshot: TerraformModelSnapshot, entry: TerraformModelSnapshot.Entry) {
+    try {
+      val header = snapshot.openHeader(entry).use { ObjectMapper().readTree(it) as ObjectNode }
+      val schema = LazyProviderSchema(file, model.external) { snapshot.openBody(entry) }
+      TerraformProvidersSchema(schema).load(context, header, file)
+    }
+    catch (e: Throwable) {
+      logErrorAndFailInInternalMode("Failed to load '$file' from the model snapshot", e)
+    }
+  }
+
   private fun loadExternal() {
     val schemas = getSharedSchemas()
     for (file in schemas) {
@@ -146,13 +170,16 @@ class TerraformMetadataLoader {
       logErrorAndFailInInternalMode("Failed to load json data from file '$sourceName'", e)
       return
     }
+    loadOne(sourceName, json)
+  }
+
+  fun loadOne(sourceName: String, json: ObjectNode) {
     try {
       parseFile(json, sourceName)
     }
     catch (e: Throwable) {
       logErrorAndFailInInternalMode("Failed to parse file '$sourceName'", e)
     }
-    return
   }
 
   private fun logErrorAndFailInInternalMode(msg: String, e: Throwable? = null) {
@@ -197,6 +224,7 @@ class TerraformMetadataLoader {
   companion object {
     internal val LOG: Logger by lazy { Logger.getInstance(TerraformMetadataLoader::class.java) }
     const val ModelResourcesPrefix: String = "/terraform/model"
+    private val USE_SNAPSHOT: Boolean = SystemProperties.getBooleanProperty("terraform.model.snapshot", true)
 
     fun getResource(path: String): InputStream? {
       return TerraformMetadataLoader::class.java.getResourceAsStream(path)
@@ -0,0 +1,100 @@
+// Copyright 2000-2023 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package org.intellij.terraform.config.model.loader
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.util.io.FileUtil
+import org.intellij.terraform.config.model.loader.TerraformMetadataLoader.Companion.LOG
+import org.intellij.terraform.config.model.loader.snapshot.TerraformModelSnapshotWriter
+import java.io.DataInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+
+/**
+ * Memory-mapped binary snapshot of the bundled provider schemas, see [TerraformModelSnapshotWriter] for the layout.
+ * The small headers are parsed at startup to know every resource and data source, and a provider body is parsed
+ * only when the schema of one of its types is needed, see [LazyProviderSchema].
+ */
+internal class TerraformModelSnapshot private constructor(private val buffer: ByteBuffer, private val entries: Map<String, Entry>) {
+
+  class Entry(internal val headerOffset: Int, internal val headerLength: Int, internal val bodyOffset: Int, internal val bodyLength: Int)
+
+  val sourceNames: Set<String>
+    get() = entries.keys
+
+  fun getEntry(sourceName: String): Entry? = entries[sourceName]
+
+  fun openHeader(entry: Entry): InputStream = slice(entry.headerOffset, entry.headerLength)
+
+  fun openBody(entry: Entry): InputStream = slice(entry.bodyOffset, entry.bodyLength)
+
+  private fun slice(offset: Int, length: Int): InputStream {
+    val slice = buffer.duplicate()
+    slice.position(offset)
+    slice.limit(offset + length)
+    return ByteBufferBackedInputStream(slice)
+  }
+
+  companion object {
+    private const val RESOURCE_PATH = "${TerraformMetadataLoader.ModelResourcesPrefix}/${TerraformModelSnapshotWriter.FILE_NAME}"
+
+    val bundled: TerraformModelSnapshot? by lazy { openBundled() }
+
+    /**
+     * A snapshot inside the plugin jar can't be mapped, so it's extracted to the system directory first, once per bundled version.
+     */
+    private fun openBundled(): TerraformModelSnapshot? {
+      val url = TerraformModelSnapshot::class.java.getResource(RESOURCE_PATH) ?: return null
+      try {
+        if (url.protocol == "file") {
+          return open(Paths.get(url.toURI()))
+        }
+        val connection = url.openConnection()
+        val extracted = Paths.get(PathManager.getSystemPath(), "terraform", "model",
+                                  "${connection.lastModified}-${connection.contentLengthLong}-${TerraformModelSnapshotWriter.FILE_NAME}")
+        if (!Files.isRegularFile(extracted)) {
+          Files.createDirectories(extracted.parent)
+          val tmp = Files.createTempFile(extracted.parent, "snapshot", ".tmp")
+          connection.getInputStream().use { Files.copy(it, tmp, StandardCopyOption.REPLACE_EXISTING) }
+          Files.move(tmp, extracted, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        }
+        return open(extracted)
+      }
+      catch (e: Exception) {
+        LOG.warn("Cannot open the bundled model snapshot $url", e)
+        return null
+      }
+    }
+
+    @Throws(IOException::class)
+    fun open(path: Path): TerraformModelSnapshot {
+      val buffer = FileChannel.open(path, StandardOpenOption.READ).use { it.map(FileChannel.MapMode.READ_ONLY, 0, it.size()) }
+      val input = DataInputStream(ByteBufferBackedInputStream(buffer.duplicate()))
+      if (input.readInt() != TerraformModelSnapshotWriter.MAGIC || input.readInt() != TerraformModelSnapshotWriter.VERSION) {
+        throw IOException("Unsupported model snapshot format: $path")
+      }
+      val count = input.readInt()
+      val raw = ArrayList<Pair<String, LongArray>>(count)
+      repeat(count) {
+        raw.add(input.readUTF() to longArrayOf(input.readLong(), input.readInt().toLong(), input.readLong(), input.readInt().toLong()))
+      }
+      val dataStart = buffer.capacity() - input.available()
+      val entries = LinkedHashMap<String, Entry>(count)
+      for ((name, e) in raw) {
+        if (dataStart + maxOf(e[0] + e[1], e[2] + e[3]) > buffer.capacity()) {
+          throw IOException("Corrupted model snapshot $path: entry '$name' is out of bounds")
+        }
+        entries[name] = Entry((dataStart + e[0]).toInt(), e[1].toInt(), (dataStart + e[2]).toInt(), e[3].toInt())
+      }
+      LOG.info("Opened model snapshot $path with ${entries.size} provider files, ${FileUtil.byteCountToDisplaySize(buffer.capacity().toLong())}")
+      return TerraformModelSnapshot(buffer, entries)
+    }
+  }
+}
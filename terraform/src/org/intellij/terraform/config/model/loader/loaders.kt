@@ -4,6 +4,8 @@ package org.intellij.terraform.config.model.loader
 import com.fasterxml.jackson.databind.node.ObjectNode
 import com.intellij.openapi.application.ApplicationManager
 import org.intellij.terraform.config.model.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
 
 class LoadingModel {
   val resources: MutableList<ResourceType> = arrayListOf()
@@ -18,51 +20,58 @@ class LoadingModel {
   data class Additional(val name: String, val description: String? = null, val hint: Hint? = null, val optional: Boolean? = null, val required: Boolean? = null)
 }
 
-class ReusePool {
-  private val strings: MutableMap<String, String> = HashMap()
-  private val properties: MutableMap<PropertyType, PropertyType> = HashMap()
-  private val blocks: MutableMap<BlockType, BlockType> = HashMap()
-  private val hints: MutableMap<Hint, Hint> = HashMap()
-  private val types: MutableMap<Type, Type> = HashMap()
-
-  fun pool(v: String): String {
-    var ret = strings[v]
-    if (ret != null) return ret
-    ret = v
-    strings[ret] = ret
-    return ret
-  }
+/**
+ * Canonicalizes the elements of the model while it is being loaded: a structurally equal instance seen before is returned
+ * instead of the new one, so repeated shapes (`timeouts` blocks, `tags` maps, identical nested objects, descriptions)
+ * are kept in memory once however many resources and providers declare them.
+ *
+ * Thread-safe. A pool strongly references everything it has seen, so it must not outlive the loading:
+ * the eager loading and every lazily parsed provider of the bundled model use a pool of their own.
+ */
+class ReusePool internal constructor(canonicalize: Boolean) {
+  constructor() : this(true)
 
-  fun pool(v: PropertyType): PropertyType {
-    var ret = properties[v]
-    if (ret != null) return ret
-    ret = v
-    properties[ret] = ret
-    return ret
-  }
+  private val strings = Interner<String>("strings", canonicalize)
+  private val properties = Interner<PropertyType>("properties", canonicalize)
+  private val blocks = Interner<BlockType>("blocks", canonicalize)
+  private val hints = Interner<Hint>("hints", canonicalize)
+  private val types = Interner<Type>("types", canonicalize)
+  private val stringLists = Interner<List<String>>("string lists", canonicalize)
+  private val propertyMaps = Interner<Map<String, PropertyOrBlockType>>("property maps", canonicalize)
 
-  fun pool(v: BlockType): BlockType {
-    var ret = blocks[v]
-    if (ret != null) return ret
-    ret = v
-    blocks[ret] = ret
-    return ret
-  }
+  fun pool(v: String): String = strings.intern(v)
 
-  fun pool(v: Hint): Hint {
-    var ret = hints[v]
-    if (ret != null) return ret
-    ret = v
-    hints[ret] = ret
-    return ret
-  }
+  fun pool(v: PropertyType): PropertyType = properties.intern(v)
+
+  fun pool(v: BlockType): BlockType = blocks.intern(v)
+
+  fun pool(v: Hint): Hint = hints.intern(v)
+
+  fun pool(t: Type): Type = types.intern(t)
+
+  fun pool(v: List<String>): List<String> = stringLists.intern(v)
+
+  fun pool(v: Map<String, PropertyOrBlockType>): Map<String, PropertyOrBlockType> = propertyMaps.intern(v)
+
+  /**
+   * Number of canonical instances and of requests answered with an already known instance, per kind of element
+   */
+  fun report(): String = listOf(strings, properties, blocks, hints, types, stringLists, propertyMaps).joinToString("\n") { it.toString() }
+
+  private class Interner<T : Any>(private val kind: String, private val canonicalize: Boolean) {
+    private val instances: ConcurrentHashMap<T, T> = ConcurrentHashMap()
+    private val requests = LongAdder()
+    private val reused = LongAdder()
+
+    fun intern(v: T): T {
+      requests.increment()
+      if (!canonicalize) return v
+      val existing = instances.putIfAbsent(v, v) ?: return v
+      reused.increment()
+      return existing
+    }
 
-  fun pool(t: Type): Type {
-    var ret = types[t]
-    if (ret != null) return ret
-    ret = t
-    types[ret] = ret
-    return ret
+    override fun toString(): String = "$kind: ${instances.size} unique, ${reused.sum()} of ${requests.sum()} reused"
   }
 }
 
@@ -88,6 +97,8 @@ internal fun PropertyType.pool(context: LoadContext): PropertyType = context.poo
 internal fun BlockType.pool(context: LoadContext): BlockType = context.pool.pool(this)
 internal fun Hint.pool(context: LoadContext): Hint = context.pool.pool(this)
 internal fun Type.pool(context: LoadContext): Type = context.pool.pool(this)
+internal fun List<String>.pool(context: LoadContext): List<String> = context.pool.pool(this)
+internal fun Map<String, PropertyOrBlockType>.pool(context: LoadContext): Map<String, PropertyOrBlockType> = context.pool.pool(this)
 
 
 internal fun warnOrFailInInternalMode(message: String) {
@@ -89,7 +89,7 @@ object BaseLoaderV1 : BaseLoader {
       }
     }
 
-    val conflicts: List<String>? = value.array("ConflictsWith")?.mapNotNull { it.textValue() }?.map { it.pool(context) }
+    val conflicts: List<String>? = value.array("ConflictsWith")?.mapNotNull { it.textValue() }?.map { it.pool(context) }?.pool(context)
 
     val deprecated = value.string("Deprecated")
     val has_default: Boolean = value.obj("Default")?.isNotEmpty() ?: false
@@ -112,7 +112,7 @@ object BaseLoaderV1 : BaseLoader {
     // External description and hint overrides one from model
     if (isBlock) {
       // TODO: Do something with a additional.hint
-      val properties: Map<String, PropertyOrBlockType> = innerTypeProperties?.toMap() ?: emptyMap()
+      val properties: Map<String, PropertyOrBlockType> = innerTypeProperties?.toMap()?.pool(context) ?: emptyMap()
       return BlockType(name.pool(context),
                        description = description?.pool(context),
                        optional = optional,
@@ -122,7 +122,7 @@ object BaseLoaderV1 : BaseLoader {
                        conflictsWith = conflicts,
                        properties = properties).pool(context)
     }
-    return PropertyType(name.pool(context), type, hint = additional.hint,
+    return PropertyType(name.pool(context), type.pool(context), hint = additional.hint,
                         description = description?.pool(context),
                         optional = optional,
                         required = required,
@@ -134,7 +134,7 @@ object BaseLoaderV2 : BaseLoader {
       }
     }
 
-    val conflicts: List<String>? = value.array("ConflictsWith")?.mapNotNull { it.textValue() }?.map { it.pool(context) }
+    val conflicts: List<String>? = value.array("ConflictsWith")?.mapNotNull { it.textValue() }?.map { it.pool(context) }?.pool(context)
 
     val deprecated = value.string("Deprecated")
     val has_default: Boolean = value.obj("Default")?.isNotEmpty() ?: false
@@ -151,7 +151,7 @@ object BaseLoaderV2 : BaseLoader {
 
     // External description and hint overrides one from model
     if (isBlock) {
-      val properties: Map<String, PropertyOrBlockType> = innerTypeProperties?.toMap() ?: emptyMap()
+      val properties: Map<String, PropertyOrBlockType> = innerTypeProperties?.toMap()?.pool(context) ?: emptyMap()
       return BlockType(name.pool(context),
           description = description?.pool(context),
           optional = optional,
@@ -161,7 +161,7 @@ object BaseLoaderV2 : BaseLoader {
           conflictsWith = conflicts,
           properties = properties).pool(context)
     }
-    return PropertyType(name.pool(context), type, hint = additional.hint,
+    return PropertyType(name.pool(context), type.pool(context), hint = additional.hint,
         description = description?.pool(context),
         optional = optional,
         required = required,
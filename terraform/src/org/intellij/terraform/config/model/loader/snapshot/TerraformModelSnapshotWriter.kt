@@ -0,0 +1,118 @@
+// Copyright 2000-2023 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package org.intellij.terraform.config.model.loader.snapshot
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ObjectNode
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.OutputStream
+
+/**
+ * Writes the binary snapshot of the bundled provider schemas, which the plugin maps into memory instead of parsing every provider at startup.
+ * It's run when the terraform-metadata artifact is built (see `metadata-crawler`), and depends on nothing but Jackson,
+ * so that the crawler can compile this package as is.
+ *
+ * Layout, big-endian:
+ * ```
+ * int magic, int version, int entryCount
+ * entryCount * (UTF sourceName, long headerOffset, int headerLength, long bodyOffset, int bodyLength)
+ * data: headers and bodies, offsets are relative to the end of the entries
+ * ```
+ * An entry is written for every `terraform-providers-schema-json` provider file. Its body is the whole file as compact JSON,
+ * and its header is the same JSON with every resource and data source schema reduced to the description of its block.
+ */
+object TerraformModelSnapshotWriter {
+  const val MAGIC: Int = 0x54464d53 // TFMS
+  const val VERSION: Int = 1
+  const val FILE_NAME: String = "providers.snapshot"
+
+  private val mapper = ObjectMapper()
+
+  /**
+   * Usage: `TerraformModelSnapshotWriter <model dir> <output file>`, the model dir contains `providers.list` and `providers/`.
+   */
+  @JvmStatic
+  fun main(args: Array<String>) {
+    require(args.size == 2) { "Usage: TerraformModelSnapshotWriter <model dir> <output file>" }
+    val modelDir = File(args[0])
+    val names = File(modelDir, "providers.list").readLines().map(String::trim).filter(String::isNotEmpty)
+    val sources = names.map { "/terraform/model/providers/$it.json" }
+    val count = File(args[1]).outputStream().buffered().use { output ->
+      write(sources, output) { source -> File(modelDir, source.removePrefix("/terraform/model/")).takeIf { it.isFile }?.let { mapper.readTree(it) as? ObjectNode } }
+    }
+    println("Written $count of ${names.size} provider files to ${args[1]}")
+  }
+
+  /**
+   * Files are loaded one by one, so that the whole model never has to be in memory.
+   *
+   * @param sources resource paths of provider schema files, e.g. `/terraform/model/providers/aws.json`
+   * @return the number of written entries
+   */
+  fun write(sources: List<String>, output: OutputStream, load: (String) -> ObjectNode?): Int {
+    val index = ByteArrayOutputStream()
+    val data = File.createTempFile("providers", ".snapshot")
+    try {
+      var count = 0
+      DataOutputStream(index).use { out ->
+        data.outputStream().buffered().use { dataOut ->
+          var offset = 0L
+          for (name in sources) {
+            val json = load(name) ?: continue
+            val header = createHeader(json) ?: continue
+            val headerBytes = mapper.writeValueAsBytes(header)
+            val bodyBytes = mapper.writeValueAsBytes(json)
+            out.writeUTF(name)
+            out.writeLong(offset)
+            out.writeInt(headerBytes.size)
+            out.writeLong(offset + headerBytes.size)
+            out.writeInt(bodyBytes.size)
+            dataOut.write(headerBytes)
+            dataOut.write(bodyBytes)
+            offset += headerBytes.size + bodyBytes.size
+            count++
+          }
+        }
+      }
+      val out = DataOutputStream(output)
+      out.writeInt(MAGIC)
+      out.writeInt(VERSION)
+      out.writeInt(count)
+      index.writeTo(out)
+      data.inputStream().use { it.copyTo(out) }
+      out.flush()
+      return count
+    }
+    finally {
+      data.delete()
+    }
+  }
+
+  private fun createHeader(json: ObjectNode): ObjectNode? {
+    val header = json.deepCopy()
+    val schemas = header.get("schemas") as? ObjectNode ?: header
+    if (!schemas.has("format_version")) return null
+    val providers = schemas.get("provider_schemas") as? ObjectNode ?: return null
+    for (provider in providers.elements()) {
+      if (provider !is ObjectNode) continue
+      for (kind in listOf("resource_schemas", "data_source_schemas")) {
+        val types = provider.get(kind) as? ObjectNode ?: continue
+        for (entry in types.fields()) {
+          val schema = entry.value as? ObjectNode ?: continue
+          val block = schema.get("block") as? ObjectNode
+          val reduced = mapper.createObjectNode()
+          reduced.set<ObjectNode>("version", schema.get("version"))
+          if (block != null) {
+            val reducedBlock = reduced.putObject("block")
+            for (field in listOf("description", "description_kind", "deprecated")) {
+              block.get(field)?.let { reducedBlock.set<ObjectNode>(field, it) }
+            }
+          }
+          entry.setValue(reduced)
+        }
+      }
+    }
+    return header
+  }
+}
@@ -2,11 +2,15 @@
 package org.intellij.terraform.config.model.loader
 
 import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.node.ArrayNode
 import com.fasterxml.jackson.databind.node.ObjectNode
+import com.intellij.openapi.diagnostic.debug
+import com.intellij.openapi.progress.ProcessCanceledException
 import com.intellij.util.asSafely
 import org.intellij.terraform.config.Constants
 import org.intellij.terraform.config.model.*
+import java.io.InputStream
 import java.util.*
 
 object TFBaseLoader {
@@ -89,7 +93,7 @@ Sensitive           bool            `json:"sensitive,omitempty"`
         computed = computed,
         deprecated = if (deprecated) "DEPRECATED" else null,
         properties = type.asSafely<ContainerType<*>>()?.elements
-          ?.asSafely<ObjectType>()?.elements?.mapValues { (k, v) -> PropertyType(k, type = v ?: Types.Any) }.orEmpty()
+          ?.asSafely<ObjectType>()?.elements?.mapValues { (k, v) -> PropertyType(k, type = v ?: Types.Any).pool(context) }?.pool(context).orEmpty()
       ).pool(context)
     }
 
@@ -172,7 +176,7 @@ Sensitive           bool            `json:"sensitive,omitempty"`
                      description_kind = description_kind.pool(context),
                      deprecated = if (deprecated) "DEPRECATED" else null,
                      nesting = nesting,
-                     properties = (attrs + blocks).associateBy { it.name }).pool(context)
+                     properties = (attrs + blocks).associateBy { it.name }.pool(context)).pool(context)
   }
 
   private fun parseType(context: LoadContext, node: JsonNode): Type {
@@ -291,7 +295,10 @@ internal data class ProviderMetadata(
   val tier: ProviderTier = ProviderTier.TIER_NONE
 )
 
-internal class TerraformProvidersSchema : VersionedMetadataLoader {
+/**
+ * @param lazySchema when set, the loaded json is a snapshot header: resources and data sources get their properties from the provider body
+ */
+internal class TerraformProvidersSchema(private val lazySchema: LazyProviderSchema? = null) : VersionedMetadataLoader {
   override fun isSupportedVersion(version: String): Boolean = version in listOf("0.1", "0.2", "1.0")
   override fun isSupportedType(type: String): Boolean = type == "terraform-providers-schema-json"
 
@@ -338,6 +345,9 @@ internal class TerraformProvidersSchema : VersionedMetadataLoader {
     val obj = entry.value as ObjectNode
     val (parsed, version) = TFBaseLoader.parseSchema(context, obj, name)
                             ?: throw IllegalArgumentException("can't parse schema parseResourceInfo $name, entry = $entry")
+    if (lazySchema != null) {
+      return ResourceType(name, info, emptyList(), parsed) { lazySchema.getResourceProperties(name) }
+    }
     return ResourceType(name, info, parsed.properties.values.toList(), parsed)
   }
 
@@ -347,6 +357,9 @@ internal class TerraformProvidersSchema : VersionedMetadataLoader {
     val obj = entry.value as ObjectNode
     val (parsed, version) = TFBaseLoader.parseSchema(context, obj, name)
                             ?: throw IllegalArgumentException("can't parse schema parseDataSourceInfo $name, entry = $entry")
+    if (lazySchema != null) {
+      return DataSourceType(name, info, emptyList(), parsed) { lazySchema.getDataSourceProperties(name) }
+    }
     return DataSourceType(name, info, parsed.properties.values.toList(), parsed)
   }
 
@@ -371,3 +384,54 @@ internal class TerraformProvidersSchema : VersionedMetadataLoader {
   }
 }
 
+
+/**
+ * Schema of a bundled provider from [TerraformModelSnapshot], parsed on the first request of any of its types.
+ * Elements are canonicalized within the provider by a pool dropped once it's parsed: a pool shared by all the lazy providers
+ * would keep every interned element reachable for the lifetime of the model.
+ * If the snapshot body can't be parsed, the schema is parsed from the bundled json it was built from.
+ */
+internal class LazyProviderSchema(private val sourceName: String,
+                                  private val external: Map<String, LoadingModel.Additional>,
+                                  private val body: () -> InputStream) {
+  private class Parsed(val resources: Map<String, Map<String, PropertyOrBlockType>>,
+                       val dataSources: Map<String, Map<String, PropertyOrBlockType>>)
+
+  private val parsed: Parsed by lazy { parse() }
+
+  /**
+   * Types missing from the parsed schema, e.g. when it failed to load, get the properties common to all the resources
+   */
+  fun getResourceProperties(type: String): Map<String, PropertyOrBlockType> =
+    parsed.resources[type] ?: TypeModel.AbstractResource.properties
+
+  fun getDataSourceProperties(type: String): Map<String, PropertyOrBlockType> =
+    parsed.dataSources[type] ?: TypeModel.AbstractDataSource.properties
+
+  private fun parse(): Parsed {
+    val start = System.nanoTime()
+    val result = parse("the model snapshot", body)
+                 ?: TerraformMetadataLoader.getResource(sourceName)?.let { resource -> parse("the bundled resource") { resource } }
+                 ?: Parsed(emptyMap(), emptyMap())
+    TerraformMetadataLoader.LOG.debug { "Loaded provider schema '$sourceName' in ${(System.nanoTime() - start) / 1_000_000} ms" }
+    return result
+  }
+
+  private fun parse(origin: String, open: () -> InputStream): Parsed? {
+    val context = LoadContext(ReusePool(), LoadingModel())
+    context.model.external.putAll(external)
+    try {
+      val json = open().use { ObjectMapper().readTree(it) as ObjectNode }
+      TerraformProvidersSchema().load(context, json, sourceName)
+    }
+    catch (e: ProcessCanceledException) {
+      throw e
+    }
+    catch (e: Exception) {
+      TerraformMetadataLoader.LOG.error("Failed to load provider schema '$sourceName' from $origin", e)
+      return null
+    }
+    return Parsed(context.model.resources.associate { it.type to it.properties },
+                  context.model.dataSources.associate { it.type to it.properties })
+  }
+}
@@ -0,0 +1,149 @@
+// Copyright 2000-2024 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package org.intellij.terraform.config.model.local
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ObjectNode
+import kotlinx.coroutines.*
+import org.intellij.terraform.config.model.TypeModel
+import org.intellij.terraform.config.model.TypeModelProvider
+import org.intellij.terraform.config.model.loader.TerraformMetadataLoader
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Models built from the provider schemas generated for lock files.
+ *
+ * Lock files pinning the same providers share one schema file and so one model, a provider pinned by several
+ * lock files is parsed once and shared by all their models.
+ * Schema files are read with a streaming parser, one provider at a time.
+ * Providers are shared by the [SCHEMA_KEY] recorded in the metadata of the schema file itself, not by the lock file
+ * the file is read for: a schema file left from a failed generation may describe other provider builds.
+ */
+internal class LocalSchemaCache {
+
+  private class SharedModel(val providerKeys: Set<String>, val model: Deferred<TypeModel>)
+
+  private val mapper = ObjectMapper()
+
+  // by the schema file path relative to LocalSchemaService.localModelPath
+  private val models = ConcurrentHashMap<String, SharedModel>()
+
+  // by ProviderInfo.schemaKey, a model with the only provider
+  private val providers = ConcurrentHashMap<String, TypeModel>()
+
+  fun getModel(scope: CoroutineScope, jsonFile: Path, jsonPath: String): Deferred<TypeModel> {
+    val shared = models.computeIfAbsent(jsonPath) {
+      val providerKeys = ConcurrentHashMap.newKeySet<String>()
+      SharedModel(providerKeys, scope.async(Dispatchers.IO, start = CoroutineStart.LAZY) {
+        buildModel(jsonFile, providerKeys)
+      })
+    }
+    shared.model.invokeOnCompletion { if (it != null) models.remove(jsonPath, shared) }
+    return shared.model
+  }
+
+  /**
+   * The schema file was generated anew, its content may differ from what was loaded before
+   */
+  fun invalidate(jsonPath: String, locked: Collection<ProviderInfo>) {
+    models.remove(jsonPath)
+    for (info in locked) {
+      providers.remove(info.schemaKey)
+    }
+  }
+
+  fun retainAll(usedJsonPaths: Set<String>) {
+    models.keys.retainAll(usedJsonPaths)
+    val usedProviders = models.values.flatMapTo(HashSet()) { it.providerKeys }
+    providers.keys.retainAll(usedProviders)
+  }
+
+  private suspend fun buildModel(jsonFile: Path, providerKeys: MutableSet<String>): TypeModel {
+    val reader = SchemaReader(jsonFile.fileName.toString(), providerKeys)
+    mapper.createParser(jsonFile.toFile()).use { parser ->
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw IllegalStateException("Json object expected in '$jsonFile'")
+      }
+      reader.readObject(parser)
+    }
+    val loader = TerraformMetadataLoader(null)
+    for (provider in reader.providerModels) {
+      loader.loadFrom(provider)
+    }
+    loader.loadFrom(TypeModelProvider.globalModel)
+    return loader.buildModel()
+  }
+
+  /**
+   * Reads `{ "metadata": {...}, "schemas": { "format_version": "...", "provider_schemas": {...} } }` as written by [LocalSchemaService],
+   * metadata goes first so that it is known when the providers are loaded.
+   */
+  private inner class SchemaReader(private val sourceName: String, private val providerKeys: MutableSet<String>) {
+    val providerModels: MutableList<TypeModel> = ArrayList()
+    private var metadata: ObjectNode? = null
+    private var formatVersion: String = "1.0"
+
+    // by the provider address in lower case, files written before the keys were recorded share nothing
+    private val schemaKeys: Map<String, String> by lazy {
+      metadata?.elements()?.asSequence().orEmpty()
+        .mapNotNull { it.get("attributes") }
+        .mapNotNull { attributes ->
+          val address = attributes.get(ADDRESS)?.textValue() ?: return@mapNotNull null
+          val schemaKey = attributes.get(SCHEMA_KEY)?.textValue() ?: return@mapNotNull null
+          address.lowercase() to schemaKey
+        }
+        .toMap()
+    }
+
+    suspend fun readObject(parser: JsonParser) {
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        val field = parser.currentName()
+        val value = parser.nextToken()
+        when {
+          field == "metadata" && value == JsonToken.START_OBJECT -> metadata = parser.readValueAsTree()
+          field == "schemas" && value == JsonToken.START_OBJECT -> readObject(parser)
+          field == "format_version" && value == JsonToken.VALUE_STRING -> formatVersion = parser.text
+          field == "provider_schemas" && value == JsonToken.START_OBJECT -> readProviders(parser)
+          else -> parser.skipChildren()
+        }
+      }
+    }
+
+    private suspend fun readProviders(parser: JsonParser) {
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        coroutineContext.ensureActive()
+        val address = parser.currentName()
+        parser.nextToken()
+        val schemaKey = schemaKeys[address.lowercase()]
+        schemaKey?.let { providerKeys.add(it) }
+        val loaded = schemaKey?.let { providers[it] }
+        if (loaded != null) {
+          parser.skipChildren()
+          providerModels.add(loaded)
+          continue
+        }
+        val provider = loadProvider(address, parser.readValueAsTree())
+        providerModels.add(schemaKey?.let { providers.putIfAbsent(it, provider) } ?: provider)
+      }
+    }
+
+    private fun loadProvider(address: String, schema: ObjectNode): TypeModel {
+      val json = mapper.createObjectNode()
+      metadata?.let { json.set<ObjectNode>("metadata", it) }
+      json.put("format_version", formatVersion)
+      json.putObject("provider_schemas").set<ObjectNode>(address, schema)
+      val loader = TerraformMetadataLoader(null)
+      loader.loadOne(sourceName, json)
+      return loader.buildModel()
+    }
+  }
+}
+
+/**
+ * Attributes of the provider metadata written by [LocalSchemaService] along with the schemas
+ */
+internal const val ADDRESS: String = "address"
+internal const val SCHEMA_KEY: String = "schema-key"
@@ -42,9 +42,7 @@ import org.intellij.terraform.config.Constants.PROVIDER_VERSION
 import org.intellij.terraform.config.TerraformFileType
 import org.intellij.terraform.config.model.ProviderTier
 import org.intellij.terraform.config.model.TypeModel
-import org.intellij.terraform.config.model.TypeModelProvider
 import org.intellij.terraform.config.model.getVFSParents
-import org.intellij.terraform.config.model.loader.TerraformMetadataLoader
 import org.intellij.terraform.config.util.TFExecutor
 import org.intellij.terraform.config.util.executeSuspendable
 import org.intellij.terraform.config.util.getApplicableToolType
@@ -52,11 +50,12 @@ import org.intellij.terraform.hcl.HCLBundle
 import org.intellij.terraform.hcl.HCLFileType
 import org.intellij.terraform.opentofu.OpenTofuFileType
 import java.nio.file.Files
+import java.nio.file.NoSuchFileException
 import java.nio.file.Path
+import java.nio.file.StandardCopyOption
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
 import kotlin.coroutines.coroutineContext
-import kotlin.io.path.readText
 
 
 const val TERRAFORM_LOCK_FILE_NAME: String = ".terraform.lock.hcl"
@@ -72,6 +71,11 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
 
   private val modelComputationCache = VirtualFileMap<Deferred<TypeModel>>(project)
 
+  private val schemaCache = LocalSchemaCache()
+
+  // by lockedProvidersKey, one process at a time for the lock files pinning the same providers
+  private val schemaGenerations = ConcurrentHashMap<String, Deferred<String>>()
+
   @OptIn(ExperimentalCoroutinesApi::class)
   fun getModel(virtualFile: VirtualFile): TypeModel? {
     val lock = findLockFile(virtualFile) ?: return null
@@ -187,7 +191,9 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
       val parallelism = RegistryManager.getInstance().intValue("terraform.registry.metadata.parallelism", 4)
       batch.completeByMapping(parallelism) { (lock, explicitlyAllowRunningProcess) ->
         logger<LocalSchemaService>().info("building local model: $lock")
-        buildModelFromJson(retrieveJsonForTFLock(lock, explicitlyAllowRunningProcess))
+        val locked = readAction { getLockFilePsi(lock)?.let { collectProviders(it).values.toList() } }.orEmpty()
+        val jsonPath = retrieveJsonForTFLock(lock, locked, explicitlyAllowRunningProcess)
+        schemaCache.getModel(modelBuildScope, localModelPath.resolve(jsonPath), jsonPath).await()
       }
     }
   }
@@ -204,6 +210,8 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
       attributes.put("full-name", providerInfo.fullName)
       attributes.put("tier", ProviderTier.TIER_LOCAL.label)
       attributes.put(PROVIDER_VERSION, providerInfo.version)
+      attributes.put(ADDRESS, providerInfo.address)
+      attributes.put(SCHEMA_KEY, providerInfo.schemaKey)
       info.set<ObjectNode>("attributes", attributes)
       metadataNode.set<ObjectNode>(providerInfo.fullName.lowercase(), info)
     }
@@ -217,7 +225,10 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
     }
   }
 
-  private suspend fun retrieveJsonForTFLock(lock: VirtualFile, explicitlyAllowRunningProcess: Boolean): String {
+  /**
+   * @return path of the schema file relative to [localModelPath]
+   */
+  private suspend fun retrieveJsonForTFLock(lock: VirtualFile, locked: List<ProviderInfo>, explicitlyAllowRunningProcess: Boolean): String {
     val lockData = readAction {
       WorkspaceModel.getInstance(project).currentSnapshot.entities<TFLocalMetaEntity>().firstOrNull {
         it.lockFile.virtualFile == lock
@@ -230,7 +241,8 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
 
     if (lockData != null && lockData.timeStamp >= lock.timeStamp) {
       try {
-        return readLockDataJsonFile(lockData.jsonPath)
+        checkLockDataJsonFile(lockData.jsonPath)
+        return lockData.jsonPath
       }
       catch (e: Exception) {
         if (e is CancellationException) throw e
@@ -238,7 +250,16 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
       }
     }
 
-    val generateResult = runCatching { generateNewJsonFile(lock, explicitlyAllowRunningProcess) }
+    // the same providers are pinned by another lock file whose schemas are already generated,
+    // while a lock file rewritten without changing the providers generates them anew like before
+    val sharedJsonPath = locked.takeIf { it.isNotEmpty() }?.let { sharedJsonFileName(lockedProvidersKey(it)) }
+    if (sharedJsonPath != null && sharedJsonPath != lockData?.jsonPath && runCatching { checkLockDataJsonFile(sharedJsonPath) }.isSuccess) {
+      logger<LocalSchemaService>().info("using schemas generated for the same providers: ${lock.name}")
+      updateWorkspaceModel(lock, lockData, sharedJsonPath)
+      return sharedJsonPath
+    }
+
+    val generateResult = runCatching { generateNewJsonFile(lock, locked, explicitlyAllowRunningProcess) }
     if (generateResult.isFailure) {
       logger<LocalSchemaService>().info(
         "failed to generate new model for lock: ${lock.name}",
@@ -248,7 +269,7 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
 
     val jsonFilePath: String = generateResult.getOrNull() ?: lockData?.let { ld ->
       try {
-        readLockDataJsonFile(ld.jsonPath)
+        checkLockDataJsonFile(ld.jsonPath)
         logger<LocalSchemaService>().info("using previous logData for: ${lock.name}")
         ld.jsonPath
       }
@@ -267,15 +288,17 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
 
     updateWorkspaceModel(lock, lockData, jsonFilePath)
 
-    return readLockDataJsonFile(jsonFilePath)
+    return jsonFilePath
   }
 
-  private suspend fun readLockDataJsonFile(path: String): String {
-    return withContext(Dispatchers.IO) {
-      localModelPath.resolve(path).readText()
+  private suspend fun checkLockDataJsonFile(path: String) {
+    withContext(Dispatchers.IO) {
+      if (!Files.isRegularFile(localModelPath.resolve(path))) throw NoSuchFileException(path)
     }
   }
 
+  private fun sharedJsonFileName(lockedProvidersKey: String): String = "$lockedProvidersKey.json"
+
   private fun addLockFileDataString(lockFileData: String?, localModelJson: String): String {
     return """
     { "metadata": ${lockFileData ?: "{}"}, "schemas": $localModelJson }
@@ -289,16 +312,29 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
       return localModelsPath
     }
 
-  private suspend fun generateNewJsonFile(lock: VirtualFile, explicitlyAllowRunningProcess: Boolean): @NlsSafe String {
+  private suspend fun generateNewJsonFile(lock: VirtualFile, locked: List<ProviderInfo>, explicitlyAllowRunningProcess: Boolean): @NlsSafe String {
     if (!explicitlyAllowRunningProcess && !buildLocalMetadataAutomatically) throw IllegalStateException("generateNewJsonFile is not enabled")
+    if (locked.isEmpty()) {
+      return writeNewJsonFile(lock, locked, "${UUID.randomUUID()}.json")
+    }
+    val key = lockedProvidersKey(locked)
+    val generation = schemaGenerations.computeIfAbsent(key) {
+      modelBuildScope.async(start = CoroutineStart.LAZY) { writeNewJsonFile(lock, locked, sharedJsonFileName(key)) }
+    }
+    generation.invokeOnCompletion { schemaGenerations.remove(key, generation) }
+    return generation.await()
+  }
+
+  private suspend fun writeNewJsonFile(lock: VirtualFile, locked: List<ProviderInfo>, fileName: String): @NlsSafe String {
     val jsonFromProcess = buildJsonFromTerraformProcess(project, lock)
-    val lockFileProviders = readAction { getLockFilePsi(lock)?.let { collectProviders(it).values } }
-    val lockFileDataString = lockFileProviders?.let { buildProviderMeta(lockFileProviders) }
+    val lockFileDataString = buildProviderMeta(locked)
     val modelJson = addLockFileDataString(lockFileDataString, jsonFromProcess)
     return withContext(Dispatchers.IO) {
-      val uuid = UUID.randomUUID().toString()
-      val jsonFile = localModelPath.resolve("$uuid.json")
-      Files.writeString(jsonFile, modelJson)
+      val jsonFile = localModelPath.resolve(fileName)
+      val tempFile = Files.createTempFile(localModelPath, fileName, ".tmp")
+      Files.writeString(tempFile, modelJson)
+      Files.move(tempFile, jsonFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+      schemaCache.invalidate(fileName, locked)
       scope.launch { orphanCollector.cancelPreviousAndRun() }
       localModelPath.relativize(jsonFile).toString()
     }
@@ -319,6 +355,7 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
       }
 
       logger<LocalSchemaService>().info("OrphanMetadataCollection: $localModelPath allModelFiles = $allModelFiles, usedMeta = $usedMeta")
+      schemaCache.retainAll(usedMeta)
 
       withContext(Dispatchers.IO) {
         for (file in allModelFiles) {
@@ -344,15 +381,6 @@ class LocalSchemaService(val project: Project, val scope: CoroutineScope) {
     }
   }
 
-  private fun buildModelFromJson(json: String): TypeModel {
-    val loader = TerraformMetadataLoader()
-    json.byteInputStream().use { input ->
-      loader.loadOne("local-schema.json", input)
-    }
-    loader.loadFrom(TypeModelProvider.globalModel)
-    return loader.buildModel()
-  }
-
   private suspend fun buildJsonFromTerraformProcess(project: Project, lock: VirtualFile): @NlsSafe String {
     logger<LocalSchemaService>().info("building local model buildJsonFromTerraformProcess: $lock")
     val capturingProcessAdapter = CapturingProcessAdapter()
@@ -4,12 +4,15 @@ package org.intellij.terraform.config.model.local
 import com.intellij.openapi.util.text.StringUtil
 import com.intellij.psi.PsiFile
 import com.intellij.psi.SyntaxTraverser
+import com.intellij.util.io.DigestUtil
 import org.intellij.terraform.config.Constants.HCL_PROVIDER_IDENTIFIER
 import org.intellij.terraform.config.Constants.LATEST_VERSION
 import org.intellij.terraform.config.Constants.PROVIDER_VERSION
 import org.intellij.terraform.config.model.ProviderType
+import org.intellij.terraform.hcl.psi.HCLArray
 import org.intellij.terraform.hcl.psi.HCLBlock
 import org.intellij.terraform.hcl.psi.HCLObject
+import org.intellij.terraform.hcl.psi.HCLStringLiteral
 
 internal fun collectProviders(lockFile: PsiFile): Map<String, ProviderInfo> = SyntaxTraverser.psiTraverser(lockFile)
   .filter(HCLBlock::class.java)
@@ -18,24 +21,47 @@ internal fun collectProviders(lockFile: PsiFile): Map<String, ProviderInfo> = Sy
   .map { block -> ProviderInfo(block) }
   .associateBy { info -> info.fullName }
 
+/**
+ * Key of the provider schemas generated for a lock file: lock files pinning the same providers share the schemas.
+ */
+internal fun lockedProvidersKey(providers: Collection<ProviderInfo>): String {
+  val locked = providers.map { it.schemaKey }.sorted().joinToString("\n")
+  return DigestUtil.sha256Hex(locked.toByteArray())
+}
+
 internal class ProviderInfo(block: HCLBlock) {
 
+  val address: String = block.name
   val name: String?
   val namespace: String?
   val fullName: String
   val version: String
+  val hashes: List<String>
 
   init {
     val coordinates = ProviderType.parseCoordinates(block.name)
     this.name = coordinates.name
     this.namespace = coordinates.namespace
     fullName = "$namespace/$name"
-    version = if (block.`object` != null && block.`object` is HCLObject) {
-      val providerVersion = (block.`object` as HCLObject).propertyList.firstOrNull { it.name == PROVIDER_VERSION }?.value?.text
+    val obj = block.`object` as? HCLObject
+    version = if (obj != null) {
+      val providerVersion = obj.propertyList.firstOrNull { it.name == PROVIDER_VERSION }?.value?.text
       StringUtil.unquoteString(providerVersion ?: LATEST_VERSION)
     }
     else {
       LATEST_VERSION
     }
+    hashes = (obj?.findProperty(PROVIDER_HASHES)?.value as? HCLArray)?.elements
+      ?.mapNotNull { (it as? HCLStringLiteral)?.value }
+      ?.sorted()
+      .orEmpty()
   }
+
+  /**
+   * Identifies the schema of this exact provider build, the same in every lock file pinning it
+   */
+  val schemaKey: String
+    get() = "$address@$version#${hashes.joinToString(",")}"
 }
+
+private const val PROVIDER_HASHES = "hashes"
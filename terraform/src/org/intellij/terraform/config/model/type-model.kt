@@ -306,6 +306,7 @@ open class BaseModelType(
     if (other !is BaseModelType) return false
 
     if (description != other.description) return false
+    if (description_kind != other.description_kind) return false
     if (optional != other.optional) return false
     if (required != other.required) return false
     if (computed != other.computed) return false
@@ -317,6 +318,7 @@ open class BaseModelType(
 
   override fun hashCode(): Int {
     var result = description?.hashCode() ?: 0
+    result = 31 * result + (description_kind?.hashCode() ?: 0)
     result = 31 * result + required.hashCode()
     result = 31 * result + (deprecated?.hashCode() ?: 0)
     result = 31 * result + computed.hashCode()
@@ -327,10 +329,26 @@ open class BaseModelType(
 
 //region hints
 interface Hint
-open class SimpleHint(vararg val hint: String) : Hint
+open class SimpleHint(vararg val hint: String) : Hint {
+  override fun equals(other: Any?): Boolean {
+    if (this === other) return true
+    if (javaClass != other?.javaClass) return false
+    return hint.contentEquals((other as SimpleHint).hint)
+  }
+
+  override fun hashCode(): Int = hint.contentHashCode()
+}
 
 // TODO: Use some 'Reference' class
-open class ReferenceHint(vararg val hint: String) : Hint
+open class ReferenceHint(vararg val hint: String) : Hint {
+  override fun equals(other: Any?): Boolean {
+    if (this === other) return true
+    if (javaClass != other?.javaClass) return false
+    return hint.contentEquals((other as ReferenceHint).hint)
+  }
+
+  override fun hashCode(): Int = hint.contentHashCode()
+}
 
 open class SimpleValueHint(vararg hint: String) : SimpleHint(*hint)
 //endregion hints
@@ -414,7 +432,7 @@ open class BlockType(
   deprecated: String? = null,
   conflictsWith: List<String>? = null,
   val nesting: NestingInfo? = null,
-  val properties: Map<String, PropertyOrBlockType> = emptyMap(),
+  open val properties: Map<String, PropertyOrBlockType> = emptyMap(),
 ) : BaseModelType(description = description, description_kind = description_kind,
                   optional = optional && !required, required = required, computed = computed,
                   deprecated = deprecated, conflictsWith = conflictsWith), PropertyOrBlockType, ObjectType {
@@ -453,11 +471,16 @@ open class BlockType(
     return true
   }
 
+  // blocks are deeply nested and hashed over and over while the loaders canonicalize them, see ReusePool
+  private var hashCode: Int = 0
+
   override fun hashCode(): Int {
+    if (hashCode != 0) return hashCode
     var result = super.hashCode()
     result = 31 * result + literal.hashCode()
     result = 31 * result + args
     result = 31 * result + properties.hashCode()
+    hashCode = result
     return result
   }
 
@@ -530,6 +553,7 @@ class ResourceType(
   override val provider: ProviderType,
   properties: List<PropertyOrBlockType>,
   blockType: BlockType? = null,
+  lazyProperties: (() -> Map<String, PropertyOrBlockType>)? = null,
 ) : BlockType(literal = HCL_RESOURCE_IDENTIFIER,
               args = 2,
               description = blockType?.description,
@@ -540,7 +564,21 @@ class ResourceType(
               deprecated = blockType?.deprecated,
               conflictsWith = blockType?.conflictsWith,
               nesting = blockType?.nesting,
-              properties = withDefaults(properties, TypeModel.AbstractResource.properties)), ResourceOrDataSourceType {
+              properties = if (lazyProperties == null) withDefaults(properties, TypeModel.AbstractResource.properties) else emptyMap()),
+  ResourceOrDataSourceType {
+  // the schema of a bundled provider is parsed when one of its types is used for the first time, see LazyProviderSchema
+  private val lazySchema: Lazy<Map<String, PropertyOrBlockType>>? = lazyProperties?.let { lazy(it) }
+
+  override val properties: Map<String, PropertyOrBlockType>
+    get() = lazySchema?.value ?: super.properties
+
+  // the type and provider are compared first, so that lookups don't materialize the properties
+  override fun equals(other: Any?): Boolean {
+    return other is ResourceType && type == other.type && provider.fullName == other.provider.fullName && super.equals(other)
+  }
+
+  override fun hashCode(): Int = 31 * type.hashCode() + provider.fullName.hashCode()
+
   override fun toString(): String {
     return "ResourceType (type='$type', provider='${provider.presentableText}')"
   }
@@ -554,6 +592,7 @@ class DataSourceType(
   override val provider: ProviderType,
   properties: List<PropertyOrBlockType>,
   blockType: BlockType? = null,
+  lazyProperties: (() -> Map<String, PropertyOrBlockType>)? = null,
 ) :
   BlockType(literal = HCL_DATASOURCE_IDENTIFIER,
             args = 2,
@@ -565,7 +604,19 @@ class DataSourceType(
             deprecated = blockType?.deprecated,
             conflictsWith = blockType?.conflictsWith,
             nesting = blockType?.nesting,
-            properties = withDefaults(properties, TypeModel.AbstractDataSource.properties)), ResourceOrDataSourceType {
+            properties = if (lazyProperties == null) withDefaults(properties, TypeModel.AbstractDataSource.properties) else emptyMap()),
+  ResourceOrDataSourceType {
+  private val lazySchema: Lazy<Map<String, PropertyOrBlockType>>? = lazyProperties?.let { lazy(it) }
+
+  override val properties: Map<String, PropertyOrBlockType>
+    get() = lazySchema?.value ?: super.properties
+
+  override fun equals(other: Any?): Boolean {
+    return other is DataSourceType && type == other.type && provider.fullName == other.provider.fullName && super.equals(other)
+  }
+
+  override fun hashCode(): Int = 31 * type.hashCode() + provider.fullName.hashCode()
+
   override fun toString(): String {
     return "DataSourceType (type='$type', provider='${provider.presentableText}')"
   }
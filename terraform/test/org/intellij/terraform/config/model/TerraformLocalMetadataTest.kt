@@ -252,6 +252,24 @@ open class TerraformLocalMetadataTest : BasePlatformTestCase() {
     }
   }
 
+  fun testSameProvidersShareSchemas() {
+    TFCommandLineServiceMock.instance.mockCommandLine(
+      "$terraformExe providers schema -json", genDoModel("dummyProp"),
+      testRootDisposable)
+
+    val first = myFixture.addFileToProject("first/$TERRAFORM_LOCK_FILE_NAME", MY_DO_LOCK).virtualFile
+    val second = myFixture.addFileToProject("second/$TERRAFORM_LOCK_FILE_NAME", MY_DO_LOCK).virtualFile
+    timeoutRunBlocking {
+      val models = localSchemaService.scheduleModelRebuild(setOf(first, second), explicitlyAllowRunningProcess = true).getValue()
+      assertSame(models[0], models[1])
+      assertNotNull(models[0].getResourceType("digitalocean_droplet"))
+      assertEquals(1, TFCommandLineServiceMock.instance.requestsToVerify().size)
+      waitUntil("one metadata file remains") {
+        1L == Files.list(localSchemaService.localModelPath).use { it.count() }
+      }
+    }
+  }
+
   fun testPickUpOldMetaOnError() {
     loadAndCheckDoMetadata("dummyProp")
     TFCommandLineServiceMock.instance.mockCommandLine(
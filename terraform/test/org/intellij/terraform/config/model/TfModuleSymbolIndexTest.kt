@@ -0,0 +1,137 @@
+// Copyright 2000-2025 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package org.intellij.terraform.config.model
+
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+import org.intellij.terraform.hcl.psi.HCLFile
+import kotlin.system.measureTimeMillis
+
+class TfModuleSymbolIndexTest : BasePlatformTestCase() {
+
+  fun testDeclarationsAndReferencesAcrossFiles() {
+    myFixture.addFileToProject("module/variables.tf", """
+      variable "region" {}
+      variable "unused" {}
+      locals {
+        prefix = "app"
+        suffix = "${'$'}{var.region}-x"
+      }
+    """.trimIndent())
+    val main = myFixture.addFileToProject("module/main.tf", """
+      data "aws_ami" "ubuntu" {}
+      resource "aws_instance" "web" {
+        ami  = data.aws_ami.ubuntu.id
+        tags = { Name = "${'$'}{local.prefix}-web" }
+      }
+      output "ip" {
+        value = aws_instance.web[0].private_ip
+      }
+      provider "aws" {
+        alias = "east"
+      }
+    """.trimIndent())
+    myFixture.addFileToProject("module/terraform.tfvars", """
+      unused = "value"
+    """.trimIndent())
+
+    val symbols = TfModuleSymbols.getInstance(Module.getModule(main))!!
+    assertEquals(1, symbols.getDeclarationsCount(TfModuleSymbols.variable("region")))
+    assertEquals(1, symbols.getDeclarationsCount(TfModuleSymbols.local("suffix")))
+    assertEquals(1, symbols.getDeclarationsCount(TfModuleSymbols.dataSource("aws_ami", "ubuntu")))
+    assertEquals(1, symbols.getDeclarationsCount(TfModuleSymbols.resource("aws_instance", "web")))
+    assertEquals(1, symbols.getDeclarationsCount(TfModuleSymbols.output("ip")))
+    assertEquals(1, symbols.getDeclarationsCount(TfModuleSymbols.provider("aws.east")))
+
+    assertTrue(symbols.isReferenced(TfModuleSymbols.variable("region")))
+    assertTrue(symbols.isReferenced(TfModuleSymbols.variable("unused")))
+    assertTrue(symbols.isReferenced(TfModuleSymbols.local("prefix")))
+    assertFalse(symbols.isReferenced(TfModuleSymbols.local("suffix")))
+    assertTrue(symbols.isReferenced(TfModuleSymbols.dataSource("aws_ami", "ubuntu")))
+    assertTrue(symbols.isReferenced(TfModuleSymbols.resource("aws_instance", "web")))
+    assertEquals(main.virtualFile, symbols.getDeclaringFiles(TfModuleSymbols.resource("aws_instance", "web")).single())
+  }
+
+  fun testSymbolsAreUpdatedOnChange() {
+    val file = myFixture.addFileToProject("module/main.tf", """
+      variable "a" {}
+    """.trimIndent())
+    val module = Module.getModule(file)
+    assertEquals(1, TfModuleSymbols.getInstance(module)!!.getDeclarationsCount(TfModuleSymbols.variable("a")))
+
+    myFixture.addFileToProject("module/other.tf", """
+      variable "a" {}
+      output "o" { value = var.a }
+    """.trimIndent())
+    val symbols = TfModuleSymbols.getInstance(module)!!
+    assertEquals(2, symbols.getDeclarationsCount(TfModuleSymbols.variable("a")))
+    assertTrue(symbols.isReferenced(TfModuleSymbols.variable("a")))
+  }
+
+  fun testFindDeclarationsInDeclaringFiles() {
+    myFixture.addFileToProject("module/data.tf", """
+      data "aws_ami" "ubuntu" {}
+      locals {
+        name = "web"
+      }
+    """.trimIndent())
+    val main = myFixture.addFileToProject("module/main.tf", """
+      resource "aws_instance" "web" {}
+      resource "aws_instance" "db" {}
+    """.trimIndent())
+    val module = Module.getModule(main)
+
+    assertEquals("data.tf", module.findDataSource("aws_ami", "ubuntu").single().containingFile.name)
+    assertEquals("data.tf", module.findLocal("name")!!.second.containingFile.name)
+    assertEquals("main.tf", module.findResources("aws_instance", "web").single().containingFile.name)
+    assertEquals(2, module.findResources("aws_instance", null).size)
+    assertEmpty(module.findResources("aws_instance", "missing"))
+    assertNull(module.findLocal("missing"))
+  }
+
+  /**
+   * Resolves usages of every local of a large generated module through the index and through the references search.
+   * Run with `-Dterraform.module.symbols.benchmark=true`.
+   */
+  fun testLargeModuleBenchmark() {
+    if (!java.lang.Boolean.getBoolean("terraform.module.symbols.benchmark")) return
+
+    val filesCount = 200
+    val localsPerFile = 25
+    for (i in 0 until filesCount) {
+      val text = buildString {
+        appendLine("variable \"v$i\" {}")
+        appendLine("locals {")
+        for (j in 0 until localsPerFile) {
+          val value = if (j == 0) "var.v$i" else "\"\${local.l${i}_${j - 1}}-$j\""
+          appendLine("  l${i}_$j = $value")
+        }
+        appendLine("}")
+        appendLine("resource \"null_resource\" \"r$i\" {")
+        appendLine("  triggers = { value = local.l${i}_${localsPerFile - 2} }")
+        appendLine("}")
+      }
+      myFixture.addFileToProject("large/file$i.tf", text)
+    }
+    val files = (0 until filesCount).map { myFixture.findFileInTempDir("large/file$it.tf") }
+    val psiFiles = files.map { psiManager.findFile(it) as HCLFile }
+    val module = Module.getModule(psiFiles.first())
+    val locals = module.getAllLocals()
+    assertEquals(filesCount * localsPerFile, locals.size)
+
+    var indexUnused = 0
+    val indexTime = measureTimeMillis {
+      val symbols = TfModuleSymbols.getInstance(module)!!
+      indexUnused = locals.count { !symbols.isReferenced(TfModuleSymbols.local(it.first)) }
+    }
+    var searchUnused = 0
+    val searchTime = measureTimeMillis {
+      searchUnused = locals.count { ReferencesSearch.search(it.second, module.getTerraformModuleScope()).findFirst() == null }
+    }
+    assertEquals(searchUnused, indexUnused)
+    println("""
+      |Unused locals of a module with $filesCount files and ${locals.size} locals ($indexUnused unused)
+      |  module symbols index: $indexTime ms
+      |  references search:    $searchTime ms
+      """.trimMargin())
+  }
+}
@@ -0,0 +1,146 @@
+// Copyright 2000-2023 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package org.intellij.terraform.config.model.loader
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ObjectNode
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.testFramework.LightPlatformTestCase
+import org.intellij.terraform.config.model.BlockType
+import org.intellij.terraform.config.model.PropertyType
+import org.intellij.terraform.config.model.ResourceType
+import org.intellij.terraform.config.model.TypeModel
+
+class ReusePoolTest : LightPlatformTestCase() {
+
+  fun testStructurallyEqualElementsAreShared() {
+    val model = load(ReusePool())
+    val first = model.resources.single { it.type == "test_first" }
+    val second = model.resources.single { it.type == "test_second" }
+
+    assertSame(first.block("timeouts"), second.block("timeouts"))
+    assertSame(first.block("timeouts").properties, second.block("timeouts").properties)
+    assertSame(first.property("tags"), second.property("tags"))
+    assertSame(first.property("tags").type, second.property("tags").type)
+    assertSame(first.property("tags").description, second.property("tags").description)
+  }
+
+  fun testDescriptionKindIsKept() {
+    val model = load(ReusePool())
+    val first = model.resources.single { it.type == "test_first" }
+    val second = model.resources.single { it.type == "test_second" }
+
+    assertNotSame(first.property("name"), second.property("name"))
+    assertEquals("plain", first.property("name").description_kind)
+    assertEquals("markdown", second.property("name").description_kind)
+  }
+
+  fun testElementsAreNotSharedWithoutCanonicalization() {
+    val model = load(ReusePool(false))
+    val first = model.resources.single { it.type == "test_first" }
+    val second = model.resources.single { it.type == "test_second" }
+
+    assertEquals(first.block("timeouts"), second.block("timeouts"))
+    assertNotSame(first.block("timeouts"), second.block("timeouts"))
+  }
+
+  fun testLazyProviderIsCanonicalizedWithItsOwnPool() {
+    val schema = LazyProviderSchema("test.json", emptyMap()) { SCHEMA.byteInputStream() }
+    val first = schema.getResourceProperties("test_first")
+    val second = schema.getResourceProperties("test_second")
+
+    assertSame(first["timeouts"], second["timeouts"])
+    assertSame(first["tags"], second["tags"])
+  }
+
+  /**
+   * Retained heap of the bundled model loaded with and without canonicalization, and from the snapshot with every provider expanded.
+   * Run with `-Dterraform.model.pool.report=true`, it takes a while.
+   */
+  fun testBundledModelMemoryReport() {
+    if (!java.lang.Boolean.getBoolean("terraform.model.pool.report")) return
+
+    val pool = ReusePool()
+    val pooledHeap = retainedHeap { TerraformMetadataLoader(null, pool).loadDefaults()!! }
+    val plainHeap = retainedHeap { TerraformMetadataLoader(null, ReusePool(false)).loadDefaults()!! }
+    val snapshot = TerraformModelSnapshot.bundled
+    val snapshotHeap = snapshot?.let { retainedHeap { expandAll(TerraformMetadataLoader(it).loadDefaults()!!) } }
+    println("""
+      |Bundled model retained heap
+      |  without canonicalization: ${FileUtil.byteCountToDisplaySize(plainHeap)}
+      |  with canonicalization:    ${FileUtil.byteCountToDisplaySize(pooledHeap)}
+      |  from the snapshot, all providers expanded: ${snapshotHeap?.let { FileUtil.byteCountToDisplaySize(it) } ?: "no snapshot"}
+      |${pool.report()}
+      """.trimMargin())
+  }
+
+  private fun expandAll(model: TypeModel): TypeModel {
+    model.allResources().forEach { it.properties }
+    model.allDatasources().forEach { it.properties }
+    return model
+  }
+
+  private fun load(pool: ReusePool): LoadingModel {
+    val context = LoadContext(pool, LoadingModel())
+    val json = ObjectMapper().readTree(SCHEMA) as ObjectNode
+    TerraformProvidersSchema().load(context, json, "test.json")
+    return context.model
+  }
+
+  private fun ResourceType.block(name: String): BlockType = properties[name] as BlockType
+
+  private fun ResourceType.property(name: String): PropertyType = properties[name] as PropertyType
+
+  private fun retainedHeap(load: () -> TypeModel): Long {
+    val before = usedHeap()
+    val model = load()
+    val heap = usedHeap() - before
+    assertNotNull(model.getResourceType("aws_instance"))
+    return heap
+  }
+
+  private fun usedHeap(): Long {
+    val runtime = Runtime.getRuntime()
+    repeat(3) { System.gc() }
+    return runtime.totalMemory() - runtime.freeMemory()
+  }
+
+  companion object {
+    private fun resource(nameDescriptionKind: String) = """
+      {
+        "version": 0,
+        "block": {
+          "attributes": {
+            "name": {"type": "string", "description": "Name", "description_kind": "$nameDescriptionKind", "required": true},
+            "tags": {"type": ["map", "string"], "description": "Tags to assign", "optional": true}
+          },
+          "block_types": {
+            "timeouts": {
+              "nesting_mode": "single",
+              "block": {
+                "attributes": {
+                  "create": {"type": "string", "optional": true},
+                  "delete": {"type": "string", "optional": true}
+                }
+              }
+            }
+          }
+        }
+      }
+    """
+
+    private val SCHEMA = """
+      {
+        "format_version": "1.0",
+        "provider_schemas": {
+          "registry.terraform.io/hashicorp/test": {
+            "provider": {"version": 0, "block": {}},
+            "resource_schemas": {
+              "test_first": ${resource("plain")},
+              "test_second": ${resource("markdown")}
+            }
+          }
+        }
+      }
+    """
+  }
+}
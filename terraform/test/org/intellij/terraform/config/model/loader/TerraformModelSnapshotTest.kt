@@ -0,0 +1,127 @@
+// Copyright 2000-2023 JetBrains s.r.o. and contributors. Use of this source code is governed by the Apache 2.0 license.
+package org.intellij.terraform.config.model.loader
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ObjectNode
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.testFramework.LightPlatformTestCase
+import com.intellij.testFramework.LoggedErrorProcessor
+import org.intellij.terraform.config.model.PropertyOrBlockType
+import org.intellij.terraform.config.model.TypeModel
+import org.intellij.terraform.config.model.loader.snapshot.TerraformModelSnapshotWriter
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+
+class TerraformModelSnapshotTest : LightPlatformTestCase() {
+  private lateinit var snapshotFile: Path
+
+  override fun setUp() {
+    super.setUp()
+    snapshotFile = FileUtil.createTempFile("providers", ".snapshot", true).toPath()
+  }
+
+  fun testSnapshotModelMatchesJsonModel() {
+    val providers = bundledProviderFiles().take(5)
+    val snapshot = writeSnapshot(providers)
+    assertSameElements(snapshot.sourceNames, providers)
+
+    val fromJson = TerraformMetadataLoader(null).loadDefaults()!!
+    val fromSnapshot = TerraformMetadataLoader(snapshot).loadDefaults()!!
+
+    assertSameElements(fromSnapshot.allProviders().map { it.fullName }.toList(), fromJson.allProviders().map { it.fullName }.toList())
+    assertSameElements(fromSnapshot.allResources().map { it.type }.toList(), fromJson.allResources().map { it.type }.toList())
+    assertSameElements(fromSnapshot.allDatasources().map { it.type }.toList(), fromJson.allDatasources().map { it.type }.toList())
+
+    val lazyResources = fromSnapshot.allResources().associateBy { it.provider.fullName to it.type }
+    for (resource in fromJson.allResources()) {
+      val lazy = lazyResources[resource.provider.fullName to resource.type]
+      assertNotNull(resource.type, lazy)
+      assertEquals(resource.description, lazy!!.description)
+      assertEquals(resource.properties, lazy.properties)
+      assertEquals(resource, lazy)
+    }
+  }
+
+  fun testCorruptedSnapshotIsRejected() {
+    Files.write(snapshotFile, byteArrayOf(1, 2, 3, 4, 5, 6, 7, 8))
+    assertThrows(IOException::class.java) { TerraformModelSnapshot.open(snapshotFile) }
+  }
+
+  fun testUnreadableSchemaIsParsedFromBundledJson() {
+    val (file, type) = bundledProviderFiles().firstNotNullOf { file ->
+      val json = TerraformMetadataLoader.getResource(file)!!.use { ObjectMapper().readTree(it) as ObjectNode }
+      val resources = (json.get("schemas") ?: json).get("provider_schemas")?.elements()?.next()?.get("resource_schemas")
+      resources?.fieldNames()?.takeIf { it.hasNext() }?.let { file to it.next() }
+    }
+    val schema = LazyProviderSchema(file, emptyMap()) { throw IOException("corrupted") }
+
+    lateinit var properties: Map<String, PropertyOrBlockType>
+    LoggedErrorProcessor.executeAndReturnLoggedError { properties = schema.getResourceProperties(type) }
+
+    assertEquals(TerraformMetadataLoader(null).loadDefaults()!!.getResourceType(type)!!.properties, properties)
+  }
+
+  fun testUnreadableSchemaKeepsCommonProperties() {
+    val schema = LazyProviderSchema("${TerraformMetadataLoader.ModelResourcesPrefix}/providers/missing.json", emptyMap()) {
+      throw IOException("corrupted")
+    }
+
+    lateinit var properties: Map<String, PropertyOrBlockType>
+    LoggedErrorProcessor.executeAndReturnLoggedError { properties = schema.getResourceProperties("missing_resource") }
+
+    assertEquals(TypeModel.AbstractResource.properties, properties)
+  }
+
+  /**
+   * Startup time and retained heap of the bundled model loaded from the json files and from the snapshot.
+   * Run with `-Dterraform.model.snapshot.benchmark=true`, it takes a while.
+   */
+  fun testStartupAndHeapBenchmark() {
+    if (!java.lang.Boolean.getBoolean("terraform.model.snapshot.benchmark")) return
+
+    val snapshot = writeSnapshot(bundledProviderFiles())
+    val (jsonTime, jsonHeap) = measure { TerraformMetadataLoader(null).loadDefaults()!! }
+    val (snapshotTime, snapshotHeap) = measure { TerraformMetadataLoader(snapshot).loadDefaults()!! }
+    val (firstUseTime, _) = measure {
+      TerraformMetadataLoader(snapshot).loadDefaults()!!.also { it.getResourceType("aws_instance")?.properties }
+    }
+    println("""
+      |Bundled model, ${snapshot.sourceNames.size} provider files, snapshot ${FileUtil.byteCountToDisplaySize(Files.size(snapshotFile))}
+      |  json:     ${jsonTime} ms, ${FileUtil.byteCountToDisplaySize(jsonHeap)} retained
+      |  snapshot: ${snapshotTime} ms, ${FileUtil.byteCountToDisplaySize(snapshotHeap)} retained
+      |  snapshot with aws_instance used: ${firstUseTime} ms
+      """.trimMargin())
+  }
+
+  private fun bundledProviderFiles(): List<String> {
+    return TerraformMetadataLoader.getAllResourcesToLoad(TerraformMetadataLoader.ModelResourcesPrefix)
+      .filter { it.startsWith("${TerraformMetadataLoader.ModelResourcesPrefix}/providers/") }
+  }
+
+  private fun writeSnapshot(providers: List<String>): TerraformModelSnapshot {
+    val mapper = ObjectMapper()
+    Files.newOutputStream(snapshotFile).use { output ->
+      TerraformModelSnapshotWriter.write(providers, output) { name ->
+        TerraformMetadataLoader.getResource(name)?.use { mapper.readTree(it) as? ObjectNode }
+      }
+    }
+    return TerraformModelSnapshot.open(snapshotFile)
+  }
+
+  private fun measure(load: () -> TypeModel): Pair<Long, Long> {
+    val before = usedHeap()
+    val start = System.currentTimeMillis()
+    val model = load()
+    val time = System.currentTimeMillis() - start
+    val heap = usedHeap() - before
+    assertNotNull(model)
+    return time to heap
+  }
+
+  private fun usedHeap(): Long {
+    val runtime = Runtime.getRuntime()
+    repeat(3) { System.gc() }
+    return runtime.totalMemory() - runtime.freeMemory()
+  }
+}